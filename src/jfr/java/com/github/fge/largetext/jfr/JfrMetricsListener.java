@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.jfr;
+
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.metrics.MetricsListener;
+import com.github.fge.largetext.range.IntRange;
+import jdk.jfr.Event;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link MetricsListener} emitting JDK Flight Recorder events
+ *
+ * <p>Set an instance of this class on a {@link LargeTextFactory} (see {@link
+ * LargeTextFactory.Builder#setMetricsListener(MetricsListener)}); texts will
+ * then emit the following events, all in category {@code largetext}:</p>
+ *
+ * <ul>
+ *     <li>{@code com.github.fge.largetext.WindowDecoded}: the decoding thread
+ *     has indexed a window;</li>
+ *     <li>{@code com.github.fge.largetext.WindowLoaded}: a window has been
+ *     loaded into the text cache;</li>
+ *     <li>{@code com.github.fge.largetext.CacheEvicted}: a window has been
+ *     evicted from the text cache;</li>
+ *     <li>{@code com.github.fge.largetext.ReaderBlocked}: a reader has waited
+ *     for the decoding thread.</li>
+ * </ul>
+ *
+ * <p>Events carry the file, and the byte and character ranges of the window
+ * (for a reader, the number of characters it waited for). An event begins
+ * when the operation it describes is announced (see {@link
+ * MetricsListener#starting(Operation)}), and is committed once the operation
+ * is over, so that its start time and duration are those of the operation.
+ * The duration as measured by the text is also a field of the event.</p>
+ *
+ * <p>When an event type is not enabled in the current recording (or when
+ * there is no recording), the listener only checks this fact and returns.
+ * </p>
+ */
+@ThreadSafe
+public final class JfrMetricsListener
+    implements MetricsListener
+{
+    private final String file;
+
+    /*
+     * Events begun and not committed yet, per thread; operations of the same
+     * kind are never nested in a given thread
+     */
+    private final ThreadLocal<WindowDecodedEvent> decodes
+        = new ThreadLocal<>();
+    private final ThreadLocal<WindowLoadedEvent> loads = new ThreadLocal<>();
+    private final ThreadLocal<ReaderBlockedEvent> waits = new ThreadLocal<>();
+
+    /**
+     * Constructor
+     */
+    public JfrMetricsListener()
+    {
+        this("");
+    }
+
+    private JfrMetricsListener(final String file)
+    {
+        this.file = file;
+    }
+
+    @Override
+    public MetricsListener forSource(final String name)
+    {
+        return new JfrMetricsListener(name);
+    }
+
+    @Override
+    public void starting(final Operation operation)
+    {
+        switch (operation) {
+            case WINDOW_DECODE:
+                begin(decodes, new WindowDecodedEvent());
+                break;
+            case WINDOW_LOAD:
+                begin(loads, new WindowLoadedEvent());
+                break;
+            case WAIT:
+                begin(waits, new ReaderBlockedEvent());
+                break;
+            default:
+                // Not reported as events
+        }
+    }
+
+    @Override
+    public void windowDecoded(final TextRange textRange, final long nanos)
+    {
+        final WindowDecodedEvent event = end(decodes);
+        if (event == null)
+            return;
+        event.setTextRange(file, textRange);
+        event.decodeTime = nanos;
+        event.bytes = event.byteEnd - event.byteStart;
+        event.commit();
+    }
+
+    @Override
+    public void windowLoaded(final TextRange textRange, final long nanos)
+    {
+        final WindowLoadedEvent event = end(loads);
+        if (event == null)
+            return;
+        event.setTextRange(file, textRange);
+        event.loadTime = nanos;
+        event.bytes = event.byteEnd - event.byteStart;
+        event.commit();
+    }
+
+    @Override
+    public void windowEvicted(final TextRange textRange)
+    {
+        final CacheEvictedEvent event = new CacheEvictedEvent();
+        if (!event.isEnabled())
+            return;
+        event.setTextRange(file, textRange);
+        event.commit();
+    }
+
+    @Override
+    public void charAtSlowPath(final int index, final TextRange window,
+        final long fastPathHits, final long nanos)
+    {
+    }
+
+    @Override
+    public void waited(final int required, final long nanos)
+    {
+        final ReaderBlockedEvent event = end(waits);
+        if (event == null)
+            return;
+        event.file = file;
+        event.requiredChars = required;
+        event.blockedTime = nanos;
+        event.commit();
+    }
+
+    @Override
+    public void subSequence(final IntRange range, final int nrWindows,
+        final long nanos)
+    {
+    }
+
+    /*
+     * If the event is not enabled, the pending event (if any) is forgotten,
+     * and the operation will not be reported
+     */
+    private static <E extends Event> void begin(final ThreadLocal<E> pending,
+        final E event)
+    {
+        if (!event.isEnabled()) {
+            pending.remove();
+            return;
+        }
+        event.begin();
+        pending.set(event);
+    }
+
+    @Nullable
+    private static <E extends Event> E end(final ThreadLocal<E> pending)
+    {
+        final E event = pending.get();
+        if (event == null)
+            return null;
+        pending.remove();
+        event.end();
+        return event;
+    }
+}
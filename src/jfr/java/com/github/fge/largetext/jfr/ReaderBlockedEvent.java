@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A reader has waited for the decoding process
+ *
+ * <p>Unlike other events of this package, this event has a stack trace: it
+ * tells which reader was blocked.</p>
+ */
+@Name("com.github.fge.largetext.ReaderBlocked")
+@Label("Reader Blocked")
+@Category("largetext")
+@Description("A reader has waited for the decoding process to reach a"
+    + " character")
+final class ReaderBlockedEvent
+    extends Event
+{
+    @Label("File")
+    String file;
+
+    @Label("Required Chars")
+    @Description("The number of characters the reader waited for")
+    int requiredChars;
+
+    @Label("Blocked Time")
+    @Timespan
+    long blockedTime;
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.jfr;
+
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.range.LongRange;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Base class for events about one window of a text
+ */
+abstract class TextRangeEvent
+    extends Event
+{
+    @Label("File")
+    String file;
+
+    @Label("Byte Start")
+    long byteStart;
+
+    @Label("Byte End")
+    long byteEnd;
+
+    @Label("Char Start")
+    int charStart;
+
+    @Label("Char End")
+    int charEnd;
+
+    final void setTextRange(final String file, final TextRange textRange)
+    {
+        final LongRange byteRange = textRange.getByteRange();
+        final IntRange charRange = textRange.getCharRange();
+        this.file = file;
+        byteStart = byteRange.getLowerBound();
+        byteEnd = byteRange.getUpperBound();
+        charStart = charRange.getLowerBound();
+        charEnd = charRange.getUpperBound();
+    }
+}
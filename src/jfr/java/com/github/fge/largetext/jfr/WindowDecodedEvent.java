@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The decoding process has indexed a window
+ */
+@Name("com.github.fge.largetext.WindowDecoded")
+@Label("Window Decoded")
+@Category("largetext")
+@Description("A window of a text has been read and indexed by its decoding"
+    + " thread")
+@StackTrace(false)
+final class WindowDecodedEvent
+    extends TextRangeEvent
+{
+    @Label("Decode Time")
+    @Timespan
+    long decodeTime;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
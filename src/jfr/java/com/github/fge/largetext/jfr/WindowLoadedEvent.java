@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A window has been loaded by the text cache
+ */
+@Name("com.github.fge.largetext.WindowLoaded")
+@Label("Window Loaded")
+@Category("largetext")
+@Description("A window of a text was not in the text cache and has been read"
+    + " and decoded")
+@StackTrace(false)
+final class WindowLoadedEvent
+    extends TextRangeEvent
+{
+    @Label("Load Time")
+    @Timespan
+    long loadTime;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.benchmark;
+
+import com.github.fge.largetext.SizeUnit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generation of text files for benchmarks
+ *
+ * <p>Files are made of lines of pseudo random words; the same arguments always
+ * produce the same file. Accented letters are used if the character coding
+ * can encode them.</p>
+ */
+public final class BenchmarkFiles
+{
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+    private static final String ACCENTED = "\u00e9\u00e8\u00e0\u00e7\u00f9";
+
+    private BenchmarkFiles()
+    {
+    }
+
+    /**
+     * Create a temporary text file
+     *
+     * @param sizeMiB the size of the file, in MiB
+     * @param charset the character coding
+     * @return the path to the file; it is up to the caller to delete it
+     * @throws IOException failed to write the file
+     */
+    public static Path create(final int sizeMiB, final Charset charset)
+        throws IOException
+    {
+        final long size = SizeUnit.MiB.sizeInBytes(sizeMiB);
+        final Path path = Files.createTempFile("largetext-bench", ".txt");
+        final CharsetEncoder encoder = charset.newEncoder();
+        final String alphabet = encoder.canEncode(ACCENTED)
+            ? LETTERS + ACCENTED : LETTERS;
+        final Random random = new Random(0L);
+        final StringBuilder sb = new StringBuilder();
+
+        long written = 0L;
+        ByteBuffer bytes;
+        try (
+            final OutputStream out = Files.newOutputStream(path);
+        ) {
+            while (written < size) {
+                sb.setLength(0);
+                appendLine(sb, random, alphabet);
+                bytes = encoder.encode(CharBuffer.wrap(sb));
+                out.write(bytes.array(), bytes.arrayOffset(),
+                    bytes.remaining());
+                written += bytes.remaining();
+            }
+        }
+        return path;
+    }
+
+    private static void appendLine(final StringBuilder sb,
+        final Random random, final String alphabet)
+    {
+        final int nrWords = 1 + random.nextInt(20);
+        int wordLength;
+        for (int i = 0; i < nrWords; i++) {
+            if (i > 0)
+                sb.append(' ');
+            wordLength = 1 + random.nextInt(10);
+            for (int j = 0; j < wordLength; j++)
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        sb.append('\n');
+    }
+}
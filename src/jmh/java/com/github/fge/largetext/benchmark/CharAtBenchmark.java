@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link CharSequence#charAt(int)}, for sequential and random
+ * accesses
+ *
+ * <p>Sequential accesses mostly hit the current window (for non thread safe
+ * instances) or the cache; random accesses over a large file are dominated by
+ * window lookups, and decoding of windows which have expired from the cache.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CharAtBenchmark
+{
+    private static final int NR_INDICES = 1 << 16;
+
+    /**
+     * Per thread access cursors
+     */
+    @State(Scope.Thread)
+    public static class Cursor
+    {
+        int sequential;
+        int[] indices;
+        int next;
+
+        @Setup
+        public void setup(final TextState state)
+        {
+            final Random random = new Random(0L);
+            indices = new int[NR_INDICES];
+            for (int i = 0; i < NR_INDICES; i++)
+                indices[i] = random.nextInt(state.length);
+        }
+    }
+
+    @Benchmark
+    public char sequentialCharAt(final TextState state, final Cursor cursor)
+    {
+        if (cursor.sequential >= state.length)
+            cursor.sequential = 0;
+        return state.text.charAt(cursor.sequential++);
+    }
+
+    @Benchmark
+    public char randomCharAt(final TextState state, final Cursor cursor)
+    {
+        final int index = cursor.indices[cursor.next];
+        cursor.next = (cursor.next + 1) & (NR_INDICES - 1);
+        return state.text.charAt(index);
+    }
+}
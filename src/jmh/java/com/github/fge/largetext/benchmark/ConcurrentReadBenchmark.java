@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.benchmark;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.SizeUnit;
+import com.github.fge.largetext.ThreadSafeLargeText;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent reads of a {@link ThreadSafeLargeText}
+ *
+ * <p>All threads share the same instance. Two situations are measured:</p>
+ *
+ * <ul>
+ *     <li>reads once the text has been entirely decoded (the {@code decoded*}
+ *     benchmarks): threads contend on the text range map of the decoder and
+ *     on the text cache;</li>
+ *     <li>reads while the text is being decoded (the {@code decoding} group):
+ *     a new instance is loaded at each iteration, and threads reading
+ *     characters not decoded yet wait in a {@link
+ *     com.github.fge.largetext.load.CharWaiter} until the decoder reaches
+ *     them. Each group has three random readers and one sequential reader.
+ *     </li>
+ * </ul>
+ *
+ * <p>Both throughput and latency distribution (sample time) are measured.
+ * Thread counts are set on the command line ({@code -t}); see {@link
+ * ScalabilityRunner} to run this benchmark with an increasing number of
+ * threads.</p>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConcurrentReadBenchmark
+{
+    private static final int NR_INDICES = 1 << 16;
+
+    /**
+     * The generated file, and a fully decoded text over it
+     */
+    @State(Scope.Benchmark)
+    public static class Corpus
+    {
+        @Param({ "256" })
+        public int sizeMiB;
+
+        @Param({ "2048" })
+        public int windowKiB;
+
+        LargeTextFactory factory;
+        Path path;
+        LargeText text;
+        int length;
+
+        @Setup
+        public void setup()
+            throws IOException
+        {
+            path = BenchmarkFiles.create(sizeMiB, StandardCharsets.UTF_8);
+            factory = LargeTextFactory.newBuilder()
+                .setWindowSize(windowKiB, SizeUnit.KiB).build();
+            text = factory.loadThreadSafe(path);
+            length = text.length();
+        }
+
+        @TearDown
+        public void tearDown()
+            throws IOException
+        {
+            text.close();
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * A text being decoded; reloaded at each iteration
+     */
+    @State(Scope.Benchmark)
+    public static class DecodingText
+    {
+        LargeText text;
+
+        @Setup(Level.Iteration)
+        public void setup(final Corpus corpus)
+            throws IOException
+        {
+            text = corpus.factory.loadThreadSafe(corpus.path);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown()
+            throws IOException
+        {
+            text.close();
+        }
+    }
+
+    /**
+     * Per thread cursors; sequential readers start at different offsets
+     */
+    @State(Scope.Thread)
+    public static class Cursor
+    {
+        int sequential;
+        int[] indices;
+        int next;
+
+        @Setup
+        public void setup(final Corpus corpus, final ThreadParams params)
+        {
+            final int length = corpus.length;
+            sequential = (int) ((long) length * params.getThreadIndex()
+                / params.getThreadCount());
+            final Random random = new Random(params.getThreadIndex());
+            indices = new int[NR_INDICES];
+            for (int i = 0; i < NR_INDICES; i++)
+                indices[i] = random.nextInt(length);
+        }
+
+        int nextRandom()
+        {
+            final int ret = indices[next];
+            next = (next + 1) & (NR_INDICES - 1);
+            return ret;
+        }
+
+        int nextSequential(final int length)
+        {
+            if (sequential >= length)
+                sequential = 0;
+            return sequential++;
+        }
+    }
+
+    @Benchmark
+    public char decodedRandomRead(final Corpus corpus, final Cursor cursor)
+    {
+        return corpus.text.charAt(cursor.nextRandom());
+    }
+
+    @Benchmark
+    public char decodedSequentialRead(final Corpus corpus,
+        final Cursor cursor)
+    {
+        return corpus.text.charAt(cursor.nextSequential(corpus.length));
+    }
+
+    @Benchmark
+    @Group("decoding")
+    @GroupThreads(3)
+    public char decodingRandomRead(final DecodingText text,
+        final Cursor cursor)
+    {
+        return text.text.charAt(cursor.nextRandom());
+    }
+
+    @Benchmark
+    @Group("decoding")
+    @GroupThreads(1)
+    public char decodingSequentialRead(final Corpus corpus,
+        final DecodingText text, final Cursor cursor)
+    {
+        return text.text.charAt(cursor.nextSequential(corpus.length));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.benchmark;
+
+import com.github.fge.largetext.SizeUnit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Deterministic generator of text corpora
+ *
+ * <p>The same profile, character coding and size always produce the same
+ * file. Generated files are kept in a directory, and only generated if they
+ * do not exist already: generating a multi GiB corpus takes longer than
+ * decoding it.</p>
+ *
+ * @see CorpusProfile
+ */
+public final class CorpusGenerator
+{
+    private final Path directory;
+
+    /**
+     * Constructor
+     *
+     * @param directory the directory to store generated corpora into
+     */
+    public CorpusGenerator(final Path directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the path to a corpus, generating it if needed
+     *
+     * @param profile the content profile
+     * @param charset the character coding
+     * @param sizeMiB the size, in MiB
+     * @return the path to the corpus
+     * @throws IOException failed to generate the corpus
+     * @throws IllegalArgumentException the profile cannot be encoded using
+     * this character coding
+     */
+    public Path get(final CorpusProfile profile, final Charset charset,
+        final int sizeMiB)
+        throws IOException
+    {
+        final Path path = directory.resolve(profile.name().toLowerCase()
+            + '-' + charset.name().toLowerCase() + '-' + sizeMiB + "MiB.txt");
+        if (Files.exists(path))
+            return path;
+
+        Files.createDirectories(directory);
+        final Path tmp = Files.createTempFile(directory, "corpus", ".tmp");
+        try {
+            generate(profile, charset, SizeUnit.MiB.sizeInBytes(sizeMiB), tmp);
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return path;
+    }
+
+    private static void generate(final CorpusProfile profile,
+        final Charset charset, final long size, final Path path)
+        throws IOException
+    {
+        final CharsetEncoder encoder = charset.newEncoder();
+        final Random random = new Random(profile.ordinal());
+        final StringBuilder sb = new StringBuilder();
+
+        long written = 0L;
+        ByteBuffer bytes;
+        try (
+            final OutputStream out = Files.newOutputStream(path);
+        ) {
+            while (written < size) {
+                sb.setLength(0);
+                profile.appendLine(sb, random);
+                try {
+                    bytes = encoder.encode(CharBuffer.wrap(sb));
+                } catch (CharacterCodingException e) {
+                    throw new IllegalArgumentException("profile " + profile
+                        + " cannot be encoded using " + charset, e);
+                }
+                out.write(bytes.array(), bytes.arrayOffset(),
+                    bytes.remaining());
+                written += bytes.remaining();
+            }
+        }
+    }
+}
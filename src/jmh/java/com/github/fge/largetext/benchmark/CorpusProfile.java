@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.benchmark;
+
+import java.util.Random;
+
+/**
+ * Content profiles of generated corpora
+ *
+ * <p>The cost of decoding depends on the content: the number of bytes per
+ * character, surrogate pairs, and (for line oriented processing) the length
+ * of lines.</p>
+ *
+ * @see CorpusGenerator
+ */
+public enum CorpusProfile
+{
+    /**
+     * Words of lowercase ASCII letters, in lines of up to 20 words
+     */
+    ASCII
+    {
+        @Override
+        void appendLine(final StringBuilder sb, final Random random)
+        {
+            appendWords(sb, random, 1 + random.nextInt(20), LETTERS);
+            sb.append('\n');
+        }
+    },
+    /**
+     * Like {@link #ASCII}, but with accented Latin letters
+     */
+    LATIN
+    {
+        @Override
+        void appendLine(final StringBuilder sb, final Random random)
+        {
+            appendWords(sb, random, 1 + random.nextInt(20), LATIN_LETTERS);
+            sb.append('\n');
+        }
+    },
+    /**
+     * Lines of CJK unified ideographs
+     */
+    CJK
+    {
+        @Override
+        void appendLine(final StringBuilder sb, final Random random)
+        {
+            final int length = 10 + random.nextInt(60);
+            for (int i = 0; i < length; i++)
+                sb.append((char) (CJK_FIRST + random.nextInt(CJK_COUNT)));
+            sb.append(CJK_FULL_STOP).append('\n');
+        }
+    },
+    /**
+     * ASCII words with many emoji, which are encoded as surrogate pairs
+     */
+    EMOJI
+    {
+        @Override
+        void appendLine(final StringBuilder sb, final Random random)
+        {
+            final int nrWords = 1 + random.nextInt(20);
+            for (int i = 0; i < nrWords; i++) {
+                if (i > 0)
+                    sb.append(' ');
+                if (random.nextInt(3) == 0)
+                    sb.appendCodePoint(EMOJI_FIRST
+                        + random.nextInt(EMOJI_COUNT));
+                else
+                    appendWords(sb, random, 1, LETTERS);
+            }
+            sb.append('\n');
+        }
+    },
+    /**
+     * ASCII words, with lines of about one million characters
+     */
+    LONG_LINES
+    {
+        @Override
+        void appendLine(final StringBuilder sb, final Random random)
+        {
+            appendWords(sb, random, 180000, LETTERS);
+            sb.append('\n');
+        }
+    },
+    ;
+
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+    private static final String LATIN_LETTERS
+        = LETTERS + "\u00e0\u00e2\u00e7\u00e8\u00e9\u00ea\u00ee\u00f4\u00f9";
+    private static final int CJK_FIRST = 0x4e00;
+    private static final int CJK_COUNT = 0x9fff - CJK_FIRST + 1;
+    private static final char CJK_FULL_STOP = '\u3002';
+    private static final int EMOJI_FIRST = 0x1f600;
+    private static final int EMOJI_COUNT = 0x1f64f - EMOJI_FIRST + 1;
+
+    /**
+     * Append one line to a string builder
+     *
+     * @param sb the string builder
+     * @param random the random number generator
+     */
+    abstract void appendLine(final StringBuilder sb, final Random random);
+
+    private static void appendWords(final StringBuilder sb,
+        final Random random, final int nrWords, final String alphabet)
+    {
+        int wordLength;
+        for (int i = 0; i < nrWords; i++) {
+            if (i > 0)
+                sb.append(' ');
+            wordLength = 1 + random.nextInt(10);
+            for (int j = 0; j < wordLength; j++)
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.benchmark;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.SizeUnit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * End to end decoding throughput
+ *
+ * <p>For each combination of corpus profile, character coding, window size
+ * and corpus size, this measures the time it takes for {@link
+ * LargeText#length()} to return on a freshly loaded text (that is, the time to
+ * decode, and index, the whole text), the resulting throughput in MiB/s, and
+ * the peak heap usage during decoding.</p>
+ *
+ * <p>Results are written as CSV, along with the version of the library, so
+ * that runs of two versions can be compared:</p>
+ *
+ * <pre>
+ *     DecodeThroughput run [--profiles ASCII,CJK] [--charsets UTF-8]
+ *         [--windows 512,2048] [--sizes 100,1000] [--runs 3]
+ *         [--corpus dir] [--out results.csv]
+ *     DecodeThroughput compare baseline.csv current.csv [--threshold 10]
+ * </pre>
+ *
+ * <p>The comparison lists throughput drops and peak heap increases greater
+ * than the threshold (a percentage), and exits with status 1 if there are
+ * any.</p>
+ *
+ * <p>Sizes are limited to less than 2 GiB: a {@link CharSequence} cannot have
+ * more than {@link Integer#MAX_VALUE} characters. The peak heap usage is the
+ * sum of the peak usages of all heap memory pools, minus the heap usage before
+ * decoding; it is an upper bound.</p>
+ *
+ * @see CorpusGenerator
+ */
+public final class DecodeThroughput
+{
+    private static final String HEADER = "version,profile,charset,windowKiB,"
+        + "sizeMiB,bytes,chars,seconds,mibPerSecond,peakHeapMiB";
+    private static final double MIB = 1024.0 * 1024.0;
+    private static final int MAX_SIZE_MIB = 2047;
+
+    private DecodeThroughput()
+    {
+    }
+
+    public static void main(final String... args)
+        throws IOException
+    {
+        if (args.length > 0 && args[0].equals("run")) {
+            run(options(Arrays.asList(args).subList(1, args.length)));
+            return;
+        }
+        if (args.length >= 3 && args[0].equals("compare")) {
+            final Map<String, String> options
+                = options(Arrays.asList(args).subList(3, args.length));
+            final double threshold = Double.parseDouble(get(options,
+                "threshold", "10"));
+            if (compare(Paths.get(args[1]), Paths.get(args[2]), threshold))
+                System.exit(1);
+            return;
+        }
+        System.err.println("usage: DecodeThroughput run [options]");
+        System.err.println("       DecodeThroughput compare baseline.csv "
+            + "current.csv [--threshold percent]");
+        System.exit(2);
+    }
+
+    private static void run(final Map<String, String> options)
+        throws IOException
+    {
+        final List<CorpusProfile> profiles = new ArrayList<>();
+        for (final String name: getList(options, "profiles", "ASCII,LATIN,"
+            + "CJK,EMOJI,LONG_LINES"))
+            profiles.add(CorpusProfile.valueOf(name));
+        final List<String> charsets = getList(options, "charsets",
+            "UTF-8,UTF-16LE");
+        final List<String> windows = getList(options, "windows",
+            "512,2048,8192");
+        final List<Integer> sizes = new ArrayList<>();
+        for (final String size: getList(options, "sizes", "100,1000")) {
+            if (Integer.parseInt(size) <= MAX_SIZE_MIB) {
+                sizes.add(Integer.parseInt(size));
+                continue;
+            }
+            System.err.println("skipping " + size + " MiB: sizes are "
+                + "limited to " + MAX_SIZE_MIB + " MiB");
+        }
+        final int runs = Integer.parseInt(get(options, "runs", "3"));
+        final CorpusGenerator generator = new CorpusGenerator(
+            Paths.get(get(options, "corpus", "build/jmh/corpus")));
+        final Path out = Paths.get(get(options, "out",
+            "build/jmh/decode.csv"));
+        final String version = System.getProperty("largetext.version",
+            "unknown");
+
+        if (out.getParent() != null)
+            Files.createDirectories(out.getParent());
+
+        try (
+            final BufferedWriter writer = Files.newBufferedWriter(out,
+                StandardCharsets.UTF_8);
+        ) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (final CorpusProfile profile: profiles)
+                for (final String charsetName: charsets)
+                    for (final int size: sizes)
+                        for (final String window: windows) {
+                            final String line = measure(generator, profile,
+                                Charset.forName(charsetName),
+                                Integer.parseInt(window), size, runs);
+                            System.out.println(line);
+                            writer.write(version + ',' + line);
+                            writer.newLine();
+                            writer.flush();
+                        }
+        }
+    }
+
+    private static String measure(final CorpusGenerator generator,
+        final CorpusProfile profile, final Charset charset,
+        final int windowKiB, final int sizeMiB, final int runs)
+        throws IOException
+    {
+        final Path path = generator.get(profile, charset, sizeMiB);
+        final long bytes = Files.size(path);
+        final LargeTextFactory factory = LargeTextFactory.newBuilder()
+            .setCharset(charset).setWindowSize(windowKiB, SizeUnit.KiB)
+            .build();
+
+        final List<Long> times = new ArrayList<>();
+        long peakHeap = 0L;
+        int chars = 0;
+        long baseline, start;
+        for (int i = 0; i < runs; i++) {
+            baseline = resetHeapUsage();
+            start = System.nanoTime();
+            try (
+                final LargeText text = factory.load(path);
+            ) {
+                chars = text.length();
+            }
+            times.add(System.nanoTime() - start);
+            peakHeap = Math.max(peakHeap, peakHeapUsage() - baseline);
+        }
+
+        // Median
+        Collections.sort(times);
+        final double seconds = times.get(times.size() / 2) / 1e9;
+        return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%.3f,%.1f,%.1f",
+            profile, charset.name(), windowKiB, sizeMiB, bytes, chars,
+            seconds, bytes / MIB / seconds, peakHeap / MIB);
+    }
+
+    /*
+     * Returns the heap usage after a GC, and resets peak usages
+     */
+    private static long resetHeapUsage()
+    {
+        System.gc();
+        long ret = 0L;
+        for (final MemoryPoolMXBean pool: heapPools()) {
+            pool.resetPeakUsage();
+            ret += pool.getUsage().getUsed();
+        }
+        return ret;
+    }
+
+    private static long peakHeapUsage()
+    {
+        long ret = 0L;
+        for (final MemoryPoolMXBean pool: heapPools())
+            ret += pool.getPeakUsage().getUsed();
+        return ret;
+    }
+
+    private static List<MemoryPoolMXBean> heapPools()
+    {
+        final List<MemoryPoolMXBean> ret = new ArrayList<>();
+        for (final MemoryPoolMXBean pool:
+            ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP && pool.isValid())
+                ret.add(pool);
+        return ret;
+    }
+
+    /*
+     * Returns true if there are regressions
+     */
+    private static boolean compare(final Path baseline, final Path current,
+        final double threshold)
+        throws IOException
+    {
+        final Map<String, String[]> before = read(baseline);
+        final Map<String, String[]> after = read(current);
+        boolean regressions = false;
+
+        String[] old;
+        double throughputChange, heapChange;
+        for (final Map.Entry<String, String[]> entry: after.entrySet()) {
+            old = before.get(entry.getKey());
+            if (old == null)
+                continue;
+            throughputChange = change(old[8], entry.getValue()[8]);
+            heapChange = change(old[9], entry.getValue()[9]);
+            System.out.printf(Locale.ROOT,
+                "%-40s %10s -> %10s MiB/s (%+.1f%%), heap %8s -> %8s MiB "
+                + "(%+.1f%%)%n", entry.getKey(), old[8], entry.getValue()[8],
+                throughputChange, old[9], entry.getValue()[9], heapChange);
+            if (throughputChange < -threshold || heapChange > threshold) {
+                System.out.println("    REGRESSION (" + old[0] + " -> "
+                    + entry.getValue()[0] + ")");
+                regressions = true;
+            }
+        }
+        return regressions;
+    }
+
+    private static double change(final String before, final String after)
+    {
+        final double old = Double.parseDouble(before);
+        if (old == 0.0)
+            return 0.0;
+        return (Double.parseDouble(after) - old) / old * 100.0;
+    }
+
+    /*
+     * Keys are profile, charset, window size and size
+     */
+    private static Map<String, String[]> read(final Path path)
+        throws IOException
+    {
+        final Map<String, String[]> ret = new LinkedHashMap<>();
+        final List<String> lines = Files.readAllLines(path,
+            StandardCharsets.UTF_8);
+        String[] fields;
+        for (final String line: lines.subList(1, lines.size())) {
+            fields = line.split(",");
+            ret.put(fields[1] + '/' + fields[2] + '/' + fields[3] + "KiB/"
+                + fields[4] + "MiB", fields);
+        }
+        return ret;
+    }
+
+    private static Map<String, String> options(final List<String> args)
+    {
+        final Map<String, String> ret = new HashMap<>();
+        for (int i = 0; i < args.size(); i += 2) {
+            if (!args.get(i).startsWith("--") || i + 1 == args.size())
+                throw new IllegalArgumentException("invalid option: "
+                    + args.get(i));
+            ret.put(args.get(i).substring(2), args.get(i + 1));
+        }
+        return ret;
+    }
+
+    private static String get(final Map<String, String> options,
+        final String name, final String defaultValue)
+    {
+        final String ret = options.get(name);
+        return ret == null ? defaultValue : ret;
+    }
+
+    private static List<String> getList(final Map<String, String> options,
+        final String name, final String defaultValue)
+    {
+        return Arrays.asList(get(options, name, defaultValue).split(","));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.benchmark;
+
+import com.github.fge.largetext.sequence.MultiRangeCharSequence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link MultiRangeCharSequence#charAt(int)}
+ *
+ * <p>The sequence spans three windows; each access needs a lookup in its map
+ * of ranges.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MultiRangeCharAtBenchmark
+{
+    private static final int NR_INDICES = 1 << 16;
+
+    /**
+     * A sequence spanning several windows, and per thread cursors
+     */
+    @State(Scope.Thread)
+    public static class Sequence
+    {
+        CharSequence sequence;
+        int length;
+        int sequential;
+        int[] indices;
+        int next;
+
+        @Setup
+        public void setup(final TextState state)
+        {
+            length = Math.min(state.windowChars * 3, state.length);
+            final int start = (state.length - length) / 2;
+            sequence = state.text.subSequence(start, start + length);
+            if (!(sequence instanceof MultiRangeCharSequence))
+                throw new IllegalStateException("expected a "
+                    + "MultiRangeCharSequence, got a "
+                    + sequence.getClass().getName());
+            final Random random = new Random(0L);
+            indices = new int[NR_INDICES];
+            for (int i = 0; i < NR_INDICES; i++)
+                indices[i] = random.nextInt(length);
+        }
+    }
+
+    @Benchmark
+    public char sequentialCharAt(final Sequence sequence)
+    {
+        if (sequence.sequential >= sequence.length)
+            sequence.sequential = 0;
+        return sequence.sequence.charAt(sequence.sequential++);
+    }
+
+    @Benchmark
+    public char randomCharAt(final Sequence sequence)
+    {
+        final int index = sequence.indices[sequence.next];
+        sequence.next = (sequence.next + 1) & (NR_INDICES - 1);
+        return sequence.sequence.charAt(index);
+    }
+}
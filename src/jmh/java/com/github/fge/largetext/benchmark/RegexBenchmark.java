@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cost of a regular expression search over a whole text
+ *
+ * <p>{@link #matcherFind(TextState)} is a plain {@link Matcher} loop over the
+ * text; the other benchmarks use the parallel and scan only searches of
+ * {@link com.github.fge.largetext.LargeText}, for comparison.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RegexBenchmark
+{
+    private static final Pattern PATTERN = Pattern.compile("\\b\\w{3}ing\\b");
+    private static final int MAX_MATCH_LENGTH = 16;
+
+    @Benchmark
+    public int matcherFind(final TextState state)
+    {
+        final Matcher matcher = PATTERN.matcher(state.text);
+        int count = 0;
+        while (matcher.find())
+            count++;
+        return count;
+    }
+
+    @Benchmark
+    public int scanMatcherFind(final TextState state)
+    {
+        final Matcher matcher = PATTERN.matcher(state.text.scan().sequence());
+        int count = 0;
+        while (matcher.find())
+            count++;
+        return count;
+    }
+
+    @Benchmark
+    public int parallelFindAll(final TextState state)
+    {
+        return state.text.findAll(PATTERN, MAX_MATCH_LENGTH).size();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.util.Statistics;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Run {@link ConcurrentReadBenchmark} with 1, 2, 4... up to a maximum number
+ * of threads, and print a scaling curve
+ *
+ * <p>Arguments are the maximum number of threads (default 64) and the
+ * directory where the JSON results of each run are written (default {@code
+ * build/jmh/scalability}). The {@code decoding} group needs at least four
+ * threads; it is only run from four threads on.</p>
+ *
+ * <p>For each benchmark and number of threads, the curve shows the
+ * throughput, and the median, 99th and 99.9th percentiles of latency.</p>
+ */
+public final class ScalabilityRunner
+{
+    private static final String BENCHMARK
+        = ConcurrentReadBenchmark.class.getName();
+    private static final int GROUP_SIZE = 4;
+
+    private ScalabilityRunner()
+    {
+    }
+
+    public static void main(final String... args)
+        throws RunnerException
+    {
+        final int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+            : 64;
+        final File dir = new File(args.length > 1 ? args[1]
+            : "build/jmh/scalability");
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IllegalStateException("cannot create directory " + dir);
+
+        final List<RunResult> results = new ArrayList<>();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            results.addAll(run(BENCHMARK + ".decoded.*", threads,
+                new File(dir, "decoded-" + threads + ".json")));
+            if (threads >= GROUP_SIZE)
+                results.addAll(run(BENCHMARK + ".decoding.*", threads,
+                    new File(dir, "decoding-" + threads + ".json")));
+        }
+
+        printCurve(results);
+    }
+
+    private static Collection<RunResult> run(final String include,
+        final int threads, final File resultFile)
+        throws RunnerException
+    {
+        final Options options = new OptionsBuilder()
+            .include(include)
+            .threads(threads)
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(resultFile.getPath())
+            .build();
+        return new Runner(options).run();
+    }
+
+    private static void printCurve(final List<RunResult> results)
+    {
+        System.out.printf("%-40s %8s %14s %12s %12s %12s%n", "benchmark",
+            "threads", "ops/us", "p50 (us)", "p99 (us)", "p99.9 (us)");
+
+        BenchmarkParams params;
+        Result throughput;
+        Statistics latency;
+        for (final RunResult result: results) {
+            params = result.getParams();
+            if (params.getMode() != Mode.Throughput)
+                continue;
+            throughput = result.getPrimaryResult();
+            latency = findLatency(results, params);
+            System.out.printf("%-40s %8d %14.3f %12.3f %12.3f %12.3f%n",
+                shortName(params.getBenchmark()), params.getThreads(),
+                throughput.getScore(),
+                latency == null ? Double.NaN : latency.getPercentile(50.0),
+                latency == null ? Double.NaN : latency.getPercentile(99.0),
+                latency == null ? Double.NaN : latency.getPercentile(99.9));
+        }
+    }
+
+    private static Statistics findLatency(final List<RunResult> results,
+        final BenchmarkParams throughputParams)
+    {
+        BenchmarkParams params;
+        for (final RunResult result: results) {
+            params = result.getParams();
+            if (params.getMode() == Mode.SampleTime
+                && params.getBenchmark().equals(throughputParams
+                    .getBenchmark())
+                && params.getThreads() == throughputParams.getThreads())
+                return result.getPrimaryResult().getStatistics();
+        }
+        return null;
+    }
+
+    private static String shortName(final String benchmark)
+    {
+        return benchmark.substring(benchmark.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link CharSequence#subSequence(int, int)}, within one window and
+ * across several
+ *
+ * <p>A subsequence within one window is a view of the cached buffer; one
+ * across several windows needs a lookup of all of them.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SubSequenceBenchmark
+{
+    private static final int NR_OFFSETS = 1 << 12;
+    private static final int SHORT_LENGTH = 80;
+
+    /**
+     * Per thread start offsets
+     */
+    @State(Scope.Thread)
+    public static class Offsets
+    {
+        int[] withinWindow;
+        int[] acrossWindows;
+        int acrossLength;
+        int next;
+
+        @Setup
+        public void setup(final TextState state)
+        {
+            final Random random = new Random(0L);
+            // Two and a half windows, but no more than half of the text
+            acrossLength = Math.min(state.windowChars * 5 / 2,
+                state.length / 2);
+            withinWindow = new int[NR_OFFSETS];
+            acrossWindows = new int[NR_OFFSETS];
+            for (int i = 0; i < NR_OFFSETS; i++) {
+                withinWindow[i] = random.nextInt(state.length - SHORT_LENGTH);
+                acrossWindows[i] = random.nextInt(state.length - acrossLength);
+            }
+        }
+
+        int next()
+        {
+            final int ret = next;
+            next = (next + 1) & (NR_OFFSETS - 1);
+            return ret;
+        }
+    }
+
+    /*
+     * Short subsequences may still cross a window boundary from time to time,
+     * as they do in real use
+     */
+    @Benchmark
+    public CharSequence withinWindow(final TextState state,
+        final Offsets offsets)
+    {
+        final int start = offsets.withinWindow[offsets.next()];
+        return state.text.subSequence(start, start + SHORT_LENGTH);
+    }
+
+    @Benchmark
+    public CharSequence acrossWindows(final TextState state,
+        final Offsets offsets)
+    {
+        final int start = offsets.acrossWindows[offsets.next()];
+        return state.text.subSequence(start, start + offsets.acrossLength);
+    }
+}
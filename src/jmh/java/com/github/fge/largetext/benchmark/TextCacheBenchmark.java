@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.benchmark;
+
+import com.github.fge.largetext.load.DecoderOptions;
+import com.github.fge.largetext.load.TextCache;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ByteSources;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of loading a window from a {@link TextCache}
+ *
+ * <p>A hit is a lookup of a window which is in the cache. A miss is
+ * measured as a load through an empty cache which does not admit new entries
+ * (see {@link TextCache#withoutAdmission()}): the window is looked up, then
+ * read and decoded, every time. The last benchmark decodes into a reusable buffer
+ * instead of allocating one.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextCacheBenchmark
+{
+    @Param({ "64" })
+    public int sizeMiB;
+
+    @Param({ "UTF-8", "ISO-8859-1", "UTF-16LE" })
+    public String charsetName;
+
+    @Param({ "256", "2048" })
+    public int windowKiB;
+
+    private Path path;
+    private ByteSource source;
+    private TextDecoder decoder;
+    private TextCache cache;
+    private TextCache missCache;
+    private List<TextRange> ranges;
+
+    /**
+     * Per thread cursor, and reusable buffer
+     */
+    @State(Scope.Thread)
+    public static class Cursor
+    {
+        int next;
+        CharBuffer buffer = CharBuffer.allocate(0);
+
+        TextRange next(final List<TextRange> ranges)
+        {
+            final TextRange ret = ranges.get(next);
+            next = (next + 1) % ranges.size();
+            return ret;
+        }
+    }
+
+    @Setup
+    public void setup()
+        throws IOException
+    {
+        final Charset charset = Charset.forName(charsetName);
+        path = BenchmarkFiles.create(sizeMiB, charset);
+        source = ByteSources.ofPath(path);
+        decoder = new TextDecoder(source, charset, DecoderOptions.newBuilder()
+            .setWindowSize(windowKiB * 1024L).build());
+        ranges = decoder.getRanges(new IntRange(0, decoder.getTotalChars()));
+        cache = new TextCache(source, charset);
+        // A separate, empty cache, so that no load from it is a hit
+        missCache = new TextCache(source, charset).withoutAdmission();
+        cache.loadAll(ranges);
+    }
+
+    @TearDown
+    public void tearDown()
+        throws IOException
+    {
+        decoder.close();
+        source.close();
+        Files.delete(path);
+    }
+
+    @Benchmark
+    public CharBuffer hit(final Cursor cursor)
+    {
+        return cache.load(cursor.next(ranges));
+    }
+
+    @Benchmark
+    public CharBuffer miss(final Cursor cursor)
+    {
+        return missCache.load(cursor.next(ranges));
+    }
+
+    @Benchmark
+    public CharBuffer missIntoReusableBuffer(final Cursor cursor)
+    {
+        final CharBuffer ret
+            = missCache.loadInto(cursor.next(ranges), cursor.buffer);
+        if (!ret.isReadOnly())
+            cursor.buffer = ret;
+        return ret;
+    }
+}
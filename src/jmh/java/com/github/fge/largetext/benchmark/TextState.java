@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.benchmark;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.SizeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A fully decoded {@link LargeText} over a generated file, shared by all
+ * benchmark threads
+ *
+ * <p>The text is decoded before measurements start, so that benchmarks using
+ * this state measure accesses only.</p>
+ *
+ * @see BenchmarkFiles
+ */
+@State(Scope.Benchmark)
+public class TextState
+{
+    @Param({ "16", "256" })
+    public int sizeMiB;
+
+    @Param({ "UTF-8", "ISO-8859-1", "UTF-16LE" })
+    public String charsetName;
+
+    @Param({ "256", "2048" })
+    public int windowKiB;
+
+    @Param({ "false", "true" })
+    public boolean threadSafe;
+
+    public Path path;
+    public LargeText text;
+    public int length;
+    public int windowChars;
+
+    @Setup
+    public void setup()
+        throws IOException
+    {
+        final Charset charset = Charset.forName(charsetName);
+        path = BenchmarkFiles.create(sizeMiB, charset);
+        final LargeTextFactory factory = LargeTextFactory.newBuilder()
+            .setCharset(charset).setWindowSize(windowKiB, SizeUnit.KiB)
+            .build();
+        text = threadSafe ? factory.loadThreadSafe(path) : factory.load(path);
+        length = text.length();
+        // Approximate number of chars in a window
+        windowChars = (int) ((long) length * windowKiB * 1024L
+            / Files.size(path));
+    }
+
+    @TearDown
+    public void tearDown()
+        throws IOException
+    {
+        text.close();
+        Files.delete(path);
+    }
+}
@@ -18,15 +18,34 @@
 
 package com.github.fge.largetext;
 
+import com.github.fge.largetext.load.DecoderOptions;
+import com.github.fge.largetext.load.DecodingProgress;
+import com.github.fge.largetext.load.LocalDecoder;
+import com.github.fge.largetext.load.OffsetTranslator;
+import com.github.fge.largetext.load.ProgressListener;
 import com.github.fge.largetext.load.TextCache;
 import com.github.fge.largetext.load.TextDecoder;
 import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.metrics.LargeTextMXBean;
+import com.github.fge.largetext.metrics.MetricsListener;
 import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.search.ByteSearcher;
+import com.github.fge.largetext.search.LiteralSearcher;
+import com.github.fge.largetext.search.MatchCallback;
+import com.github.fge.largetext.search.RegexSearcher;
+import com.github.fge.largetext.sequence.ByteAddressedCharSequence;
 import com.github.fge.largetext.sequence.CharSequenceFactory;
+import com.github.fge.largetext.source.BlockTextSource;
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ChannelByteSource;
+import com.github.fge.largetext.source.MeteredByteSource;
 import com.google.common.base.Preconditions;
 
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.GuardedBy;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.CharBuffer;
@@ -34,7 +53,10 @@ import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * A large text file as a {@link CharSequence}: base abstract class
@@ -93,13 +115,24 @@ public abstract class LargeText
     protected static final IntRange EMPTY_RANGE = new IntRange(0, 0);
     protected static final CharBuffer EMPTY_BUFFER = CharBuffer.allocate(0);
 
-    private final FileChannel channel;
+    private final ByteSource source;
     protected final TextDecoder decoder;
     protected final TextCache loader;
+    protected final MetricsListener metrics;
     private final CharSequenceFactory factory;
+    private final RegexSearcher searcher;
+    private final LiteralSearcher literalSearcher;
+    private final ScanView scanView;
+    private final OffsetTranslator translator;
+    private final LocalDecoder localDecoder;
+
+    @GuardedBy("this")
+    private MBeanServer mBeanServer = null;
+    @GuardedBy("this")
+    private ObjectName mBeanName = null;
 
     /**
-     * The only protected constructor
+     * Protected constructor
      *
      * @param channel the {@link FileChannel} to the (hopefully text) file
      * @param charset the character encoding to use
@@ -111,14 +144,86 @@ public abstract class LargeText
         final int quantity, final SizeUnit sizeUnit)
         throws IOException
     {
-        this.channel = Preconditions.checkNotNull(channel,
-            "file channel cannot be null");
+        this(channel, charset, DecoderOptions.newBuilder()
+            .setWindowSize(Preconditions.checkNotNull(sizeUnit,
+                "size unit cannot be null").sizeInBytes(quantity))
+            .build());
+    }
+
+    /**
+     * Protected constructor
+     *
+     * @param channel the {@link FileChannel} to the (hopefully text) file
+     * @param charset the character encoding to use
+     * @param options the decoder options
+     * @throws IOException failed to build a decoder
+     */
+    protected LargeText(final FileChannel channel, final Charset charset,
+        final DecoderOptions options)
+        throws IOException
+    {
+        this(new ChannelByteSource(Preconditions.checkNotNull(channel,
+            "file channel cannot be null")), charset, options);
+    }
+
+    /**
+     * Protected constructor
+     *
+     * <p>The source is closed when this instance is closed.</p>
+     *
+     * @param source the source of the (hopefully text) file's bytes
+     * @param charset the character encoding to use
+     * @param options the decoder options
+     * @throws IOException failed to build a decoder
+     */
+    protected LargeText(final ByteSource source, final Charset charset,
+        final DecoderOptions options)
+        throws IOException
+    {
+        this(source, charset, newDecoder(source, charset, options));
+    }
+
+    /**
+     * Protected constructor for a block text file
+     *
+     * <p>The character encoding and text ranges are those recorded in the
+     * file; no decoding process takes place. The source is closed when this
+     * instance is closed.</p>
+     *
+     * @param source the block text source
+     */
+    protected LargeText(final BlockTextSource source)
+    {
+        this(source, source.getCharset(), new TextDecoder(source,
+            source.getCharset(), source.getTextRanges()));
+    }
+
+    private LargeText(final ByteSource source, final Charset charset,
+        final TextDecoder decoder)
+    {
+        this.source = source;
+        this.decoder = decoder;
+        metrics = decoder.getMetricsListener();
+        loader = new TextCache(source, charset, metrics);
+        factory = new CharSequenceFactory(decoder, loader, metrics);
+        searcher = new RegexSearcher(decoder, loader);
+        final ByteSearcher byteSearcher = ByteSearcher.supports(charset)
+            ? new ByteSearcher(source, charset, decoder) : null;
+        literalSearcher = new LiteralSearcher(decoder, loader, byteSearcher);
+        scanView = new ScanView(decoder, loader, byteSearcher);
+        translator = new OffsetTranslator(source, charset);
+        localDecoder = new LocalDecoder(source, charset,
+            decoder.getByteLimit());
+    }
+
+    private static TextDecoder newDecoder(final ByteSource source,
+        final Charset charset, final DecoderOptions options)
+        throws IOException
+    {
+        Preconditions.checkNotNull(source, "source cannot be null");
         Preconditions.checkNotNull(charset, "charset cannot be null");
-        Preconditions.checkNotNull(sizeUnit, "size unit cannot be null");
-        final long windowSize = sizeUnit.sizeInBytes(quantity);
-        decoder = new TextDecoder(channel, charset, windowSize);
-        loader = new TextCache(channel, charset);
-        factory = new CharSequenceFactory(decoder, loader);
+        Preconditions.checkNotNull(options, "options cannot be null");
+        return new TextDecoder(source, charset, options);
     }
 
     /**
@@ -126,6 +231,12 @@ public abstract class LargeText
      *
      * <p>What is does is call {@link TextDecoder#getTotalChars()}.</p>
      *
+     * <p>When following a growing file (see {@link
+     * LargeTextFactory.Builder#setFollowInterval(long, TimeUnit)}), this is the
+     * number of chars decoded so far, and it grows along with the file; in
+     * this mode, {@link #charAt(int)} waits for characters beyond the current
+     * end to be appended.</p>
+     *
      * @return the number of `char`s in this file
      */
     @Override
@@ -150,27 +261,445 @@ public abstract class LargeText
         return factory.getSequence(new IntRange(start, end));
     }
 
+    /**
+     * Return the char offset of the character encoded at a given byte offset
+     *
+     * <p>If the byte offset falls in the middle of the encoding of a
+     * character, the offset of this character is returned.</p>
+     *
+     * <p>This method only waits for the decoding process to reach the byte
+     * offset, and only the bytes from the start of the matching window to the
+     * requested offset are inspected; the contents of the window are not
+     * loaded.</p>
+     *
+     * @param byteOffset the byte offset
+     * @return the char offset
+     * @throws IndexOutOfBoundsException byte offset is out of range
+     * @throws LargeTextException method has been interrupted, or an I/O or
+     * decoding error has occurred
+     *
+     * @see OffsetTranslator
+     */
+    public final int charOffsetOf(final long byteOffset)
+    {
+        final TextRange textRange = decoder.getRangeForByte(byteOffset);
+        try {
+            return translator.charOffsetOf(textRange, byteOffset);
+        } catch (IOException e) {
+            throw new LargeTextException("I/O error", e);
+        }
+    }
+
+    /**
+     * Return the byte offset of the character at a given char offset
+     *
+     * <p>The offset returned is that of the first byte of the encoded
+     * character; if the char offset is that of the second char of a surrogate
+     * pair, the offset of the first byte of the pair is returned.</p>
+     *
+     * <p>As with {@link #charOffsetOf(long)}, only the matching window is
+     * inspected.</p>
+     *
+     * @param charOffset the char offset
+     * @return the byte offset
+     * @throws IndexOutOfBoundsException char offset is out of range
+     * @throws LargeTextException method has been interrupted, or an I/O or
+     * decoding error has occurred
+     */
+    public final long byteOffsetOf(final int charOffset)
+    {
+        final TextRange textRange = decoder.getRange(charOffset);
+        try {
+            return translator.byteOffsetOf(textRange, charOffset);
+        } catch (IOException e) {
+            throw new LargeTextException("I/O error", e);
+        }
+    }
+
+    /**
+     * Decode characters at a given byte offset, without waiting for the
+     * decoding process
+     *
+     * <p>If the byte offset falls in the middle of the encoding of a
+     * character, decoding starts at the next character boundary (see {@link
+     * LocalDecoder}). The returned sequence is available immediately, and
+     * holds at most the requested number of chars; its char offset in the
+     * whole text is only computed on demand (see {@link
+     * ByteAddressedCharSequence#getCharOffset()}).</p>
+     *
+     * <p>If a byte limit is set (see {@link
+     * LargeTextFactory.Builder#setByteLimit(int, SizeUnit)}), no byte beyond
+     * it is decoded.</p>
+     *
+     * @param byteOffset the byte offset
+     * @param chars the maximum number of chars to decode
+     * @return a character sequence
+     * @throws IndexOutOfBoundsException byte offset is out of range, or
+     * beyond the byte limit
+     * @throws IllegalArgumentException number of chars is negative
+     * @throws LargeTextException an I/O or decoding error has occurred
+     */
+    public final ByteAddressedCharSequence viewAtByte(final long byteOffset,
+        final int chars)
+    {
+        Preconditions.checkArgument(chars >= 0,
+            "number of chars must not be negative");
+        final long byteLimit = decoder.getByteLimit();
+        if (byteLimit > 0L && byteOffset > byteLimit)
+            throw new IndexOutOfBoundsException("byte offset " + byteOffset
+                + " is beyond the byte limit (" + byteLimit + ')');
+        try {
+            final long offset = localDecoder.resync(byteOffset);
+            final CharBuffer buffer = localDecoder.decode(offset, chars);
+            return new ByteAddressedCharSequence(decoder, translator, offset,
+                offset == byteLimit || offset == source.size(), buffer);
+        } catch (IOException e) {
+            throw new LargeTextException("I/O error", e);
+        }
+    }
+
+    /**
+     * Find all matches of a regular expression, in parallel
+     *
+     * <p>Unlike using a {@link Matcher} over this instance, which is single
+     * threaded, this method searches all text windows in parallel. You must
+     * however provide the maximum length of a match: a match longer than that
+     * may be truncated, or missed, if it crosses a window boundary.</p>
+     *
+     * <p>Apart from this limitation, the result is the same as that of
+     * successive calls to {@link Matcher#find()}.</p>
+     *
+     * @param pattern the pattern
+     * @param maxMatchLength the maximum length of a match
+     * @return the list of match ranges, in order
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see RegexSearcher
+     */
+    public final List<IntRange> findAll(final Pattern pattern,
+        final int maxMatchLength)
+    {
+        return searcher.findAll(pattern, maxMatchLength);
+    }
+
+    /**
+     * Find all matches of a regular expression, in parallel, and report them
+     * to a callback
+     *
+     * <p>This method is the same as {@link #findAll(Pattern, int)}, except that
+     * matches are reported as they are found instead of being collected into a
+     * list. The callback is invoked in the calling thread, in order.</p>
+     *
+     * @param pattern the pattern
+     * @param maxMatchLength the maximum length of a match
+     * @param callback the callback
+     * @throws LargeTextException search was interrupted, or failed
+     */
+    public final void findAll(final Pattern pattern, final int maxMatchLength,
+        final MatchCallback callback)
+    {
+        searcher.findAll(pattern, maxMatchLength, callback);
+    }
+
+    /**
+     * Find the first occurrence of a literal character sequence
+     *
+     * @param needle the sequence to search for
+     * @return the offset of the first occurrence, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see #indexOf(CharSequence, int)
+     */
+    public final int indexOf(final CharSequence needle)
+    {
+        return literalSearcher.indexOf(needle, 0);
+    }
+
+    /**
+     * Find the first occurrence of a literal character sequence, starting from
+     * a given offset
+     *
+     * <p>This has the same semantics as {@link String#indexOf(String, int)};
+     * it is, however, much faster than using a regular expression.</p>
+     *
+     * <p>If the character coding is UTF-8 or a single byte coding, the search
+     * is performed on the raw bytes of the file, and only windows with a match
+     * are inspected further (see {@link ByteSearcher}).</p>
+     *
+     * @param needle the sequence to search for
+     * @param from the offset to start from
+     * @return the offset of the first occurrence, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see LiteralSearcher
+     */
+    public final int indexOf(final CharSequence needle, final int from)
+    {
+        return literalSearcher.indexOf(needle, from);
+    }
+
+    /**
+     * Find the first occurrence of a literal character sequence, starting from
+     * a given offset, optionally searching text windows in parallel
+     *
+     * <p>By default, text windows are searched one by one, and the search
+     * stops at the first match. In parallel, windows following the one being
+     * searched are searched ahead of time: this is faster when the sequence
+     * is rare or absent, at the cost of wasted work when it is found early.
+     * </p>
+     *
+     * @param needle the sequence to search for
+     * @param from the offset to start from
+     * @param parallel whether to search text windows in parallel
+     * @return the offset of the first occurrence, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see #indexOf(CharSequence, int)
+     */
+    public final int indexOf(final CharSequence needle, final int from,
+        final boolean parallel)
+    {
+        return literalSearcher.indexOf(needle, from, parallel);
+    }
+
+    /**
+     * Find the last occurrence of a literal character sequence
+     *
+     * <p>Note that this method needs to wait for the decoding process to
+     * complete.</p>
+     *
+     * @param needle the sequence to search for
+     * @return the offset of the last occurrence, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see #lastIndexOf(CharSequence, int)
+     */
+    public final int lastIndexOf(final CharSequence needle)
+    {
+        return literalSearcher.lastIndexOf(needle, length());
+    }
+
+    /**
+     * Find the last occurrence of a literal character sequence, searching
+     * backwards from a given offset
+     *
+     * <p>This has the same semantics as {@link String#lastIndexOf(String,
+     * int)}.</p>
+     *
+     * @param needle the sequence to search for
+     * @param from the offset to start from
+     * @return the offset of the last occurrence, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     */
+    public final int lastIndexOf(final CharSequence needle, final int from)
+    {
+        return literalSearcher.lastIndexOf(needle, from);
+    }
+
+    /**
+     * Find the last occurrence of a literal character sequence, searching
+     * backwards from a given offset, optionally searching text windows in
+     * parallel
+     *
+     * @param needle the sequence to search for
+     * @param from the offset to start from
+     * @param parallel whether to search text windows in parallel
+     * @return the offset of the last occurrence, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see #lastIndexOf(CharSequence, int)
+     * @see #indexOf(CharSequence, int, boolean)
+     */
+    public final int lastIndexOf(final CharSequence needle, final int from,
+        final boolean parallel)
+    {
+        return literalSearcher.lastIndexOf(needle, from, parallel);
+    }
+
+    /**
+     * Count the number of (non overlapping) occurrences of a literal character
+     * sequence
+     *
+     * <p>Text windows are searched in parallel.</p>
+     *
+     * @param needle the sequence to search for
+     * @return the number of occurrences
+     * @throws IllegalArgumentException needle is empty
+     * @throws LargeTextException search was interrupted, or failed
+     */
+    public final long countOccurrences(final CharSequence needle)
+    {
+        return literalSearcher.countOccurrences(needle);
+    }
+
+    /**
+     * Count the number of (non overlapping) occurrences of a literal character
+     * sequence, optionally searching text windows in parallel
+     *
+     * <p>Searching windows one by one uses a single thread, which may be
+     * preferable on a busy server.</p>
+     *
+     * @param needle the sequence to search for
+     * @param parallel whether to search text windows in parallel
+     * @return the number of occurrences
+     * @throws IllegalArgumentException needle is empty
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see #countOccurrences(CharSequence)
+     */
+    public final long countOccurrences(final CharSequence needle,
+        final boolean parallel)
+    {
+        return literalSearcher.countOccurrences(needle, parallel);
+    }
+
+    /**
+     * Tell whether only the head of the text has been decoded
+     *
+     * <p>This is the case if the factory which created this instance has a
+     * byte or char limit (see {@link LargeTextFactory.Builder#setByteLimit(int,
+     * SizeUnit)}), and the limit was reached. This method waits for the
+     * decoding process to finish, like {@link #length()}.</p>
+     *
+     * @return true if the text may be longer than this instance
+     * @throws LargeTextException decoding was interrupted, or failed
+     */
+    public final boolean isLimitReached()
+    {
+        return decoder.isLimitReached();
+    }
+
+    /**
+     * Pause the background decoding of this text
+     *
+     * <p>Characters which are read are still decoded, but nothing more: an
+     * idle text costs no I/O. See {@link TextDecoder#pause()}.</p>
+     *
+     * @see #resumeDecoding()
+     */
+    public final void pauseDecoding()
+    {
+        decoder.pause();
+    }
+
+    /**
+     * Resume the background decoding of this text
+     *
+     * @see #pauseDecoding()
+     */
+    public final void resumeDecoding()
+    {
+        decoder.resume();
+    }
+
+    /**
+     * Get the progress of the decoding process of this text
+     *
+     * <p>Unlike {@link #length()}, this method never waits.</p>
+     *
+     * @return a snapshot of the progress
+     */
+    public final DecodingProgress getDecodingProgress()
+    {
+        return decoder.getProgress();
+    }
+
+    /**
+     * Add a listener to the progress of the decoding process of this text
+     *
+     * <p>See {@link TextDecoder#addProgressListener(ProgressListener, long,
+     * TimeUnit)}.</p>
+     *
+     * @param listener the listener
+     * @param interval the minimum interval between two progress reports
+     * @param unit the time unit of the interval
+     * @throws NullPointerException listener or time unit is null
+     * @throws IllegalArgumentException interval is negative
+     */
+    public final void addProgressListener(final ProgressListener listener,
+        final long interval, final TimeUnit unit)
+    {
+        decoder.addProgressListener(listener, interval, unit);
+    }
+
+    /**
+     * Remove a progress listener
+     *
+     * @param listener the listener
+     */
+    public final void removeProgressListener(final ProgressListener listener)
+    {
+        decoder.removeProgressListener(listener);
+    }
+
+    /**
+     * Get a scan only view of this text
+     *
+     * <p>Searches through this view do not admit the windows they decode into
+     * the text cache; use it for full passes over the text, so that they do
+     * not evict windows reused by random accesses.</p>
+     *
+     * @return the view
+     *
+     * @see ScanView
+     */
+    public final ScanView scan()
+    {
+        return scanView;
+    }
+
     /**
      * Close this instance
      *
      * <p>This closes the embedded {@link TextDecoder}, and then the {@link
-     * FileChannel} associated with the file.</p>
+     * ByteSource} associated with the file.</p>
      *
      * @throws IOException see {@link TextDecoder#close()} and {@link
-     * FileChannel#close()}
+     * ByteSource#close()}
      */
     @Override
     public final void close()
         throws IOException
     {
+        unregisterMBean();
         try (
             final TextDecoder thisDecoder = decoder;
-            final FileChannel thisChannel = channel;
+            final ByteSource thisSource = source;
         ) {
             LOGGER.fine("END; cache statistics: " + loader);
+            if (source instanceof MeteredByteSource)
+                LOGGER.fine("I/O statistics: "
+                    + ((MeteredByteSource) source).getStatistics());
         }
     }
 
+    /**
+     * Register the management bean of this instance
+     *
+     * <p>The bean is unregistered when this instance is closed. A failure to
+     * register it is logged, and otherwise ignored.</p>
+     *
+     * @param server the MBean server
+     * @param name the name of the source of this text
+     *
+     * @see LargeTextMXBean
+     */
+    final synchronized void registerMBean(final MBeanServer server,
+        final String name)
+    {
+        mBeanServer = server;
+        mBeanName = new LargeTextMonitor(name, decoder, loader, source)
+            .register(server);
+    }
+
+    private synchronized void unregisterMBean()
+    {
+        if (mBeanName == null)
+            return;
+        LargeTextMonitor.unregister(mBeanServer, mBeanName);
+        mBeanName = null;
+    }
+
     /**
      * *gasp* the whole instance as a string...
      *
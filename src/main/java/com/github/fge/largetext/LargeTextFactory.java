@@ -18,18 +18,33 @@
 
 package com.github.fge.largetext;
 
+import com.github.fge.largetext.load.DecoderOptions;
+import com.github.fge.largetext.load.WindowPolicy;
+import com.github.fge.largetext.metrics.HistogramMetricsListener;
+import com.github.fge.largetext.metrics.LargeTextMXBean;
+import com.github.fge.largetext.metrics.MetricsListener;
+import com.github.fge.largetext.source.BlockTextSource;
+import com.github.fge.largetext.source.BlockTextWriter;
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ByteSources;
+import com.github.fge.largetext.source.GzipByteSource;
+import com.github.fge.largetext.source.IoStrategy;
 import com.google.common.base.Preconditions;
 
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.NotThreadSafe;
+import javax.management.MBeanServer;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Factory to obtain {@link LargeText} instances
@@ -73,6 +88,10 @@ public final class LargeTextFactory
     private final Charset charset;
     private final SizeUnit sizeUnit;
     private final int quantity;
+    private final DecoderOptions options;
+    private final long gzipCheckpointInterval;
+    private final IoStrategy ioStrategy;
+    private final MBeanServer mBeanServer;
 
     /**
      * Obtain a builder for a new factory
@@ -99,6 +118,26 @@ public final class LargeTextFactory
         charset = builder.charset;
         sizeUnit = builder.sizeUnit;
         quantity = builder.quantity;
+        final DecoderOptions.Builder optionsBuilder
+            = DecoderOptions.newBuilder()
+            .setWindowSize(sizeUnit.sizeInBytes(quantity))
+            .setWindowPolicy(builder.windowPolicy);
+        if (builder.initialWindowSize > 0L)
+            optionsBuilder.setInitialWindowSize(builder.initialWindowSize);
+        if (builder.followInterval > 0L)
+            optionsBuilder.setFollowInterval(builder.followInterval,
+                TimeUnit.MILLISECONDS);
+        if (builder.byteLimit > 0L)
+            optionsBuilder.setByteLimit(builder.byteLimit);
+        if (builder.charLimit > 0)
+            optionsBuilder.setCharLimit(builder.charLimit);
+        if (builder.lookahead > 0)
+            optionsBuilder.setLookahead(builder.lookahead);
+        optionsBuilder.setMetricsListener(builder.metricsListener);
+        options = optionsBuilder.build();
+        gzipCheckpointInterval = builder.gzipCheckpointInterval;
+        ioStrategy = builder.ioStrategy;
+        mBeanServer = builder.mBeanServer;
     }
 
     /**
@@ -119,9 +158,10 @@ public final class LargeTextFactory
         throws IOException
     {
         Preconditions.checkNotNull(path, "path must not be null");
-        final FileChannel channel = FileChannel.open(path,
-            StandardOpenOption.READ);
-        return new NotThreadSafeLargeText(channel, charset, quantity, sizeUnit);
+        final String name = path.toString();
+        final DecoderOptions textOptions = options.forSource(name);
+        return register(new NotThreadSafeLargeText(open(path), charset,
+            textOptions), name);
     }
 
     /**
@@ -139,9 +179,10 @@ public final class LargeTextFactory
         throws IOException
     {
         Preconditions.checkNotNull(path, "path must not be null");
-        final FileChannel channel = FileChannel.open(path,
-            StandardOpenOption.READ);
-        return new NotThreadSafeLargeText(channel, charset, quantity, sizeUnit);
+        final String name = path.toString();
+        final DecoderOptions textOptions = options.forSource(name);
+        return register(new NotThreadSafeLargeText(open(path), charset,
+            textOptions), name);
     }
 
     /**
@@ -158,9 +199,225 @@ public final class LargeTextFactory
         throws IOException
     {
         Preconditions.checkNotNull(path, "path must not be null");
-        final FileChannel channel = FileChannel.open(path,
-            StandardOpenOption.READ);
-        return new ThreadSafeLargeText(channel, charset, quantity, sizeUnit);
+        final String name = path.toString();
+        final DecoderOptions textOptions = options.forSource(name);
+        return register(new ThreadSafeLargeText(open(path), charset,
+            textOptions), name);
+    }
+
+    /**
+     * Obtain a non thread safe {@link LargeText} instance from a given {@link
+     * ByteSource}
+     *
+     * <p>The source is closed when the instance is closed.</p>
+     *
+     * @param source the source
+     * @return the large text instance
+     * @throws IOException failed to obtain information on the source
+     *
+     * @see ByteSources
+     */
+    public LargeText load(@Nonnull final ByteSource source)
+        throws IOException
+    {
+        Preconditions.checkNotNull(source, "source must not be null");
+        final String name = source.getClass().getSimpleName();
+        final DecoderOptions textOptions = options.forSource(name);
+        return register(new NotThreadSafeLargeText(source, charset,
+            textOptions), name);
+    }
+
+    /**
+     * Obtain a thread safe {@link LargeText} instance from a given {@link
+     * ByteSource}
+     *
+     * <p>The source is closed when the instance is closed.</p>
+     *
+     * @param source the source
+     * @return the large text instance
+     * @throws IOException failed to obtain information on the source
+     *
+     * @see ByteSources
+     */
+    public LargeText loadThreadSafe(@Nonnull final ByteSource source)
+        throws IOException
+    {
+        Preconditions.checkNotNull(source, "source must not be null");
+        final String name = source.getClass().getSimpleName();
+        final DecoderOptions textOptions = options.forSource(name);
+        return register(new ThreadSafeLargeText(source, charset,
+            textOptions), name);
+    }
+
+    /**
+     * Obtain a non thread safe {@link LargeText} instance over the contents
+     * of a gzip compressed file
+     *
+     * <p>The file is decompressed once by the decoding process; after that,
+     * text is decompressed again on demand, starting from the nearest
+     * checkpoint (see {@link
+     * Builder#setGzipCheckpointInterval(int, SizeUnit)}). Growing files are
+     * not followed.</p>
+     *
+     * @param path the path to use
+     * @return the large text instance
+     * @throws IOException failed to open a (read only) {@link FileChannel} for
+     * the given path, or the file is not a gzip file
+     *
+     * @see GzipByteSource
+     */
+    public LargeText loadGzip(@Nonnull final Path path)
+        throws IOException
+    {
+        Preconditions.checkNotNull(path, "path must not be null");
+        final String name = path.toString();
+        final DecoderOptions textOptions = options.forSource(name)
+            .withoutFollow();
+        return register(new NotThreadSafeLargeText(openGzip(path), charset,
+            textOptions), name);
+    }
+
+    /**
+     * Obtain a thread safe {@link LargeText} instance over the contents of a
+     * gzip compressed file
+     *
+     * @param path the path to use
+     * @return the large text instance
+     * @throws IOException failed to open a (read only) {@link FileChannel} for
+     * the given path, or the file is not a gzip file
+     *
+     * @see #loadGzip(Path)
+     */
+    public LargeText loadGzipThreadSafe(@Nonnull final Path path)
+        throws IOException
+    {
+        Preconditions.checkNotNull(path, "path must not be null");
+        final String name = path.toString();
+        final DecoderOptions textOptions = options.forSource(name)
+            .withoutFollow();
+        return register(new ThreadSafeLargeText(openGzip(path), charset,
+            textOptions), name);
+    }
+
+    /**
+     * Write a text file as a block text file
+     *
+     * <p>A block text file stores the text as independently compressed
+     * blocks, along with an index of their text ranges; each block is one
+     * window of this factory, and the character encoding of this factory is
+     * recorded in the file. See {@link #loadBlockText(Path)}.</p>
+     *
+     * @param path the path to the text file
+     * @param target the path to the block text file; it is overwritten if it
+     * already exists
+     * @throws IOException failed to read or decode the text file, or to write
+     * the block text file
+     *
+     * @see BlockTextSource
+     */
+    public void writeBlockText(@Nonnull final Path path,
+        @Nonnull final Path target)
+        throws IOException
+    {
+        Preconditions.checkNotNull(path, "path must not be null");
+        Preconditions.checkNotNull(target, "target must not be null");
+        try (
+            final ByteSource source = ByteSources.ofPath(path, ioStrategy);
+        ) {
+            BlockTextWriter.write(source, charset, options, target);
+        }
+    }
+
+    /**
+     * Obtain a non thread safe {@link LargeText} instance over the contents
+     * of a block text file
+     *
+     * <p>Only the index of the file is read: the instance is usable, and its
+     * length known, immediately. Loading a window decompresses a single
+     * block. The character encoding and window size of this factory are not
+     * used; those recorded in the file are.</p>
+     *
+     * @param path the path to use
+     * @return the large text instance
+     * @throws IOException failed to open a (read only) {@link FileChannel} for
+     * the given path, or the file is not a block text file
+     *
+     * @see #writeBlockText(Path, Path)
+     */
+    public LargeText loadBlockText(@Nonnull final Path path)
+        throws IOException
+    {
+        Preconditions.checkNotNull(path, "path must not be null");
+        return register(new NotThreadSafeLargeText(
+            ByteSources.ofBlockText(path)), path.toString());
+    }
+
+    /**
+     * Obtain a thread safe {@link LargeText} instance over the contents of a
+     * block text file
+     *
+     * @param path the path to use
+     * @return the large text instance
+     * @throws IOException failed to open a (read only) {@link FileChannel} for
+     * the given path, or the file is not a block text file
+     *
+     * @see #loadBlockText(Path)
+     */
+    public LargeText loadBlockTextThreadSafe(@Nonnull final Path path)
+        throws IOException
+    {
+        Preconditions.checkNotNull(path, "path must not be null");
+        return register(new ThreadSafeLargeText(
+            ByteSources.ofBlockText(path)), path.toString());
+    }
+
+    /**
+     * Obtain a {@link MultiFileLargeText} instance over the concatenation of
+     * several files
+     *
+     * <p>All files are decoded in parallel, and share a single cache. If this
+     * factory follows growing files, only the last file is followed.</p>
+     *
+     * @param paths the list of paths, in order
+     * @return the text instance
+     * @throws IOException failed to open a (read only) {@link FileChannel} for
+     * one of the paths
+     * @throws IllegalArgumentException the list is empty
+     *
+     * @see MultiFileLargeText
+     */
+    public MultiFileLargeText loadAll(@Nonnull final List<Path> paths)
+        throws IOException
+    {
+        Preconditions.checkNotNull(paths, "paths must not be null");
+        for (final Path path: paths)
+            Preconditions.checkNotNull(path, "path must not be null");
+        final MultiFileLargeText text = new MultiFileLargeText(paths, charset,
+            options, ioStrategy);
+        if (mBeanServer != null)
+            text.registerMBeans(mBeanServer);
+        return text;
+    }
+
+    private LargeText register(final LargeText text, final String name)
+    {
+        if (mBeanServer != null)
+            text.registerMBean(mBeanServer, name);
+        return text;
+    }
+
+    private ByteSource open(final Path path)
+        throws IOException
+    {
+        return ioStrategy.open(FileChannel.open(path,
+            StandardOpenOption.READ));
+    }
+
+    private ByteSource openGzip(final Path path)
+        throws IOException
+    {
+        Preconditions.checkNotNull(path, "path must not be null");
+        return ByteSources.ofGzip(path, gzipCheckpointInterval);
     }
 
     /**
@@ -175,6 +432,16 @@ public final class LargeTextFactory
         private Charset charset = StandardCharsets.UTF_8;
         private SizeUnit sizeUnit = SizeUnit.MiB;
         private int quantity = 2;
+        private WindowPolicy windowPolicy = WindowPolicy.FIXED;
+        private long initialWindowSize = 0L;
+        private long followInterval = 0L;
+        private long gzipCheckpointInterval = SizeUnit.MiB.sizeInBytes(1);
+        private IoStrategy ioStrategy = IoStrategy.MMAP;
+        private long byteLimit = 0L;
+        private int charLimit = 0;
+        private int lookahead = 0;
+        private MetricsListener metricsListener = MetricsListener.NONE;
+        private MBeanServer mBeanServer = null;
 
         private Builder()
         {
@@ -238,6 +505,254 @@ public final class LargeTextFactory
             return this;
         }
 
+        /**
+         * Set how the window size of each text is chosen
+         *
+         * <p>By default ({@link WindowPolicy#FIXED}), all texts use the
+         * window size of this factory. With {@link WindowPolicy#AUTO}, the
+         * window size of each text is chosen from the size of its source and
+         * the maximum heap size, and {@link LargeText#charAt(int)} loads
+         * several windows at once when accesses are sequential; the window
+         * size of this factory is then only used for sources whose size is not
+         * known.</p>
+         *
+         * @param windowPolicy the window policy
+         * @return this
+         * @throws NullPointerException policy is null
+         *
+         * @see WindowPolicy
+         */
+        public Builder setWindowPolicy(
+            @Nonnull final WindowPolicy windowPolicy)
+        {
+            this.windowPolicy = Preconditions.checkNotNull(windowPolicy,
+                "window policy must not be null");
+            return this;
+        }
+
+        /**
+         * Start decoding with small windows
+         *
+         * <p>By default, the first characters of a text can only be read once
+         * a whole window has been read and decoded, which takes a while with
+         * large windows. With this option, the first window has the given
+         * size, and each window is then twice as large as the previous one, up
+         * to the window size; once there, throughput is the same.</p>
+         *
+         * @param quantity the size unit quantity
+         * @param sizeUnit the size unit
+         * @return this
+         * @throws NullPointerException size unit is null
+         * @throws IllegalArgumentException size is less than 1 KiB, or greater
+         * than or equal to 2 GiB
+         */
+        public Builder setInitialWindowSize(final int quantity,
+            @Nonnull final SizeUnit sizeUnit)
+        {
+            Preconditions.checkArgument(quantity > 0,
+                "initial window size must be strictly positive");
+            Preconditions.checkNotNull(sizeUnit,
+                "size unit must not be null");
+            final long size = sizeUnit.sizeInBytes(quantity);
+            Preconditions.checkArgument(size >= MIN_WINDOW_SIZE,
+                "initial window size must be at least 1024 bytes");
+            Preconditions.checkArgument(size < MAX_WINDOW_SIZE,
+                "initial window size must be strictly lower than 2 GiB");
+            initialWindowSize = size;
+            return this;
+        }
+
+        /**
+         * Follow growing files
+         *
+         * <p>By default, files are expected not to change while they are read.
+         * With this option, once the end of a file has been decoded, its size
+         * is checked at the given interval, and only the bytes appended to it
+         * are decoded. {@link LargeText#length()} then returns the number of
+         * chars decoded so far; see its documentation for more details.</p>
+         *
+         * <p>Decoding fails if the file is truncated.</p>
+         *
+         * @param interval the interval between two checks of the file size
+         * @param unit the time unit of the interval
+         * @return this
+         * @throws NullPointerException time unit is null
+         * @throws IllegalArgumentException interval is not strictly positive
+         */
+        public Builder setFollowInterval(final long interval,
+            @Nonnull final TimeUnit unit)
+        {
+            Preconditions.checkNotNull(unit, "time unit must not be null");
+            Preconditions.checkArgument(interval > 0L,
+                "interval must be strictly positive");
+            followInterval = Math.max(1L, unit.toMillis(interval));
+            return this;
+        }
+
+        /**
+         * Only decode the first bytes of files
+         *
+         * <p>By default, the whole file is decoded in the background as soon
+         * as it is loaded. With this option, decoding stops at the last
+         * complete character before the limit, and bytes beyond it are never
+         * read: a preview of a huge file costs only the bytes it needs. {@link
+         * LargeText#isLimitReached()} tells whether the file is longer.</p>
+         *
+         * <p>The limit applies to each file loaded by the factory, including
+         * each file of {@link LargeTextFactory#loadAll(List)}.</p>
+         *
+         * @param quantity the size unit quantity
+         * @param sizeUnit the size unit
+         * @return this
+         * @throws NullPointerException size unit is null
+         * @throws IllegalArgumentException quantity is not strictly positive
+         *
+         * @see #setCharLimit(int)
+         */
+        public Builder setByteLimit(final int quantity,
+            @Nonnull final SizeUnit sizeUnit)
+        {
+            Preconditions.checkArgument(quantity > 0,
+                "byte limit must be strictly positive");
+            Preconditions.checkNotNull(sizeUnit,
+                "size unit must not be null");
+            byteLimit = sizeUnit.sizeInBytes(quantity);
+            return this;
+        }
+
+        /**
+         * Only decode the first characters of files
+         *
+         * <p>This works like {@link #setByteLimit(int, SizeUnit)}, except that
+         * the limit is a number of characters; only the bytes these characters
+         * may span are read. If both limits are set, decoding stops at the
+         * first one reached.</p>
+         *
+         * @param charLimit the maximum number of characters
+         * @return this
+         * @throws IllegalArgumentException limit is not strictly positive
+         */
+        public Builder setCharLimit(final int charLimit)
+        {
+            Preconditions.checkArgument(charLimit > 0,
+                "char limit must be strictly positive");
+            this.charLimit = charLimit;
+            return this;
+        }
+
+        /**
+         * Decode files on demand
+         *
+         * <p>By default, a file is decoded in the background, as fast as
+         * possible, as soon as it is loaded. With this option, decoding stays
+         * the given number of characters ahead of the highest offset read so
+         * far, and then waits; {@link LargeText#length()} needs the whole file
+         * to be decoded, and therefore lets decoding run to the end.</p>
+         *
+         * @param lookahead the number of characters to decode ahead of readers
+         * @return this
+         * @throws IllegalArgumentException lookahead is not strictly positive
+         *
+         * @see LargeText#pauseDecoding()
+         */
+        public Builder setLookahead(final int lookahead)
+        {
+            Preconditions.checkArgument(lookahead > 0,
+                "lookahead must be strictly positive");
+            this.lookahead = lookahead;
+            return this;
+        }
+
+        /**
+         * Set a listener for the metrics of the texts created by this factory
+         *
+         * <p>The listener receives timings of window decoding, cache loads,
+         * slow path {@code charAt()} calls, waits for the decoding process
+         * and subsequences (see {@link MetricsListener}). By default, nothing
+         * is recorded. This does not apply to block text files.</p>
+         *
+         * @param metricsListener the listener
+         * @return this
+         * @throws NullPointerException listener is null
+         *
+         * @see HistogramMetricsListener
+         */
+        public Builder setMetricsListener(
+            @Nonnull final MetricsListener metricsListener)
+        {
+            this.metricsListener = Preconditions.checkNotNull(metricsListener,
+                "metrics listener must not be null");
+            return this;
+        }
+
+        /**
+         * Set an MBean server to register texts with
+         *
+         * <p>When set, each text created by the factory registers a {@link
+         * LargeTextMXBean} with this server (multi file texts register one
+         * per file), and unregisters it when closed; it reports decoding
+         * progress, index and cache memory, cache hit rates and native
+         * memory. By default, no MBean is registered.</p>
+         *
+         * @param mBeanServer the MBean server (for instance, {@link
+         * ManagementFactory#getPlatformMBeanServer()})
+         * @return this
+         * @throws NullPointerException server is null
+         */
+        public Builder setMBeanServer(@Nonnull final MBeanServer mBeanServer)
+        {
+            this.mBeanServer = Preconditions.checkNotNull(mBeanServer,
+                "MBean server must not be null");
+            return this;
+        }
+
+        /**
+         * Set the interval between two checkpoints in gzip files
+         *
+         * <p>Random access to the contents of a gzip file starts from the
+         * nearest checkpoint; each checkpoint costs 32 KiB of memory. A
+         * smaller interval therefore means faster random access at the
+         * expense of memory. The default is 1 MiB of decompressed data.</p>
+         *
+         * @param quantity the size unit quantity
+         * @param sizeUnit the size unit
+         * @return this
+         * @throws NullPointerException size unit is null
+         * @throws IllegalArgumentException quantity is not strictly positive
+         *
+         * @see LargeTextFactory#loadGzip(Path)
+         */
+        public Builder setGzipCheckpointInterval(final int quantity,
+            @Nonnull final SizeUnit sizeUnit)
+        {
+            Preconditions.checkArgument(quantity > 0,
+                "checkpoint interval must be strictly positive");
+            Preconditions.checkNotNull(sizeUnit,
+                "size unit must not be null");
+            gzipCheckpointInterval = sizeUnit.sizeInBytes(quantity);
+            return this;
+        }
+
+        /**
+         * Set how the bytes of text files are read
+         *
+         * <p>The default is {@link IoStrategy#MMAP}. This applies to text
+         * files only; gzip and block text files are always read using
+         * positional reads.</p>
+         *
+         * @param ioStrategy the I/O strategy
+         * @return this
+         * @throws NullPointerException strategy is null
+         *
+         * @see IoStrategy
+         */
+        public Builder setIoStrategy(@Nonnull final IoStrategy ioStrategy)
+        {
+            this.ioStrategy = Preconditions.checkNotNull(ioStrategy,
+                "I/O strategy must not be null");
+            return this;
+        }
+
         /**
          * Build the factory
          *
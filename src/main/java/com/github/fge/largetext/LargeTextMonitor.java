@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext;
+
+import com.github.fge.largetext.load.DecoderState;
+import com.github.fge.largetext.load.TextCache;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.metrics.LargeTextMXBean;
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.MeteredByteSource;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@link LargeTextMXBean} of one {@link LargeText}, or of one file of a
+ * {@link MultiFileLargeText}
+ */
+@ThreadSafe
+final class LargeTextMonitor
+    implements LargeTextMXBean
+{
+    /*
+     * An estimate of the heap used by the index for one window: the text
+     * range and its two ranges, plus entries in the char offset range map and
+     * in the byte offset map.
+     */
+    private static final long WINDOW_INDEX_BYTES = 256L;
+
+    private static final Logger LOGGER
+        = Logger.getLogger(LargeTextMonitor.class.getCanonicalName());
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private final String name;
+    private final TextDecoder decoder;
+    private final TextCache cache;
+    private final ByteSource source;
+
+    LargeTextMonitor(final String name, final TextDecoder decoder,
+        final TextCache cache, final ByteSource source)
+    {
+        this.name = name;
+        this.decoder = decoder;
+        this.cache = cache;
+        this.source = source;
+    }
+
+    /*
+     * Register this monitor under a new unique name; a failure is logged, and
+     * null is returned
+     */
+    @Nullable
+    ObjectName register(final MBeanServer server)
+    {
+        try {
+            final ObjectName objectName = new ObjectName(
+                "com.github.fge.largetext:type=LargeText,id="
+                + IDS.incrementAndGet() + ",name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "failed to register MBean for " + name,
+                e);
+            return null;
+        }
+    }
+
+    static void unregister(final MBeanServer server,
+        final ObjectName objectName)
+    {
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "failed to unregister MBean "
+                + objectName, e);
+        }
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public DecoderState getState()
+    {
+        return decoder.getState();
+    }
+
+    @Override
+    public long getDecodedBytes()
+    {
+        return decoder.getDecodedBytes();
+    }
+
+    @Override
+    public int getDecodedChars()
+    {
+        return decoder.getDecodedChars();
+    }
+
+    @Override
+    public int getWindowCount()
+    {
+        return decoder.getNrWindows();
+    }
+
+    @Override
+    public long getWindowSize()
+    {
+        return decoder.getWindowSize();
+    }
+
+    @Override
+    public int getLoadSpan()
+    {
+        return decoder.getLoadSpan();
+    }
+
+    @Override
+    public long getIndexBytes()
+    {
+        return WINDOW_INDEX_BYTES * decoder.getNrWindows();
+    }
+
+    @Override
+    public int getCachedWindowCount()
+    {
+        return cache.getCachedWindows();
+    }
+
+    @Override
+    public long getCachedBytes()
+    {
+        return cache.getCachedBytes();
+    }
+
+    @Override
+    public long getCacheHitCount()
+    {
+        return cache.getStats().hitCount();
+    }
+
+    @Override
+    public long getCacheMissCount()
+    {
+        return cache.getStats().missCount();
+    }
+
+    @Override
+    public double getCacheHitRate()
+    {
+        return cache.getStats().hitRate();
+    }
+
+    @Override
+    public long getLiveMappedBytes()
+    {
+        return source instanceof MeteredByteSource
+            ? ((MeteredByteSource) source).getStatistics().getLiveBytes()
+            : -1L;
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext;
+
+import com.github.fge.largetext.load.AccessPattern;
+import com.github.fge.largetext.load.DecoderOptions;
+import com.github.fge.largetext.load.TextCache;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.metrics.LargeTextMXBean;
+import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.sequence.CharSequenceFactory;
+import com.github.fge.largetext.sequence.CompositeCharSequence;
+import com.github.fge.largetext.sequence.EmptyCharSequence;
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.IoStrategy;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A {@link CharSequence} over the concatenation of several text files
+ *
+ * <p>Obtain an instance using {@link LargeTextFactory#loadAll(List)}; as with
+ * {@link LargeText}, you must close it after use.</p>
+ *
+ * <p>Each file has its own {@link TextDecoder}, and all files are therefore
+ * decoded in parallel; all of them share a single {@link TextCache}. The char
+ * offset of the first character of a file in the whole text is known once all
+ * previous files have been decoded; this class keeps a composite index of
+ * these offsets, so that a char offset in the whole text maps to one file and
+ * then to one {@link TextRange} of this file.</p>
+ *
+ * <p>Subsequences spanning several files are concatenations of subsequences
+ * of the individual files; no characters are copied.</p>
+ *
+ * <p>If the factory follows growing files (see {@link
+ * LargeTextFactory.Builder#setFollowInterval(long, java.util.concurrent.TimeUnit)}),
+ * only the last file is followed.</p>
+ *
+ * <p>If the factory has an MBean server (see {@link
+ * LargeTextFactory.Builder#setMBeanServer(MBeanServer)}), each file registers
+ * its own {@link LargeTextMXBean}, named after its path, until this instance
+ * is closed; since the cache is shared, all of them report the same cache
+ * figures.</p>
+ *
+ * <p><strong>BIG FAT WARNING:</strong> as with {@link LargeText}, {@link
+ * #toString()} dumps the contents of <strong>all files</strong>.</p>
+ *
+ * @see LargeTextFactory#loadAll(List)
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public final class MultiFileLargeText
+    implements CharSequence, Closeable
+{
+    private static final Logger LOGGER
+        = Logger.getLogger(MultiFileLargeText.class.getCanonicalName());
+
+    private static final Current NO_CURRENT
+        = new Current(0, 0, CharBuffer.allocate(0));
+
+    private final List<Path> paths;
+    private final List<Part> parts;
+    private final TextCache cache;
+
+    /*
+     * Composite index: starts[i] is the char offset of the first character of
+     * file i, for all i < known
+     */
+    @GuardedBy("this")
+    private final int[] starts;
+    @GuardedBy("this")
+    private int known = 1;
+
+    private volatile Current current = NO_CURRENT;
+
+    @GuardedBy("this")
+    private MBeanServer mBeanServer = null;
+    @GuardedBy("this")
+    private final List<ObjectName> mBeanNames = new ArrayList<>();
+
+    MultiFileLargeText(final List<Path> paths, final Charset charset,
+        final DecoderOptions options, final IoStrategy ioStrategy)
+        throws IOException
+    {
+        Preconditions.checkArgument(!paths.isEmpty(),
+            "list of paths cannot be empty");
+        this.paths = ImmutableList.copyOf(paths);
+        final int nrFiles = paths.size();
+        starts = new int[nrFiles];
+
+        final List<ByteSource> sources = new ArrayList<>(nrFiles);
+        final List<Part> list = new ArrayList<>(nrFiles);
+        TextCache textCache = null;
+        try {
+            Path path;
+            ByteSource source;
+            DecoderOptions fileOptions;
+            TextDecoder decoder;
+            for (int i = 0; i < nrFiles; i++) {
+                path = this.paths.get(i);
+                fileOptions = options.forSource(path.toString());
+                source = ioStrategy.open(FileChannel.open(path,
+                    StandardOpenOption.READ));
+                sources.add(source);
+                decoder = new TextDecoder(source, charset,
+                    i == nrFiles - 1 ? fileOptions
+                        : fileOptions.withoutFollow());
+                textCache = textCache == null
+                    ? new TextCache(source, charset,
+                        decoder.getMetricsListener())
+                    : textCache.share(source, charset,
+                        decoder.getMetricsListener());
+                list.add(new Part(source, decoder, textCache));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (final Part part: list)
+                closeQuietly(part.decoder);
+            for (final ByteSource source: sources)
+                closeQuietly(source);
+            throw e;
+        }
+        parts = ImmutableList.copyOf(list);
+        cache = textCache;
+    }
+
+    /**
+     * Get the list of files, in order
+     *
+     * @return an immutable list of paths
+     */
+    public List<Path> getPaths()
+    {
+        return paths;
+    }
+
+    /**
+     * Get the char offset of the first character of a file
+     *
+     * <p>This method waits for all previous files to be decoded.</p>
+     *
+     * @param fileIndex the index of the file (see {@link #getPaths()})
+     * @return the char offset
+     * @throws IndexOutOfBoundsException no such file
+     * @throws LargeTextException method has been interrupted, or a decoding
+     * error has occurred
+     * @throws IllegalStateException the files contain more than {@link
+     * Integer#MAX_VALUE} characters
+     */
+    public synchronized int startOf(final int fileIndex)
+    {
+        if (fileIndex < 0 || fileIndex >= parts.size())
+            throw new IndexOutOfBoundsException("no file at index "
+                + fileIndex);
+        long next;
+        while (known <= fileIndex) {
+            next = (long) starts[known - 1]
+                + parts.get(known - 1).decoder.getTotalChars();
+            if (next > Integer.MAX_VALUE)
+                throw new IllegalStateException("more than "
+                    + "Integer.MAX_VALUE characters");
+            starts[known++] = (int) next;
+        }
+        return starts[fileIndex];
+    }
+
+    /**
+     * Get the index of the file containing the character at a given offset
+     *
+     * @param charOffset the char offset
+     * @return the index of the file (see {@link #getPaths()})
+     * @throws IndexOutOfBoundsException offset is negative
+     * @throws LargeTextException method has been interrupted, or a decoding
+     * error has occurred
+     */
+    public int fileIndexOf(final int charOffset)
+    {
+        if (charOffset < 0)
+            throw new IndexOutOfBoundsException("negative offset: "
+                + charOffset);
+        final int last = parts.size() - 1;
+        /*
+         * The file containing the offset is the last one starting at or
+         * before it (empty files start where the next file starts). First
+         * search among file starts known so far, then walk from there.
+         */
+        int i;
+        synchronized (this) {
+            int low = 0;
+            int high = known - 1;
+            int mid;
+            while (low < high) {
+                mid = (low + high + 1) >>> 1;
+                if (starts[mid] <= charOffset)
+                    low = mid;
+                else
+                    high = mid - 1;
+            }
+            if (low < known - 1)
+                return low;
+            i = low;
+        }
+        while (i < last && startOf(i + 1) <= charOffset)
+            i++;
+        return i;
+    }
+
+    @Override
+    public int length()
+    {
+        final int last = parts.size() - 1;
+        final long ret = (long) startOf(last)
+            + parts.get(last).decoder.getTotalChars();
+        if (ret > Integer.MAX_VALUE)
+            throw new IllegalStateException("more than Integer.MAX_VALUE "
+                + "characters");
+        return (int) ret;
+    }
+
+    @Override
+    public char charAt(final int index)
+    {
+        final Current cur = current;
+        if (index >= cur.lowerBound && index < cur.upperBound)
+            return cur.buffer.charAt(index - cur.lowerBound);
+        final int fileIndex = fileIndexOf(index);
+        final int start = startOf(fileIndex);
+        final Part part = parts.get(fileIndex);
+        final List<TextRange> textRanges = part.decoder.getLoadRanges(
+            index - start, part.accessPattern.get());
+        part.cache.prefetch(textRanges.subList(1, textRanges.size()));
+        final IntRange range = textRanges.get(0).getCharRange();
+        final CharBuffer buffer = part.cache.load(textRanges.get(0));
+        current = new Current(start + range.getLowerBound(),
+            start + range.getUpperBound(), buffer);
+        return buffer.charAt(index - start - range.getLowerBound());
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end)
+    {
+        if (start < 0 || start > end)
+            throw new IndexOutOfBoundsException("illegal range requested: ["
+                + start + ", " + end + ")");
+        if (start == end)
+            return EmptyCharSequence.INSTANCE;
+
+        final int first = fileIndexOf(start);
+        final int last = fileIndexOf(end - 1);
+        final List<CharSequence> list = new ArrayList<>(last - first + 1);
+        int fileStart, from, to;
+        for (int i = first; i <= last; i++) {
+            fileStart = startOf(i);
+            from = Math.max(start, fileStart) - fileStart;
+            to = (i == last ? end : startOf(i + 1)) - fileStart;
+            if (from < to)
+                list.add(parts.get(i).factory.getSequence(
+                    new IntRange(from, to)));
+        }
+        return CompositeCharSequence.of(list);
+    }
+
+    /*
+     * Register one management bean per file; they are unregistered when this
+     * instance is closed, and failures to register them are logged
+     */
+    synchronized void registerMBeans(final MBeanServer server)
+    {
+        mBeanServer = server;
+        ObjectName name;
+        for (int i = 0; i < parts.size(); i++) {
+            final Part part = parts.get(i);
+            name = new LargeTextMonitor(paths.get(i).toString(), part.decoder,
+                part.cache, part.source).register(server);
+            if (name != null)
+                mBeanNames.add(name);
+        }
+    }
+
+    private synchronized void unregisterMBeans()
+    {
+        for (final ObjectName name: mBeanNames)
+            LargeTextMonitor.unregister(mBeanServer, name);
+        mBeanNames.clear();
+    }
+
+    /**
+     * Close all decoders and files
+     *
+     * @throws IOException failed to close one or more decoders or files; the
+     * first failure is thrown, and others are added to it as suppressed
+     * exceptions
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        unregisterMBeans();
+        IOException exception = null;
+        for (final Part part: parts) {
+            for (final Closeable closeable: Arrays.<Closeable>asList(
+                part.decoder, part.source)) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    if (exception == null)
+                        exception = e;
+                    else
+                        exception.addSuppressed(e);
+                }
+            }
+        }
+        LOGGER.fine("END; cache statistics: " + cache);
+        if (exception != null)
+            throw exception;
+    }
+
+    /**
+     * *gasp* all files as a string...
+     *
+     * @return something veeery huge
+     */
+    @Nonnull
+    @Override
+    public String toString()
+    {
+        return subSequence(0, length()).toString();
+    }
+
+    private static void closeQuietly(final Closeable closeable)
+    {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Nothing we can do
+        }
+    }
+
+    @ThreadSafe
+    private static final class Part
+    {
+        private final ByteSource source;
+        private final TextDecoder decoder;
+        private final TextCache cache;
+        private final CharSequenceFactory factory;
+        // One per reading thread
+        private final ThreadLocal<AccessPattern> accessPattern;
+
+        private Part(final ByteSource source, final TextDecoder decoder,
+            final TextCache cache)
+        {
+            this.source = source;
+            this.decoder = decoder;
+            this.cache = cache;
+            factory = new CharSequenceFactory(decoder, cache,
+                decoder.getMetricsListener());
+            accessPattern = new ThreadLocal<AccessPattern>()
+            {
+                @Override
+                protected AccessPattern initialValue()
+                {
+                    return decoder.newAccessPattern();
+                }
+            };
+        }
+    }
+
+    @Immutable
+    private static final class Current
+    {
+        private final int lowerBound;
+        private final int upperBound;
+        private final CharBuffer buffer;
+
+        private Current(final int lowerBound, final int upperBound,
+            final CharBuffer buffer)
+        {
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+            this.buffer = buffer;
+        }
+    }
+}
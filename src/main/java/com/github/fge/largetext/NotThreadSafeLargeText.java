@@ -18,8 +18,13 @@
 
 package com.github.fge.largetext;
 
+import com.github.fge.largetext.load.AccessPattern;
+import com.github.fge.largetext.load.DecoderOptions;
 import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.metrics.MetricsListener;
 import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.source.BlockTextSource;
+import com.github.fge.largetext.source.ByteSource;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.annotation.concurrent.NotThreadSafe;
@@ -28,6 +33,7 @@ import java.nio.CharBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.util.List;
 
 /**
  * A large text file as a {@link CharSequence}: non thread safe version
@@ -47,6 +53,8 @@ public final class NotThreadSafeLargeText
 {
     private IntRange range = EMPTY_RANGE;
     private CharBuffer buffer = EMPTY_BUFFER;
+    private long fastPathHits = 0L;
+    private final AccessPattern accessPattern = decoder.newAccessPattern();
 
     NotThreadSafeLargeText(final FileChannel channel, final Charset charset,
         final int quantity, final SizeUnit sizeUnit)
@@ -55,14 +63,43 @@ public final class NotThreadSafeLargeText
         super(channel, charset, quantity, sizeUnit);
     }
 
+    NotThreadSafeLargeText(final FileChannel channel, final Charset charset,
+        final DecoderOptions options)
+        throws IOException
+    {
+        super(channel, charset, options);
+    }
+
+    NotThreadSafeLargeText(final ByteSource source, final Charset charset,
+        final DecoderOptions options)
+        throws IOException
+    {
+        super(source, charset, options);
+    }
+
+    NotThreadSafeLargeText(final BlockTextSource source)
+    {
+        super(source);
+    }
+
     @Override
     public char charAt(final int index)
     {
-        if (!range.contains(index)) {
-            final TextRange textRange = decoder.getRange(index);
-            range = textRange.getCharRange();
-            buffer = loader.load(textRange);
+        if (range.contains(index)) {
+            fastPathHits++;
+            return buffer.charAt(index - range.getLowerBound());
         }
+        metrics.starting(MetricsListener.Operation.CHAR_AT_SLOW_PATH);
+        final long start = System.nanoTime();
+        final List<TextRange> textRanges
+            = decoder.getLoadRanges(index, accessPattern);
+        final TextRange textRange = textRanges.get(0);
+        loader.prefetch(textRanges.subList(1, textRanges.size()));
+        range = textRange.getCharRange();
+        buffer = loader.load(textRange);
+        metrics.charAtSlowPath(index, textRange, fastPathHits,
+            System.nanoTime() - start);
+        fastPathHits = 0L;
         return buffer.charAt(index - range.getLowerBound());
     }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext;
+
+import com.github.fge.largetext.load.TextCache;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.search.ByteSearcher;
+import com.github.fge.largetext.search.LiteralSearcher;
+import com.github.fge.largetext.search.MatchCallback;
+import com.github.fge.largetext.search.RegexSearcher;
+import com.github.fge.largetext.sequence.ScanCharSequence;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A scan only view of a {@link LargeText}
+ *
+ * <p>A full pass over a large text (a regex search over the whole file, a
+ * count of occurrences...) goes through every text window once; if the windows
+ * it reads are put into the text cache, they evict the windows that random
+ * accesses actually reuse, and the cache is useless once the scan is over.</p>
+ *
+ * <p>The methods of this class work like their {@link LargeText} equivalents,
+ * except that windows they decode are not admitted into the cache. Windows
+ * which are already in the cache are still used.</p>
+ *
+ * <p>For single threaded use (with a {@link Matcher}, for instance), use
+ * {@link #sequence()}.</p>
+ *
+ * @see LargeText#scan()
+ * @see TextCache#withoutAdmission()
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public final class ScanView
+{
+    private final TextDecoder decoder;
+    private final TextCache cache;
+    private final RegexSearcher searcher;
+    private final LiteralSearcher literalSearcher;
+
+    ScanView(final TextDecoder decoder, final TextCache cache,
+        @Nullable final ByteSearcher byteSearcher)
+    {
+        this.decoder = decoder;
+        this.cache = cache.withoutAdmission();
+        searcher = new RegexSearcher(decoder, this.cache);
+        literalSearcher = new LiteralSearcher(decoder, this.cache,
+            byteSearcher);
+    }
+
+    /**
+     * Get a character sequence over the whole text, for a sequential scan
+     *
+     * <p>The returned sequence is not thread safe; each thread should use its
+     * own.</p>
+     *
+     * @return a new sequence
+     *
+     * @see ScanCharSequence
+     */
+    public ScanCharSequence sequence()
+    {
+        return new ScanCharSequence(decoder, cache);
+    }
+
+    /**
+     * Find all matches of a regular expression, in parallel
+     *
+     * @param pattern the pattern
+     * @param maxMatchLength the maximum length of a match
+     * @return the list of match ranges, in order
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see LargeText#findAll(Pattern, int)
+     */
+    public List<IntRange> findAll(final Pattern pattern,
+        final int maxMatchLength)
+    {
+        return searcher.findAll(pattern, maxMatchLength);
+    }
+
+    /**
+     * Find all matches of a regular expression, in parallel, and report them
+     * to a callback
+     *
+     * @param pattern the pattern
+     * @param maxMatchLength the maximum length of a match
+     * @param callback the callback
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see LargeText#findAll(Pattern, int, MatchCallback)
+     */
+    public void findAll(final Pattern pattern, final int maxMatchLength,
+        final MatchCallback callback)
+    {
+        searcher.findAll(pattern, maxMatchLength, callback);
+    }
+
+    /**
+     * Find the first occurrence of a literal character sequence, starting from
+     * a given offset
+     *
+     * @param needle the sequence to search for
+     * @param from the offset to start from
+     * @return the offset of the first occurrence, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see LargeText#indexOf(CharSequence, int)
+     */
+    public int indexOf(final CharSequence needle, final int from)
+    {
+        return literalSearcher.indexOf(needle, from);
+    }
+
+    /**
+     * Find the first occurrence of a literal character sequence, starting from
+     * a given offset, optionally searching text windows in parallel
+     *
+     * @param needle the sequence to search for
+     * @param from the offset to start from
+     * @param parallel whether to search text windows in parallel
+     * @return the offset of the first occurrence, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see LargeText#indexOf(CharSequence, int, boolean)
+     */
+    public int indexOf(final CharSequence needle, final int from,
+        final boolean parallel)
+    {
+        return literalSearcher.indexOf(needle, from, parallel);
+    }
+
+    /**
+     * Find the last occurrence of a literal character sequence, searching
+     * backwards from a given offset
+     *
+     * @param needle the sequence to search for
+     * @param from the offset to start from
+     * @return the offset of the last occurrence, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see LargeText#lastIndexOf(CharSequence, int)
+     */
+    public int lastIndexOf(final CharSequence needle, final int from)
+    {
+        return literalSearcher.lastIndexOf(needle, from);
+    }
+
+    /**
+     * Count the number of (non overlapping) occurrences of a literal character
+     * sequence
+     *
+     * @param needle the sequence to search for
+     * @return the number of occurrences
+     * @throws IllegalArgumentException needle is empty
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see LargeText#countOccurrences(CharSequence)
+     */
+    public long countOccurrences(final CharSequence needle)
+    {
+        return literalSearcher.countOccurrences(needle);
+    }
+
+    /**
+     * Count the number of (non overlapping) occurrences of a literal character
+     * sequence, optionally searching text windows in parallel
+     *
+     * @param needle the sequence to search for
+     * @param parallel whether to search text windows in parallel
+     * @return the number of occurrences
+     * @throws IllegalArgumentException needle is empty
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see LargeText#countOccurrences(CharSequence, boolean)
+     */
+    public long countOccurrences(final CharSequence needle,
+        final boolean parallel)
+    {
+        return literalSearcher.countOccurrences(needle, parallel);
+    }
+}
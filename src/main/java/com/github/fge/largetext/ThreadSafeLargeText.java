@@ -18,8 +18,13 @@
 
 package com.github.fge.largetext;
 
+import com.github.fge.largetext.load.AccessPattern;
+import com.github.fge.largetext.load.DecoderOptions;
 import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.metrics.MetricsListener;
 import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.source.BlockTextSource;
+import com.github.fge.largetext.source.ByteSource;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.annotation.concurrent.ThreadSafe;
@@ -28,6 +33,7 @@ import java.nio.CharBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.util.List;
 
 /**
  * A large text file as a {@link CharSequence}: thread safe version
@@ -38,7 +44,7 @@ import java.nio.file.Path;
  *
  * <p>In order to be thread safe, this implementation uses instances of an inner
  * class holding both the current text range and buffer in a {@link ThreadLocal}
- * variable.</p>
+ * variable, along with the access pattern of the thread.</p>
  *
  * @see LargeTextFactory#loadThreadSafe(Path)
  */
@@ -47,15 +53,17 @@ import java.nio.file.Path;
 public final class ThreadSafeLargeText
     extends LargeText
 {
-    private static final CurrentBuffer EMPTY_BUF
-        = new CurrentBuffer(EMPTY_RANGE, EMPTY_BUFFER);
-    private static final ThreadLocal<CurrentBuffer> CURRENT
+    /*
+     * Per text, since the access pattern of a thread is per text
+     */
+    private final ThreadLocal<CurrentBuffer> current
         = new ThreadLocal<CurrentBuffer>()
         {
             @Override
             protected CurrentBuffer initialValue()
             {
-                return EMPTY_BUF;
+                return new CurrentBuffer(EMPTY_RANGE, EMPTY_BUFFER,
+                    decoder.newAccessPattern());
             }
         };
 
@@ -66,16 +74,44 @@ public final class ThreadSafeLargeText
         super(channel, charset, quantity, sizeUnit);
     }
 
+    ThreadSafeLargeText(final FileChannel channel, final Charset charset,
+        final DecoderOptions options)
+        throws IOException
+    {
+        super(channel, charset, options);
+    }
+
+    ThreadSafeLargeText(final ByteSource source, final Charset charset,
+        final DecoderOptions options)
+        throws IOException
+    {
+        super(source, charset, options);
+    }
+
+    ThreadSafeLargeText(final BlockTextSource source)
+    {
+        super(source);
+    }
+
     @Override
     public char charAt(final int index)
     {
-        final CurrentBuffer buf = CURRENT.get();
-        if (buf.containsIndex(index))
+        final CurrentBuffer buf = current.get();
+        if (buf.containsIndex(index)) {
+            buf.fastPathHits++;
             return buf.charAt(index);
-        final TextRange textRange = decoder.getRange(index);
+        }
+        metrics.starting(MetricsListener.Operation.CHAR_AT_SLOW_PATH);
+        final long start = System.nanoTime();
+        final List<TextRange> textRanges
+            = decoder.getLoadRanges(index, buf.accessPattern);
+        final TextRange textRange = textRanges.get(0);
+        loader.prefetch(textRanges.subList(1, textRanges.size()));
         final IntRange range = textRange.getCharRange();
         final CharBuffer buffer = loader.load(textRange);
-        CURRENT.set(new CurrentBuffer(range, buffer));
+        current.set(new CurrentBuffer(range, buffer, buf.accessPattern));
+        metrics.charAtSlowPath(index, textRange, buf.fastPathHits,
+            System.nanoTime() - start);
         return buffer.charAt(index - range.getLowerBound());
     }
 
@@ -83,11 +119,16 @@ public final class ThreadSafeLargeText
     {
         private final IntRange range;
         private final CharBuffer buffer;
+        private final AccessPattern accessPattern;
+        // Only accessed by the owning thread
+        private long fastPathHits = 0L;
 
-        private CurrentBuffer(final IntRange range, final CharBuffer buffer)
+        private CurrentBuffer(final IntRange range, final CharBuffer buffer,
+            final AccessPattern accessPattern)
         {
             this.range = range;
             this.buffer = buffer;
+            this.accessPattern = accessPattern;
         }
 
         private boolean containsIndex(final int index)
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * The access pattern of one reader of a text
+ *
+ * <p>When a {@code charAt()} call leaves the current window of a reader, and
+ * the window it needs starts where the previous one ended, the reader is
+ * reading sequentially: the number of windows to keep loaded ahead of it
+ * doubles, up to a maximum. Any other access halves it, down to the window
+ * itself only. The windows ahead of the reader are prefetched asynchronously
+ * (see {@link TextCache#prefetch(Iterable)}).</p>
+ *
+ * <p>Each reader (for a thread safe text, each thread) must use an instance
+ * of its own, obtained from {@link TextDecoder#newAccessPattern()}: the
+ * accesses of several readers interleaved would look random.</p>
+ *
+ * @see WindowPolicy#AUTO
+ * @see TextDecoder#getLoadRanges(int, AccessPattern)
+ */
+@NotThreadSafe
+public final class AccessPattern
+{
+    private final int maxSpan;
+
+    private int span = 1;
+    private int expected = -1;
+
+    AccessPattern(final int maxSpan)
+    {
+        this.maxSpan = maxSpan;
+    }
+
+    /**
+     * Get the maximum number of windows loaded at once
+     *
+     * @return the number of windows
+     */
+    int getMaxSpan()
+    {
+        return maxSpan;
+    }
+
+    /**
+     * Get the number of windows to load for an access to a window starting
+     * at a given offset
+     *
+     * @param charOffset the char offset of the window
+     * @return the number of windows, this one included
+     *
+     * @see #setEnd(int)
+     */
+    int nextSpan(final int charOffset)
+    {
+        span = charOffset == expected ? Math.min(span << 1, maxSpan)
+            : Math.max(span >> 1, 1);
+        return span;
+    }
+
+    /**
+     * Record the end of the window which was accessed last
+     *
+     * @param charOffset the char offset of the end of the window
+     */
+    void setEnd(final int charOffset)
+    {
+        expected = charOffset;
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.metrics.MetricsListener;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Options for a {@link TextDecoder}
+ *
+ * <p>Instances of this class are built by a {@link LargeTextFactory} from its
+ * own settings; you should not need to use this class directly.</p>
+ *
+ * @see TextDecoder
+ */
+@Immutable
+public final class DecoderOptions
+{
+    private final long windowSize;
+    private final WindowPolicy windowPolicy;
+    private final long initialWindowSize;
+    private final long followInterval;
+    private final long byteLimit;
+    private final int charLimit;
+    private final int lookahead;
+    private final MetricsListener metricsListener;
+
+    /**
+     * Obtain a builder for a new set of options
+     *
+     * @return a builder, with default values
+     */
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    private DecoderOptions(final Builder builder)
+    {
+        windowSize = builder.windowSize;
+        windowPolicy = builder.windowPolicy;
+        initialWindowSize = builder.initialWindowSize;
+        followInterval = builder.followInterval;
+        byteLimit = builder.byteLimit;
+        charLimit = builder.charLimit;
+        lookahead = builder.lookahead;
+        metricsListener = builder.metricsListener;
+    }
+
+    private DecoderOptions(final DecoderOptions options,
+        final long followInterval, final MetricsListener metricsListener)
+    {
+        windowSize = options.windowSize;
+        windowPolicy = options.windowPolicy;
+        initialWindowSize = options.initialWindowSize;
+        this.followInterval = followInterval;
+        byteLimit = options.byteLimit;
+        charLimit = options.charLimit;
+        lookahead = options.lookahead;
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Return a copy of these options with follow mode disabled
+     *
+     * @return a new set of options, or this if follow mode is not enabled
+     */
+    public DecoderOptions withoutFollow()
+    {
+        return isFollow() ? new DecoderOptions(this, 0L, metricsListener)
+            : this;
+    }
+
+    /**
+     * Return a copy of these options for a given source of text
+     *
+     * @param name the name of the source
+     * @return a new set of options, with the metrics listener of this source
+     *
+     * @see MetricsListener#forSource(String)
+     */
+    public DecoderOptions forSource(final String name)
+    {
+        return new DecoderOptions(this, followInterval,
+            metricsListener.forSource(name));
+    }
+
+    /**
+     * Get the target window size, in bytes
+     *
+     * @return the window size
+     */
+    public long getWindowSize()
+    {
+        return windowSize;
+    }
+
+    /**
+     * Get the window policy
+     *
+     * @return the policy
+     *
+     * @see Builder#setWindowPolicy(WindowPolicy)
+     */
+    public WindowPolicy getWindowPolicy()
+    {
+        return windowPolicy;
+    }
+
+    /**
+     * Get the size of the first window
+     *
+     * @return the size, in bytes; 0 if all windows have the target size
+     *
+     * @see Builder#setInitialWindowSize(long)
+     */
+    public long getInitialWindowSize()
+    {
+        return initialWindowSize;
+    }
+
+    /**
+     * Tell whether the decoder should follow a growing file
+     *
+     * @return true if follow mode is enabled
+     *
+     * @see Builder#setFollowInterval(long, TimeUnit)
+     */
+    public boolean isFollow()
+    {
+        return followInterval > 0L;
+    }
+
+    /**
+     * Get the interval between two checks of the file size, in milliseconds
+     *
+     * @return the interval; 0 if follow mode is disabled
+     */
+    public long getFollowInterval()
+    {
+        return followInterval;
+    }
+
+    /**
+     * Get the maximum number of bytes to decode
+     *
+     * @return the limit; 0 if there is no limit
+     *
+     * @see Builder#setByteLimit(long)
+     */
+    public long getByteLimit()
+    {
+        return byteLimit;
+    }
+
+    /**
+     * Get the maximum number of characters to decode
+     *
+     * @return the limit; 0 if there is no limit
+     *
+     * @see Builder#setCharLimit(int)
+     */
+    public int getCharLimit()
+    {
+        return charLimit;
+    }
+
+    /**
+     * Get the number of characters to decode ahead of readers
+     *
+     * @return the lookahead; 0 if decoding is not demand driven
+     *
+     * @see Builder#setLookahead(int)
+     */
+    public int getLookahead()
+    {
+        return lookahead;
+    }
+
+    /**
+     * Get the metrics listener
+     *
+     * @return the listener; {@link MetricsListener#NONE} if none was set
+     */
+    public MetricsListener getMetricsListener()
+    {
+        return metricsListener;
+    }
+
+    /**
+     * A builder for {@link DecoderOptions}
+     */
+    @NotThreadSafe
+    public static final class Builder
+    {
+        private long windowSize = 2L * 1024L * 1024L;
+        private WindowPolicy windowPolicy = WindowPolicy.FIXED;
+        private long initialWindowSize = 0L;
+        private long followInterval = 0L;
+        private long byteLimit = 0L;
+        private int charLimit = 0;
+        private int lookahead = 0;
+        private MetricsListener metricsListener = MetricsListener.NONE;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Set the target window size
+         *
+         * @param windowSize the window size, in bytes
+         * @return this
+         * @throws IllegalArgumentException window size is not strictly
+         * positive, or greater than or equal to 2 GiB
+         */
+        public Builder setWindowSize(final long windowSize)
+        {
+            Preconditions.checkArgument(windowSize > 0L,
+                "window size must be strictly positive");
+            Preconditions.checkArgument(windowSize < Integer.MAX_VALUE,
+                "window size must be strictly lower than 2 GiB");
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * Set the window policy
+         *
+         * <p>The default is {@link WindowPolicy#FIXED}.</p>
+         *
+         * @param windowPolicy the policy
+         * @return this
+         * @throws NullPointerException policy is null
+         */
+        public Builder setWindowPolicy(
+            @Nonnull final WindowPolicy windowPolicy)
+        {
+            this.windowPolicy = Preconditions.checkNotNull(windowPolicy,
+                "window policy cannot be null");
+            return this;
+        }
+
+        /**
+         * Ramp up the window size
+         *
+         * <p>By default, all windows have the target window size; the first
+         * characters of a text are therefore only available once a whole
+         * window has been read and decoded. With this option, the first window
+         * has the given size, and each window is then twice as large as the
+         * previous one, up to the target window size.</p>
+         *
+         * @param initialWindowSize the size of the first window, in bytes
+         * @return this
+         * @throws IllegalArgumentException size is not strictly positive, or
+         * greater than or equal to 2 GiB
+         */
+        public Builder setInitialWindowSize(final long initialWindowSize)
+        {
+            Preconditions.checkArgument(initialWindowSize > 0L,
+                "initial window size must be strictly positive");
+            Preconditions.checkArgument(initialWindowSize < Integer.MAX_VALUE,
+                "initial window size must be strictly lower than 2 GiB");
+            this.initialWindowSize = initialWindowSize;
+            return this;
+        }
+
+        /**
+         * Enable follow mode
+         *
+         * <p>In follow mode, once the decoder reaches the end of the file, it
+         * checks the size of the file at regular intervals and decodes bytes
+         * appended to it.</p>
+         *
+         * @param interval the interval between two checks
+         * @param unit the time unit of the interval
+         * @return this
+         * @throws NullPointerException time unit is null
+         * @throws IllegalArgumentException interval is not strictly positive
+         */
+        public Builder setFollowInterval(final long interval,
+            @Nonnull final TimeUnit unit)
+        {
+            Preconditions.checkNotNull(unit, "time unit cannot be null");
+            Preconditions.checkArgument(interval > 0L,
+                "interval must be strictly positive");
+            followInterval = Math.max(1L, unit.toMillis(interval));
+            return this;
+        }
+
+        /**
+         * Only decode the first bytes of the text
+         *
+         * <p>The decoder stops at the last complete character before the
+         * limit, and only reads the bytes before it. This also applies in
+         * follow mode: decoding finishes once the limit is reached.</p>
+         *
+         * @param byteLimit the maximum number of bytes to decode
+         * @return this
+         * @throws IllegalArgumentException limit is not strictly positive
+         */
+        public Builder setByteLimit(final long byteLimit)
+        {
+            Preconditions.checkArgument(byteLimit > 0L,
+                "byte limit must be strictly positive");
+            this.byteLimit = byteLimit;
+            return this;
+        }
+
+        /**
+         * Only decode the first characters of the text
+         *
+         * <p>The decoder stops once this number of characters is reached,
+         * and only reads the bytes these characters may span. This also
+         * applies in follow mode: decoding finishes once the limit is
+         * reached.</p>
+         *
+         * @param charLimit the maximum number of characters to decode
+         * @return this
+         * @throws IllegalArgumentException limit is not strictly positive
+         */
+        public Builder setCharLimit(final int charLimit)
+        {
+            Preconditions.checkArgument(charLimit > 0,
+                "char limit must be strictly positive");
+            this.charLimit = charLimit;
+            return this;
+        }
+
+        /**
+         * Make decoding demand driven
+         *
+         * <p>By default, the decoder decodes the whole text as fast as it can.
+         * With this option, it only decodes up to the given number of
+         * characters beyond the highest offset requested so far, and then
+         * waits until more characters are requested (asking for the length of
+         * the text requests all of them).</p>
+         *
+         * @param lookahead the number of characters to decode ahead
+         * @return this
+         * @throws IllegalArgumentException lookahead is not strictly positive
+         *
+         * @see TextDecoder#pause()
+         */
+        public Builder setLookahead(final int lookahead)
+        {
+            Preconditions.checkArgument(lookahead > 0,
+                "lookahead must be strictly positive");
+            this.lookahead = lookahead;
+            return this;
+        }
+
+        /**
+         * Set the metrics listener
+         *
+         * @param metricsListener the listener
+         * @return this
+         * @throws NullPointerException listener is null
+         */
+        public Builder setMetricsListener(
+            @Nonnull final MetricsListener metricsListener)
+        {
+            this.metricsListener = Preconditions.checkNotNull(metricsListener,
+                "metrics listener cannot be null");
+            return this;
+        }
+
+        /**
+         * Build the options
+         *
+         * @return a new set of options
+         */
+        public DecoderOptions build()
+        {
+            return new DecoderOptions(this);
+        }
+    }
+}
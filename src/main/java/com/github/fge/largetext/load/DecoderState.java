@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+/**
+ * The state of a decoding process
+ *
+ * @see TextDecoder#getState()
+ */
+public enum DecoderState
+{
+    /**
+     * The decoding process is running
+     *
+     * <p>Note that when decoding is demand driven, a running process may be
+     * waiting for readers to ask for more characters.</p>
+     */
+    RUNNING,
+    /**
+     * The decoding process is paused
+     *
+     * @see TextDecoder#pause()
+     */
+    PAUSED,
+    /**
+     * The decoding process has reached the end of a file it follows, and
+     * waits for more bytes to be appended
+     */
+    CAUGHT_UP,
+    /**
+     * The decoding process has successfully completed
+     */
+    FINISHED,
+    /**
+     * The decoding process stopped because of a byte or char limit
+     */
+    LIMIT_REACHED,
+    /**
+     * The decoding process failed
+     */
+    FAILED
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the progress of a decoding process
+ *
+ * @see ProgressListener
+ * @see TextDecoder#getProgress()
+ */
+@Immutable
+public final class DecodingProgress
+{
+    private final long decodedBytes;
+    private final int decodedChars;
+    private final long totalBytes;
+    private final long elapsedNanos;
+
+    DecodingProgress(final long decodedBytes, final int decodedChars,
+        final long totalBytes, final long elapsedNanos)
+    {
+        this.decodedBytes = decodedBytes;
+        this.decodedChars = decodedChars;
+        this.totalBytes = totalBytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Get the number of bytes decoded so far
+     *
+     * @return the number of bytes
+     */
+    public long getDecodedBytes()
+    {
+        return decodedBytes;
+    }
+
+    /**
+     * Get the number of chars decoded so far
+     *
+     * @return the number of chars
+     */
+    public int getDecodedChars()
+    {
+        return decodedChars;
+    }
+
+    /**
+     * Get the number of bytes to decode
+     *
+     * <p>This is the size of the source (capped by the byte limit, if any);
+     * when following a growing file, it grows along with the file. Some
+     * sources (gzip files, for instance) do not know their size until they
+     * have been read entirely.</p>
+     *
+     * @return the number of bytes, or -1 if not known
+     */
+    public long getTotalBytes()
+    {
+        return totalBytes;
+    }
+
+    /**
+     * Get the time elapsed since the decoding process started
+     *
+     * @param unit the time unit
+     * @return the time, in the given unit
+     */
+    public long getElapsed(final TimeUnit unit)
+    {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the average decoding throughput so far
+     *
+     * @return the number of bytes decoded per second
+     */
+    public double getBytesPerSecond()
+    {
+        return elapsedNanos == 0L ? 0.0
+            : decodedBytes * 1.0e9 / elapsedNanos;
+    }
+
+    /**
+     * Get the fraction of bytes decoded so far
+     *
+     * @return a number between 0 and 1, or -1 if the total number of bytes
+     * is not known
+     */
+    public double getFractionDone()
+    {
+        if (totalBytes < 0L)
+            return -1.0;
+        if (totalBytes == 0L)
+            return 1.0;
+        return Math.min(1.0, (double) decodedBytes / totalBytes);
+    }
+
+    /**
+     * Get an estimate of the time left before decoding completes
+     *
+     * <p>The estimate assumes that the throughput so far is kept for the
+     * remaining bytes.</p>
+     *
+     * @param unit the time unit
+     * @return the time, in the given unit, or -1 if it cannot be estimated
+     * (nothing has been decoded yet, or the total number of bytes is not
+     * known)
+     */
+    public long getRemaining(final TimeUnit unit)
+    {
+        if (totalBytes < 0L)
+            return -1L;
+        final long remainingBytes = Math.max(0L, totalBytes - decodedBytes);
+        if (remainingBytes == 0L)
+            return 0L;
+        if (decodedBytes == 0L)
+            return -1L;
+        final double nanos = (double) elapsedNanos * remainingBytes
+            / decodedBytes;
+        return unit.convert((long) Math.min(nanos, (double) Long.MAX_VALUE),
+            TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        return decodedBytes + "/" + (totalBytes < 0L ? "?" : totalBytes)
+            + " byte(s), " + decodedChars + " char(s) in "
+            + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms";
+    }
+}
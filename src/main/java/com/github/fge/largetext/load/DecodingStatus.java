@@ -65,6 +65,7 @@ import java.util.concurrent.CountDownLatch;
 public final class DecodingStatus
 {
     private boolean finished = false;
+    private boolean caughtUp = false;
     private int nrChars = -1;
     private IOException exception = null;
     private final Queue<CharWaiter> waiters = new PriorityQueue<>();
@@ -181,6 +182,91 @@ public final class DecodingStatus
         endLatch.countDown();
     }
 
+    /**
+     * Notify that the decoding operation has reached the current end of input
+     *
+     * <p>This is used when following a growing file: the decoding operation
+     * is not finished, since more characters may be appended; waiters asking
+     * for more characters than currently available keep waiting. However,
+     * callers of {@link LargeText#length()} are woken up, and from then on
+     * obtain the number of characters currently available.</p>
+     *
+     * @param nrChars the number of available characters
+     */
+    public synchronized void setCaughtUp(final int nrChars)
+    {
+        caughtUp = true;
+        setNrChars(nrChars);
+        endLatch.countDown();
+    }
+
+    /**
+     * Tell whether a number of characters exceeds what is available, once the
+     * end of input has been reached
+     *
+     * <p>This method never waits.</p>
+     *
+     * @param required the number of characters
+     * @return true if the end of input has been reached (see {@link
+     * #setCaughtUp(int)} and {@link #setFinished(int)}) and fewer characters
+     * than required are available
+     */
+    public synchronized boolean isBeyondEnd(final int required)
+    {
+        return (finished || caughtUp) && required > nrChars;
+    }
+
+    /**
+     * Get the number of characters decoded so far
+     *
+     * <p>Unlike {@link #getTotalSize()}, this method never waits.</p>
+     *
+     * @return the number of characters
+     */
+    public synchronized int getNrChars()
+    {
+        return Math.max(nrChars, 0);
+    }
+
+    /**
+     * Tell whether the decoding process has terminated, successfully or not
+     *
+     * <p>This method never waits.</p>
+     *
+     * @return true if the decoding process has terminated
+     */
+    public synchronized boolean isFinished()
+    {
+        return finished || exception != null;
+    }
+
+    /**
+     * Tell whether the decoding process has reached the current end of input
+     * of a file it follows
+     *
+     * <p>This method never waits.</p>
+     *
+     * @return true if the end of input has been reached at least once
+     *
+     * @see #setCaughtUp(int)
+     */
+    public synchronized boolean isCaughtUp()
+    {
+        return caughtUp;
+    }
+
+    /**
+     * Tell whether the decoding process has failed
+     *
+     * <p>This method never waits.</p>
+     *
+     * @return true if a decoding error has been recorded
+     */
+    public synchronized boolean isFailed()
+    {
+        return exception != null;
+    }
+
     /**
      * Method called by all callers of {@link LargeText#length()}
      *
@@ -188,7 +274,9 @@ public final class DecodingStatus
      * conditions happen:</p>
      *
      * <ul>
-     *     <li>the dedocing operation has successfully completed;</li>
+     *     <li>the dedocing operation has successfully completed (or, when
+     *     following a growing file, has reached the current end of input);
+     *     </li>
      *     <li>the current thread has been interrupted;</li>
      *     <li>the decoding operation terminated with an error.</li>
      * </ul>
@@ -196,6 +284,9 @@ public final class DecodingStatus
      * <p>In the two last scenarios, threads are "woken up" with a {@link
      * LargeTextException}; the cause is set to the relevant error.</p>
      *
+     * <p>When following a growing file, the value returned is the number of
+     * characters available at the time of the call.</p>
+     *
      * @return the number of characters
      *
      * @throws LargeTextException caller has been interrupted, or decoding
@@ -209,9 +300,11 @@ public final class DecodingStatus
             Thread.currentThread().interrupt();
             throw new LargeTextException("interrupted", e);
         }
-        if (exception != null)
-            throw new LargeTextException("decoding error", exception);
-        return nrChars;
+        synchronized (this) {
+            if (exception != null)
+                throw new LargeTextException("decoding error", exception);
+            return nrChars;
+        }
     }
 
     @Override
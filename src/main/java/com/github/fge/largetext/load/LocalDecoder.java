@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ChannelByteSource;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decode a bounded number of characters at an arbitrary byte offset
+ *
+ * <p>Unlike {@link TextDecoder}, which decodes the file from its start, this
+ * class decodes characters starting from any byte offset, without waiting for
+ * anything. Since the offset may fall in the middle of the encoding of a
+ * character, it is first moved forward to the next character boundary:</p>
+ *
+ * <ul>
+ *     <li>for single byte character codings, there is nothing to do;</li>
+ *     <li>for UTF-8, continuation bytes are skipped;</li>
+ *     <li>for UTF-16 and UTF-32, the offset is aligned on the code unit size,
+ *     and for UTF-16, a low surrogate is skipped;</li>
+ *     <li>for other character codings, successive offsets are tried until
+ *     some bytes can be decoded without error; note that this is only a
+ *     heuristic.</li>
+ * </ul>
+ *
+ * <p>Note: if the character coding is {@code UTF-16} (and not {@code
+ * UTF-16BE} or {@code UTF-16LE}), the byte order is determined from the byte
+ * order mark at the start of the file, if any.</p>
+ *
+ * <p>If the text has a byte limit (see {@link
+ * DecoderOptions.Builder#setByteLimit(long)}), bytes beyond it are treated as
+ * if the file ended there.</p>
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public final class LocalDecoder
+{
+    private static final Charset UTF_32 = Charset.forName("UTF-32");
+    private static final Charset UTF_32BE = Charset.forName("UTF-32BE");
+    private static final Charset UTF_32LE = Charset.forName("UTF-32LE");
+
+    private static final int PROBE_SIZE = 64;
+
+    private final ByteSource source;
+    private final Charset charset;
+    private final long byteLimit;
+    private final int maxBytesPerChar;
+    private final boolean singleByte;
+
+    public LocalDecoder(final FileChannel channel, final Charset charset)
+    {
+        this(new ChannelByteSource(Preconditions.checkNotNull(channel,
+            "channel cannot be null")), charset);
+    }
+
+    public LocalDecoder(final ByteSource source, final Charset charset)
+    {
+        this(source, charset, 0L);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param source the source of bytes
+     * @param charset the character encoding
+     * @param byteLimit the byte limit of the text; 0 if none
+     */
+    public LocalDecoder(final ByteSource source, final Charset charset,
+        final long byteLimit)
+    {
+        Preconditions.checkArgument(byteLimit >= 0L,
+            "byte limit must not be negative");
+        this.byteLimit = byteLimit;
+        this.source = Preconditions.checkNotNull(source,
+            "source cannot be null");
+        this.charset = Preconditions.checkNotNull(charset,
+            "charset cannot be null");
+        maxBytesPerChar = charset.canEncode()
+            ? (int) Math.ceil(charset.newEncoder().maxBytesPerChar()) : 4;
+        singleByte = OffsetTranslator.isSingleByte(charset);
+    }
+
+    /**
+     * Return the offset of the first character boundary at or after the given
+     * byte offset
+     *
+     * @param byteOffset the byte offset
+     * @return the offset of the character boundary; may be the size of the
+     * file, or the byte limit
+     * @throws IOException failed to read from the file
+     */
+    public long resync(final long byteOffset)
+        throws IOException
+    {
+        checkOffset(byteOffset, end());
+        if (byteOffset == 0L || singleByte)
+            return byteOffset;
+
+        final ByteBuffer buffer = source.read(byteOffset,
+            readLength(byteOffset, PROBE_SIZE));
+        try {
+            return resync(byteOffset, buffer);
+        } finally {
+            source.release(buffer);
+        }
+    }
+
+    private long resync(final long byteOffset, final ByteBuffer buffer)
+        throws IOException
+    {
+        final int limit = buffer.limit();
+        if (limit == 0) {
+            // The size of the source is necessarily known by now
+            checkOffset(byteOffset, end());
+            return byteOffset;
+        }
+        final long end = byteOffset + limit;
+
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            int i = 0;
+            while (i < limit && i < 3 && (buffer.get(i) & 0xC0) == 0x80)
+                i++;
+            return byteOffset + i;
+        }
+
+        final String name = charset.name();
+        if (name.startsWith("UTF-16")) {
+            long offset = (byteOffset + 1L) & ~1L;
+            final int index = (int) (offset - byteOffset);
+            if (index + 1 < limit) {
+                final boolean bigEndian = decodingCharset()
+                    != StandardCharsets.UTF_16LE;
+                final char c = bigEndian
+                    ? (char) ((buffer.get(index) & 0xFF) << 8
+                        | buffer.get(index + 1) & 0xFF)
+                    : (char) ((buffer.get(index + 1) & 0xFF) << 8
+                        | buffer.get(index) & 0xFF);
+                if (Character.isLowSurrogate(c))
+                    offset += 2L;
+            }
+            return Math.min(offset, end);
+        }
+
+        if (name.startsWith("UTF-32"))
+            return Math.min((byteOffset + 3L) & ~3L, end);
+
+        final CharsetDecoder decoder = newDecoder(charset);
+        final CharBuffer out = CharBuffer.allocate(PROBE_SIZE);
+        ByteBuffer in;
+        for (int i = 0; i < maxBytesPerChar && i < limit; i++) {
+            in = buffer.duplicate();
+            in.position(i);
+            out.clear();
+            decoder.reset();
+            if (!decoder.decode(in, out, false).isError()
+                && out.position() > 0)
+                return byteOffset + i;
+        }
+        return byteOffset;
+    }
+
+    /**
+     * Decode characters starting from a character boundary
+     *
+     * <p>Fewer characters than requested may be returned: at the end of the
+     * file or at the byte limit, or if the last character requested is the
+     * first char of a surrogate pair.</p>
+     *
+     * @param byteOffset the byte offset (see {@link #resync(long)})
+     * @param nrChars the number of chars to decode
+     * @return a read only buffer of decoded chars
+     * @throws IOException failed to read or decode the file contents
+     */
+    public CharBuffer decode(final long byteOffset, final int nrChars)
+        throws IOException
+    {
+        Preconditions.checkArgument(nrChars >= 0,
+            "number of chars must not be negative");
+        checkOffset(byteOffset, end());
+
+        final int nrBytes = readLength(byteOffset,
+            (int) Math.min((long) Integer.MAX_VALUE,
+            (long) nrChars * maxBytesPerChar));
+        final ByteBuffer in = source.read(byteOffset, nrBytes);
+        final CharBuffer out;
+        try {
+            if (!in.hasRemaining())
+                checkOffset(byteOffset, end());
+            /*
+             * Bytes stopped short of what was asked for: this is the end of
+             * the file. Not so at the byte limit, where the encoding of the
+             * last character may be incomplete.
+             */
+            final boolean endOfInput = in.remaining() < nrBytes;
+
+            final CharsetDecoder decoder = newDecoder(byteOffset == 0L
+                ? charset : decodingCharset());
+            /*
+             * The number of chars requested is only an upper bound, which
+             * may be huge; allocate no more than the bytes read can produce
+             */
+            out = CharBuffer.allocate((int) Math.min((long) nrChars,
+                (long) Math.ceil(in.remaining()
+                * (double) decoder.maxCharsPerByte())));
+            final CoderResult result = decoder.decode(in, out, endOfInput);
+            if (result.isError())
+                result.throwException();
+            if (endOfInput && result.isUnderflow())
+                decoder.flush(out);
+        } finally {
+            source.release(in);
+        }
+
+        out.flip();
+        return out.asReadOnlyBuffer();
+    }
+
+    /*
+     * The offset past the last byte which can be decoded: the size of the
+     * source, or the byte limit if lower; the size may not be known yet (-1)
+     */
+    private long end()
+        throws IOException
+    {
+        final long size = source.size();
+        if (byteLimit == 0L)
+            return size;
+        return size < 0L ? byteLimit : Math.min(size, byteLimit);
+    }
+
+    private int readLength(final long byteOffset, final int length)
+    {
+        if (byteLimit == 0L)
+            return length;
+        return (int) Math.min((long) length, byteLimit - byteOffset);
+    }
+
+    /*
+     * Charsets with a byte order mark cannot be used to decode from the
+     * middle of a file
+     */
+    private Charset decodingCharset()
+        throws IOException
+    {
+        if (charset.equals(StandardCharsets.UTF_16))
+            return readsBom((byte) 0xFF, (byte) 0xFE)
+                ? StandardCharsets.UTF_16LE : StandardCharsets.UTF_16BE;
+        if (charset.equals(UTF_32))
+            return readsBom((byte) 0xFF, (byte) 0xFE)
+                ? UTF_32LE : UTF_32BE;
+        return charset;
+    }
+
+    private boolean readsBom(final byte first, final byte second)
+        throws IOException
+    {
+        final ByteBuffer buffer = source.read(0L, 2);
+        try {
+            return buffer.limit() == 2 && buffer.get(0) == first
+                && buffer.get(1) == second;
+        } finally {
+            source.release(buffer);
+        }
+    }
+
+    private static CharsetDecoder newDecoder(final Charset charset)
+    {
+        return charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    /*
+     * Check an offset against the size of the source, if known
+     */
+    private static void checkOffset(final long byteOffset, final long size)
+    {
+        if (byteOffset < 0L || size >= 0L && byteOffset > size)
+            throw new IndexOutOfBoundsException("byte offset " + byteOffset
+                + " is out of range");
+    }
+}
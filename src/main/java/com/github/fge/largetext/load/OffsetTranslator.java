@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.range.LongRange;
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ChannelByteSource;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Translation between byte offsets and char offsets within a {@link TextRange}
+ *
+ * <p>A text range tells which range of bytes matches which range of chars, but
+ * only for the range as a whole. To find the char offset matching a given byte
+ * offset within the range (or the reverse), the bytes between the start of the
+ * range and this offset must be inspected; this class does so without decoding
+ * the range into the {@link TextCache}.</p>
+ *
+ * <p>Two cases are optimized:</p>
+ *
+ * <ul>
+ *     <li>single byte character codings (such as ISO-8859-1), where the number
+ *     of chars is the number of bytes;</li>
+ *     <li>UTF-8, where chars can be counted from the bytes alone: every byte
+ *     which is not a continuation byte starts a new code point, and code
+ *     points encoded using four bytes need two chars (a surrogate pair).</li>
+ * </ul>
+ *
+ * <p>For all other character codings, bytes are actually decoded (into a
+ * small, temporary buffer).</p>
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public final class OffsetTranslator
+{
+    private static final int SCRATCH_SIZE = 8192;
+
+    private final ByteSource source;
+    private final Charset charset;
+    private final boolean utf8;
+    private final boolean singleByte;
+
+    /**
+     * Is this character coding single byte?
+     *
+     * @param charset the charset
+     * @return true if each char is encoded using exactly one byte
+     */
+    public static boolean isSingleByte(final Charset charset)
+    {
+        return charset.canEncode()
+            && charset.newEncoder().maxBytesPerChar() == 1.0f
+            && charset.newDecoder().maxCharsPerByte() == 1.0f;
+    }
+
+    public OffsetTranslator(final FileChannel channel, final Charset charset)
+    {
+        this(new ChannelByteSource(Preconditions.checkNotNull(channel,
+            "channel cannot be null")), charset);
+    }
+
+    public OffsetTranslator(final ByteSource source, final Charset charset)
+    {
+        this.source = Preconditions.checkNotNull(source,
+            "source cannot be null");
+        this.charset = Preconditions.checkNotNull(charset,
+            "charset cannot be null");
+        utf8 = StandardCharsets.UTF_8.equals(charset);
+        singleByte = isSingleByte(charset);
+    }
+
+    /**
+     * Return the char offset of the character containing the given byte
+     *
+     * @param textRange the text range containing the byte
+     * @param byteOffset the (absolute) byte offset
+     * @return the (absolute) char offset
+     * @throws IOException failed to read or decode the file contents
+     * @throws IllegalArgumentException the byte is not within the text range
+     */
+    public int charOffsetOf(final TextRange textRange, final long byteOffset)
+        throws IOException
+    {
+        final LongRange byteRange = textRange.getByteRange();
+        Preconditions.checkArgument(byteRange.contains(byteOffset),
+            "byte offset not within text range");
+        final int charOffset = textRange.getCharRange().getLowerBound();
+        final long start = byteRange.getLowerBound();
+        final int nrBytes = (int) (byteOffset - start);
+        if (singleByte)
+            return charOffset + nrBytes;
+        final ByteBuffer buffer = source.read(start, nrBytes);
+        try {
+            return charOffset + countChars(buffer, 0, nrBytes);
+        } finally {
+            source.release(buffer);
+        }
+    }
+
+    /**
+     * Return the byte offset of the character at the given char offset
+     *
+     * <p>The returned offset is that of the first byte of the encoded
+     * character. If the char offset is that of the low surrogate of a
+     * surrogate pair, the offset of the first byte of the encoded pair is
+     * returned.</p>
+     *
+     * @param textRange the text range containing the character
+     * @param charOffset the (absolute) char offset
+     * @return the (absolute) byte offset
+     * @throws IOException failed to read or decode the file contents
+     * @throws IllegalArgumentException the char is not within the text range
+     */
+    public long byteOffsetOf(final TextRange textRange, final int charOffset)
+        throws IOException
+    {
+        final IntRange charRange = textRange.getCharRange();
+        Preconditions.checkArgument(charRange.contains(charOffset),
+            "char offset not within text range");
+        final LongRange byteRange = textRange.getByteRange();
+        final long start = byteRange.getLowerBound();
+        final int nrChars = charOffset - charRange.getLowerBound();
+        if (singleByte)
+            return start + nrChars;
+        final ByteBuffer buffer = source.read(start,
+            (int) (byteRange.getUpperBound() - start));
+        try {
+            return start + (utf8 ? skipUtf8(buffer, nrChars)
+                : skipChars(buffer, nrChars));
+        } finally {
+            source.release(buffer);
+        }
+    }
+
+    /**
+     * Count the number of chars encoded by a range of bytes
+     *
+     * <p>The first byte must be the first byte of a character. If the last
+     * bytes are an incomplete sequence, they are not counted.</p>
+     *
+     * @param buffer the buffer
+     * @param from the index of the first byte (inclusive)
+     * @param to the index of the last byte (exclusive)
+     * @return the number of chars
+     * @throws IOException failed to decode the bytes
+     */
+    public int countChars(final ByteBuffer buffer, final int from,
+        final int to)
+        throws IOException
+    {
+        if (singleByte)
+            return to - from;
+        if (utf8)
+            return countUtf8(buffer, from, to);
+
+        final ByteBuffer in = buffer.duplicate();
+        in.limit(to).position(from);
+        final CharBuffer out = CharBuffer.allocate(SCRATCH_SIZE);
+        final CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+        int count = 0;
+        CoderResult result;
+        while (true) {
+            result = decoder.decode(in, out, false);
+            if (result.isError())
+                result.throwException();
+            count += out.position();
+            out.clear();
+            if (result.isUnderflow())
+                return count;
+        }
+    }
+
+    /*
+     * Return the index of the first byte following the encoding of the given
+     * number of chars
+     */
+    private int skipChars(final ByteBuffer buffer, final int nrChars)
+        throws IOException
+    {
+        final ByteBuffer in = buffer.duplicate();
+        final CharBuffer out = CharBuffer.allocate(SCRATCH_SIZE);
+        final CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+        int remaining = nrChars;
+        CoderResult result;
+        while (remaining > 0) {
+            out.clear().limit(Math.min(SCRATCH_SIZE, remaining));
+            result = decoder.decode(in, out, false);
+            if (result.isError())
+                result.throwException();
+            /*
+             * No progress: the next character is a surrogate pair, and only
+             * one char was left to decode
+             */
+            if (out.position() == 0)
+                break;
+            remaining -= out.position();
+        }
+        return in.position();
+    }
+
+    private static int skipUtf8(final ByteBuffer buffer, final int nrChars)
+    {
+        final int limit = buffer.limit();
+        int count = 0;
+        int b;
+        for (int i = 0; i < limit; i++) {
+            b = buffer.get(i);
+            if ((b & 0xC0) == 0x80)
+                continue;
+            count += (b & 0xF8) == 0xF0 ? 2 : 1;
+            if (count > nrChars)
+                return i;
+        }
+        return limit;
+    }
+
+    private static int countUtf8(final ByteBuffer buffer, final int from,
+        final int to)
+    {
+        /*
+         * An incomplete sequence at the end must not be counted: back off to
+         * the start of the last sequence, and check whether it is complete.
+         */
+        int end = to;
+        int b;
+        for (int i = 1; i <= 3 && to - i >= from; i++) {
+            b = buffer.get(to - i) & 0xFF;
+            if ((b & 0xC0) == 0x80)
+                continue;
+            if (i < sequenceLength(b))
+                end = to - i;
+            break;
+        }
+
+        int count = 0;
+        for (int i = from; i < end; i++) {
+            b = buffer.get(i);
+            if ((b & 0xC0) != 0x80)
+                count++;
+            if ((b & 0xF8) == 0xF0)
+                count++;
+        }
+        return count;
+    }
+
+    private static int sequenceLength(final int leadByte)
+    {
+        if (leadByte < 0x80)
+            return 1;
+        if ((leadByte & 0xE0) == 0xC0)
+            return 2;
+        if ((leadByte & 0xF0) == 0xE0)
+            return 3;
+        return 4;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import com.github.fge.largetext.LargeText;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A listener to the progress of a decoding process
+ *
+ * <p>Methods are called from the decoding thread; they should therefore
+ * return quickly (hand over to another thread if need be). Exceptions thrown
+ * by listeners are logged and otherwise ignored.</p>
+ *
+ * <p>Exactly one of {@link #onFinished(DecodingProgress)} and {@link
+ * #onFailed(DecodingProgress, IOException)} is called, once, even if the
+ * listener is added after decoding has terminated. Closing a text before
+ * decoding completes (which is always the case when following a growing file)
+ * makes the decoding process fail.</p>
+ *
+ * @see LargeText#addProgressListener(ProgressListener, long, TimeUnit)
+ */
+@ParametersAreNonnullByDefault
+public interface ProgressListener
+{
+    /**
+     * Periodic progress report
+     *
+     * @param progress the progress so far
+     */
+    void onProgress(DecodingProgress progress);
+
+    /**
+     * The decoding process has successfully completed
+     *
+     * <p>From then on, all text ranges are known, and {@link
+     * LargeText#length()} does not wait anymore.</p>
+     *
+     * @param progress the final progress
+     */
+    void onFinished(DecodingProgress progress);
+
+    /**
+     * The decoding process has failed
+     *
+     * @param progress the progress at the time of the failure
+     * @param exception the error
+     */
+    void onFailed(DecodingProgress progress, IOException exception);
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Progress tracking of one decoding process, and notification of its {@link
+ * ProgressListener}s
+ *
+ * <p>Only the decoding thread updates the progress; listeners can be added and
+ * removed from any thread.</p>
+ */
+@ThreadSafe
+final class ProgressNotifier
+{
+    private static final Logger LOGGER
+        = Logger.getLogger(ProgressNotifier.class.getCanonicalName());
+
+    private final long startTime = System.nanoTime();
+    private final List<Registration> registrations
+        = new CopyOnWriteArrayList<>();
+
+    private volatile long decodedBytes = 0L;
+    private volatile int decodedChars = 0;
+    private volatile long totalBytes = -1L;
+    // Only set once terminated
+    private volatile long elapsedNanos = -1L;
+
+    @GuardedBy("registrations")
+    private boolean terminated = false;
+    @GuardedBy("registrations")
+    private IOException failure = null;
+
+    void add(final ProgressListener listener, final long intervalNanos)
+    {
+        final Registration registration
+            = new Registration(listener, intervalNanos);
+        final IOException exception;
+        synchronized (registrations) {
+            if (!terminated) {
+                registrations.add(registration);
+                return;
+            }
+            exception = failure;
+        }
+        notifyEnd(registration, getProgress(), exception);
+    }
+
+    void remove(final ProgressListener listener)
+    {
+        for (final Registration registration: registrations)
+            if (registration.listener == listener)
+                registrations.remove(registration);
+    }
+
+    DecodingProgress getProgress()
+    {
+        final long elapsed = elapsedNanos;
+        return new DecodingProgress(decodedBytes, decodedChars, totalBytes,
+            elapsed >= 0L ? elapsed : System.nanoTime() - startTime);
+    }
+
+    /*
+     * Called by the decoding thread after each window
+     */
+    void update(final long decodedBytes, final int decodedChars,
+        final long totalBytes)
+    {
+        this.decodedBytes = decodedBytes;
+        this.decodedChars = decodedChars;
+        this.totalBytes = totalBytes;
+        if (registrations.isEmpty())
+            return;
+        final long now = System.nanoTime();
+        DecodingProgress progress = null;
+        for (final Registration registration: registrations) {
+            if (now - registration.lastNotified < registration.intervalNanos)
+                continue;
+            registration.lastNotified = now;
+            if (progress == null)
+                progress = getProgress();
+            try {
+                registration.listener.onProgress(progress);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "progress listener failed", e);
+            }
+        }
+    }
+
+    /*
+     * Termination is done in two steps: first record it, then notify
+     * listeners. The decoding thread records it before it updates the
+     * decoding status, so that listeners added as soon as the text's length
+     * is known are told about it; and notifies them afterwards.
+     */
+    void finish(final long decodedBytes, final int decodedChars)
+    {
+        terminate(decodedBytes, decodedChars, null);
+    }
+
+    void fail(final IOException exception)
+    {
+        terminate(decodedBytes, decodedChars, exception);
+    }
+
+    void notifyTerminated()
+    {
+        final IOException exception;
+        synchronized (registrations) {
+            exception = failure;
+        }
+        final DecodingProgress progress = getProgress();
+        for (final Registration registration: registrations)
+            notifyEnd(registration, progress, exception);
+        registrations.clear();
+    }
+
+    private void terminate(final long decodedBytes, final int decodedChars,
+        final IOException exception)
+    {
+        this.decodedBytes = decodedBytes;
+        this.decodedChars = decodedChars;
+        if (exception == null)
+            totalBytes = decodedBytes;
+        elapsedNanos = System.nanoTime() - startTime;
+        synchronized (registrations) {
+            terminated = true;
+            failure = exception;
+        }
+    }
+
+    private static void notifyEnd(final Registration registration,
+        final DecodingProgress progress, final IOException exception)
+    {
+        try {
+            if (exception == null)
+                registration.listener.onFinished(progress);
+            else
+                registration.listener.onFailed(progress, exception);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "progress listener failed", e);
+        }
+    }
+
+    private static final class Registration
+    {
+        private final ProgressListener listener;
+        private final long intervalNanos;
+        // Only accessed by the decoding thread
+        private long lastNotified = System.nanoTime();
+
+        private Registration(final ProgressListener listener,
+            final long intervalNanos)
+        {
+            this.listener = listener;
+            this.intervalNanos = intervalNanos;
+        }
+    }
+}
@@ -19,25 +19,42 @@
 package com.github.fge.largetext.load;
 
 import com.github.fge.largetext.LargeTextException;
+import com.github.fge.largetext.metrics.MetricsListener;
+import com.github.fge.largetext.range.IntRange;
 import com.github.fge.largetext.range.LongRange;
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ChannelByteSource;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
-import static java.nio.channels.FileChannel.*;
-
 /**
  * A thread-safe, concurrent-friendly loader of {@link CharBuffer}s from a large
  * text file
@@ -53,23 +70,97 @@ import static java.nio.channels.FileChannel.*;
 @ThreadSafe
 public final class TextCache
 {
-    private final FileChannel channel;
+    private static final ExecutorService PREFETCHER
+        = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(),
+        new ThreadFactoryBuilder().setNameFormat("text-prefetch-%d")
+            .setDaemon(true).build());
+
+    /*
+     * Keys being prefetched, so that they are only submitted once
+     */
+    private static final Set<Key> PREFETCHING
+        = Collections.newSetFromMap(new ConcurrentHashMap<Key, Boolean>());
+
+    private final ByteSource source;
     private final Charset charset;
+    private final boolean admit;
+    private final MetricsListener metrics;
 
     /*
      * This is why we need Guava: we want cache expiry, and it has this builtin.
      *
      * TODO: implement our own cache for this purpose?
      */
-    private final LoadingCache<TextRange, CharBuffer> cache;
+    private final LoadingCache<Key, CharBuffer> cache;
 
     public TextCache(final FileChannel channel, final Charset charset)
     {
-        this.channel = channel;
-        this.charset = charset;
-        cache = CacheBuilder.<TextRange, CharBuffer>newBuilder()
+        this(new ChannelByteSource(channel), charset);
+    }
+
+    public TextCache(final ByteSource source, final Charset charset)
+    {
+        this(source, charset, MetricsListener.NONE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param source the source of bytes
+     * @param charset the character encoding
+     * @param metrics the listener to report window loads to
+     */
+    public TextCache(final ByteSource source, final Charset charset,
+        final MetricsListener metrics)
+    {
+        this(source, charset, CacheBuilder.<Key, CharBuffer>newBuilder()
             .expireAfterAccess(30L, TimeUnit.SECONDS)
-            .recordStats().build(loader());
+            .removalListener(evictionListener()).recordStats()
+            .build(loader()), true, metrics);
+    }
+
+    private TextCache(final ByteSource source, final Charset charset,
+        final LoadingCache<Key, CharBuffer> cache, final boolean admit,
+        final MetricsListener metrics)
+    {
+        this.source = source;
+        this.charset = charset;
+        this.cache = cache;
+        this.admit = admit;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Obtain a cache for another file, sharing its entries with this cache
+     *
+     * <p>This is used when several files are read as one text: entries of all
+     * files then compete for the same cache, and statistics are global.</p>
+     *
+     * @param source the source of bytes of the other file
+     * @param charset the character encoding of the other file
+     * @param metrics the listener to report window loads of this file to
+     * @return a new cache
+     */
+    public TextCache share(final ByteSource source, final Charset charset,
+        final MetricsListener metrics)
+    {
+        return new TextCache(source, charset, cache, admit, metrics);
+    }
+
+    /**
+     * Obtain a view of this cache which does not admit new entries
+     *
+     * <p>Loads from the returned cache use entries already present in this
+     * cache, but buffers which are not present are decoded and not added to
+     * it. This is meant for one-off scans of a whole text: they would
+     * otherwise evict the working set of other readers.</p>
+     *
+     * @return a new cache
+     */
+    public TextCache withoutAdmission()
+    {
+        return new TextCache(source, charset, cache, false, metrics);
     }
 
     /**
@@ -84,7 +175,102 @@ public final class TextCache
      */
     public CharBuffer load(final TextRange textRange)
     {
-        return cache.getUnchecked(textRange);
+        final Key key = new Key(this, textRange);
+        if (admit)
+            return cache.getUnchecked(key);
+        final CharBuffer ret = cache.getIfPresent(key);
+        if (ret != null)
+            return ret;
+        try {
+            return decode(key);
+        } catch (IOException e) {
+            throw new LargeTextException("Unhandled exception", e);
+        }
+    }
+
+    /**
+     * Load text ranges into the cache asynchronously
+     *
+     * <p>Text ranges already cached, or being prefetched, are skipped. This
+     * method does nothing if this cache does not admit new entries. Failures
+     * are ignored: they will occur again when the text range is loaded for
+     * good.</p>
+     *
+     * @param textRanges the text ranges
+     *
+     * @see TextDecoder#getLoadRanges(int, AccessPattern)
+     */
+    public void prefetch(final Iterable<TextRange> textRanges)
+    {
+        if (!admit)
+            return;
+        Key key;
+        for (final TextRange textRange: textRanges) {
+            key = new Key(this, textRange);
+            // Not getIfPresent(): this would count as a hit or miss
+            if (cache.asMap().containsKey(key) || !PREFETCHING.add(key))
+                continue;
+            PREFETCHER.execute(prefetchTask(key));
+        }
+    }
+
+    /**
+     * Load the buffer matching a {@link TextRange}, using a reusable buffer
+     *
+     * <p>If the buffer is present in the cache, it is returned. Otherwise, its
+     * characters are decoded into the supplied buffer, which is returned; if
+     * it is too small, a new one is allocated and returned instead. The
+     * returned buffer is not added to the cache, whether or not this cache
+     * admits new entries.</p>
+     *
+     * <p>Note that the returned buffer may be read only: callers must keep
+     * their own reference to their reusable buffer.</p>
+     *
+     * @param textRange the text range
+     * @param buffer the reusable buffer
+     * @return the matching buffer, with its position set to 0
+     * @throws LargeTextException failed to read or decode the text
+     */
+    public CharBuffer loadInto(final TextRange textRange,
+        final CharBuffer buffer)
+    {
+        final Key key = new Key(this, textRange);
+        final CharBuffer cached = cache.getIfPresent(key);
+        if (cached != null)
+            return cached;
+
+        final LongRange byteRange = textRange.getByteRange();
+        final long start = byteRange.getLowerBound();
+        final int size = (int) (byteRange.getUpperBound() - start);
+        final IntRange charRange = textRange.getCharRange();
+        final int nrChars = charRange.getUpperBound()
+            - charRange.getLowerBound();
+        final CharBuffer out = buffer.capacity() >= nrChars ? buffer
+            : CharBuffer.allocate(nrChars);
+        out.clear();
+
+        metrics.starting(MetricsListener.Operation.WINDOW_LOAD);
+        final long startTime = System.nanoTime();
+        try {
+            final ByteBuffer in = source.read(start, size);
+            try {
+                final CharsetDecoder decoder = charset.newDecoder();
+                CoderResult result = decoder.decode(in, out, true);
+                if (!result.isUnderflow())
+                    result.throwException();
+                result = decoder.flush(out);
+                if (!result.isUnderflow())
+                    result.throwException();
+            } finally {
+                source.release(in);
+            }
+        } catch (IOException e) {
+            throw new LargeTextException("Unhandled exception", e);
+        }
+
+        metrics.windowLoaded(textRange, System.nanoTime() - startTime);
+        out.flip();
+        return out;
     }
 
 
@@ -100,28 +286,146 @@ public final class TextCache
      */
     public Map<TextRange, CharBuffer> loadAll(final Iterable<TextRange> ranges)
     {
+        final List<Key> keys = new ArrayList<>();
+        for (final TextRange textRange: ranges)
+            keys.add(new Key(this, textRange));
+        final Map<Key, CharBuffer> map;
         try {
-            return cache.getAll(ranges);
+            map = admit ? cache.getAll(keys) : loadAllWithoutAdmission(keys);
         } catch (ExecutionException e) {
             throw new LargeTextException("Unhandled exception", e.getCause());
+        } catch (IOException e) {
+            throw new LargeTextException("Unhandled exception", e);
         }
+        final Map<TextRange, CharBuffer> ret = new LinkedHashMap<>();
+        for (final Map.Entry<Key, CharBuffer> entry: map.entrySet())
+            ret.put(entry.getKey().textRange, entry.getValue());
+        return ret;
     }
 
-    private CacheLoader<TextRange, CharBuffer> loader()
+    private Map<Key, CharBuffer> loadAllWithoutAdmission(
+        final List<Key> keys)
+        throws IOException
     {
-        return new CacheLoader<TextRange, CharBuffer>()
+        final Map<Key, CharBuffer> ret = new LinkedHashMap<>();
+        final Map<Key, CharBuffer> present = cache.getAllPresent(keys);
+        CharBuffer buffer;
+        for (final Key key: keys) {
+            buffer = present.get(key);
+            ret.put(key, buffer != null ? buffer : decode(key));
+        }
+        return ret;
+    }
+
+    private static CacheLoader<Key, CharBuffer> loader()
+    {
+        return new CacheLoader<Key, CharBuffer>()
         {
             @Override
-            public CharBuffer load(@Nonnull final TextRange key)
+            public CharBuffer load(@Nonnull final Key key)
                 throws IOException
             {
-                final LongRange byteRange = key.getByteRange();
-                final long start = byteRange.getLowerBound();
-                final long size = byteRange.getUpperBound() - start;
-                final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY,
-                    start, size);
-                final CharsetDecoder decoder = charset.newDecoder();
-                return decoder.decode(buffer).asReadOnlyBuffer();
+                return decode(key);
+            }
+        };
+    }
+
+    private static RemovalListener<Key, CharBuffer> evictionListener()
+    {
+        return new RemovalListener<Key, CharBuffer>()
+        {
+            @Override
+            public void onRemoval(
+                final RemovalNotification<Key, CharBuffer> notification)
+            {
+                final Key key = notification.getKey();
+                if (key != null && notification.wasEvicted())
+                    key.metrics.windowEvicted(key.textRange);
+            }
+        };
+    }
+
+    private static CharBuffer decode(final Key key)
+        throws IOException
+    {
+        key.metrics.starting(MetricsListener.Operation.WINDOW_LOAD);
+        final long startTime = System.nanoTime();
+        final LongRange byteRange = key.textRange.getByteRange();
+        final long start = byteRange.getLowerBound();
+        final long size = byteRange.getUpperBound() - start;
+        final ByteBuffer buffer = key.source.read(start, (int) size);
+        final CharsetDecoder decoder = key.charset.newDecoder();
+        final CharBuffer ret;
+        try {
+            ret = decoder.decode(buffer).asReadOnlyBuffer();
+        } finally {
+            key.source.release(buffer);
+        }
+        key.metrics.windowLoaded(key.textRange, System.nanoTime() - startTime);
+        return ret;
+    }
+
+    /**
+     * Get the statistics of the cache
+     *
+     * <p>Note that if the cache is shared (see {@link #share(ByteSource,
+     * Charset, MetricsListener)}), these statistics are those of all files.
+     * </p>
+     *
+     * @return a snapshot of the statistics
+     */
+    public CacheStats getStats()
+    {
+        return cache.stats();
+    }
+
+    /**
+     * Get the number of windows of this cache's source currently cached
+     *
+     * <p>This iterates over the cache; it is meant for monitoring only.</p>
+     *
+     * @return the number of windows
+     */
+    public int getCachedWindows()
+    {
+        int ret = 0;
+        for (final Key key: cache.asMap().keySet())
+            if (key.source == source)
+                ret++;
+        return ret;
+    }
+
+    /**
+     * Get the size, in bytes, of the windows of this cache's source currently
+     * cached
+     *
+     * <p>This iterates over the cache; it is meant for monitoring only.</p>
+     *
+     * @return the number of bytes on the heap used by cached buffers
+     */
+    public long getCachedBytes()
+    {
+        long ret = 0L;
+        for (final Map.Entry<Key, CharBuffer> entry: cache.asMap().entrySet())
+            if (entry.getKey().source == source)
+                ret += 2L * entry.getValue().capacity();
+        return ret;
+    }
+
+    private Runnable prefetchTask(final Key key)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    cache.getUnchecked(key);
+                } catch (RuntimeException ignored) {
+                    // See prefetch()
+                } finally {
+                    PREFETCHING.remove(key);
+                }
             }
         };
     }
@@ -131,4 +435,47 @@ public final class TextCache
     {
         return cache.stats().toString();
     }
+
+    /*
+     * Cache keys: a text range of a given source. Sources are compared by
+     * identity.
+     */
+    @Immutable
+    private static final class Key
+    {
+        private final ByteSource source;
+        private final Charset charset;
+        private final TextRange textRange;
+        // Not part of the identity of the key
+        private final MetricsListener metrics;
+
+        private Key(final TextCache textCache, final TextRange textRange)
+        {
+            source = textCache.source;
+            charset = textCache.charset;
+            this.textRange = textRange;
+            metrics = textCache.metrics;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * System.identityHashCode(source)
+                + textRange.hashCode();
+        }
+
+        @Override
+        public boolean equals(@Nullable final Object obj)
+        {
+            if (obj == null)
+                return false;
+            if (this == obj)
+                return true;
+            if (getClass() != obj.getClass())
+                return false;
+            final Key other = (Key) obj;
+            return source == other.source
+                && textRange.equals(other.textRange);
+        }
+    }
 }
@@ -21,18 +21,23 @@ package com.github.fge.largetext.load;
 import com.github.fge.largetext.LargeText;
 import com.github.fge.largetext.LargeTextException;
 import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.metrics.MetricsListener;
 import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ChannelByteSource;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.RangeMap;
 import com.google.common.collect.TreeRangeMap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.CharBuffer;
-import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
@@ -40,9 +45,13 @@ import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -69,6 +78,26 @@ import java.util.concurrent.ThreadFactory;
  * be decoded exactly to a character sequence (for instance, using UTF-8, the
  * end of the mapping may contain one byte only of a three-byte sequence).</p>
  *
+ * <p>When following a growing file (see {@link DecoderOptions}), the decoding
+ * task does not terminate at the end of the file; it checks the size of the
+ * file at regular intervals instead. Appended bytes are decoded starting from
+ * the last text range if it is shorter than a window (this range is then
+ * replaced with a longer one), or from the end of the last text range
+ * otherwise; the cost of an update is therefore proportional to the number of
+ * appended bytes, plus at most one window.</p>
+ *
+ * <p>Windows may also start small and grow (see {@link
+ * DecoderOptions.Builder#setInitialWindowSize(long)}): the first characters
+ * of a text are then available after decoding a small window only, and each
+ * window is twice as large as the previous one, up to the target window size.
+ * </p>
+ *
+ * <p>Decoding may also be demand driven (see {@link
+ * DecoderOptions.Builder#setLookahead(int)}): the decoding task then stays a
+ * given number of characters ahead of the highest offset requested by readers,
+ * and waits for further requests. Independently of this, decoding can be
+ * paused and resumed (see {@link #pause()}).</p>
+ *
  * @see DecodingStatus
  */
 @ThreadSafe
@@ -82,14 +111,49 @@ public final class TextDecoder
         = Executors.newSingleThreadExecutor(THREAD_FACTORY);
 
     private final DecodingStatus status = new DecodingStatus();
+    private final ProgressNotifier progress = new ProgressNotifier();
 
     @GuardedBy("ranges")
     private final RangeMap<Integer, TextRange> ranges = TreeRangeMap.create();
 
-    private final FileChannel channel;
+    /*
+     * Same ranges as above, keyed by their byte offset. Ranges are contiguous,
+     * so a floor lookup is enough.
+     */
+    @GuardedBy("ranges")
+    private final NavigableMap<Long, TextRange> byteIndex = new TreeMap<>();
+
+    private final ByteSource source;
     private final Charset charset;
-    private final long fileSize;
     private final long targetMapSize;
+    private final long initialMapSize;
+    private final int maxLoadSpan;
+    private final long followInterval;
+    private final long byteLimit;
+    private final int charLimit;
+    private final MetricsListener metrics;
+
+    /*
+     * For monitoring only: readers have their own access pattern
+     */
+    private volatile int loadSpan = 1;
+
+    /*
+     * Only written by the decoding thread; read once decoding is over (or
+     * has caught up with the end of input)
+     */
+    private volatile boolean limitReached = false;
+
+    /*
+     * Demand driven decoding: the decoding task waits on this lock while it is
+     * ahead of what readers asked for (plus the lookahead, unless paused)
+     */
+    private final Object demandLock = new Object();
+    private final int lookahead;
+    @GuardedBy("demandLock")
+    private int requested = 0;
+    @GuardedBy("demandLock")
+    private boolean paused = false;
 
     /**
      * Constructor; don't use directly!
@@ -103,13 +167,104 @@ public final class TextDecoder
         final long targetMapSize)
         throws IOException
     {
-        this.channel = channel;
-        fileSize = channel.size();
-        this.targetMapSize = targetMapSize;
+        this(channel, charset, DecoderOptions.newBuilder()
+            .setWindowSize(targetMapSize).build());
+    }
+
+    /**
+     * Constructor; don't use directly!
+     *
+     * @param channel the {@link FileChannel} to the target file
+     * @param charset the character encoding to use
+     * @param options the decoder options
+     * @throws IOException error obtaining information on the channel
+     */
+    public TextDecoder(final FileChannel channel, final Charset charset,
+        final DecoderOptions options)
+        throws IOException
+    {
+        this(new ChannelByteSource(channel), charset, options);
+    }
+
+    /**
+     * Constructor; don't use directly!
+     *
+     * <p>Note that closing this decoder does not close the source.</p>
+     *
+     * @param source the source of bytes to decode
+     * @param charset the character encoding to use
+     * @param options the decoder options
+     * @throws IOException error obtaining information on the source
+     */
+    public TextDecoder(final ByteSource source, final Charset charset,
+        final DecoderOptions options)
+        throws IOException
+    {
+        this.source = source;
         this.charset = charset;
+        final WindowPolicy policy = options.getWindowPolicy();
+        final long maxMemory = Runtime.getRuntime().maxMemory();
+        targetMapSize = policy.windowSize(options.getWindowSize(),
+            source.size(), maxMemory);
+        initialMapSize = options.getInitialWindowSize() == 0L ? targetMapSize
+            : Math.min(options.getInitialWindowSize(), targetMapSize);
+        maxLoadSpan = policy.maxLoadSpan(targetMapSize, maxMemory);
+        followInterval = options.getFollowInterval();
+        byteLimit = options.getByteLimit();
+        charLimit = options.getCharLimit();
+        lookahead = options.getLookahead();
+        metrics = options.getMetricsListener();
         executor.submit(decodingTask());
     }
 
+    /**
+     * Constructor for a text whose ranges are already known; don't use
+     * directly!
+     *
+     * <p>No decoding takes place: the ranges are available immediately, and
+     * the decoding process is considered finished.</p>
+     *
+     * @param source the source of bytes
+     * @param charset the character encoding to use
+     * @param textRanges the text ranges, in order
+     * @throws IllegalArgumentException text ranges are not contiguous, or do
+     * not start at offset 0
+     */
+    public TextDecoder(final ByteSource source, final Charset charset,
+        final List<TextRange> textRanges)
+    {
+        this.source = Preconditions.checkNotNull(source,
+            "source cannot be null");
+        this.charset = Preconditions.checkNotNull(charset,
+            "charset cannot be null");
+        targetMapSize = 0L;
+        initialMapSize = 0L;
+        maxLoadSpan = 1;
+        followInterval = 0L;
+        byteLimit = 0L;
+        charLimit = 0;
+        lookahead = 0;
+        metrics = MetricsListener.NONE;
+
+        long byteOffset = 0L;
+        int charOffset = 0;
+        synchronized (ranges) {
+            for (final TextRange textRange: textRanges) {
+                Preconditions.checkArgument(textRange.getByteRange()
+                    .getLowerBound() == byteOffset && textRange.getCharRange()
+                    .getLowerBound() == charOffset,
+                    "text ranges must be contiguous");
+                ranges.put(textRange.getCharRange().asGuavaRange(),
+                    textRange);
+                byteIndex.put(byteOffset, textRange);
+                byteOffset = textRange.getByteRange().getUpperBound();
+                charOffset = textRange.getCharRange().getUpperBound();
+            }
+        }
+        progress.finish(byteOffset, charOffset);
+        status.setFinished(charOffset);
+    }
+
     /**
      * Return the appropriate text range containing the character at the given
      * offset
@@ -134,6 +289,66 @@ public final class TextDecoder
         }
     }
 
+    /**
+     * Obtain a new access pattern, for a new reader of the text
+     *
+     * @return an access pattern
+     *
+     * @see #getLoadRanges(int, AccessPattern)
+     */
+    public AccessPattern newAccessPattern()
+    {
+        return new AccessPattern(maxLoadSpan);
+    }
+
+    /**
+     * Return the text ranges to load for the character at the given offset
+     *
+     * <p>The first text range is the one returned by {@link #getRange(int)}.
+     * If the window policy adapts to the access pattern (see {@link
+     * WindowPolicy#AUTO}) and the reader reads sequentially, it is followed
+     * by the next text ranges, which should be prefetched (see {@link
+     * TextCache#prefetch(Iterable)}). Only text ranges already decoded are
+     * included: this method does not wait any longer than {@link
+     * #getRange(int)}.</p>
+     *
+     * @param charOffset the offset
+     * @param accessPattern the access pattern of the reader
+     * @return the text range to load, followed by those to prefetch
+     * @throws LargeTextException method has been interrupted, or a decoding
+     * error has occurred
+     * @throws IndexOutOfBoundsException offset requested is out of range
+     */
+    public List<TextRange> getLoadRanges(final int charOffset,
+        final AccessPattern accessPattern)
+    {
+        final TextRange textRange = getRange(charOffset);
+        if (accessPattern.getMaxSpan() == 1)
+            return ImmutableList.of(textRange);
+
+        final int span = accessPattern.nextSpan(textRange.getCharRange()
+            .getLowerBound());
+        accessPattern.setEnd(textRange.getCharRange().getUpperBound());
+        loadSpan = span;
+        if (span == 1)
+            return ImmutableList.of(textRange);
+
+        final ImmutableList.Builder<TextRange> builder
+            = ImmutableList.builder();
+        builder.add(textRange);
+        int nrRanges = 1;
+        synchronized (ranges) {
+            for (final TextRange next: byteIndex.tailMap(textRange
+                .getByteRange().getLowerBound(), false).values()) {
+                if (nrRanges == span)
+                    break;
+                builder.add(next);
+                nrRanges++;
+            }
+        }
+        return builder.build();
+    }
+
     /**
      * Return an ordered iterable of text ranges covering the requested range
      *
@@ -151,12 +366,104 @@ public final class TextDecoder
             Thread.currentThread().interrupt();
             throw new LargeTextException("Interrupted", e);
         }
-        final Collection<TextRange> ret;
+        /*
+         * The collection below is a view: it must be copied while holding the
+         * lock, otherwise the decoding thread may modify it under our feet
+         */
         synchronized (ranges) {
-            ret = ranges.subRangeMap(range.asGuavaRange())
-                .asMapOfRanges().values();
+            final Collection<TextRange> ret = ranges.subRangeMap(
+                range.asGuavaRange()).asMapOfRanges().values();
+            return ImmutableList.copyOf(ret);
+        }
+    }
+
+    /**
+     * Return the text range containing the character at the given offset, or
+     * null if the offset is equal to or greater than the total number of
+     * characters
+     *
+     * <p>Unlike {@link #getRange(int)}, this method does not throw an {@link
+     * IndexOutOfBoundsException} if the offset is out of range. It is meant to
+     * be used by callers which walk text ranges in order without knowing the
+     * total number of characters beforehand.</p>
+     *
+     * @param charOffset the offset
+     * @return the appropriate {@link TextRange}, or null
+     * @throws LargeTextException method has been interrupted, or a decoding
+     * error has occurred
+     */
+    @Nullable
+    public TextRange getRangeOrNull(final int charOffset)
+    {
+        if (status.isBeyondEnd(charOffset + 1))
+            return null;
+        try {
+            return getRange(charOffset);
+        } catch (IndexOutOfBoundsException ignored) {
+            return null;
         }
-        return ImmutableList.copyOf(ret);
+    }
+
+    /**
+     * Return the text range containing the byte at the given offset
+     *
+     * <p>If the byte has not been decoded yet, this method waits for the
+     * decoding process to reach it.</p>
+     *
+     * @param byteOffset the byte offset
+     * @return the appropriate {@link TextRange}
+     * @throws LargeTextException method has been interrupted, or a decoding
+     * error has occurred
+     * @throws IndexOutOfBoundsException offset requested is out of range
+     */
+    public TextRange getRangeForByte(final long byteOffset)
+    {
+        if (byteOffset < 0L)
+            throw new IndexOutOfBoundsException("negative byte offset: "
+                + byteOffset);
+
+        final Map.Entry<Long, TextRange> entry;
+        synchronized (ranges) {
+            entry = byteIndex.floorEntry(byteOffset);
+        }
+
+        int charOffset = 0;
+        TextRange textRange;
+
+        if (entry != null) {
+            textRange = entry.getValue();
+            if (textRange.getByteRange().contains(byteOffset))
+                return textRange;
+            charOffset = textRange.getCharRange().getUpperBound();
+        }
+
+        while (true) {
+            textRange = getRangeOrNull(charOffset);
+            if (textRange == null)
+                throw new IndexOutOfBoundsException("byte offset " + byteOffset
+                    + " is out of range");
+            if (textRange.getByteRange().contains(byteOffset))
+                return textRange;
+            charOffset = textRange.getCharRange().getUpperBound();
+        }
+    }
+
+    /**
+     * Tell whether the byte at the given offset has been decoded yet
+     *
+     * <p>Unlike {@link #getRangeForByte(long)}, this method never waits.</p>
+     *
+     * @param byteOffset the byte offset
+     * @return true if the text range containing this byte is known
+     */
+    public boolean isByteDecoded(final long byteOffset)
+    {
+        final Map.Entry<Long, TextRange> entry;
+        synchronized (ranges) {
+            entry = byteIndex.floorEntry(byteOffset);
+        }
+        return entry != null
+            && entry.getValue().getByteRange().contains(byteOffset);
     }
 
     /**
@@ -173,9 +480,229 @@ public final class TextDecoder
      */
     public int getTotalChars()
     {
+        request(Integer.MAX_VALUE);
         return status.getTotalSize();
     }
 
+    /**
+     * Tell whether decoding stopped because of a byte or char limit
+     *
+     * <p>This method sleeps until the decoding operation finishes, like
+     * {@link #getTotalChars()}. If it returns true, the text may be longer
+     * than what has been decoded.</p>
+     *
+     * @return true if a limit was reached
+     * @throws LargeTextException method has been interrupted, or a decoding
+     * error has occurred
+     *
+     * @see DecoderOptions.Builder#setByteLimit(long)
+     * @see DecoderOptions.Builder#setCharLimit(int)
+     */
+    public boolean isLimitReached()
+    {
+        getTotalChars();
+        return limitReached;
+    }
+
+    /**
+     * Get the byte limit of this decoder
+     *
+     * @return the byte limit; 0 if there is none
+     *
+     * @see DecoderOptions.Builder#setByteLimit(long)
+     */
+    public long getByteLimit()
+    {
+        return byteLimit;
+    }
+
+    /**
+     * Get the window size of this decoder
+     *
+     * @return the window size, in bytes; 0 if text ranges were supplied
+     *
+     * @see WindowPolicy#windowSize(long, long, long)
+     */
+    public long getWindowSize()
+    {
+        return targetMapSize;
+    }
+
+    /**
+     * Get the number of windows most recently loaded at once by a reader,
+     * including the windows prefetched (see {@link #getLoadRanges(int,
+     * AccessPattern)})
+     *
+     * <p>This is always 1 unless the window policy adapts to the access
+     * pattern.</p>
+     *
+     * @return the number of windows
+     */
+    public int getLoadSpan()
+    {
+        return loadSpan;
+    }
+
+    /**
+     * Get the number of characters decoded so far
+     *
+     * <p>Unlike {@link #getTotalChars()}, this method never waits.</p>
+     *
+     * @return the number of characters
+     */
+    public int getDecodedChars()
+    {
+        return status.getNrChars();
+    }
+
+    /**
+     * Get the number of bytes decoded so far
+     *
+     * <p>This method never waits.</p>
+     *
+     * @return the number of bytes
+     */
+    public long getDecodedBytes()
+    {
+        synchronized (ranges) {
+            return byteIndex.isEmpty() ? 0L
+                : byteIndex.lastEntry().getValue().getByteRange()
+                .getUpperBound();
+        }
+    }
+
+    /**
+     * Get the number of text ranges (windows) known so far
+     *
+     * <p>This method never waits.</p>
+     *
+     * @return the number of text ranges
+     */
+    public int getNrWindows()
+    {
+        synchronized (ranges) {
+            return byteIndex.size();
+        }
+    }
+
+    /**
+     * Get the current state of the decoding process
+     *
+     * <p>This method never waits.</p>
+     *
+     * @return the state
+     */
+    public DecoderState getState()
+    {
+        if (status.isFailed())
+            return DecoderState.FAILED;
+        if (status.isFinished())
+            return limitReached ? DecoderState.LIMIT_REACHED
+                : DecoderState.FINISHED;
+        if (isPaused())
+            return DecoderState.PAUSED;
+        return status.isCaughtUp() ? DecoderState.CAUGHT_UP
+            : DecoderState.RUNNING;
+    }
+
+    /**
+     * Get the progress of the decoding process
+     *
+     * <p>This method never waits.</p>
+     *
+     * @return a snapshot of the progress
+     */
+    public DecodingProgress getProgress()
+    {
+        return progress.getProgress();
+    }
+
+    /**
+     * Add a listener to the progress of the decoding process
+     *
+     * <p>The listener is told about progress at most once per interval, after
+     * a window has been decoded; an interval of 0 means after each window.
+     * If decoding has already terminated, the listener is told so
+     * immediately, in the calling thread.</p>
+     *
+     * @param listener the listener
+     * @param interval the minimum interval between two progress reports
+     * @param unit the time unit of the interval
+     * @throws NullPointerException listener or time unit is null
+     * @throws IllegalArgumentException interval is negative
+     */
+    public void addProgressListener(final ProgressListener listener,
+        final long interval, final TimeUnit unit)
+    {
+        Preconditions.checkNotNull(listener, "listener cannot be null");
+        Preconditions.checkNotNull(unit, "time unit cannot be null");
+        Preconditions.checkArgument(interval >= 0L,
+            "interval must not be negative");
+        progress.add(listener, unit.toNanos(interval));
+    }
+
+    /**
+     * Remove a progress listener
+     *
+     * @param listener the listener
+     */
+    public void removeProgressListener(final ProgressListener listener)
+    {
+        progress.remove(listener);
+    }
+
+    /**
+     * Get the metrics listener of this decoder
+     *
+     * @return the listener
+     *
+     * @see DecoderOptions#getMetricsListener()
+     */
+    public MetricsListener getMetricsListener()
+    {
+        return metrics;
+    }
+
+    /**
+     * Pause the decoding process
+     *
+     * <p>While paused, the decoder only decodes what readers actually wait
+     * for: no lookahead, and no background decoding of the rest of the text.
+     * An idle text then costs no I/O and no CPU.</p>
+     *
+     * @see #resume()
+     */
+    public void pause()
+    {
+        synchronized (demandLock) {
+            paused = true;
+        }
+    }
+
+    /**
+     * Resume the decoding process after a call to {@link #pause()}
+     */
+    public void resume()
+    {
+        synchronized (demandLock) {
+            paused = false;
+            demandLock.notifyAll();
+        }
+    }
+
+    /**
+     * Tell whether the decoding process is paused
+     *
+     * @return true if {@link #pause()} has been called, and {@link #resume()}
+     * has not been called since
+     */
+    public boolean isPaused()
+    {
+        synchronized (demandLock) {
+            return paused;
+        }
+    }
+
     @Override
     public void close()
         throws IOException
@@ -183,12 +710,58 @@ public final class TextDecoder
         executor.shutdownNow();
     }
 
+    private void request(final int needed)
+    {
+        synchronized (demandLock) {
+            if (needed <= requested)
+                return;
+            requested = needed;
+            demandLock.notifyAll();
+        }
+    }
+
+    /*
+     * Called by the decoding task before decoding a window: wait until the
+     * decoded characters are not enough for what has been requested
+     */
+    private void awaitDemand(final int charOffset)
+        throws InterruptedException
+    {
+        synchronized (demandLock) {
+            while (charOffset >= target())
+                demandLock.wait();
+        }
+    }
+
+    private long totalBytes(final long size)
+    {
+        if (size < 0L || byteLimit == 0L)
+            return size;
+        return Math.min(size, byteLimit);
+    }
+
+    @GuardedBy("demandLock")
+    private int target()
+    {
+        if (paused)
+            return requested;
+        if (lookahead == 0)
+            return Integer.MAX_VALUE;
+        return (int) Math.min((long) requested + lookahead,
+            (long) Integer.MAX_VALUE);
+    }
+
     private void needChars(final int needed)
         throws InterruptedException
     {
+        request(needed);
         final CharWaiter waiter = new CharWaiter(needed);
-        if (status.addWaiter(waiter))
-            waiter.await();
+        if (!status.addWaiter(waiter))
+            return;
+        metrics.starting(MetricsListener.Operation.WAIT);
+        final long start = System.nanoTime();
+        waiter.await();
+        metrics.waited(needed, System.nanoTime() - start);
     }
 
     // TODO: move to another class?
@@ -204,71 +777,184 @@ public final class TextDecoder
                     .onUnmappableCharacter(CodingErrorAction.REPORT);
                 final CharBuffer charMap
                     = CharBuffer.allocate((int) targetMapSize);
+                final int maxBytesPerChar = maxBytesPerChar();
 
                 long byteOffset = 0L;
                 int charOffset = 0;
+                long mapSize = initialMapSize;
+                long size, start;
                 TextRange textRange;
-                boolean interrupted;
+                TextRange tail = null;
 
-                while (byteOffset < fileSize) {
-                    interrupted = Thread.currentThread().isInterrupted();
-                    if (interrupted) {
-                        status.setFailed(new IOException("interrupted!"));
-                        break;
-                    }
-                    try {
-                        textRange = nextRange(byteOffset, charOffset, decoder,
-                            charMap);
-                        if (textRange.getByteRange().isEmpty())
-                            throw new IOException("unable to read file as text "
-                                + "starting from byte offset " + byteOffset);
-                    } catch (IOException e) {
-                        status.setFailed(e);
-                        break;
-                    }
-                    byteOffset = textRange.getByteRange().getUpperBound();
-                    charOffset = textRange.getCharRange().getUpperBound();
-                    status.setNrChars(charOffset);
-                    synchronized (ranges) {
-                        ranges.put(textRange.getCharRange().asGuavaRange(),
-                            textRange);
+                try {
+                    while (true) {
+                        while (true) {
+                            if (Thread.currentThread().isInterrupted())
+                                throw new IOException("interrupted!");
+                            awaitDemand(charOffset);
+                            // Before the read, see awaitGrowth()
+                            size = source.size();
+                            metrics.starting(
+                                MetricsListener.Operation.WINDOW_DECODE);
+                            start = System.nanoTime();
+                            textRange = nextRange(byteOffset, charOffset,
+                                mapSize, decoder, charMap, maxBytesPerChar);
+                            if (textRange == null)
+                                break;
+                            metrics.windowDecoded(textRange,
+                                System.nanoTime() - start);
+                            byteOffset = textRange.getByteRange()
+                                .getUpperBound();
+                            charOffset = textRange.getCharRange()
+                                .getUpperBound();
+                            // Must be visible before waiters are woken up
+                            synchronized (ranges) {
+                                ranges.put(textRange.getCharRange()
+                                    .asGuavaRange(), textRange);
+                                byteIndex.put(textRange.getByteRange()
+                                    .getLowerBound(), textRange);
+                            }
+                            status.setNrChars(charOffset);
+                            mapSize = Math.min(2L * mapSize, targetMapSize);
+                            progress.update(byteOffset, charOffset,
+                                totalBytes(size));
+                            tail = textRange.getByteRange().getUpperBound()
+                                - textRange.getByteRange().getLowerBound()
+                                < targetMapSize ? textRange : null;
+                        }
+                        if (followInterval == 0L || limitReached)
+                            break;
+                        status.setCaughtUp(charOffset);
+                        awaitGrowth(size, byteOffset);
+                        /*
+                         * If the last range is shorter than a window, decode
+                         * it again along with the new bytes
+                         */
+                        if (tail != null) {
+                            byteOffset = tail.getByteRange().getLowerBound();
+                            charOffset = tail.getCharRange().getLowerBound();
+                            tail = null;
+                        }
                     }
+                } catch (IOException e) {
+                    progress.fail(e);
+                    status.setFailed(e);
+                    progress.notifyTerminated();
+                    return;
+                } catch (InterruptedException e) {
+                    final IOException exception
+                        = new IOException("interrupted!", e);
+                    progress.fail(exception);
+                    status.setFailed(exception);
+                    progress.notifyTerminated();
+                    return;
                 }
+                progress.finish(byteOffset, charOffset);
                 status.setFinished(charOffset);
+                progress.notifyTerminated();
             }
 
         };
     }
 
+    /*
+     * Follow mode: poll the source until its size differs from the size
+     * sampled before the last read; fail if it shrank below what has been
+     * decoded.
+     *
+     * The size must be sampled before the read, not after it: bytes appended
+     * between the read and the sampling would otherwise be counted as already
+     * seen, and would only be decoded once the file grows again.
+     */
+    private void awaitGrowth(final long size, final long byteOffset)
+        throws IOException, InterruptedException
+    {
+        long newSize;
+
+        do {
+            Thread.sleep(followInterval);
+            newSize = source.size();
+            if (newSize >= 0L && newSize < byteOffset)
+                throw new IOException("file has been truncated");
+        } while (newSize == size);
+    }
+
+    /*
+     * Decode the next window; return null if there are no more bytes to
+     * decode for the moment, or if a limit has been reached
+     */
+    @Nullable
     private TextRange nextRange(final long byteOffset, final int charOffset,
-        final CharsetDecoder decoder, final CharBuffer charMap)
+        final long mapSize, final CharsetDecoder decoder,
+        final CharBuffer charMap, final int maxBytesPerChar)
         throws IOException
     {
-        long nrBytes = Math.min(targetMapSize, fileSize - byteOffset);
+        long toRead = mapSize;
+        int maxChars = charMap.capacity();
+        if (byteLimit > 0L)
+            toRead = Math.min(toRead, byteLimit - byteOffset);
+        if (charLimit > 0) {
+            maxChars = Math.min(maxChars, charLimit - charOffset);
+            toRead = Math.min(toRead, (long) maxChars * maxBytesPerChar);
+        }
+        if (toRead == 0L) {
+            limitReached = true;
+            return null;
+        }
 
-        final MappedByteBuffer byteMap
-            = channel.map(FileChannel.MapMode.READ_ONLY, byteOffset, nrBytes);
+        final ByteBuffer byteMap = source.read(byteOffset, (int) toRead);
+        try {
+            final int available = byteMap.remaining();
+            if (available == 0)
+                return null;
 
-        charMap.rewind();
-        decoder.reset();
+            charMap.clear();
+            charMap.limit(maxChars);
+            decoder.reset();
 
-        final CoderResult result = decoder.decode(byteMap, charMap, true);
+            final CoderResult result = decoder.decode(byteMap, charMap, true);
 
-        /*
-         * Unmappable character... It _can_ happen even with a decoder, see
-         * http://stackoverflow.com/a/22902806/1093528
-         */
-        if (result.isUnmappable())
-            result.throwException();
+            /*
+             * Unmappable character... It _can_ happen even with a decoder, see
+             * http://stackoverflow.com/a/22902806/1093528
+             */
+            if (result.isUnmappable())
+                result.throwException();
 
-        /*
-         * Incomplete byte sequence: in this case, the mapping position reflects
-         * what was actually read; change the mapping size
-         */
-        if (result.isMalformed())
-            nrBytes = (long) byteMap.position();
+            /*
+             * Incomplete byte sequence: in this case, the buffer position
+             * reflects what was actually read
+             */
+            final int nrBytes = byteMap.position();
+            if (nrBytes == 0) {
+                // Not enough room for the next character before a limit
+                if (result.isOverflow() || byteLimit > 0L
+                    && byteOffset + available == byteLimit && available < 4) {
+                    limitReached = true;
+                    return null;
+                }
+                // Follow mode: possibly a character being written
+                if (followInterval > 0L && available < 4)
+                    return null;
+                throw new IOException("unable to read file as text starting "
+                    + "from byte offset " + byteOffset);
+            }
+
+            return new TextRange(byteOffset, nrBytes, charOffset,
+                charMap.position());
+        } finally {
+            source.release(byteMap);
+        }
+    }
 
-        return new TextRange(byteOffset, nrBytes, charOffset,
-            charMap.position());
+    /*
+     * Upper bound of the number of bytes needed to encode one char, used to
+     * avoid reading more bytes than a char limit needs
+     */
+    private int maxBytesPerChar()
+    {
+        if (charLimit == 0 || !charset.canEncode())
+            return (int) targetMapSize;
+        return (int) Math.ceil(charset.newEncoder().maxBytesPerChar());
     }
 }
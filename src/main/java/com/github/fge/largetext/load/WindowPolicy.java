@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * How the window size of a text is chosen
+ *
+ * <p>The window size is both the granularity of the index of a text (one text
+ * range per window) and the unit in which characters are loaded into the
+ * cache. With {@link #FIXED}, it is the configured window size, and {@code
+ * charAt()} loads the windows it needs only; with {@link #AUTO}, it is chosen
+ * from the size of the source and the maximum heap size, and {@code charAt()}
+ * also prefetches windows ahead of sequential readers.</p>
+ *
+ * @see DecoderOptions.Builder#setWindowPolicy(WindowPolicy)
+ */
+@Immutable
+public enum WindowPolicy
+{
+    /**
+     * Use the configured window size; this is the default
+     */
+    FIXED
+    {
+        @Override
+        public long windowSize(final long configured, final long sourceSize,
+            final long maxMemory)
+        {
+            return configured;
+        }
+
+        @Override
+        public int maxLoadSpan(final long windowSize, final long maxMemory)
+        {
+            return 1;
+        }
+    },
+    /**
+     * Choose the window size from the size of the source and the heap, and
+     * prefetch windows ahead of sequential readers
+     *
+     * <p>The window size aims at {@value #TARGET_WINDOWS} windows per source
+     * (this bounds the size of the index), rounded to a power of two, within
+     * 64 KiB and 1 MiB; a window must also fit in 1/256th of the heap. Windows
+     * are kept small so that random accesses decode few characters. If the
+     * size of the source is not known, the configured window size is used
+     * instead.</p>
+     *
+     * <p>{@code charAt()} calls leaving the current window load that window
+     * only. When a reader accesses windows sequentially, the following
+     * windows are also loaded into the cache asynchronously; their number
+     * doubles at each window, up to 32 MiB worth of windows (or 1/256th of
+     * the heap, if less). Each reader has its own access pattern (see {@link
+     * AccessPattern}).</p>
+     */
+    AUTO
+    {
+        @Override
+        public long windowSize(final long configured, final long sourceSize,
+            final long maxMemory)
+        {
+            if (sourceSize < 0L)
+                return configured;
+            final long wanted = Long.highestOneBit(Math.max(sourceSize
+                / TARGET_WINDOWS, 1L));
+            final long ret = Math.min(Math.min(wanted, MAX_WINDOW_SIZE),
+                maxMemory / HEAP_FRACTION);
+            return Math.max(ret, MIN_WINDOW_SIZE);
+        }
+
+        @Override
+        public int maxLoadSpan(final long windowSize, final long maxMemory)
+        {
+            final long maxLoad = Math.min(MAX_LOAD_SIZE,
+                maxMemory / HEAP_FRACTION);
+            return (int) Long.highestOneBit(Math.max(maxLoad / windowSize,
+                1L));
+        }
+    };
+
+    /**
+     * Number of windows per source aimed at by {@link #AUTO}
+     */
+    public static final long TARGET_WINDOWS = 65536L;
+
+    private static final long MIN_WINDOW_SIZE = 64L * 1024L;
+    private static final long MAX_WINDOW_SIZE = 1024L * 1024L;
+    private static final long MAX_LOAD_SIZE = 32L * 1024L * 1024L;
+    /*
+     * A window of n bytes may cost up to 4n bytes of heap: n chars in the
+     * decoding buffer, and as many in the cache
+     */
+    private static final long HEAP_FRACTION = 256L;
+
+    /**
+     * Get the window size for a source
+     *
+     * @param configured the configured window size
+     * @param sourceSize the size of the source, or -1 if not known
+     * @param maxMemory the maximum heap size (see {@link
+     * Runtime#maxMemory()})
+     * @return the window size, in bytes
+     */
+    public abstract long windowSize(final long configured,
+        final long sourceSize, final long maxMemory);
+
+    /**
+     * Get the maximum number of windows which {@code charAt()} may load at
+     * once, including those prefetched
+     *
+     * @param windowSize the window size
+     * @param maxMemory the maximum heap size (see {@link
+     * Runtime#maxMemory()})
+     * @return the number of windows; 1 if the load unit does not adapt
+     */
+    public abstract int maxLoadSpan(final long windowSize,
+        final long maxMemory);
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.metrics;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of non negative long values, with bounded relative
+ * error
+ *
+ * <p>Like an HDR histogram, this histogram uses logarithmic buckets, each of
+ * them divided into linear sub-buckets: values lower than 128 are recorded
+ * exactly, and larger values with a relative error lower than 1/64 (about
+ * 1.6%), whatever their magnitude. Its memory footprint is fixed (about 30
+ * KiB).</p>
+ *
+ * <p>Values can be recorded concurrently; reads are not atomic with regards to
+ * concurrent recordings, which is fine for monitoring purposes.</p>
+ */
+@ThreadSafe
+public final class Histogram
+{
+    /*
+     * Values below 2^7 have their own bucket; above, the 7 most significant
+     * bits of a value (the highest of which is always 1) select one of 64
+     * sub-buckets, for each possible shift.
+     */
+    private static final int EXACT = 128;
+    private static final int SUB_BUCKETS = 64;
+    private static final int MAX_SHIFT = 56;
+    private static final int NR_BUCKETS = EXACT + MAX_SHIFT * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NR_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value
+     *
+     * <p>Negative values are recorded as 0.</p>
+     *
+     * @param value the value
+     */
+    public void record(final long value)
+    {
+        final long v = Math.max(0L, value);
+        counts.incrementAndGet(index(v));
+        count.incrementAndGet();
+        sum.addAndGet(v);
+        long current;
+        do {
+            current = max.get();
+        } while (v > current && !max.compareAndSet(current, v));
+    }
+
+    /**
+     * Get the number of recorded values
+     *
+     * @return the count
+     */
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * Get the highest recorded value
+     *
+     * @return the highest value; 0 if no value has been recorded
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Get the sum of recorded values
+     *
+     * @return the sum
+     */
+    public long getSum()
+    {
+        return sum.get();
+    }
+
+    /**
+     * Get the mean of recorded values
+     *
+     * @return the mean; 0 if no value has been recorded
+     */
+    public double getMean()
+    {
+        final long n = count.get();
+        return n == 0L ? 0.0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Get the value at a given percentile
+     *
+     * <p>The value returned is the highest value which the matching bucket may
+     * contain (but never more than the highest recorded value).</p>
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the value; 0 if no value has been recorded
+     * @throws IllegalArgumentException percentile is out of range
+     */
+    public long getValueAtPercentile(final double percentile)
+    {
+        Preconditions.checkArgument(percentile >= 0.0 && percentile <= 100.0,
+            "percentile must be between 0 and 100");
+        final long total = count.get();
+        if (total == 0L)
+            return 0L;
+        final long rank = Math.max(1L,
+            (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0L;
+        for (int i = 0; i < NR_BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(highestValue(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Reset this histogram
+     *
+     * <p>Values recorded concurrently with a reset may be partially lost.</p>
+     */
+    public void reset()
+    {
+        for (int i = 0; i < NR_BUCKETS; i++)
+            counts.set(i, 0L);
+        count.set(0L);
+        sum.set(0L);
+        max.set(0L);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("count=%d, mean=%.1f, p50=%d, p99=%d, "
+            + "p99.9=%d, max=%d", getCount(), getMean(),
+            getValueAtPercentile(50.0), getValueAtPercentile(99.0),
+            getValueAtPercentile(99.9), getMax());
+    }
+
+    static int index(final long value)
+    {
+        if (value < EXACT)
+            return (int) value;
+        final int shift = 57 - Long.numberOfLeadingZeros(value);
+        return EXACT + (shift - 1) * SUB_BUCKETS
+            + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long highestValue(final int index)
+    {
+        if (index < EXACT)
+            return index;
+        final int shift = (index - EXACT) / SUB_BUCKETS + 1;
+        final long subBucket = (index - EXACT) % SUB_BUCKETS + SUB_BUCKETS;
+        final long ret = ((subBucket + 1L) << shift) - 1L;
+        // Overflow for the very last bucket
+        return ret < 0L ? Long.MAX_VALUE : ret;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.metrics;
+
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.range.LongRange;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link MetricsListener} recording timings into in memory histograms
+ *
+ * <p>Each hot path has its own {@link Histogram} of latencies (in
+ * nanoseconds); counters record the number of bytes read by the decoding
+ * process and by the text cache, the number of fast path {@code charAt()}
+ * calls and the number of cache evictions. Events of all sources are
+ * recorded together. The histograms and counters can be read at any time,
+ * for instance to be exported to a monitoring system.</p>
+ */
+@ThreadSafe
+public final class HistogramMetricsListener
+    implements MetricsListener
+{
+    private final Histogram windowDecodes = new Histogram();
+    private final Histogram windowLoads = new Histogram();
+    private final Histogram charAtSlowPaths = new Histogram();
+    private final Histogram waits = new Histogram();
+    private final Histogram multiWindowSequences = new Histogram();
+
+    private final AtomicLong decodedBytes = new AtomicLong();
+    private final AtomicLong loadedBytes = new AtomicLong();
+    private final AtomicLong charAtFastPaths = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Override
+    public MetricsListener forSource(final String name)
+    {
+        return this;
+    }
+
+    @Override
+    public void starting(final Operation operation)
+    {
+    }
+
+    @Override
+    public void windowDecoded(final TextRange textRange, final long nanos)
+    {
+        windowDecodes.record(nanos);
+        decodedBytes.addAndGet(size(textRange.getByteRange()));
+    }
+
+    @Override
+    public void windowLoaded(final TextRange textRange, final long nanos)
+    {
+        windowLoads.record(nanos);
+        loadedBytes.addAndGet(size(textRange.getByteRange()));
+    }
+
+    @Override
+    public void windowEvicted(final TextRange textRange)
+    {
+        evictions.incrementAndGet();
+    }
+
+    @Override
+    public void charAtSlowPath(final int index, final TextRange window,
+        final long fastPathHits, final long nanos)
+    {
+        charAtSlowPaths.record(nanos);
+        if (fastPathHits > 0L)
+            charAtFastPaths.addAndGet(fastPathHits);
+    }
+
+    @Override
+    public void waited(final int required, final long nanos)
+    {
+        waits.record(nanos);
+    }
+
+    @Override
+    public void subSequence(final IntRange range, final int nrWindows,
+        final long nanos)
+    {
+        if (nrWindows > 1)
+            multiWindowSequences.record(nanos);
+    }
+
+    /**
+     * Get the histogram of window indexing times, by the decoding process
+     *
+     * @return the histogram
+     */
+    public Histogram getWindowDecodes()
+    {
+        return windowDecodes;
+    }
+
+    /**
+     * Get the histogram of window load times, by the text cache
+     *
+     * @return the histogram
+     */
+    public Histogram getWindowLoads()
+    {
+        return windowLoads;
+    }
+
+    /**
+     * Get the histogram of slow path {@code charAt()} times
+     *
+     * @return the histogram
+     */
+    public Histogram getCharAtSlowPaths()
+    {
+        return charAtSlowPaths;
+    }
+
+    /**
+     * Get the histogram of times spent waiting for the decoding process
+     *
+     * @return the histogram
+     */
+    public Histogram getWaits()
+    {
+        return waits;
+    }
+
+    /**
+     * Get the histogram of creation times of subsequences spanning several
+     * windows
+     *
+     * @return the histogram
+     */
+    public Histogram getMultiWindowSequences()
+    {
+        return multiWindowSequences;
+    }
+
+    /**
+     * Get the number of bytes read by the decoding process
+     *
+     * @return the number of bytes
+     */
+    public long getDecodedBytes()
+    {
+        return decodedBytes.get();
+    }
+
+    /**
+     * Get the number of bytes read by the text cache
+     *
+     * @return the number of bytes
+     */
+    public long getLoadedBytes()
+    {
+        return loadedBytes.get();
+    }
+
+    /**
+     * Get the number of fast path {@code charAt()} calls reported so far
+     *
+     * @return the number of calls
+     *
+     * @see MetricsListener#charAtSlowPath(int, TextRange, long, long)
+     */
+    public long getCharAtFastPaths()
+    {
+        return charAtFastPaths.get();
+    }
+
+    /**
+     * Get the number of windows evicted from text caches
+     *
+     * @return the number of windows
+     */
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "window decodes (ns): " + windowDecodes
+            + "\nwindow loads (ns): " + windowLoads
+            + "\ncharAt slow paths (ns): " + charAtSlowPaths
+            + "; fast paths: " + charAtFastPaths
+            + "\nwaits (ns): " + waits
+            + "\nmulti window subsequences (ns): " + multiWindowSequences
+            + "\nbytes decoded: " + decodedBytes + ", loaded: " + loadedBytes
+            + "; evictions: " + evictions;
+    }
+
+    private static long size(final LongRange range)
+    {
+        return range.getUpperBound() - range.getLowerBound();
+    }
+}
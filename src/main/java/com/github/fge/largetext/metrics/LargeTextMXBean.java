@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.metrics;
+
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.load.DecoderState;
+
+import javax.management.MBeanServer;
+
+/**
+ * Management interface of one text
+ *
+ * <p>When an {@link MBeanServer} is set on a {@link LargeTextFactory} (see
+ * {@link LargeTextFactory.Builder#setMBeanServer(MBeanServer)}), each text it
+ * creates is registered under the name {@code
+ * com.github.fge.largetext:type=LargeText,id=<n>,name=<source>}, until it is
+ * closed.</p>
+ *
+ * <p>All attributes are computed when read, and reading them never waits for
+ * the decoding process.</p>
+ */
+public interface LargeTextMXBean
+{
+    /**
+     * Get the name of the source of this text (for files, their path)
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Get the state of the decoding process
+     *
+     * @return the state
+     */
+    DecoderState getState();
+
+    /**
+     * Get the number of bytes decoded so far
+     *
+     * @return the number of bytes
+     */
+    long getDecodedBytes();
+
+    /**
+     * Get the number of chars decoded so far
+     *
+     * @return the number of chars
+     */
+    int getDecodedChars();
+
+    /**
+     * Get the number of windows (text ranges) indexed so far
+     *
+     * @return the number of windows
+     */
+    int getWindowCount();
+
+    /**
+     * Get the window size of this text
+     *
+     * @return the window size, in bytes; 0 for block text files
+     *
+     * @see com.github.fge.largetext.load.WindowPolicy
+     */
+    long getWindowSize();
+
+    /**
+     * Get the number of windows most recently loaded at once by a reader
+     *
+     * <p>This includes the windows prefetched ahead of the reader; readers
+     * each have their own number.</p>
+     *
+     * @return the number of windows; always 1 unless the window policy adapts
+     * it
+     */
+    int getLoadSpan();
+
+    /**
+     * Get an estimate of the heap used by the window index
+     *
+     * @return the number of bytes
+     */
+    long getIndexBytes();
+
+    /**
+     * Get the number of windows of this text in the cache
+     *
+     * @return the number of windows
+     */
+    int getCachedWindowCount();
+
+    /**
+     * Get the heap used by the windows of this text in the cache
+     *
+     * @return the number of bytes
+     */
+    long getCachedBytes();
+
+    /**
+     * Get the number of cache hits
+     *
+     * @return the number of hits
+     */
+    long getCacheHitCount();
+
+    /**
+     * Get the number of cache misses
+     *
+     * @return the number of misses
+     */
+    long getCacheMissCount();
+
+    /**
+     * Get the cache hit rate
+     *
+     * @return the ratio of hits to requests (1.0 if there were no requests)
+     */
+    double getCacheHitRate();
+
+    /**
+     * Get the number of bytes of native memory held by the source
+     *
+     * <p>These are mapped regions or pooled direct buffers, depending on the
+     * I/O strategy.</p>
+     *
+     * @return the number of bytes, or -1 if this is not known
+     *
+     * @see com.github.fge.largetext.source.IoStatistics#getLiveBytes()
+     */
+    long getLiveMappedBytes();
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.metrics;
+
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.range.IntRange;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * A listener for timings and counters of the hot paths of a text
+ *
+ * <p>A listener is set on a {@link LargeTextFactory} (see {@link
+ * LargeTextFactory.Builder#setMetricsListener(MetricsListener)}); it is then
+ * called by all texts created by this factory.</p>
+ *
+ * <p>Implementations must be thread safe, and fast: methods are called from
+ * the decoding thread, and from reader threads, while they hold no lock.
+ * Times are in nanoseconds.</p>
+ *
+ * <p>Timed operations are also announced, in the thread which performs them,
+ * by a call to {@link #starting(Operation)}; listeners which need to observe
+ * the start of an operation (and not only its duration) can rely on it.</p>
+ *
+ * @see HistogramMetricsListener
+ */
+@ParametersAreNonnullByDefault
+public interface MetricsListener
+{
+    /**
+     * A listener which ignores everything
+     */
+    MetricsListener NONE = new MetricsListener()
+    {
+        @Override
+        public MetricsListener forSource(final String name)
+        {
+            return this;
+        }
+
+        @Override
+        public void starting(final Operation operation)
+        {
+        }
+
+        @Override
+        public void windowDecoded(final TextRange textRange, final long nanos)
+        {
+        }
+
+        @Override
+        public void windowLoaded(final TextRange textRange, final long nanos)
+        {
+        }
+
+        @Override
+        public void charAtSlowPath(final int index, final TextRange window,
+            final long fastPathHits, final long nanos)
+        {
+        }
+
+        @Override
+        public void windowEvicted(final TextRange textRange)
+        {
+        }
+
+        @Override
+        public void waited(final int required, final long nanos)
+        {
+        }
+
+        @Override
+        public void subSequence(final IntRange range, final int nrWindows,
+            final long nanos)
+        {
+        }
+    };
+
+    /**
+     * Obtain a listener for one source of text
+     *
+     * <p>The factory calls this method once for each text (or each file of a
+     * multi file text), with the path of the file; listeners which do not
+     * care about which file an event comes from can return themselves.</p>
+     *
+     * @param name the name of the source (for files, their path)
+     * @return a listener
+     */
+    MetricsListener forSource(String name);
+
+    /**
+     * A timed operation is about to start
+     *
+     * <p>Once the operation is over, the method reporting it is called in the
+     * same thread, unless the operation fails or turns out to have nothing to
+     * report (for instance, when the decoding process reaches the end of the
+     * file); the next call to this method for the same operation in the same
+     * thread then supersedes this one. Operations of different kinds may be
+     * nested (a window may be loaded as part of a {@code charAt()} slow
+     * path); operations of the same kind are not.</p>
+     *
+     * @param operation the operation
+     */
+    void starting(Operation operation);
+
+    /**
+     * The decoding process has indexed a window
+     *
+     * @param textRange the text range of the window
+     * @param nanos the time it took to read and decode the window
+     */
+    void windowDecoded(TextRange textRange, long nanos);
+
+    /**
+     * A window has been loaded into the text cache (a cache miss)
+     *
+     * <p>This is also called when a window is decoded for a scan (see {@link
+     * com.github.fge.largetext.LargeText#scan()}), even though the window is
+     * not put into the cache.</p>
+     *
+     * @param textRange the text range of the window; the number of bytes read
+     * is the size of its byte range
+     * @param nanos the time it took to read and decode the window
+     */
+    void windowLoaded(TextRange textRange, long nanos);
+
+    /**
+     * A window has been evicted from the text cache
+     *
+     * <p>This is not called for entries removed because the text was closed.
+     * </p>
+     *
+     * @param textRange the text range of the window
+     */
+    void windowEvicted(TextRange textRange);
+
+    /**
+     * A call to {@code charAt()} needed another window than the current one
+     *
+     * <p>Calls which hit the current window (the fast path) are not reported
+     * one by one: the number of such calls since the previous slow path, in
+     * the same thread, is reported along with the slow path.</p>
+     *
+     * @param index the index of the character
+     * @param window the text range of the window which is now the current
+     * one (it may span several windows of the text cache)
+     * @param fastPathHits the number of fast path calls since the previous
+     * slow path
+     * @param nanos the time it took to get the window
+     */
+    void charAtSlowPath(int index, TextRange window, long fastPathHits,
+        long nanos);
+
+    /**
+     * A reader waited for the decoding process to reach a character
+     *
+     * @param required the number of characters the reader waited for
+     * @param nanos the time spent waiting
+     */
+    void waited(int required, long nanos);
+
+    /**
+     * A (non empty) subsequence of the text has been created
+     *
+     * <p>Subsequences of other subsequences are reported as well, with their
+     * range in the text.</p>
+     *
+     * @param range the range of the subsequence in the text
+     * @param nrWindows the number of windows it spans
+     * @param nanos the time it took to create the subsequence
+     */
+    void subSequence(IntRange range, int nrWindows, long nanos);
+
+    /**
+     * The timed operations reported to a listener
+     *
+     * @see #starting(Operation)
+     */
+    enum Operation
+    {
+        /**
+         * The decoding process indexes a window
+         *
+         * @see #windowDecoded(TextRange, long)
+         */
+        WINDOW_DECODE,
+        /**
+         * A window is loaded into the text cache
+         *
+         * @see #windowLoaded(TextRange, long)
+         */
+        WINDOW_LOAD,
+        /**
+         * A call to {@code charAt()} needs another window
+         *
+         * @see #charAtSlowPath(int, TextRange, long, long)
+         */
+        CHAR_AT_SLOW_PATH,
+        /**
+         * A reader waits for the decoding process
+         *
+         * @see #waited(int, long)
+         */
+        WAIT,
+        /**
+         * A subsequence is created
+         *
+         * @see #subSequence(IntRange, int, long)
+         */
+        SUB_SEQUENCE
+    }
+}
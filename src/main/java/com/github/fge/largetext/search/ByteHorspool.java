@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.search;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import java.nio.ByteBuffer;
+
+/**
+ * Boyer-Moore-Horspool search of a byte sequence over a {@link ByteBuffer}
+ *
+ * <p>This is the byte counterpart of {@link Horspool}; since the alphabet is
+ * only 256 values wide here, the bad character table is exact.</p>
+ *
+ * <p>Only absolute {@code get}s are used, so the position and limit of
+ * buffers are never modified.</p>
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+final class ByteHorspool
+{
+    private static final int TABLE_SIZE = 256;
+    private static final int MASK = TABLE_SIZE - 1;
+
+    private final byte[] needle;
+    private final int[] forward = new int[TABLE_SIZE];
+
+    ByteHorspool(final byte[] needle)
+    {
+        this.needle = needle.clone();
+        final int len = needle.length;
+
+        for (int i = 0; i < TABLE_SIZE; i++)
+            forward[i] = len;
+        for (int i = 0; i < len - 1; i++)
+            forward[needle[i] & MASK] = len - 1 - i;
+    }
+
+    int length()
+    {
+        return needle.length;
+    }
+
+    /**
+     * Find the first occurrence of the needle
+     *
+     * @param buffer the buffer
+     * @param from the index to start from (inclusive)
+     * @param to the end of the buffer to consider (exclusive)
+     * @return the index of the first match, or -1 if not found
+     */
+    int indexOf(final ByteBuffer buffer, final int from, final int to)
+    {
+        final int len = needle.length;
+        final int last = len - 1;
+        final int max = to - len;
+        int i = from;
+        int j;
+        byte b;
+
+        while (i <= max) {
+            b = buffer.get(i + last);
+            if (b == needle[last]) {
+                j = last - 1;
+                while (j >= 0 && buffer.get(i + j) == needle[j])
+                    j--;
+                if (j < 0)
+                    return i;
+            }
+            i += forward[b & MASK];
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.search;
+
+import com.github.fge.largetext.LargeTextException;
+import com.github.fge.largetext.load.OffsetTranslator;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.range.LongRange;
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ChannelByteSource;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Literal substring search over the raw bytes of the file
+ *
+ * <p>For some character codings, searching for the encoded form of a needle
+ * in the file bytes yields exactly the same matches as searching for the
+ * needle in the decoded text:</p>
+ *
+ * <ul>
+ *     <li>single byte character codings, since bytes and chars match one to
+ *     one;</li>
+ *     <li>UTF-8, since it is self synchronizing: an encoded needle always
+ *     starts with a lead byte and ends with a complete sequence, so it can only
+ *     match at code point boundaries.</li>
+ * </ul>
+ *
+ * <p>For these character codings, this class encodes the needle once and
+ * searches the memory mapped bytes of each {@link TextRange} directly. The
+ * char offset of a match is then obtained by counting chars from the start of
+ * the text range (see {@link OffsetTranslator}); counting occurrences does not
+ * even need that. Nothing is decoded, and nothing goes through the {@link
+ * com.github.fge.largetext.load.TextCache}: windows without a match are never
+ * decoded at all.</p>
+ *
+ * <p>Don't use directly! It is used by {@link LiteralSearcher} when the
+ * character coding and the needle allow for it.</p>
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public final class ByteSearcher
+{
+    private final ByteSource source;
+    private final Charset charset;
+    private final TextDecoder decoder;
+    private final OffsetTranslator translator;
+    private final ForkJoinPool pool;
+
+    /**
+     * Can a byte level search be used with this character coding?
+     *
+     * @param charset the charset
+     * @return true if the charset is UTF-8, or a single byte character coding
+     */
+    public static boolean supports(final Charset charset)
+    {
+        return StandardCharsets.UTF_8.equals(charset)
+            || OffsetTranslator.isSingleByte(charset);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param source the source of the text file's bytes
+     * @param charset the character coding; must be supported
+     * @param decoder the text decoder
+     * @param pool the pool to submit search tasks to
+     * @throws IllegalArgumentException charset not supported
+     *
+     * @see #supports(Charset)
+     */
+    public ByteSearcher(final ByteSource source, final Charset charset,
+        final TextDecoder decoder, final ForkJoinPool pool)
+    {
+        Preconditions.checkArgument(supports(charset),
+            "unsupported charset " + charset);
+        this.source = Preconditions.checkNotNull(source,
+            "source cannot be null");
+        this.charset = charset;
+        this.decoder = Preconditions.checkNotNull(decoder,
+            "decoder cannot be null");
+        this.pool = Preconditions.checkNotNull(pool, "pool cannot be null");
+        translator = new OffsetTranslator(source, charset);
+    }
+
+    /**
+     * Constructor using the default pool
+     *
+     * @param channel the channel to the text file
+     * @param charset the character coding; must be supported
+     * @param decoder the text decoder
+     */
+    public ByteSearcher(final FileChannel channel, final Charset charset,
+        final TextDecoder decoder)
+    {
+        this(new ChannelByteSource(Preconditions.checkNotNull(channel,
+            "channel cannot be null")), charset, decoder,
+            WindowPipeline.DEFAULT_POOL);
+    }
+
+    /**
+     * Constructor using the default pool
+     *
+     * @param source the source of the text file's bytes
+     * @param charset the character coding; must be supported
+     * @param decoder the text decoder
+     */
+    public ByteSearcher(final ByteSource source, final Charset charset,
+        final TextDecoder decoder)
+    {
+        this(source, charset, decoder, WindowPipeline.DEFAULT_POOL);
+    }
+
+    /**
+     * Encode a needle
+     *
+     * @param needle the needle
+     * @return the encoded needle, or null if it cannot be encoded
+     */
+    @Nullable
+    public byte[] encode(final CharSequence needle)
+    {
+        final CharsetEncoder encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        final ByteBuffer buffer;
+        try {
+            buffer = encoder.encode(CharBuffer.wrap(needle));
+        } catch (CharacterCodingException ignored) {
+            return null;
+        }
+        final byte[] ret = new byte[buffer.remaining()];
+        buffer.get(ret);
+        return ret;
+    }
+
+    /**
+     * Find the first occurrence of an encoded needle
+     *
+     * <p>Windows are searched one by one.</p>
+     *
+     * @param needle the encoded needle (must not be empty)
+     * @param from the char offset to start from
+     * @return the char offset of the first match, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     */
+    public int indexOf(final byte[] needle, final int from)
+    {
+        return indexOf(needle, from, false);
+    }
+
+    /**
+     * Find the first occurrence of an encoded needle, optionally searching
+     * windows in parallel
+     *
+     * @param needle the encoded needle (must not be empty)
+     * @param from the char offset to start from
+     * @param parallel whether to search windows in parallel
+     * @return the char offset of the first match, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     */
+    public int indexOf(final byte[] needle, final int from,
+        final boolean parallel)
+    {
+        final int start = Math.max(0, from);
+        final IndexPipeline pipeline = new IndexPipeline(
+            new ByteHorspool(needle), start, parallel);
+        pipeline.run(start);
+        return pipeline.index;
+    }
+
+    /**
+     * Count the number of (non overlapping) occurrences of an encoded needle
+     *
+     * <p>Windows are searched in parallel.</p>
+     *
+     * @param needle the encoded needle (must not be empty)
+     * @return the number of occurrences
+     * @throws LargeTextException search was interrupted, or failed
+     */
+    public long countOccurrences(final byte[] needle)
+    {
+        return countOccurrences(needle, true);
+    }
+
+    /**
+     * Count the number of (non overlapping) occurrences of an encoded needle,
+     * optionally searching windows in parallel
+     *
+     * @param needle the encoded needle (must not be empty)
+     * @param parallel whether to search windows in parallel
+     * @return the number of occurrences
+     * @throws LargeTextException search was interrupted, or failed
+     */
+    public long countOccurrences(final byte[] needle, final boolean parallel)
+    {
+        final CountingPipeline pipeline
+            = new CountingPipeline(new ByteHorspool(needle), parallel);
+        pipeline.run(0);
+        return pipeline.total;
+    }
+
+    /*
+     * Read the bytes of a text range, plus the bytes following it which may
+     * be part of a match starting within the text range; bytes which are not
+     * part of the text (beyond a decoding limit, or not decoded yet when
+     * following a file) are never read, so that matches cannot extend into
+     * them
+     */
+    private ByteBuffer read(final TextRange textRange, final int needleLength)
+        throws IOException
+    {
+        final long start = textRange.getByteRange().getLowerBound();
+        final long end = readEnd(textRange,
+            textRange.getByteRange().getUpperBound() + needleLength - 1);
+        return source.read(start, (int) (end - start));
+    }
+
+    private long readEnd(final TextRange textRange, final long wanted)
+    {
+        TextRange last = textRange;
+        LongRange byteRange = last.getByteRange();
+        while (byteRange.getUpperBound() < wanted) {
+            last = decoder.getRangeOrNull(last.getCharRange()
+                .getUpperBound());
+            if (last == null)
+                return byteRange.getUpperBound();
+            byteRange = last.getByteRange();
+        }
+        return wanted;
+    }
+
+    /*
+     * Count matches in a window, starting from the given index in the buffer;
+     * only matches starting within the window itself are counted
+     */
+    private static WindowCount count(final ByteHorspool horspool,
+        final ByteBuffer buffer, final TextRange textRange, final int from)
+    {
+        final long offset = textRange.getByteRange().getLowerBound();
+        final int len = horspool.length();
+        final int end = buffer.limit();
+
+        int count = 0;
+        long first = -1L;
+        long lastEnd = -1L;
+        int index = from;
+
+        while ((index = horspool.indexOf(buffer, index, end)) != -1) {
+            if (first == -1L)
+                first = index + offset;
+            count++;
+            index += len;
+            lastEnd = index + offset;
+        }
+        return new WindowCount(textRange, buffer, count, first, lastEnd);
+    }
+
+    private static final class WindowCount
+    {
+        private final TextRange textRange;
+        private final ByteBuffer buffer;
+        private final int count;
+        private final long first;
+        private final long lastEnd;
+
+        private WindowCount(final TextRange textRange, final ByteBuffer buffer,
+            final int count, final long first, final long lastEnd)
+        {
+            this.textRange = textRange;
+            this.buffer = buffer;
+            this.count = count;
+            this.first = first;
+            this.lastEnd = lastEnd;
+        }
+    }
+
+    /*
+     * Find the first match at or after a char offset; buffers are released
+     * by the window tasks themselves
+     */
+    private final class IndexPipeline
+        extends WindowPipeline<Integer>
+    {
+        private final ByteHorspool horspool;
+        private final int start;
+
+        private int index = -1;
+
+        private IndexPipeline(final ByteHorspool horspool, final int start,
+            final boolean parallel)
+        {
+            super(decoder, parallel ? pool : null);
+            this.horspool = horspool;
+            this.start = start;
+        }
+
+        @Override
+        protected Integer process(final TextRange textRange)
+        {
+            try {
+                final ByteBuffer buffer = read(textRange, horspool.length());
+                try {
+                    return firstMatch(buffer, textRange);
+                } finally {
+                    source.release(buffer);
+                }
+            } catch (IOException e) {
+                throw new LargeTextException("I/O error", e);
+            }
+        }
+
+        private int firstMatch(final ByteBuffer buffer,
+            final TextRange textRange)
+            throws IOException
+        {
+            int charOffset = textRange.getCharRange().getLowerBound();
+            int counted = 0;
+            int index = 0;
+            while ((index = horspool.indexOf(buffer, index, buffer.limit()))
+                != -1) {
+                charOffset += translator.countChars(buffer, counted, index);
+                if (charOffset >= start)
+                    return charOffset;
+                counted = index;
+                index++;
+            }
+            return -1;
+        }
+
+        @Override
+        protected boolean merge(final Integer result)
+        {
+            if (result == -1)
+                return true;
+            index = result;
+            return false;
+        }
+    }
+
+    private final class CountingPipeline
+        extends WindowPipeline<WindowCount>
+    {
+        private final ByteHorspool horspool;
+
+        private long total = 0L;
+        private long lastEnd = 0L;
+
+        private CountingPipeline(final ByteHorspool horspool,
+            final boolean parallel)
+        {
+            super(decoder, parallel ? pool : null);
+            this.horspool = horspool;
+        }
+
+        @Override
+        protected WindowCount process(final TextRange textRange)
+        {
+            final ByteBuffer buffer;
+            try {
+                buffer = read(textRange, horspool.length());
+            } catch (IOException e) {
+                throw new LargeTextException("I/O error", e);
+            }
+            return count(horspool, buffer, textRange, 0);
+        }
+
+        @Override
+        protected boolean merge(final WindowCount windowCount)
+        {
+            try {
+                return doMerge(windowCount);
+            } finally {
+                source.release(windowCount.buffer);
+            }
+        }
+
+        @Override
+        protected void discard(final WindowCount windowCount)
+        {
+            source.release(windowCount.buffer);
+        }
+
+        private boolean doMerge(final WindowCount windowCount)
+        {
+            WindowCount result = windowCount;
+            if (result.count == 0)
+                return true;
+
+            /*
+             * The last match of a previous window has spilled over this one;
+             * count again from the end of that match.
+             */
+            if (result.first < lastEnd) {
+                final LongRange byteRange = result.textRange.getByteRange();
+                if (lastEnd >= byteRange.getUpperBound())
+                    return true;
+                result = count(horspool, result.buffer, result.textRange,
+                    (int) (lastEnd - byteRange.getLowerBound()));
+                if (result.count == 0)
+                    return true;
+            }
+
+            total += result.count;
+            lastEnd = result.lastEnd;
+            return true;
+        }
+    }
+}
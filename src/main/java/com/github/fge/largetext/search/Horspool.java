@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.search;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Boyer-Moore-Horspool search of a literal over a {@code char} array
+ *
+ * <p>The bad character tables are indexed by the low byte of characters
+ * only: a full table would need 65536 entries. When several characters of the
+ * needle share the same low byte, the smallest shift wins, which is always
+ * safe (at worst it is less effective).</p>
+ *
+ * <p>Both forward and backward searches are supported; the backward search
+ * uses a second table, built from the first character of the needle instead of
+ * the last.</p>
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+final class Horspool
+{
+    private static final int TABLE_SIZE = 256;
+    private static final int MASK = TABLE_SIZE - 1;
+
+    private final char[] needle;
+    private final int[] forward = new int[TABLE_SIZE];
+    private final int[] backward = new int[TABLE_SIZE];
+
+    Horspool(final CharSequence needle)
+    {
+        this.needle = needle.toString().toCharArray();
+        final int len = this.needle.length;
+
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            forward[i] = len;
+            backward[i] = len;
+        }
+        for (int i = 0; i < len - 1; i++)
+            forward[this.needle[i] & MASK] = len - 1 - i;
+        for (int i = len - 1; i > 0; i--)
+            backward[this.needle[i] & MASK] = i;
+    }
+
+    int length()
+    {
+        return needle.length;
+    }
+
+    /**
+     * Find the first occurrence of the needle
+     *
+     * @param text the text
+     * @param from the index to start from (inclusive)
+     * @param to the end of the text to consider (exclusive)
+     * @return the index of the first match, or -1 if not found
+     */
+    int indexOf(final char[] text, final int from, final int to)
+    {
+        final int len = needle.length;
+        final int last = len - 1;
+        final int max = to - len;
+        int i = from;
+        int j;
+        char c;
+
+        while (i <= max) {
+            c = text[i + last];
+            if (c == needle[last]) {
+                j = last - 1;
+                while (j >= 0 && text[i + j] == needle[j])
+                    j--;
+                if (j < 0)
+                    return i;
+            }
+            i += forward[c & MASK];
+        }
+        return -1;
+    }
+
+    /**
+     * Find the last occurrence of the needle
+     *
+     * @param text the text
+     * @param from the start of the text to consider (inclusive)
+     * @param to the end of the text to consider (exclusive)
+     * @return the index of the last match, or -1 if not found
+     */
+    int lastIndexOf(final char[] text, final int from, final int to)
+    {
+        final int len = needle.length;
+        int i = to - len;
+        int j;
+        char c;
+
+        while (i >= from) {
+            c = text[i];
+            if (c == needle[0]) {
+                j = 1;
+                while (j < len && text[i + j] == needle[j])
+                    j++;
+                if (j == len)
+                    return i;
+            }
+            i -= backward[c & MASK];
+        }
+        return -1;
+    }
+}
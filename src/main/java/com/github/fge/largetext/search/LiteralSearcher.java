@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.search;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextException;
+import com.github.fge.largetext.load.TextCache;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.range.IntRange;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Literal substring search
+ *
+ * <p>This class uses the Boyer-Moore-Horspool algorithm over private copies of
+ * text windows; each window is searched along with the {@code n - 1}
+ * characters following it, where {@code n} is the length of the needle, so
+ * that matches crossing a window boundary are found.</p>
+ *
+ * <p>All searches can either visit windows one by one, or search them in
+ * parallel using a {@link ForkJoinPool}. By default, {@link
+ * #indexOf(CharSequence, int)} and {@link #lastIndexOf(CharSequence, int)}
+ * search windows one by one, since they stop at the first match; {@link
+ * #countOccurrences(CharSequence)}, which needs to visit all windows anyway,
+ * searches them in parallel. Each method has a variant to choose.</p>
+ *
+ * <p>The semantics are the same as those of {@link String#indexOf(String,
+ * int)} and {@link String#lastIndexOf(String, int)}.</p>
+ *
+ * <p>If a {@link ByteSearcher} is provided, and the needle can be encoded,
+ * forward searches are delegated to it.</p>
+ *
+ * <p>Don't use directly! See {@link LargeText#indexOf(CharSequence, int)},
+ * {@link LargeText#lastIndexOf(CharSequence, int)} and {@link
+ * LargeText#countOccurrences(CharSequence)}.</p>
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public final class LiteralSearcher
+{
+    private final TextDecoder decoder;
+    private final TextCache cache;
+    private final ForkJoinPool pool;
+    @Nullable
+    private final ByteSearcher byteSearcher;
+
+    /**
+     * Constructor using the default pool
+     *
+     * @param decoder the text decoder
+     * @param cache the text cache
+     */
+    public LiteralSearcher(final TextDecoder decoder, final TextCache cache)
+    {
+        this(decoder, cache, WindowPipeline.DEFAULT_POOL);
+    }
+
+    /**
+     * Constructor using the default pool, and a byte level searcher
+     *
+     * @param decoder the text decoder
+     * @param cache the text cache
+     * @param byteSearcher the byte level searcher to use, if any
+     */
+    public LiteralSearcher(final TextDecoder decoder, final TextCache cache,
+        @Nullable final ByteSearcher byteSearcher)
+    {
+        this(decoder, cache, WindowPipeline.DEFAULT_POOL, byteSearcher);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param decoder the text decoder
+     * @param cache the text cache
+     * @param pool the pool to submit search tasks to
+     */
+    public LiteralSearcher(final TextDecoder decoder, final TextCache cache,
+        final ForkJoinPool pool)
+    {
+        this(decoder, cache, pool, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param decoder the text decoder
+     * @param cache the text cache
+     * @param pool the pool to submit search tasks to
+     * @param byteSearcher the byte level searcher to use, if any
+     */
+    public LiteralSearcher(final TextDecoder decoder, final TextCache cache,
+        final ForkJoinPool pool, @Nullable final ByteSearcher byteSearcher)
+    {
+        this.decoder = Preconditions.checkNotNull(decoder,
+            "decoder cannot be null");
+        this.cache = Preconditions.checkNotNull(cache, "cache cannot be null");
+        this.pool = Preconditions.checkNotNull(pool, "pool cannot be null");
+        this.byteSearcher = byteSearcher;
+    }
+
+    /**
+     * Find the first occurrence of a needle, starting from a given offset
+     *
+     * <p>Windows are searched one by one.</p>
+     *
+     * @param needle the needle
+     * @param from the offset to start from
+     * @return the offset of the first match, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     */
+    public int indexOf(final CharSequence needle, final int from)
+    {
+        return indexOf(needle, from, false);
+    }
+
+    /**
+     * Find the first occurrence of a needle, starting from a given offset,
+     * optionally searching windows in parallel
+     *
+     * <p>When searching in parallel, windows following the one being searched
+     * are searched ahead of time; this is wasted work if a match is found
+     * early, but makes searches for rare needles faster.</p>
+     *
+     * @param needle the needle
+     * @param from the offset to start from
+     * @param parallel whether to search windows in parallel
+     * @return the offset of the first match, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     */
+    public int indexOf(final CharSequence needle, final int from,
+        final boolean parallel)
+    {
+        Preconditions.checkNotNull(needle, "needle cannot be null");
+        final int start = Math.max(0, from);
+        if (needle.length() == 0)
+            return decoder.getRangeOrNull(start) != null ? start
+                : Math.min(start, decoder.getTotalChars());
+
+        final byte[] bytes = encode(needle);
+        if (bytes != null)
+            return byteSearcher.indexOf(bytes, start, parallel);
+
+        final IndexPipeline pipeline = new IndexPipeline(new Horspool(needle),
+            start, true, parallel);
+        pipeline.run(start);
+        return pipeline.index;
+    }
+
+    /**
+     * Find the last occurrence of a needle, starting backwards from a given
+     * offset
+     *
+     * <p>Note that unless the offset is small enough, this method needs to
+     * know the total number of characters in the text; it will therefore
+     * wait for the decoding process to complete.</p>
+     *
+     * <p>Windows are searched one by one.</p>
+     *
+     * @param needle the needle
+     * @param from the offset to start from
+     * @return the offset of the last match, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     */
+    public int lastIndexOf(final CharSequence needle, final int from)
+    {
+        return lastIndexOf(needle, from, false);
+    }
+
+    /**
+     * Find the last occurrence of a needle, starting backwards from a given
+     * offset, optionally searching windows in parallel
+     *
+     * @param needle the needle
+     * @param from the offset to start from
+     * @param parallel whether to search windows in parallel
+     * @return the offset of the last match, or -1 if not found
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see #lastIndexOf(CharSequence, int)
+     * @see #indexOf(CharSequence, int, boolean)
+     */
+    public int lastIndexOf(final CharSequence needle, final int from,
+        final boolean parallel)
+    {
+        Preconditions.checkNotNull(needle, "needle cannot be null");
+        final int len = needle.length();
+        if (from < 0)
+            return -1;
+
+        int offset = from;
+        if (decoder.getRangeOrNull(WindowText.saturatedAdd(from, len)) == null)
+            offset = Math.min(from, decoder.getTotalChars() - len);
+        if (offset < 0)
+            return -1;
+        if (len == 0)
+            return offset;
+
+        final IndexPipeline pipeline = new IndexPipeline(new Horspool(needle),
+            offset, false, parallel);
+        pipeline.runBackwards(offset);
+        return pipeline.index;
+    }
+
+    /**
+     * Count the number of (non overlapping) occurrences of a needle
+     *
+     * <p>The count is the same as the number of successive matches that
+     * {@link #indexOf(CharSequence, int)} would find, each search starting
+     * after the end of the previous match. Windows are searched in
+     * parallel.</p>
+     *
+     * @param needle the needle
+     * @return the number of occurrences
+     * @throws IllegalArgumentException needle is empty
+     * @throws LargeTextException search was interrupted, or failed
+     */
+    public long countOccurrences(final CharSequence needle)
+    {
+        return countOccurrences(needle, true);
+    }
+
+    /**
+     * Count the number of (non overlapping) occurrences of a needle,
+     * optionally searching windows in parallel
+     *
+     * @param needle the needle
+     * @param parallel whether to search windows in parallel
+     * @return the number of occurrences
+     * @throws IllegalArgumentException needle is empty
+     * @throws LargeTextException search was interrupted, or failed
+     *
+     * @see #countOccurrences(CharSequence)
+     */
+    public long countOccurrences(final CharSequence needle,
+        final boolean parallel)
+    {
+        Preconditions.checkNotNull(needle, "needle cannot be null");
+        Preconditions.checkArgument(needle.length() > 0,
+            "needle cannot be empty");
+        final byte[] bytes = encode(needle);
+        if (bytes != null)
+            return byteSearcher.countOccurrences(bytes, parallel);
+        final CountingPipeline pipeline
+            = new CountingPipeline(new Horspool(needle), parallel);
+        pipeline.run(0);
+        return pipeline.total;
+    }
+
+    @Nullable
+    private byte[] encode(final CharSequence needle)
+    {
+        return byteSearcher == null ? null : byteSearcher.encode(needle);
+    }
+
+    /*
+     * Count matches in a window, starting from the given absolute offset; only
+     * matches starting within the window itself are counted
+     */
+    private static WindowCount count(final Horspool horspool,
+        final WindowText text, final int from)
+    {
+        final char[] array = text.getBuffer().array();
+        final int offset = text.getOffset();
+        final int len = horspool.length();
+        final int end = text.getBuffer().limit();
+
+        int count = 0;
+        int first = -1;
+        int lastEnd = -1;
+        int index = from - offset;
+
+        while ((index = horspool.indexOf(array, index, end)) != -1) {
+            if (first == -1)
+                first = index + offset;
+            count++;
+            index += len;
+            lastEnd = index + offset;
+        }
+        return new WindowCount(text, count, first, lastEnd);
+    }
+
+    private static final class WindowCount
+    {
+        private final WindowText text;
+        private final int count;
+        private final int first;
+        private final int lastEnd;
+
+        private WindowCount(final WindowText text, final int count,
+            final int first, final int lastEnd)
+        {
+            this.text = text;
+            this.count = count;
+            this.first = first;
+            this.lastEnd = lastEnd;
+        }
+    }
+
+    /*
+     * Find the first match at or after an offset (forward), or the last match
+     * at or before an offset (backwards)
+     */
+    private final class IndexPipeline
+        extends WindowPipeline<Integer>
+    {
+        private final Horspool horspool;
+        private final int offset;
+        private final boolean forward;
+
+        private int index = -1;
+
+        private IndexPipeline(final Horspool horspool, final int offset,
+            final boolean forward, final boolean parallel)
+        {
+            super(decoder, parallel ? pool : null);
+            this.horspool = horspool;
+            this.offset = offset;
+            this.forward = forward;
+        }
+
+        @Override
+        protected Integer process(final TextRange textRange)
+        {
+            final IntRange charRange = textRange.getCharRange();
+            final int len = horspool.length();
+            final WindowText text = WindowText.load(decoder, cache, textRange,
+                0, len - 1);
+            final char[] array = text.getBuffer().array();
+            final int textOffset = text.getOffset();
+            final int ret;
+            if (forward)
+                ret = horspool.indexOf(array, Math.max(offset,
+                    charRange.getLowerBound()) - textOffset,
+                    text.getBuffer().limit());
+            else
+                ret = horspool.lastIndexOf(array,
+                    charRange.getLowerBound() - textOffset,
+                    Math.min(offset, charRange.getUpperBound() - 1)
+                    - textOffset + len);
+            return ret == -1 ? -1 : ret + textOffset;
+        }
+
+        @Override
+        protected boolean merge(final Integer result)
+        {
+            if (result == -1)
+                return true;
+            index = result;
+            return false;
+        }
+    }
+
+    private final class CountingPipeline
+        extends WindowPipeline<WindowCount>
+    {
+        private final Horspool horspool;
+
+        private long total = 0L;
+        private int lastEnd = 0;
+
+        private CountingPipeline(final Horspool horspool,
+            final boolean parallel)
+        {
+            super(decoder, parallel ? pool : null);
+            this.horspool = horspool;
+        }
+
+        @Override
+        protected WindowCount process(final TextRange textRange)
+        {
+            final WindowText text = WindowText.load(decoder, cache, textRange,
+                0, horspool.length() - 1);
+            return count(horspool, text,
+                textRange.getCharRange().getLowerBound());
+        }
+
+        @Override
+        protected boolean merge(final WindowCount windowCount)
+        {
+            WindowCount result = windowCount;
+            if (result.count == 0)
+                return true;
+
+            /*
+             * The last match of a previous window has spilled over this one;
+             * count again from the end of that match.
+             */
+            if (result.first < lastEnd) {
+                final WindowText text = result.text;
+                if (lastEnd >= text.getTextRange().getCharRange()
+                    .getUpperBound())
+                    return true;
+                result = count(horspool, text, lastEnd);
+                if (result.count == 0)
+                    return true;
+            }
+
+            total += result.count;
+            lastEnd = result.lastEnd;
+            return true;
+        }
+    }
+}
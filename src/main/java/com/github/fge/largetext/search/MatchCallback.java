@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.search;
+
+import com.github.fge.largetext.range.IntRange;
+
+/**
+ * Callback invoked for each match found by a search
+ *
+ * <p>Callbacks are always invoked from the thread which initiated the search,
+ * and in the order of the matches in the text, even if the search itself
+ * is performed by several threads.</p>
+ *
+ * @see RegexSearcher
+ */
+public interface MatchCallback
+{
+    /**
+     * Method called for each match
+     *
+     * @param range the <em>absolute</em> range of characters of the match
+     */
+    void onMatch(IntRange range);
+}
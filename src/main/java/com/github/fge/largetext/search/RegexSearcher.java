@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.search;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextException;
+import com.github.fge.largetext.load.TextCache;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.range.IntRange;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A parallel regular expression search engine
+ *
+ * <p>Each {@link TextRange} of the text is searched by a separate task
+ * submitted to a {@link ForkJoinPool}; windows are submitted as soon as the
+ * {@link TextDecoder} has made them available, so the search runs alongside
+ * the decoding process.</p>
+ *
+ * <p>Each task searches its window plus a number of characters after it (the
+ * "overlap"), which is the maximum length of a match you expect; matches
+ * starting within the overlap are left to the task in charge of the next
+ * window. Regions use transparent, non anchoring bounds, so that lookarounds,
+ * word boundaries and anchors behave as they would over the whole text.</p>
+ *
+ * <p>Results are then merged in order, in the calling thread. If a match
+ * straddles two windows, the matches of the next window which overlap it are
+ * discarded and the next window is searched again from the end of that match;
+ * the result is therefore the same as what successive calls to {@link
+ * Matcher#find()} over the whole text would produce, provided that no match is
+ * longer than the overlap.</p>
+ *
+ * <p>Don't use directly! See {@link LargeText#findAll(Pattern, int)} and
+ * {@link LargeText#findAll(Pattern, int, MatchCallback)}.</p>
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public final class RegexSearcher
+{
+    private final TextDecoder decoder;
+    private final TextCache cache;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor using the default pool
+     *
+     * @param decoder the text decoder
+     * @param cache the text cache
+     */
+    public RegexSearcher(final TextDecoder decoder, final TextCache cache)
+    {
+        this(decoder, cache, WindowPipeline.DEFAULT_POOL);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param decoder the text decoder
+     * @param cache the text cache
+     * @param pool the pool to submit search tasks to
+     */
+    public RegexSearcher(final TextDecoder decoder, final TextCache cache,
+        final ForkJoinPool pool)
+    {
+        this.decoder = Preconditions.checkNotNull(decoder,
+            "decoder cannot be null");
+        this.cache = Preconditions.checkNotNull(cache, "cache cannot be null");
+        this.pool = Preconditions.checkNotNull(pool, "pool cannot be null");
+    }
+
+    /**
+     * Find all matches of a pattern, as a list
+     *
+     * @param pattern the pattern
+     * @param maxMatchLength the maximum length of a match
+     * @return the list of match ranges, in order
+     * @throws IllegalArgumentException maximum match length is negative
+     * @throws LargeTextException search was interrupted, or failed
+     */
+    public List<IntRange> findAll(final Pattern pattern,
+        final int maxMatchLength)
+    {
+        final List<IntRange> list = new ArrayList<>();
+        findAll(pattern, maxMatchLength, new MatchCallback()
+        {
+            @Override
+            public void onMatch(final IntRange range)
+            {
+                list.add(range);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Find all matches of a pattern, and report them to a callback
+     *
+     * @param pattern the pattern
+     * @param maxMatchLength the maximum length of a match
+     * @param callback the callback
+     * @throws IllegalArgumentException maximum match length is negative
+     * @throws LargeTextException search was interrupted, or failed
+     */
+    public void findAll(final Pattern pattern, final int maxMatchLength,
+        final MatchCallback callback)
+    {
+        Preconditions.checkNotNull(pattern, "pattern cannot be null");
+        Preconditions.checkArgument(maxMatchLength >= 0,
+            "maximum match length must not be negative");
+        Preconditions.checkNotNull(callback, "callback cannot be null");
+
+        /*
+         * We need at least one character of context on each side, otherwise
+         * the start and end of the window would be considered as the start and
+         * end of input.
+         */
+        final int overlap = Math.max(1, maxMatchLength);
+        new Pipeline(pattern, overlap, callback).run(0);
+    }
+
+    /*
+     * Search a window, starting from the given absolute offset; only matches
+     * starting within the window itself are retained.
+     */
+    private static List<IntRange> search(final Pattern pattern,
+        final WindowText text, final int from, final int overlap)
+    {
+        final List<IntRange> list = new ArrayList<>();
+        final IntRange charRange = text.getTextRange().getCharRange();
+        final int limit = charRange.getUpperBound();
+        final int offset = text.getOffset();
+        final int regionEnd = Math.min(text.getEnd(),
+            WindowText.saturatedAdd(limit, overlap));
+
+        final Matcher matcher = pattern.matcher(text.getBuffer())
+            .useTransparentBounds(true).useAnchoringBounds(false)
+            .region(from - offset, regionEnd - offset);
+
+        /*
+         * If this is the last window, an empty match may be found at the very
+         * end of the text
+         */
+        final boolean last = text.getEnd() == limit;
+
+        int start;
+        while (matcher.find()) {
+            start = matcher.start() + offset;
+            if (start > limit || start == limit && !last)
+                break;
+            list.add(new IntRange(start, matcher.end() + offset));
+        }
+        return list;
+    }
+
+    private static final class WindowMatches
+    {
+        private final WindowText text;
+        private final List<IntRange> matches;
+
+        private WindowMatches(final WindowText text,
+            final List<IntRange> matches)
+        {
+            this.text = text;
+            this.matches = matches;
+        }
+    }
+
+    private final class Pipeline
+        extends WindowPipeline<WindowMatches>
+    {
+        private final Pattern pattern;
+        private final int overlap;
+        private final MatchCallback callback;
+
+        private int lastEnd = 0;
+
+        private Pipeline(final Pattern pattern, final int overlap,
+            final MatchCallback callback)
+        {
+            super(decoder, pool);
+            this.pattern = pattern;
+            this.overlap = overlap;
+            this.callback = callback;
+        }
+
+        @Override
+        protected WindowMatches process(final TextRange textRange)
+        {
+            /*
+             * One more character after the overlap, so that the end of the
+             * region is not mistaken for the end of input
+             */
+            final WindowText text = WindowText.load(decoder, cache, textRange,
+                overlap, WindowText.saturatedAdd(overlap, 1));
+            final int start = textRange.getCharRange().getLowerBound();
+            return new WindowMatches(text, search(pattern, text, start,
+                overlap));
+        }
+
+        @Override
+        protected boolean merge(final WindowMatches windowMatches)
+        {
+            List<IntRange> matches = windowMatches.matches;
+            if (matches.isEmpty())
+                return true;
+
+            /*
+             * The last match of a previous window has spilled over this one;
+             * the matches found by the task cannot be trusted, search again.
+             */
+            if (matches.get(0).getLowerBound() < lastEnd) {
+                final WindowText text = windowMatches.text;
+                if (lastEnd >= text.getTextRange().getCharRange()
+                    .getUpperBound())
+                    return true;
+                matches = search(pattern, text, lastEnd, overlap);
+            }
+
+            for (final IntRange match: matches) {
+                callback.onMatch(match);
+                lastEnd = match.getUpperBound();
+            }
+            return true;
+        }
+    }
+}
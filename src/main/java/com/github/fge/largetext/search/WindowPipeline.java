@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.search;
+
+import com.github.fge.largetext.LargeTextException;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.load.TextRange;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process text windows in parallel, and merge the results in order
+ *
+ * <p>Text ranges are obtained from the {@link TextDecoder} in order, and as
+ * soon as they are available; each of them is then submitted to a {@link
+ * ForkJoinPool} for processing (see {@link #process(TextRange)}). Results are
+ * merged in the thread calling {@link #run(int)}, in the order of the
+ * windows (see {@link #merge(Object)}).</p>
+ *
+ * <p>The number of windows being processed at any given time is bounded to
+ * twice the parallelism of the pool, so as to not load the whole text in
+ * memory if merging is slower than processing.</p>
+ *
+ * <p>If no pool is given, windows are processed one by one, in the thread
+ * calling {@link #run(int)}; each result is merged before the next window is
+ * processed.</p>
+ *
+ * <p>Windows can also be processed backwards (see {@link
+ * #runBackwards(int)}); results are then merged from the last window to the
+ * first.</p>
+ *
+ * <p>If the run stops early (because merging says so, or on failure or
+ * interruption), results of windows which were processed but not merged are
+ * given to {@link #discard(Object)}; this includes results of windows still
+ * being processed at that time, once they are.</p>
+ *
+ * <p>An instance of this class is meant to be used for one run only.</p>
+ *
+ * @param <R> the type of per-window results
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+abstract class WindowPipeline<R>
+{
+    /*
+     * Java 7 has no common pool, so we have our own. Its threads are daemon
+     * threads, so there is no need to ever shut it down.
+     */
+    static final ForkJoinPool DEFAULT_POOL = new ForkJoinPool();
+
+    private final TextDecoder decoder;
+    @Nullable
+    private final ForkJoinPool pool;
+
+    WindowPipeline(final TextDecoder decoder, @Nullable final ForkJoinPool pool)
+    {
+        this.decoder = decoder;
+        this.pool = pool;
+    }
+
+    /**
+     * Process one window; called from a pool thread
+     *
+     * @param textRange the window
+     * @return the result
+     */
+    protected abstract R process(final TextRange textRange);
+
+    /**
+     * Merge the result of one window; called from the thread calling {@link
+     * #run(int)}, in order
+     *
+     * @param result the result
+     * @return true if the remaining windows should be processed, false to stop
+     */
+    protected abstract boolean merge(final R result);
+
+    /**
+     * Dispose of the result of one window which will not be merged
+     *
+     * <p>This is called when a run stops early, either from the thread
+     * calling {@link #run(int)} or from a pool thread. This implementation
+     * does nothing; results holding resources (for instance, buffers which
+     * need to be released) should release them here.</p>
+     *
+     * @param result the result
+     */
+    protected void discard(final R result)
+    {
+    }
+
+    /**
+     * Process all windows, starting from the window containing the given
+     * offset
+     *
+     * @param from the offset
+     * @throws LargeTextException processing was interrupted, or failed
+     */
+    final void run(final int from)
+    {
+        runFrom(decoder.getRangeOrNull(Math.max(0, from)), true);
+    }
+
+    /**
+     * Process all windows backwards, starting from the window containing the
+     * given offset
+     *
+     * <p>The offset must be within the text.</p>
+     *
+     * @param from the offset
+     * @throws LargeTextException processing was interrupted, or failed
+     * @throws IndexOutOfBoundsException offset is out of range
+     */
+    final void runBackwards(final int from)
+    {
+        runFrom(decoder.getRange(from), false);
+    }
+
+    private void runFrom(@Nullable final TextRange first,
+        final boolean forward)
+    {
+        if (pool == null) {
+            TextRange textRange = first;
+            while (textRange != null && merge(process(textRange)))
+                textRange = next(textRange, forward);
+            return;
+        }
+
+        final int maxPending = 2 * pool.getParallelism();
+        final Queue<Pending<R>> pending = new ArrayDeque<>();
+
+        try {
+            TextRange textRange = first;
+            AtomicInteger state;
+            while (textRange != null) {
+                state = new AtomicInteger(Pending.RUNNING);
+                pending.add(new Pending<>(pool.submit(task(textRange, state)),
+                    state));
+                if (pending.size() >= maxPending && !mergeNext(pending))
+                    return;
+                textRange = next(textRange, forward);
+            }
+            while (!pending.isEmpty())
+                if (!mergeNext(pending))
+                    return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LargeTextException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new LargeTextException("Unhandled exception", e.getCause());
+        } finally {
+            for (final Pending<R> entry: pending)
+                abandon(entry);
+        }
+    }
+
+    /*
+     * The head of the queue is only removed once its result has been obtained,
+     * so that it is discarded if we are interrupted while waiting for it
+     */
+    private boolean mergeNext(final Queue<Pending<R>> pending)
+        throws InterruptedException, ExecutionException
+    {
+        final R result = pending.element().future.get();
+        pending.remove();
+        return merge(result);
+    }
+
+    /*
+     * If the task has not handed over its result yet, it will discard it
+     * itself (if it runs at all); otherwise, the result is there, and we
+     * discard it. Tasks are not interrupted: an interrupted read would close
+     * file channels.
+     */
+    private void abandon(final Pending<R> entry)
+    {
+        if (entry.state.compareAndSet(Pending.RUNNING, Pending.ABANDONED)) {
+            entry.future.cancel(false);
+            return;
+        }
+        try {
+            discard(Uninterruptibles.getUninterruptibly(entry.future));
+        } catch (ExecutionException ignored) {
+            // Cannot happen: the result was handed over
+        }
+    }
+
+    @Nullable
+    private TextRange next(final TextRange textRange, final boolean forward)
+    {
+        if (forward)
+            return decoder.getRangeOrNull(textRange.getCharRange()
+                .getUpperBound());
+        final int lowerBound = textRange.getCharRange().getLowerBound();
+        return lowerBound == 0 ? null : decoder.getRange(lowerBound - 1);
+    }
+
+    private Callable<R> task(final TextRange textRange,
+        final AtomicInteger state)
+    {
+        return new Callable<R>()
+        {
+            @Override
+            public R call()
+            {
+                final R ret = process(textRange);
+                if (!state.compareAndSet(Pending.RUNNING, Pending.DONE))
+                    discard(ret);
+                return ret;
+            }
+        };
+    }
+
+    private static final class Pending<R>
+    {
+        private static final int RUNNING = 0;
+        private static final int DONE = 1;
+        private static final int ABANDONED = 2;
+
+        private final Future<R> future;
+        private final AtomicInteger state;
+
+        private Pending(final Future<R> future, final AtomicInteger state)
+        {
+            this.future = future;
+            this.state = state;
+        }
+    }
+}
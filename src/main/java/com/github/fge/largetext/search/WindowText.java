@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.search;
+
+import com.github.fge.largetext.load.TextCache;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.range.IntRange;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The characters of one {@link TextRange}, along with some context
+ *
+ * <p>Searches are performed window by window; but a match may start in one
+ * window and end in another (or need to look behind the start of the window).
+ * This class therefore copies the characters of a text range, plus a given
+ * number of characters before and after it (where available), into a single,
+ * private {@link CharBuffer}.</p>
+ *
+ * <p>The buffer is a copy: unlike buffers obtained from the {@link TextCache},
+ * it can be used freely by one search thread (it has a backing array, and its
+ * position can be changed).</p>
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+final class WindowText
+{
+    private final TextRange textRange;
+    private final int offset;
+    private final CharBuffer buffer;
+
+    private WindowText(final TextRange textRange, final int offset,
+        final CharBuffer buffer)
+    {
+        this.textRange = textRange;
+        this.offset = offset;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Load the characters of a text range, with context
+     *
+     * @param decoder the decoder
+     * @param cache the text cache
+     * @param textRange the text range
+     * @param before the number of characters to load before the range
+     * @param after the number of characters to load after the range
+     * @return a new instance
+     */
+    static WindowText load(final TextDecoder decoder, final TextCache cache,
+        final TextRange textRange, final int before, final int after)
+    {
+        final IntRange charRange = textRange.getCharRange();
+        final int lowerBound = Math.max(0, charRange.getLowerBound() - before);
+        final int wanted = saturatedAdd(charRange.getUpperBound(), after);
+
+        final List<TextRange> list = new ArrayList<>();
+        if (lowerBound < charRange.getLowerBound())
+            list.addAll(decoder.getRanges(new IntRange(lowerBound,
+                charRange.getLowerBound())));
+        list.add(textRange);
+
+        int upperBound = charRange.getUpperBound();
+        TextRange next;
+        while (upperBound < wanted) {
+            next = decoder.getRangeOrNull(upperBound);
+            if (next == null)
+                break;
+            list.add(next);
+            upperBound = next.getCharRange().getUpperBound();
+        }
+        upperBound = Math.min(upperBound, wanted);
+
+        final CharBuffer buffer
+            = CharBuffer.allocate(upperBound - lowerBound);
+        final Map<TextRange, CharBuffer> map = cache.loadAll(list);
+
+        IntRange range;
+        int start, end;
+        for (final Map.Entry<TextRange, CharBuffer> entry: map.entrySet()) {
+            range = entry.getKey().getCharRange();
+            start = Math.max(lowerBound, range.getLowerBound())
+                - range.getLowerBound();
+            end = Math.min(upperBound, range.getUpperBound())
+                - range.getLowerBound();
+            buffer.put(entry.getValue().subSequence(start, end));
+        }
+        buffer.flip();
+
+        return new WindowText(textRange, lowerBound, buffer);
+    }
+
+    /**
+     * Get the text range this window was loaded for
+     *
+     * @return the text range
+     */
+    TextRange getTextRange()
+    {
+        return textRange;
+    }
+
+    /**
+     * Get the absolute offset of the first character of the buffer
+     *
+     * @return the offset
+     */
+    int getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Get the absolute offset of the end of the buffer (exclusive)
+     *
+     * @return the offset
+     */
+    int getEnd()
+    {
+        return offset + buffer.limit();
+    }
+
+    /**
+     * Get the buffer
+     *
+     * @return the buffer; its position is 0 and its limit is its length
+     */
+    CharBuffer getBuffer()
+    {
+        return buffer;
+    }
+
+    static int saturatedAdd(final int a, final int b)
+    {
+        return (int) Math.min((long) a + b, (long) Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+/**
+ * Searching a {@link com.github.fge.largetext.LargeText}
+ *
+ * <p>Using a {@link java.util.regex.Matcher} directly over a {@code LargeText}
+ * instance works, but it is single threaded, and every character goes through
+ * {@link com.github.fge.largetext.LargeText#charAt(int)}. The classes in this
+ * package instead search the text window by window (that is, {@link
+ * com.github.fge.largetext.load.TextRange} by {@code TextRange}), in parallel,
+ * over private copies of the window contents.</p>
+ *
+ * <p>Since a match may straddle two windows, each window is searched along with
+ * some context from the windows around it; matches found in this context are
+ * then reconciled so that the results are the same as those of a sequential
+ * search.</p>
+ */
+package com.github.fge.largetext.search;
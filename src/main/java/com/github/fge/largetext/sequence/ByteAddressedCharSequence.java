@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.sequence;
+
+import com.github.fge.largetext.LargeTextException;
+import com.github.fge.largetext.load.OffsetTranslator;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.load.TextRange;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * A character sequence decoded at a given byte offset
+ *
+ * <p>Instances of this class are obtained from {@link
+ * com.github.fge.largetext.LargeText#viewAtByte(long, int)}. Their contents
+ * are decoded independently of the main decoding process, which means they
+ * are available immediately; however, the char offset of the first character
+ * in the whole text is not known until the decoding process reaches it.</p>
+ *
+ * <p>Use {@link #isCharOffsetKnown()} to check whether {@link #getCharOffset()}
+ * will return immediately; once computed, the char offset is remembered.</p>
+ *
+ * <p>Note that subsequences of this sequence are plain character sequences.
+ * </p>
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public final class ByteAddressedCharSequence
+    implements CharSequence
+{
+    private final TextDecoder decoder;
+    private final OffsetTranslator translator;
+    private final long byteOffset;
+    private final boolean atEnd;
+    private final CharBuffer buffer;
+
+    private volatile int charOffset = -1;
+
+    /**
+     * Constructor
+     *
+     * @param decoder the text decoder
+     * @param translator the offset translator
+     * @param byteOffset the byte offset of the first character
+     * @param atEnd true if the byte offset is the size of the file
+     * @param buffer the decoded characters
+     */
+    public ByteAddressedCharSequence(final TextDecoder decoder,
+        final OffsetTranslator translator, final long byteOffset,
+        final boolean atEnd, final CharBuffer buffer)
+    {
+        this.decoder = Preconditions.checkNotNull(decoder,
+            "decoder cannot be null");
+        this.translator = Preconditions.checkNotNull(translator,
+            "translator cannot be null");
+        this.byteOffset = byteOffset;
+        this.atEnd = atEnd;
+        this.buffer = Preconditions.checkNotNull(buffer,
+            "buffer cannot be null");
+    }
+
+    /**
+     * Get the byte offset of the first character of this sequence
+     *
+     * <p>This may be greater than the byte offset which was requested, if it
+     * was not on a character boundary.</p>
+     *
+     * @return the byte offset
+     */
+    public long getByteOffset()
+    {
+        return byteOffset;
+    }
+
+    /**
+     * Tell whether the char offset of this sequence is available without
+     * waiting
+     *
+     * @return true if {@link #getCharOffset()} will not wait
+     */
+    public boolean isCharOffsetKnown()
+    {
+        return charOffset != -1 || !atEnd && decoder.isByteDecoded(byteOffset);
+    }
+
+    /**
+     * Get the char offset of the first character of this sequence
+     *
+     * <p>This method waits for the decoding process to reach the byte offset
+     * of this sequence, if necessary.</p>
+     *
+     * @return the char offset
+     * @throws LargeTextException method has been interrupted, or an I/O or
+     * decoding error has occurred
+     */
+    public int getCharOffset()
+    {
+        int ret = charOffset;
+        if (ret != -1)
+            return ret;
+        if (atEnd) {
+            ret = decoder.getTotalChars();
+        } else {
+            final TextRange textRange = decoder.getRangeForByte(byteOffset);
+            try {
+                ret = translator.charOffsetOf(textRange, byteOffset);
+            } catch (IOException e) {
+                throw new LargeTextException("I/O error", e);
+            }
+        }
+        charOffset = ret;
+        return ret;
+    }
+
+    @Override
+    public int length()
+    {
+        return buffer.length();
+    }
+
+    @Override
+    public char charAt(final int index)
+    {
+        return buffer.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end)
+    {
+        return buffer.subSequence(start, end);
+    }
+
+    @Override
+    public String toString()
+    {
+        return buffer.toString();
+    }
+}
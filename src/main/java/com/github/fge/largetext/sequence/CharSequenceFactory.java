@@ -22,6 +22,7 @@ import com.github.fge.largetext.LargeText;
 import com.github.fge.largetext.load.TextCache;
 import com.github.fge.largetext.load.TextDecoder;
 import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.metrics.MetricsListener;
 import com.github.fge.largetext.range.IntRange;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableRangeMap;
@@ -52,12 +53,27 @@ public final class CharSequenceFactory
 {
     private final TextDecoder decoder;
     private final TextCache loader;
+    private final MetricsListener metrics;
 
     public CharSequenceFactory(final TextDecoder decoder,
         final TextCache loader)
+    {
+        this(decoder, loader, MetricsListener.NONE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param decoder the text decoder
+     * @param loader the text cache
+     * @param metrics the listener to report subsequences to
+     */
+    public CharSequenceFactory(final TextDecoder decoder,
+        final TextCache loader, final MetricsListener metrics)
     {
         this.decoder = decoder;
         this.loader = loader;
+        this.metrics = metrics;
     }
 
     /**
@@ -76,6 +92,8 @@ public final class CharSequenceFactory
         Preconditions.checkNotNull(range, "range cannot be null");
         if (range.isEmpty())
             return EmptyCharSequence.INSTANCE;
+        metrics.starting(MetricsListener.Operation.SUB_SEQUENCE);
+        final long startTime = System.nanoTime();
         final List<TextRange> textRanges = decoder.getRanges(range);
         if (textRanges.size() == 1) {
             final TextRange textRange = textRanges.get(0);
@@ -83,6 +101,7 @@ public final class CharSequenceFactory
             final CharBuffer buffer = loader.load(textRange);
             final int start = range.getLowerBound() - charRange.getLowerBound();
             final int end = range.getUpperBound() - charRange.getLowerBound();
+            metrics.subSequence(range, 1, System.nanoTime() - startTime);
             return buffer.subSequence(start, end);
         }
         final Map<TextRange, CharBuffer> map = loader.loadAll(textRanges);
@@ -93,6 +112,10 @@ public final class CharSequenceFactory
             builder.put(entry.getKey().getCharRange().asGuavaRange(),
                 entry.getValue());
 
-        return new MultiRangeCharSequence(this, range, builder.build());
+        final CharSequence ret
+            = new MultiRangeCharSequence(this, range, builder.build());
+        metrics.subSequence(range, textRanges.size(),
+            System.nanoTime() - startTime);
+        return ret;
     }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.sequence;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link CharSequence} made of the concatenation of other sequences
+ *
+ * <p>This is used for subsequences of texts spanning several files, where
+ * each part is obtained from the {@link CharSequenceFactory} of one file.</p>
+ *
+ * <p>Don't use directly!</p>
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class CompositeCharSequence
+    implements CharSequence
+{
+    private final List<CharSequence> parts;
+    /*
+     * starts[i] is the offset of the first character of part i; the last
+     * element is the total length
+     */
+    private final int[] starts;
+
+    /**
+     * Build a sequence from a list of parts
+     *
+     * @param parts the parts
+     * @return a sequence; if there is only one part, that part
+     */
+    public static CharSequence of(final List<? extends CharSequence> parts)
+    {
+        Preconditions.checkNotNull(parts, "parts cannot be null");
+        if (parts.isEmpty())
+            return EmptyCharSequence.INSTANCE;
+        if (parts.size() == 1)
+            return parts.get(0);
+        return new CompositeCharSequence(parts);
+    }
+
+    private CompositeCharSequence(final List<? extends CharSequence> parts)
+    {
+        this.parts = ImmutableList.copyOf(parts);
+        starts = new int[parts.size() + 1];
+        for (int i = 0; i < parts.size(); i++)
+            starts[i + 1] = starts[i] + parts.get(i).length();
+    }
+
+    @Override
+    public int length()
+    {
+        return starts[parts.size()];
+    }
+
+    @Override
+    public char charAt(final int index)
+    {
+        if (index < 0 || index >= length())
+            throw new IndexOutOfBoundsException(index + " out of range");
+        final int part = partOf(index);
+        return parts.get(part).charAt(index - starts[part]);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end)
+    {
+        if (start < 0 || end > length() || start > end)
+            throw new IndexOutOfBoundsException("illegal range requested: ["
+                + start + ", " + end + ")");
+        if (start == end)
+            return EmptyCharSequence.INSTANCE;
+        if (start == 0 && end == length())
+            return this;
+
+        final int first = partOf(start);
+        final int last = partOf(end - 1);
+        final ImmutableList.Builder<CharSequence> builder
+            = ImmutableList.builder();
+        int from, to;
+        for (int i = first; i <= last; i++) {
+            from = Math.max(start, starts[i]) - starts[i];
+            to = Math.min(end, starts[i + 1]) - starts[i];
+            builder.add(parts.get(i).subSequence(from, to));
+        }
+        return of(builder.build());
+    }
+
+    @Nonnull
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder(length());
+        for (final CharSequence part: parts)
+            sb.append(part);
+        return sb.toString();
+    }
+
+    /*
+     * Index of the part containing the given offset; empty parts are skipped
+     * since binarySearch() may return any of several equal elements
+     */
+    private int partOf(final int index)
+    {
+        int ret = Arrays.binarySearch(starts, index);
+        if (ret < 0)
+            return -ret - 2;
+        while (ret < parts.size() - 1 && starts[ret + 1] == index)
+            ret++;
+        return ret;
+    }
+}
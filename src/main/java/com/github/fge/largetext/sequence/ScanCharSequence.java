@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.sequence;
+
+import com.github.fge.largetext.load.TextCache;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.range.IntRange;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.CharBuffer;
+
+/**
+ * A character sequence for sequential scans of a whole text
+ *
+ * <p>Unlike {@link com.github.fge.largetext.LargeText}, this sequence does not
+ * admit the windows it reads into the text cache (see {@link
+ * TextCache#withoutAdmission()}): windows already in the cache are used, and
+ * others are decoded into private buffers, which are reused. Two windows are
+ * kept at any time, so that going back a little across a window boundary
+ * (as regular expressions may do) does not decode windows over and over.</p>
+ *
+ * <p>Subsequences are copies; they do not depend on the private buffers.</p>
+ *
+ * <p>This class is not thread safe; use one instance per thread.</p>
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+public final class ScanCharSequence
+    implements CharSequence
+{
+    private final TextDecoder decoder;
+    private final TextCache cache;
+    private final CharSequenceFactory factory;
+
+    private final Window[] windows = { new Window(), new Window() };
+    private int current = 0;
+
+    /**
+     * Constructor
+     *
+     * @param decoder the text decoder
+     * @param cache the text cache; a view of it which does not admit new
+     * entries is used
+     */
+    public ScanCharSequence(final TextDecoder decoder, final TextCache cache)
+    {
+        this.decoder = Preconditions.checkNotNull(decoder,
+            "decoder cannot be null");
+        this.cache = Preconditions.checkNotNull(cache, "cache cannot be null")
+            .withoutAdmission();
+        factory = new CharSequenceFactory(decoder, this.cache);
+    }
+
+    @Override
+    public int length()
+    {
+        return decoder.getTotalChars();
+    }
+
+    @Override
+    public char charAt(final int index)
+    {
+        Window window = windows[current];
+        if (window.contains(index))
+            return window.charAt(index);
+        if (index < 0)
+            throw new IndexOutOfBoundsException("negative index: " + index);
+        current = 1 - current;
+        window = windows[current];
+        if (!window.contains(index))
+            window.load(decoder.getRange(index));
+        return window.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end)
+    {
+        return factory.getSequence(new IntRange(start, end));
+    }
+
+    /**
+     * *gasp* the whole text as a string...
+     *
+     * @return something veeery huge
+     */
+    @Nonnull
+    @Override
+    public String toString()
+    {
+        return subSequence(0, length()).toString();
+    }
+
+    @NotThreadSafe
+    private final class Window
+    {
+        private int lowerBound = 0;
+        private int upperBound = 0;
+        private CharBuffer scratch = CharBuffer.allocate(0);
+        private CharBuffer buffer = scratch;
+
+        private boolean contains(final int index)
+        {
+            return index >= lowerBound && index < upperBound;
+        }
+
+        private char charAt(final int index)
+        {
+            return buffer.get(index - lowerBound);
+        }
+
+        private void load(final TextRange textRange)
+        {
+            buffer = cache.loadInto(textRange, scratch);
+            // Buffers from the cache are read only; others are ours
+            if (!buffer.isReadOnly())
+                scratch = buffer;
+            final IntRange charRange = textRange.getCharRange();
+            lowerBound = charRange.getLowerBound();
+            upperBound = charRange.getUpperBound();
+        }
+    }
+}
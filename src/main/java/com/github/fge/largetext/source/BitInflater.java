@@ -0,0 +1,569 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.ZipException;
+
+/**
+ * A DEFLATE decoder which knows where blocks start
+ *
+ * <p>{@link java.util.zip.Inflater} can neither tell where DEFLATE blocks end
+ * nor report bit offsets in its input; but these are exactly what is needed to
+ * resume decompression in the middle of a stream. This class is a plain Java
+ * implementation of RFC 1951 which stops at the end of each block, and can
+ * report its exact position in the input, in bits.</p>
+ *
+ * <p>It is only used for the indexing pass of {@link GzipByteSource}; loads
+ * are done using {@link java.util.zip.Inflater}.</p>
+ *
+ * <p>Input is read from a {@link FileChannel}, starting at a given bit offset,
+ * which must be that of the start of a block; output goes into a 32 KiB
+ * window, from which back references are resolved, and which can be used as a
+ * dictionary to resume decompression later on.</p>
+ */
+@NotThreadSafe
+final class BitInflater
+{
+    static final int WINDOW_SIZE = 32768;
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+    private static final int INPUT_SIZE = 65536;
+
+    private static final int MAX_BITS = 15;
+    private static final int ROOT_BITS = 9;
+
+    private static final int[] LENGTH_BASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59,
+        67, 83, 99, 115, 131, 163, 195, 227, 258
+    };
+    private static final int[] LENGTH_EXTRA = {
+        0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4,
+        5, 5, 5, 5, 0
+    };
+    private static final int[] DISTANCE_BASE = {
+        1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385,
+        513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577
+    };
+    private static final int[] DISTANCE_EXTRA = {
+        0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10,
+        10, 11, 11, 12, 12, 13, 13
+    };
+    // Order of code length code lengths in dynamic block headers
+    private static final int[] CODE_LENGTH_ORDER = {
+        16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15
+    };
+
+    private static final Huffman FIXED_LITERALS;
+    private static final Huffman FIXED_DISTANCES;
+
+    static {
+        final int[] lengths = new int[288];
+        Arrays.fill(lengths, 0, 144, 8);
+        Arrays.fill(lengths, 144, 256, 9);
+        Arrays.fill(lengths, 256, 280, 7);
+        Arrays.fill(lengths, 280, 288, 8);
+        try {
+            FIXED_LITERALS = new Huffman(lengths, 0, 288);
+            Arrays.fill(lengths, 0, 30, 5);
+            FIXED_DISTANCES = new Huffman(lengths, 0, 30);
+        } catch (ZipException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private enum State
+    {
+        BOUNDARY,
+        STORED,
+        HUFFMAN,
+        FINISHED
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer input = ByteBuffer.allocate(INPUT_SIZE);
+    private long inputOffset;
+
+    private long bitBuffer = 0L;
+    private int bitCount = 0;
+
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private int windowPosition = 0;
+    // Number of bytes in the window usable by back references
+    private int windowFill = 0;
+
+    private State state = State.BOUNDARY;
+    private boolean lastBlock = false;
+    private int storedRemaining;
+    private Huffman literals;
+    private Huffman distances;
+    private int copyLength = 0;
+    private int copyDistance;
+
+    /**
+     * Constructor
+     *
+     * @param channel the channel to read compressed data from
+     * @param bitOffset the offset of the start of a block, in bits
+     * @throws IOException failed to read from the channel
+     */
+    BitInflater(final FileChannel channel, final long bitOffset)
+        throws IOException
+    {
+        this.channel = channel;
+        inputOffset = bitOffset >>> 3;
+        input.limit(0);
+        final int skip = (int) (bitOffset & 7L);
+        if (skip != 0)
+            dropBits(skip);
+    }
+
+    /**
+     * Decompress bytes
+     *
+     * <p>This method returns early at the end of each block, and when the end
+     * of the stream is reached (see {@link #isFinished()}). It may therefore
+     * return 0.</p>
+     *
+     * @param b the destination array
+     * @param off the offset in the array
+     * @param len the maximum number of bytes to decompress
+     * @return the number of bytes decompressed
+     * @throws IOException failed to read input, or invalid input
+     */
+    int inflate(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+        int n = 0;
+        int symbol;
+
+        while (n < len) {
+            switch (state) {
+                case FINISHED:
+                    return n;
+                case BOUNDARY:
+                    if (lastBlock) {
+                        state = State.FINISHED;
+                        return n;
+                    }
+                    readBlockHeader();
+                    break;
+                case STORED:
+                    while (n < len && storedRemaining > 0) {
+                        emit(b, off + n++, (byte) bits(8));
+                        storedRemaining--;
+                    }
+                    if (storedRemaining == 0) {
+                        state = State.BOUNDARY;
+                        return n;
+                    }
+                    break;
+                case HUFFMAN:
+                    if (copyLength > 0) {
+                        while (n < len && copyLength > 0) {
+                            emit(b, off + n++, window[(windowPosition
+                                - copyDistance) & WINDOW_MASK]);
+                            copyLength--;
+                        }
+                        break;
+                    }
+                    symbol = decode(literals);
+                    if (symbol < 256) {
+                        emit(b, off + n++, (byte) symbol);
+                        break;
+                    }
+                    if (symbol == 256) {
+                        state = State.BOUNDARY;
+                        return n;
+                    }
+                    readCopy(symbol - 257);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Tell whether the end of the DEFLATE stream has been reached
+     *
+     * @return true if the last block has been entirely decompressed
+     */
+    boolean isFinished()
+    {
+        if (state == State.BOUNDARY && lastBlock)
+            state = State.FINISHED;
+        return state == State.FINISHED;
+    }
+
+    /**
+     * Tell whether the next bit of input is the start of a new block
+     *
+     * @return true if at a block boundary, and the stream is not finished
+     */
+    boolean isAtBlockBoundary()
+    {
+        return state == State.BOUNDARY && !lastBlock;
+    }
+
+    /**
+     * Get the offset of the next bit of input
+     *
+     * @return the offset, in bits
+     */
+    long getBitOffset()
+    {
+        return (inputOffset - input.remaining()) * 8L - bitCount;
+    }
+
+    /**
+     * Get a copy of the last (at most 32 KiB) bytes decompressed
+     *
+     * <p>Only bytes of the current stream are returned; this is suitable as a
+     * dictionary for {@link java.util.zip.Inflater#setDictionary(byte[])}.</p>
+     *
+     * @return the bytes
+     */
+    byte[] getDictionary()
+    {
+        final byte[] ret = new byte[windowFill];
+        copyRecent(windowFill, ret, 0, windowFill);
+        return ret;
+    }
+
+    /**
+     * Copy recently decompressed bytes
+     *
+     * @param back how many bytes back from the current output to start with;
+     * must not exceed {@link #WINDOW_SIZE}, or the total output
+     * @param b the destination array
+     * @param off the offset in the array
+     * @param len the number of bytes to copy; must not exceed {@code back}
+     */
+    void copyRecent(final int back, final byte[] b, final int off,
+        final int len)
+    {
+        int from = (windowPosition - back) & WINDOW_MASK;
+        int done = 0;
+        int chunk;
+        while (done < len) {
+            chunk = Math.min(len - done, WINDOW_SIZE - from);
+            System.arraycopy(window, from, b, off + done, chunk);
+            done += chunk;
+            from = (from + chunk) & WINDOW_MASK;
+        }
+    }
+
+    /**
+     * Start a new DEFLATE stream at the current (byte aligned) position
+     *
+     * <p>Back references of the new stream cannot reach bytes of the previous
+     * one; however these bytes are still available to {@link
+     * #copyRecent(int, byte[], int, int)}.</p>
+     */
+    void restart()
+    {
+        state = State.BOUNDARY;
+        lastBlock = false;
+        windowFill = 0;
+        copyLength = 0;
+    }
+
+    /**
+     * Skip to the next byte boundary in the input
+     */
+    void alignToByte()
+    {
+        dropBits(bitCount & 7);
+    }
+
+    /**
+     * Read one byte from the input; must be byte aligned
+     *
+     * @return the byte, or -1 if the end of input is reached
+     * @throws IOException failed to read from the channel
+     */
+    int readByte()
+        throws IOException
+    {
+        if (bitCount >= 8)
+            return bits(8);
+        return nextInputByte();
+    }
+
+    private void emit(final byte[] b, final int index, final byte value)
+    {
+        b[index] = value;
+        window[windowPosition] = value;
+        windowPosition = (windowPosition + 1) & WINDOW_MASK;
+        if (windowFill < WINDOW_SIZE)
+            windowFill++;
+    }
+
+    private void readBlockHeader()
+        throws IOException
+    {
+        lastBlock = bits(1) == 1;
+        switch (bits(2)) {
+            case 0:
+                alignToByte();
+                storedRemaining = bits(16);
+                if ((~bits(16) & 0xffff) != storedRemaining)
+                    throw new ZipException("invalid stored block length");
+                state = storedRemaining == 0 ? State.BOUNDARY : State.STORED;
+                break;
+            case 1:
+                literals = FIXED_LITERALS;
+                distances = FIXED_DISTANCES;
+                state = State.HUFFMAN;
+                break;
+            case 2:
+                readDynamicTables();
+                state = State.HUFFMAN;
+                break;
+            default:
+                throw new ZipException("invalid block type");
+        }
+    }
+
+    private void readDynamicTables()
+        throws IOException
+    {
+        final int nrLiterals = bits(5) + 257;
+        final int nrDistances = bits(5) + 1;
+        final int nrCodeLengths = bits(4) + 4;
+        if (nrLiterals > 286 || nrDistances > 30)
+            throw new ZipException("too many length or distance codes");
+
+        final int[] lengths = new int[320];
+        for (int i = 0; i < nrCodeLengths; i++)
+            lengths[CODE_LENGTH_ORDER[i]] = bits(3);
+        final Huffman codeLengths = new Huffman(lengths, 0, 19);
+
+        Arrays.fill(lengths, 0);
+        final int total = nrLiterals + nrDistances;
+        int index = 0;
+        int symbol, length, repeat;
+        while (index < total) {
+            symbol = decode(codeLengths);
+            if (symbol < 16) {
+                lengths[index++] = symbol;
+                continue;
+            }
+            length = 0;
+            if (symbol == 16) {
+                if (index == 0)
+                    throw new ZipException("repeat with no first length");
+                length = lengths[index - 1];
+                repeat = 3 + bits(2);
+            } else if (symbol == 17) {
+                repeat = 3 + bits(3);
+            } else {
+                repeat = 11 + bits(7);
+            }
+            if (index + repeat > total)
+                throw new ZipException("too many code lengths");
+            while (repeat-- > 0)
+                lengths[index++] = length;
+        }
+        if (lengths[256] == 0)
+            throw new ZipException("no end of block code");
+
+        literals = new Huffman(lengths, 0, nrLiterals);
+        distances = new Huffman(lengths, nrLiterals, nrDistances);
+    }
+
+    private void readCopy(final int lengthSymbol)
+        throws IOException
+    {
+        if (lengthSymbol >= 29)
+            throw new ZipException("invalid length code");
+        copyLength = LENGTH_BASE[lengthSymbol]
+            + bits(LENGTH_EXTRA[lengthSymbol]);
+        final int distanceSymbol = decode(distances);
+        if (distanceSymbol >= 30)
+            throw new ZipException("invalid distance code");
+        copyDistance = DISTANCE_BASE[distanceSymbol]
+            + bits(DISTANCE_EXTRA[distanceSymbol]);
+        if (copyDistance > windowFill)
+            throw new ZipException("distance too far back");
+    }
+
+    /*
+     * Decode one symbol: codes of at most ROOT_BITS bits are looked up in a
+     * table, longer codes are decoded bit by bit
+     */
+    private int decode(final Huffman huffman)
+        throws IOException
+    {
+        fill();
+        final int entry = huffman.table[(int) bitBuffer & Huffman.ROOT_MASK];
+        final int length = entry & 15;
+        if (entry != 0 && length <= bitCount) {
+            dropBits(length);
+            return entry >>> 4;
+        }
+
+        int code = 0;
+        int first = 0;
+        int index = 0;
+        int count;
+        for (int len = 1; len <= MAX_BITS; len++) {
+            code |= bits(1);
+            count = huffman.count[len];
+            if (code - count < first)
+                return huffman.symbols[index + code - first];
+            index += count;
+            first += count;
+            first <<= 1;
+            code <<= 1;
+        }
+        throw new ZipException("invalid Huffman code");
+    }
+
+    private int bits(final int n)
+        throws IOException
+    {
+        if (n == 0)
+            return 0;
+        while (bitCount < n) {
+            final int b = nextInputByte();
+            if (b == -1)
+                throw new EOFException("unexpected end of compressed data");
+            bitBuffer |= (long) b << bitCount;
+            bitCount += 8;
+        }
+        final int ret = (int) (bitBuffer & ((1L << n) - 1L));
+        bitBuffer >>>= n;
+        bitCount -= n;
+        return ret;
+    }
+
+    private void dropBits(final int n)
+    {
+        if (n == 0)
+            return;
+        if (bitCount < n)
+            try {
+                bits(n);
+                return;
+            } catch (IOException e) {
+                // Cannot happen, dropped bits were read already
+                throw new IllegalStateException(e);
+            }
+        bitBuffer >>>= n;
+        bitCount -= n;
+    }
+
+    /*
+     * Fill the bit buffer as much as possible (less than 57 bits may be
+     * available near the end of input)
+     */
+    private void fill()
+        throws IOException
+    {
+        int b;
+        while (bitCount <= 56) {
+            if (!input.hasRemaining() && !refill())
+                return;
+            b = input.get() & 0xff;
+            bitBuffer |= (long) b << bitCount;
+            bitCount += 8;
+        }
+    }
+
+    private int nextInputByte()
+        throws IOException
+    {
+        if (!input.hasRemaining() && !refill())
+            return -1;
+        return input.get() & 0xff;
+    }
+
+    private boolean refill()
+        throws IOException
+    {
+        input.clear();
+        int n;
+        do {
+            n = channel.read(input, inputOffset);
+        } while (n == 0);
+        input.flip();
+        if (n == -1)
+            return false;
+        inputOffset += n;
+        return true;
+    }
+
+    /*
+     * A canonical Huffman code: symbol counts per code length and symbols
+     * ordered by code (for bit by bit decoding), plus a lookup table for short
+     * codes; table entries are (symbol << 4 | code length), 0 if the code is
+     * longer than the table index
+     */
+    private static final class Huffman
+    {
+        private static final int ROOT_MASK = (1 << ROOT_BITS) - 1;
+
+        private final short[] count = new short[MAX_BITS + 1];
+        private final short[] symbols;
+        private final int[] table = new int[1 << ROOT_BITS];
+
+        private Huffman(final int[] lengths, final int start, final int n)
+            throws ZipException
+        {
+            symbols = new short[n];
+            for (int i = 0; i < n; i++)
+                count[lengths[start + i]]++;
+            count[0] = 0;
+
+            int left = 1;
+            for (int len = 1; len <= MAX_BITS; len++) {
+                left <<= 1;
+                left -= count[len];
+                if (left < 0)
+                    throw new ZipException("over-subscribed Huffman code");
+            }
+
+            final int[] offsets = new int[MAX_BITS + 2];
+            for (int len = 1; len <= MAX_BITS; len++)
+                offsets[len + 1] = offsets[len] + count[len];
+            for (int i = 0; i < n; i++)
+                if (lengths[start + i] != 0)
+                    symbols[offsets[lengths[start + i]]++] = (short) i;
+
+            // Canonical codes, then bit reversed for the lookup table
+            int code = 0;
+            int index = 0;
+            int reversed, step;
+            for (int len = 1; len <= ROOT_BITS; len++) {
+                for (int i = 0; i < count[len]; i++) {
+                    reversed = Integer.reverse(code + i) >>> (32 - len);
+                    step = 1 << len;
+                    for (int j = reversed; j < table.length; j += step)
+                        table[j] = symbols[index] << 4 | len;
+                    index++;
+                }
+                code = (code + count[len]) << 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.range.LongRange;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A {@link ByteSource} over a block text file
+ *
+ * <p>A block text file (see {@link BlockTextWriter}) stores the bytes of a
+ * text file as a series of independently compressed blocks; each block is one
+ * {@link TextRange} of the original text. Its layout is as follows (all
+ * numbers are big endian):</p>
+ *
+ * <ul>
+ *     <li>a header: a magic number and a format version (two ints);</li>
+ *     <li>the blocks, compressed using raw DEFLATE;</li>
+ *     <li>the index: the name of the character coding (as written by {@link
+ *     java.io.DataOutput#writeUTF(String)}), the number of blocks (an int),
+ *     then for each block: its offset in the file (a long) and compressed
+ *     size (an int), its byte offset (a long) and number of bytes (an int)
+ *     in the original text, its char offset and number of chars (two ints),
+ *     and the CRC32 of its bytes (an int);</li>
+ *     <li>a trailer: the offset of the index (a long), the format version and
+ *     the magic number (two ints).</li>
+ * </ul>
+ *
+ * <p>Opening such a file only reads the index; no decoding is needed, since
+ * the text ranges are known (see {@link #getTextRanges()}). Reading a text
+ * range decompresses a single block. The last decompressed block is kept, so
+ * that reads slightly beyond a block do not decompress it again.</p>
+ */
+@ThreadSafe
+public final class BlockTextSource
+    implements ByteSource
+{
+    static final int MAGIC = 0x4c54424b; // "LTBK"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int TRAILER_SIZE = 16;
+    static final int ENTRY_SIZE = 36;
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final ImmutableList<TextRange> textRanges;
+    private final long[] byteStarts;
+    private final long[] blockOffsets;
+    private final int[] blockSizes;
+    private final int[] crcs;
+    private final long size;
+
+    private volatile Block last = null;
+
+    /**
+     * Constructor
+     *
+     * <p>The source takes ownership of the channel, and closes it when it is
+     * closed; it is also closed if the file cannot be opened.</p>
+     *
+     * @param channel the channel to the block text file
+     * @throws IOException failed to read the file, or not a block text file
+     */
+    public BlockTextSource(final FileChannel channel)
+        throws IOException
+    {
+        this.channel = Preconditions.checkNotNull(channel,
+            "channel cannot be null");
+        try {
+            final long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE + TRAILER_SIZE)
+                throw new ZipException("not a block text file");
+
+            final ByteBuffer header = readFully(0L, HEADER_SIZE);
+            final ByteBuffer trailer = readFully(fileSize - TRAILER_SIZE,
+                TRAILER_SIZE);
+            final long indexOffset = trailer.getLong(0);
+            if (header.getInt(0) != MAGIC || trailer.getInt(12) != MAGIC)
+                throw new ZipException("not a block text file");
+            if (header.getInt(4) != VERSION || trailer.getInt(8) != VERSION)
+                throw new ZipException("unsupported block text file version");
+            if (indexOffset < HEADER_SIZE
+                || indexOffset > fileSize - TRAILER_SIZE)
+                throw new ZipException("corrupted block text file index");
+
+            final ByteBuffer index = readFully(indexOffset,
+                (int) (fileSize - TRAILER_SIZE - indexOffset));
+            final DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(index.array()));
+            charset = Charset.forName(in.readUTF());
+            final int nrBlocks = in.readInt();
+            if (nrBlocks < 0 || in.available() != nrBlocks * ENTRY_SIZE)
+                throw new ZipException("corrupted block text file index");
+
+            final ImmutableList.Builder<TextRange> builder
+                = ImmutableList.builder();
+            byteStarts = new long[nrBlocks];
+            blockOffsets = new long[nrBlocks];
+            blockSizes = new int[nrBlocks];
+            crcs = new int[nrBlocks];
+
+            long byteOffset = 0L;
+            int charOffset = 0;
+            int nrBytes, nrChars;
+            for (int i = 0; i < nrBlocks; i++) {
+                blockOffsets[i] = in.readLong();
+                blockSizes[i] = in.readInt();
+                byteStarts[i] = in.readLong();
+                nrBytes = in.readInt();
+                if (in.readInt() != charOffset || byteStarts[i] != byteOffset)
+                    throw new ZipException("corrupted block text file index");
+                nrChars = in.readInt();
+                crcs[i] = in.readInt();
+                builder.add(new TextRange(byteOffset, nrBytes, charOffset,
+                    nrChars));
+                byteOffset += nrBytes;
+                charOffset += nrChars;
+            }
+            textRanges = builder.build();
+            size = byteOffset;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the character coding of the text
+     *
+     * @return the charset
+     */
+    public Charset getCharset()
+    {
+        return charset;
+    }
+
+    /**
+     * Get the text ranges of the text, in order; there is one per block
+     *
+     * @return an immutable list of text ranges
+     */
+    public List<TextRange> getTextRanges()
+    {
+        return textRanges;
+    }
+
+    @Override
+    public long size()
+    {
+        return size;
+    }
+
+    @Override
+    public ByteBuffer read(final long offset, final int length)
+        throws IOException
+    {
+        Preconditions.checkArgument(offset >= 0L,
+            "offset must not be negative");
+        Preconditions.checkArgument(length >= 0,
+            "length must not be negative");
+        final int total = (int) Math.max(0L,
+            Math.min((long) length, size - offset));
+        if (total == 0)
+            return ByteBuffer.allocate(0);
+
+        int index = Arrays.binarySearch(byteStarts, offset);
+        if (index < 0)
+            index = -index - 2;
+
+        Block block = block(index);
+        int start = (int) (offset - byteStarts[index]);
+        /*
+         * Reading a whole block, which is what the text cache does: no copy
+         */
+        if (start == 0 && total == block.bytes.length)
+            return ByteBuffer.wrap(block.bytes).asReadOnlyBuffer();
+
+        final byte[] result = new byte[total];
+        int produced = 0;
+        int n;
+        while (true) {
+            n = Math.min(total - produced, block.bytes.length - start);
+            System.arraycopy(block.bytes, start, result, produced, n);
+            produced += n;
+            if (produced == total)
+                break;
+            block = block(++index);
+            start = 0;
+        }
+        return ByteBuffer.wrap(result);
+    }
+
+    @Override
+    public void release(final ByteBuffer buffer)
+    {
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        channel.close();
+    }
+
+    private Block block(final int index)
+        throws IOException
+    {
+        Block block = last;
+        if (block != null && block.index == index)
+            return block;
+        block = new Block(index, inflate(index));
+        last = block;
+        return block;
+    }
+
+    private byte[] inflate(final int index)
+        throws IOException
+    {
+        final LongRange byteRange = textRanges.get(index).getByteRange();
+        final byte[] compressed = readFully(blockOffsets[index],
+            blockSizes[index]).array();
+        final byte[] bytes = new byte[(int) (byteRange.getUpperBound()
+            - byteRange.getLowerBound())];
+
+        final Inflater inflater = new Inflater(true);
+        try {
+            /*
+             * See Inflater's documentation: an extra dummy byte is needed
+             * when using raw DEFLATE
+             */
+            inflater.setInput(Arrays.copyOf(compressed,
+                compressed.length + 1));
+            int produced = 0;
+            int n;
+            while (produced < bytes.length && !inflater.finished()) {
+                n = inflater.inflate(bytes, produced,
+                    bytes.length - produced);
+                if (n == 0 && (inflater.needsInput()
+                    || inflater.needsDictionary()))
+                    break;
+                produced += n;
+            }
+            if (produced != bytes.length)
+                throw new ZipException("block " + index + " is truncated");
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if ((int) crc.getValue() != crcs[index])
+            throw new ZipException("block " + index + " CRC mismatch");
+        return bytes;
+    }
+
+    private ByteBuffer readFully(final long offset, final int length)
+        throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        int n;
+        while (buffer.hasRemaining()) {
+            n = channel.read(buffer, offset + buffer.position());
+            if (n == -1)
+                throw new EOFException("unexpected end of file");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Immutable
+    private static final class Block
+    {
+        private final int index;
+        private final byte[] bytes;
+
+        private Block(final int index, final byte[] bytes)
+        {
+            this.index = index;
+            this.bytes = bytes;
+        }
+    }
+}
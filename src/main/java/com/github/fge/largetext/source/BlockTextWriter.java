@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import com.github.fge.largetext.load.DecoderOptions;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.range.LongRange;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writer for block text files
+ *
+ * <p>The text is decoded by a {@link TextDecoder}, and each resulting {@link
+ * TextRange} is compressed as one block; the size of blocks is therefore the
+ * window size of the decoder options. See {@link BlockTextSource} for the
+ * format.</p>
+ */
+@ParametersAreNonnullByDefault
+public final class BlockTextWriter
+{
+    private static final int CHUNK_SIZE = 65536;
+
+    private BlockTextWriter()
+    {
+    }
+
+    /**
+     * Write the contents of a source as a block text file
+     *
+     * <p>Growing sources are not followed: the text written is that available
+     * when the end of the source is first reached. The source is not
+     * closed.</p>
+     *
+     * @param source the source
+     * @param charset the character coding of the source
+     * @param options the decoder options
+     * @param target the path to the block text file; it is created if it does
+     * not exist, and truncated if it does
+     * @throws IOException failed to read, decode or write
+     */
+    public static void write(final ByteSource source, final Charset charset,
+        final DecoderOptions options, final Path target)
+        throws IOException
+    {
+        Preconditions.checkNotNull(source, "source cannot be null");
+        Preconditions.checkNotNull(charset, "charset cannot be null");
+        Preconditions.checkNotNull(options, "options cannot be null");
+        Preconditions.checkNotNull(target, "target cannot be null");
+
+        final ByteArrayOutputStream index = new ByteArrayOutputStream();
+        final DataOutputStream indexOut = new DataOutputStream(index);
+        final ByteArrayOutputStream block = new ByteArrayOutputStream();
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION,
+            true);
+        final CRC32 crc = new CRC32();
+        final byte[] chunk = new byte[CHUNK_SIZE];
+
+        try (
+            final TextDecoder decoder = new TextDecoder(source, charset,
+                options.withoutFollow());
+            final FileChannel out = FileChannel.open(target,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ) {
+            final ByteBuffer header = ByteBuffer.allocate(
+                BlockTextSource.HEADER_SIZE);
+            header.putInt(BlockTextSource.MAGIC)
+                .putInt(BlockTextSource.VERSION).flip();
+            writeFully(out, header);
+
+            final TextRange[] textRanges = ranges(decoder);
+            indexOut.writeUTF(charset.name());
+            indexOut.writeInt(textRanges.length);
+
+            LongRange byteRange;
+            IntRange charRange;
+            byte[] bytes;
+            int n;
+            for (final TextRange textRange: textRanges) {
+                byteRange = textRange.getByteRange();
+                charRange = textRange.getCharRange();
+                bytes = bytesOf(source, byteRange);
+
+                crc.reset();
+                crc.update(bytes);
+                block.reset();
+                deflater.reset();
+                deflater.setInput(bytes);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    n = deflater.deflate(chunk);
+                    block.write(chunk, 0, n);
+                }
+
+                indexOut.writeLong(out.position());
+                indexOut.writeInt(block.size());
+                indexOut.writeLong(byteRange.getLowerBound());
+                indexOut.writeInt(bytes.length);
+                indexOut.writeInt(charRange.getLowerBound());
+                indexOut.writeInt(charRange.getUpperBound()
+                    - charRange.getLowerBound());
+                indexOut.writeInt((int) crc.getValue());
+                writeFully(out, ByteBuffer.wrap(block.toByteArray()));
+            }
+
+            final long indexOffset = out.position();
+            writeFully(out, ByteBuffer.wrap(index.toByteArray()));
+            final ByteBuffer trailer = ByteBuffer.allocate(
+                BlockTextSource.TRAILER_SIZE);
+            trailer.putLong(indexOffset).putInt(BlockTextSource.VERSION)
+                .putInt(BlockTextSource.MAGIC).flip();
+            writeFully(out, trailer);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static TextRange[] ranges(final TextDecoder decoder)
+    {
+        final int length = decoder.getTotalChars();
+        return decoder.getRanges(new IntRange(0, length))
+            .toArray(new TextRange[0]);
+    }
+
+    private static byte[] bytesOf(final ByteSource source,
+        final LongRange byteRange)
+        throws IOException
+    {
+        final int nrBytes = (int) (byteRange.getUpperBound()
+            - byteRange.getLowerBound());
+        final ByteBuffer buffer = source.read(byteRange.getLowerBound(),
+            nrBytes);
+        try {
+            if (buffer.remaining() != nrBytes)
+                throw new IOException("source has been truncated");
+            final byte[] bytes = new byte[nrBytes];
+            buffer.get(bytes);
+            return bytes;
+        } finally {
+            source.release(buffer);
+        }
+    }
+
+    private static void writeFully(final FileChannel channel,
+        final ByteBuffer buffer)
+        throws IOException
+    {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
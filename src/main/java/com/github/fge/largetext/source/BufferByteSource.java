@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ByteSource} over the contents of a {@link ByteBuffer}
+ *
+ * <p>Reads return read only slices of the buffer: nothing is copied.</p>
+ *
+ * @see ByteSources#ofBuffer(ByteBuffer)
+ * @see ByteSources#ofBytes(byte[])
+ */
+@ThreadSafe
+final class BufferByteSource
+    implements ByteSource
+{
+    private final ByteBuffer buffer;
+
+    /*
+     * The buffer must be a read only slice, owned by this instance: its
+     * position and limit never change, only duplicates are modified
+     */
+    BufferByteSource(final ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public long size()
+    {
+        return buffer.limit();
+    }
+
+    @Override
+    public ByteBuffer read(final long offset, final int length)
+    {
+        Preconditions.checkArgument(offset >= 0L,
+            "offset must not be negative");
+        Preconditions.checkArgument(length >= 0,
+            "length must not be negative");
+        final int size = buffer.limit();
+        final int start = (int) Math.min(offset, (long) size);
+        final int end = (int) Math.min((long) start + length, (long) size);
+        final ByteBuffer ret = buffer.duplicate();
+        ret.limit(end).position(start);
+        return ret.slice();
+    }
+
+    @Override
+    public void release(final ByteBuffer buffer)
+    {
+    }
+
+    @Override
+    public void close()
+    {
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A source of bytes with positional reads
+ *
+ * <p>Implementations must be thread safe: several threads may read from a
+ * source at the same time (the decoding process, and any number of threads
+ * loading text windows).</p>
+ *
+ * <p>Since callers never modify the buffers they obtain, implementations
+ * which can should avoid copies and return views of the data instead: this is
+ * what sources over files do (they return memory mappings), as well as
+ * sources over in memory buffers. Implementations which need to copy (for
+ * instance, a source backed by a block cache, or a remote store) can return
+ * heap buffers; callers only rely on a buffer's position and limit.</p>
+ *
+ * <p>Implementations for the usual sources of bytes are available from {@link
+ * ByteSources}.</p>
+ */
+@ThreadSafe
+public interface ByteSource
+    extends Closeable
+{
+    /**
+     * Return the number of bytes of this source
+     *
+     * @return the number of bytes, or -1 if not known yet
+     * @throws IOException failed to obtain the size
+     */
+    long size()
+        throws IOException;
+
+    /**
+     * Read bytes at a given offset
+     *
+     * <p>The returned buffer contains the bytes read between its position (0)
+     * and its limit. Fewer bytes than requested are returned only if the end
+     * of the source is reached; the buffer is then empty if the offset is at
+     * or past the end.</p>
+     *
+     * <p>The returned buffer may be read only, or shared; callers must not
+     * modify its contents.</p>
+     *
+     * @param offset the offset of the first byte to read
+     * @param length the number of bytes to read
+     * @return a buffer
+     * @throws IOException failed to read from the source
+     */
+    ByteBuffer read(long offset, int length)
+        throws IOException;
+
+    /**
+     * Give back a buffer obtained from {@link #read(long, int)}
+     *
+     * <p>Callers should call this method once they are done with a buffer,
+     * and must not use the buffer afterwards. Implementations which pool
+     * buffers (see {@link IoStrategy#POOLED_READ}) can then reuse it; others
+     * do nothing. Buffers which are never given back are simply left to the
+     * garbage collector.</p>
+     *
+     * @param buffer the buffer
+     */
+    void release(ByteBuffer buffer);
+}
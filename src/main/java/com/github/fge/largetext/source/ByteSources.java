@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Factory methods for {@link ByteSource}s
+ *
+ * <p>Any other source (a remote blob store, a block cache...) can be used by
+ * implementing {@link ByteSource} directly, and passing it to {@link
+ * com.github.fge.largetext.LargeTextFactory#load(ByteSource)}.</p>
+ */
+public final class ByteSources
+{
+    private ByteSources()
+    {
+    }
+
+    /**
+     * Obtain a source over a file channel, using memory mappings
+     *
+     * <p>This is the source used by default for text files. Closing the source
+     * closes the channel.</p>
+     *
+     * @param channel the channel
+     * @return a new source
+     */
+    public static ByteSource ofChannel(@Nonnull final FileChannel channel)
+    {
+        return new ChannelByteSource(channel);
+    }
+
+    /**
+     * Obtain a source over a file, using memory mappings
+     *
+     * @param path the path to the file
+     * @return a new source
+     * @throws IOException failed to open a (read only) {@link FileChannel} for
+     * the given path
+     *
+     * @see #ofChannel(FileChannel)
+     */
+    public static ByteSource ofPath(@Nonnull final Path path)
+        throws IOException
+    {
+        Preconditions.checkNotNull(path, "path cannot be null");
+        return new ChannelByteSource(FileChannel.open(path,
+            StandardOpenOption.READ));
+    }
+
+    /**
+     * Obtain a source over a file, using the given I/O strategy
+     *
+     * @param path the path to the file
+     * @param ioStrategy the I/O strategy
+     * @return a new source
+     * @throws IOException failed to open a (read only) {@link FileChannel} for
+     * the given path
+     */
+    public static MeteredByteSource ofPath(@Nonnull final Path path,
+        @Nonnull final IoStrategy ioStrategy)
+        throws IOException
+    {
+        Preconditions.checkNotNull(path, "path cannot be null");
+        Preconditions.checkNotNull(ioStrategy, "I/O strategy cannot be null");
+        return ioStrategy.open(FileChannel.open(path,
+            StandardOpenOption.READ));
+    }
+
+    /**
+     * Obtain a source over the decompressed contents of a gzip file
+     *
+     * @param path the path to the file
+     * @param checkpointInterval the minimum number of decompressed bytes
+     * between two checkpoints
+     * @return a new source
+     * @throws IOException failed to open a (read only) {@link FileChannel} for
+     * the given path, or not a gzip file
+     *
+     * @see GzipByteSource
+     */
+    public static ByteSource ofGzip(@Nonnull final Path path,
+        final long checkpointInterval)
+        throws IOException
+    {
+        Preconditions.checkNotNull(path, "path cannot be null");
+        final FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.READ);
+        try {
+            return new GzipByteSource(channel, checkpointInterval);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Obtain a source over the contents of a block text file
+     *
+     * @param path the path to the file
+     * @return a new source
+     * @throws IOException failed to open a (read only) {@link FileChannel} for
+     * the given path, or not a block text file
+     *
+     * @see BlockTextSource
+     */
+    public static BlockTextSource ofBlockText(@Nonnull final Path path)
+        throws IOException
+    {
+        Preconditions.checkNotNull(path, "path cannot be null");
+        return new BlockTextSource(FileChannel.open(path,
+            StandardOpenOption.READ));
+    }
+
+    /**
+     * Obtain a source over the remaining bytes of a buffer
+     *
+     * <p>The buffer may be direct (for instance, a buffer obtained from a
+     * network layer). Its contents are not copied, and must not be modified
+     * while the source is in use; its position and limit can be, since the
+     * source uses its own view of the buffer.</p>
+     *
+     * @param buffer the buffer
+     * @return a new source
+     */
+    public static ByteSource ofBuffer(@Nonnull final ByteBuffer buffer)
+    {
+        Preconditions.checkNotNull(buffer, "buffer cannot be null");
+        return new BufferByteSource(buffer.asReadOnlyBuffer().slice());
+    }
+
+    /**
+     * Obtain a source over an array of bytes
+     *
+     * <p>The array is not copied, and must not be modified while the source
+     * is in use.</p>
+     *
+     * @param bytes the array
+     * @return a new source
+     */
+    public static ByteSource ofBytes(@Nonnull final byte[] bytes)
+    {
+        Preconditions.checkNotNull(bytes, "array cannot be null");
+        return new BufferByteSource(ByteBuffer.wrap(bytes)
+            .asReadOnlyBuffer());
+    }
+}
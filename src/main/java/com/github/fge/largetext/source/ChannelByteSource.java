@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ByteSource} over a {@link FileChannel}, using memory mappings
+ *
+ * <p>Reads return {@link java.nio.MappedByteBuffer}s; closing the source
+ * closes the channel.</p>
+ *
+ * @see IoStrategy#MMAP
+ */
+@ThreadSafe
+public final class ChannelByteSource
+    implements MeteredByteSource
+{
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final FileChannel channel;
+
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong mappings = new AtomicLong();
+
+    public ChannelByteSource(final FileChannel channel)
+    {
+        this.channel = Preconditions.checkNotNull(channel,
+            "channel cannot be null");
+    }
+
+    @Override
+    public long size()
+        throws IOException
+    {
+        return channel.size();
+    }
+
+    @Override
+    public ByteBuffer read(final long offset, final int length)
+        throws IOException
+    {
+        Preconditions.checkArgument(offset >= 0L,
+            "offset must not be negative");
+        Preconditions.checkArgument(length >= 0,
+            "length must not be negative");
+        final long start = System.nanoTime();
+        reads.incrementAndGet();
+        final long size = Math.min((long) length, channel.size() - offset);
+        if (size <= 0L)
+            return EMPTY.duplicate();
+        final ByteBuffer ret = channel.map(FileChannel.MapMode.READ_ONLY,
+            offset, size);
+        mappings.incrementAndGet();
+        bytesRead.addAndGet(size);
+        readNanos.addAndGet(System.nanoTime() - start);
+        return ret;
+    }
+
+    @Override
+    public void release(final ByteBuffer buffer)
+    {
+    }
+
+    @Override
+    public IoStatistics getStatistics()
+    {
+        return new IoStatistics(IoStrategy.MMAP, reads.get(), bytesRead.get(),
+            readNanos.get(), mappings.get());
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        channel.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getStatistics().toString();
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A {@link ByteSource} over the decompressed contents of a gzip file
+ *
+ * <p>Offsets are those of the decompressed bytes. This source supports random
+ * reads, in the style of zlib's {@code zran.c} example:</p>
+ *
+ * <ul>
+ *     <li>when read sequentially (which is what the decoding process does),
+ *     the file is decompressed once, by a {@link BitInflater}; every given
+ *     number of decompressed bytes, a checkpoint is recorded at the next
+ *     DEFLATE block boundary: the decompressed offset, the compressed offset
+ *     (in bits) and the last 32 KiB of decompressed data;</li>
+ *     <li>other reads (which is what the text cache does) start from the
+ *     nearest checkpoint before the requested offset, using a raw {@link
+ *     Inflater} with the saved data as a dictionary; the cost of a read is
+ *     therefore bounded by the checkpoint interval, plus the requested
+ *     length.</li>
+ * </ul>
+ *
+ * <p>The start of each gzip member is also a checkpoint, so that
+ * multi-member files (as produced by {@code pigz} or by concatenating gzip
+ * files) are supported. CRCs and sizes of all members are checked during the
+ * sequential pass.</p>
+ *
+ * <p>The size of the source is not known until the whole file has been
+ * decompressed once.</p>
+ */
+@ThreadSafe
+public final class GzipByteSource
+    implements ByteSource
+{
+    private static final int CHUNK_SIZE = 65536;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final FileChannel channel;
+    private final long checkpointInterval;
+
+    private final NavigableMap<Long, Checkpoint> checkpoints
+        = new ConcurrentSkipListMap<>();
+
+    @GuardedBy("this")
+    private final BitInflater inflater;
+    @GuardedBy("this")
+    private final CRC32 crc = new CRC32();
+    @GuardedBy("this")
+    private final byte[] scratch = new byte[CHUNK_SIZE];
+    @GuardedBy("this")
+    private long out = 0L;
+    @GuardedBy("this")
+    private long memberStart = 0L;
+    @GuardedBy("this")
+    private long lastCheckpoint = 0L;
+    @GuardedBy("this")
+    private boolean done = false;
+
+    /**
+     * Constructor
+     *
+     * @param channel the channel to the gzip file
+     * @param checkpointInterval the minimum number of decompressed bytes
+     * between two checkpoints
+     * @throws IOException failed to read the file, or not a gzip file
+     */
+    public GzipByteSource(final FileChannel channel,
+        final long checkpointInterval)
+        throws IOException
+    {
+        this.channel = Preconditions.checkNotNull(channel,
+            "channel cannot be null");
+        Preconditions.checkArgument(checkpointInterval > 0L,
+            "checkpoint interval must be strictly positive");
+        this.checkpointInterval = checkpointInterval;
+        inflater = new BitInflater(channel, 0L);
+        if (!readHeader())
+            throw new EOFException("empty gzip file");
+    }
+
+    /**
+     * Get the number of checkpoints recorded so far
+     *
+     * @return the number of checkpoints
+     */
+    public int getNrCheckpoints()
+    {
+        return checkpoints.size();
+    }
+
+    @Override
+    public synchronized long size()
+    {
+        return done ? out : -1L;
+    }
+
+    @Override
+    public ByteBuffer read(final long offset, final int length)
+        throws IOException
+    {
+        Preconditions.checkArgument(offset >= 0L,
+            "offset must not be negative");
+        Preconditions.checkArgument(length >= 0,
+            "length must not be negative");
+        final byte[] result = new byte[length];
+        int produced = 0;
+        long position, indexed;
+        int n;
+
+        while (produced < length) {
+            position = offset + produced;
+            synchronized (this) {
+                indexed = out;
+                /*
+                 * Bytes not decompressed yet, or still in the window of the
+                 * sequential pass: use the sequential pass
+                 */
+                if (position >= indexed - BitInflater.WINDOW_SIZE) {
+                    produced += readSequential(position, result, produced,
+                        length - produced);
+                    break;
+                }
+            }
+            n = readFromCheckpoint(position, result, produced,
+                (int) Math.min(length - produced, indexed - position));
+            if (n == 0)
+                break;
+            produced += n;
+        }
+        return ByteBuffer.wrap(result, 0, produced);
+    }
+
+    @Override
+    public void release(final ByteBuffer buffer)
+    {
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        channel.close();
+    }
+
+    /*
+     * Read using the sequential pass; position is at most one window behind
+     * the current output
+     */
+    @GuardedBy("this")
+    private int readSequential(final long position, final byte[] b,
+        final int off, final int len)
+        throws IOException
+    {
+        int produced = 0;
+        if (position < out) {
+            final int back = (int) (out - position);
+            produced = Math.min(len, back);
+            inflater.copyRecent(back, b, off, produced);
+        }
+
+        int n;
+        long skip;
+        while (produced < len && !done) {
+            if (inflater.isFinished()) {
+                endMember();
+                continue;
+            }
+            skip = position + produced - out;
+            if (skip > 0L) {
+                n = inflater.inflate(scratch, 0,
+                    (int) Math.min(skip, scratch.length));
+                crc.update(scratch, 0, n);
+            } else {
+                n = inflater.inflate(b, off + produced, len - produced);
+                crc.update(b, off + produced, n);
+                produced += n;
+            }
+            out += n;
+            if (out - lastCheckpoint >= checkpointInterval
+                && inflater.isAtBlockBoundary())
+                addCheckpoint(inflater.getDictionary());
+        }
+        return produced;
+    }
+
+    /*
+     * Read from the nearest checkpoint; stops at the end of a gzip member
+     */
+    private int readFromCheckpoint(final long position, final byte[] b,
+        final int off, final int len)
+        throws IOException
+    {
+        final Map.Entry<Long, Checkpoint> entry
+            = checkpoints.floorEntry(position);
+        final Checkpoint checkpoint = entry.getValue();
+        final Inflater inf = new Inflater(true);
+        final ShiftedInput input
+            = new ShiftedInput(channel, checkpoint.bitOffset);
+        final byte[] skipBuffer = new byte[CHUNK_SIZE];
+
+        long skip = position - entry.getKey();
+        int produced = 0;
+        int n;
+        byte[] chunk;
+
+        try {
+            if (checkpoint.dictionary.length > 0)
+                inf.setDictionary(checkpoint.dictionary);
+            while (produced < len && !inf.finished()) {
+                if (inf.needsInput()) {
+                    chunk = input.next();
+                    if (chunk == null)
+                        throw new EOFException("unexpected end of "
+                            + "compressed data");
+                    inf.setInput(chunk);
+                }
+                if (skip > 0L) {
+                    n = inf.inflate(skipBuffer, 0,
+                        (int) Math.min(skip, skipBuffer.length));
+                    skip -= n;
+                } else {
+                    n = inf.inflate(b, off + produced, len - produced);
+                    produced += n;
+                }
+                if (n == 0 && inf.needsDictionary())
+                    throw new ZipException("dictionary needed");
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        } finally {
+            inf.end();
+        }
+        return produced;
+    }
+
+    @GuardedBy("this")
+    private void addCheckpoint(final byte[] dictionary)
+    {
+        checkpoints.put(out, new Checkpoint(inflater.getBitOffset(),
+            dictionary));
+        lastCheckpoint = out;
+    }
+
+    /*
+     * Check the trailer of a member, and start the next one if any
+     */
+    @GuardedBy("this")
+    private void endMember()
+        throws IOException
+    {
+        inflater.alignToByte();
+        final long expectedCrc = readInt();
+        final long expectedSize = readInt();
+        if (expectedCrc != crc.getValue())
+            throw new ZipException("gzip member CRC mismatch");
+        if (expectedSize != ((out - memberStart) & 0xffffffffL))
+            throw new ZipException("gzip member size mismatch");
+        if (!readHeader())
+            done = true;
+    }
+
+    /*
+     * Read a member header; return false if at the end of input
+     */
+    @GuardedBy("this")
+    private boolean readHeader()
+        throws IOException
+    {
+        final int id1 = inflater.readByte();
+        if (id1 == -1)
+            return false;
+        if (id1 != 0x1f || readByte() != 0x8b)
+            throw new ZipException("not in gzip format");
+        if (readByte() != 8)
+            throw new ZipException("unsupported compression method");
+        final int flags = readByte();
+        for (int i = 0; i < 6; i++)
+            readByte();
+        if ((flags & FEXTRA) != 0) {
+            int extraLength = readByte();
+            extraLength |= readByte() << 8;
+            for (int i = 0; i < extraLength; i++)
+                readByte();
+        }
+        if ((flags & FNAME) != 0)
+            while (readByte() != 0)
+                continue;
+        if ((flags & FCOMMENT) != 0)
+            while (readByte() != 0)
+                continue;
+        if ((flags & FHCRC) != 0) {
+            readByte();
+            readByte();
+        }
+
+        inflater.restart();
+        crc.reset();
+        memberStart = out;
+        addCheckpoint(new byte[0]);
+        return true;
+    }
+
+    @GuardedBy("this")
+    private int readByte()
+        throws IOException
+    {
+        final int ret = inflater.readByte();
+        if (ret == -1)
+            throw new EOFException("unexpected end of gzip file");
+        return ret;
+    }
+
+    @GuardedBy("this")
+    private long readInt()
+        throws IOException
+    {
+        long ret = 0L;
+        for (int i = 0; i < 4; i++)
+            ret |= (long) readByte() << (8 * i);
+        return ret;
+    }
+
+    @Immutable
+    private static final class Checkpoint
+    {
+        private final long bitOffset;
+        private final byte[] dictionary;
+
+        private Checkpoint(final long bitOffset, final byte[] dictionary)
+        {
+            this.bitOffset = bitOffset;
+            this.dictionary = dictionary;
+        }
+    }
+
+    /*
+     * Compressed input starting at an arbitrary bit offset, realigned so that
+     * this bit is the first bit of the first byte
+     */
+    private static final class ShiftedInput
+    {
+        private final FileChannel channel;
+        private final int shift;
+        private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        private long offset;
+        private int carry;
+
+        private ShiftedInput(final FileChannel channel, final long bitOffset)
+        {
+            this.channel = channel;
+            offset = bitOffset >>> 3;
+            shift = (int) (bitOffset & 7L);
+            carry = -1;
+        }
+
+        private byte[] next()
+            throws IOException
+        {
+            buffer.clear();
+            int n;
+            do {
+                n = channel.read(buffer, offset);
+            } while (n == 0);
+            if (n == -1) {
+                if (carry == -1)
+                    return null;
+                final byte[] ret = { (byte) (carry >>> shift) };
+                carry = -1;
+                return ret;
+            }
+            offset += n;
+            final byte[] raw = buffer.array();
+            if (shift == 0)
+                return Arrays.copyOf(raw, n);
+
+            /*
+             * With a carry, we have n + 1 raw bytes and can produce n shifted
+             * bytes, keeping the last raw byte; otherwise n - 1
+             */
+            final int start = carry == -1 ? 1 : 0;
+            final byte[] ret = new byte[n - start];
+            int previous = carry == -1 ? raw[0] & 0xff : carry;
+            int current;
+            for (int i = start; i < n; i++) {
+                current = raw[i] & 0xff;
+                ret[i - start] = (byte) (previous >>> shift
+                    | current << (8 - shift));
+                previous = current;
+            }
+            carry = previous;
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the I/O statistics of a file source
+ *
+ * <p>The time spent reading is measured within {@link ByteSource#read(long,
+ * int)}. Note that with {@link IoStrategy#MMAP}, this only covers the creation
+ * of mappings: the actual reads happen when the mapped bytes are accessed
+ * (as page faults), and are not accounted for.</p>
+ *
+ * @see IoStrategy
+ */
+@Immutable
+public final class IoStatistics
+{
+    private final IoStrategy strategy;
+    private final long reads;
+    private final long bytesRead;
+    private final long readNanos;
+    private final long allocations;
+    private final long unmappings;
+    private final long liveBytes;
+    private final long outstandingViews;
+
+    IoStatistics(final IoStrategy strategy, final long reads,
+        final long bytesRead, final long readNanos, final long allocations)
+    {
+        this(strategy, reads, bytesRead, readNanos, allocations, 0L, -1L);
+    }
+
+    IoStatistics(final IoStrategy strategy, final long reads,
+        final long bytesRead, final long readNanos, final long allocations,
+        final long unmappings, final long liveBytes)
+    {
+        this(strategy, reads, bytesRead, readNanos, allocations, unmappings,
+            liveBytes, 0L);
+    }
+
+    IoStatistics(final IoStrategy strategy, final long reads,
+        final long bytesRead, final long readNanos, final long allocations,
+        final long unmappings, final long liveBytes,
+        final long outstandingViews)
+    {
+        this.strategy = strategy;
+        this.reads = reads;
+        this.bytesRead = bytesRead;
+        this.readNanos = readNanos;
+        this.allocations = allocations;
+        this.unmappings = unmappings;
+        this.liveBytes = liveBytes;
+        this.outstandingViews = outstandingViews;
+    }
+
+    /**
+     * Get the I/O strategy of the source
+     *
+     * @return the strategy
+     */
+    public IoStrategy getStrategy()
+    {
+        return strategy;
+    }
+
+    /**
+     * Get the number of reads
+     *
+     * @return the number of calls to {@link ByteSource#read(long, int)}
+     */
+    public long getReads()
+    {
+        return reads;
+    }
+
+    /**
+     * Get the number of bytes read (or mapped)
+     *
+     * @return the number of bytes
+     */
+    public long getBytesRead()
+    {
+        return bytesRead;
+    }
+
+    /**
+     * Get the total time spent reading
+     *
+     * @param unit the time unit
+     * @return the time, in the given unit
+     */
+    public long getReadTime(final TimeUnit unit)
+    {
+        return unit.convert(readNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the number of buffers allocated
+     *
+     * <p>With {@link IoStrategy#MMAP} and {@link IoStrategy#MAPPED_REGIONS},
+     * this is the number of mappings created; with {@link
+     * IoStrategy#POOLED_READ}, the number of direct buffers allocated (that
+     * is, reads which could not reuse a pooled buffer).</p>
+     *
+     * @return the number of buffers
+     */
+    public long getAllocations()
+    {
+        return allocations;
+    }
+
+    /**
+     * Get the number of mappings explicitly released
+     *
+     * <p>This is always 0 unless the strategy is {@link
+     * IoStrategy#MAPPED_REGIONS}. Mappings created and not explicitly
+     * released are either still in use, or left to the garbage collector.
+     * </p>
+     *
+     * @return the number of mappings
+     */
+    public long getUnmappings()
+    {
+        return unmappings;
+    }
+
+    /**
+     * Get the number of bytes of native memory currently held by the source
+     *
+     * <p>With {@link IoStrategy#MAPPED_REGIONS}, this is the size of the
+     * mappings which have not been released yet; with {@link
+     * IoStrategy#POOLED_READ}, the capacity of the pooled direct buffers.
+     * With {@link IoStrategy#MMAP}, mappings are left to the garbage collector
+     * and are not accounted for; the value is then -1.</p>
+     *
+     * @return the number of bytes, or -1 if unknown
+     */
+    public long getLiveBytes()
+    {
+        return liveBytes;
+    }
+
+    /**
+     * Get the number of buffers handed out and not given back yet
+     *
+     * <p>This is always 0 unless the strategy is {@link
+     * IoStrategy#MAPPED_REGIONS}. A non zero value once the source is closed
+     * denotes leaked buffers: their mappings are only released when the
+     * source itself is garbage collected.</p>
+     *
+     * @return the number of buffers
+     * @see ByteSource#release(java.nio.ByteBuffer)
+     */
+    public long getOutstandingViews()
+    {
+        return outstandingViews;
+    }
+
+    @Override
+    public String toString()
+    {
+        return strategy + ": " + reads + " read(s), " + bytesRead
+            + " byte(s), " + TimeUnit.NANOSECONDS.toMillis(readNanos)
+            + " ms, " + allocations + " allocation(s), " + unmappings
+            + " unmapping(s)"
+            + (liveBytes < 0L ? "" : ", " + liveBytes + " live byte(s)")
+            + (outstandingViews == 0L ? ""
+                : ", " + outstandingViews + " outstanding view(s)");
+    }
+}
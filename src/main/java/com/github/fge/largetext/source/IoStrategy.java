@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import javax.annotation.concurrent.Immutable;
+import java.nio.channels.FileChannel;
+
+/**
+ * How the bytes of text files are read
+ *
+ * <p>Sources created by either strategy report their statistics (see {@link
+ * MeteredByteSource#getStatistics()}), so that strategies can be compared for
+ * a given storage.</p>
+ *
+ * @see com.github.fge.largetext.LargeTextFactory.Builder#setIoStrategy(IoStrategy)
+ */
+@Immutable
+public enum IoStrategy
+{
+    /**
+     * Map each window into memory ({@link FileChannel#map(FileChannel.MapMode,
+     * long, long)}); this is the default
+     *
+     * <p>Nothing is copied, but each read creates a new mapping, which is only
+     * released when it is garbage collected; on network file systems, page
+     * faults can also be slow.</p>
+     */
+    MMAP
+    {
+        @Override
+        public MeteredByteSource open(final FileChannel channel)
+        {
+            return new ChannelByteSource(channel);
+        }
+    },
+    /**
+     * Read each window ({@link FileChannel#read(java.nio.ByteBuffer, long)})
+     * into a pool of reusable direct buffers
+     *
+     * <p>Bytes are copied once, but no mappings are created.</p>
+     */
+    POOLED_READ
+    {
+        @Override
+        public MeteredByteSource open(final FileChannel channel)
+        {
+            return new PooledReadByteSource(channel);
+        }
+    },
+    /**
+     * Map the file as a bounded set of large regions, from which windows are
+     * read
+     *
+     * <p>Nothing is copied; mappings are reused across reads, and released
+     * explicitly (see {@link MappedRegionByteSource}), so that the number of
+     * live mappings stays bounded.</p>
+     */
+    MAPPED_REGIONS
+    {
+        @Override
+        public MeteredByteSource open(final FileChannel channel)
+        {
+            return new MappedRegionByteSource(channel);
+        }
+    };
+
+    /**
+     * Create a source over a file channel using this strategy
+     *
+     * <p>Closing the source closes the channel.</p>
+     *
+     * @param channel the channel
+     * @return a new source
+     */
+    public abstract MeteredByteSource open(final FileChannel channel);
+}
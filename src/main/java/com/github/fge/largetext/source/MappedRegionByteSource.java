@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link ByteSource} over a {@link FileChannel}, using a bounded set of large
+ * memory mapped regions
+ *
+ * <p>The file is divided in regions of a fixed size; a region is mapped when
+ * first read from, and reads return views of it. Each region also maps the
+ * first bytes of the next one (a quarter of the region size), so that any
+ * read of at most that many bytes fits in a single region; larger reads
+ * which cross a region boundary use a mapping of their own.</p>
+ *
+ * <p>At most a given number of regions are kept mapped; the least recently
+ * used region is evicted when this number is exceeded. Mappings are released
+ * explicitly, without waiting for the garbage collector, as soon as they are
+ * both evicted (or the source is closed) and no longer in use: a view is in
+ * use until it is given back using {@link #release(ByteBuffer)}. Note that
+ * the source keeps track of the views it hands out: a view which is never
+ * given back keeps its region mapped until the source itself is garbage
+ * collected, even if the view is not reachable anymore. Such views are
+ * reported by {@link IoStatistics#getOutstandingViews()}.</p>
+ *
+ * <p>If the file grows, regions which end before the end of the file are
+ * mapped again when needed.</p>
+ *
+ * @see IoStrategy#MAPPED_REGIONS
+ */
+@ThreadSafe
+public final class MappedRegionByteSource
+    implements MeteredByteSource
+{
+    /**
+     * The default region size (64 MiB)
+     */
+    public static final long DEFAULT_REGION_SIZE = 64L << 20;
+
+    /**
+     * The default maximum number of mapped regions
+     */
+    public static final int DEFAULT_MAX_REGIONS = 8;
+
+    private static final Logger LOGGER
+        = Logger.getLogger(MappedRegionByteSource.class.getCanonicalName());
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final FileChannel channel;
+    private final long regionSize;
+    private final long overlap;
+    private final int maxRegions;
+
+    /*
+     * Mapped regions, in access order
+     */
+    @GuardedBy("this")
+    private final LinkedHashMap<Long, Region> regions
+        = new LinkedHashMap<>(16, 0.75f, true);
+
+    /*
+     * Views handed out and not given back yet, with their region; views are
+     * compared by identity (ByteBuffer's .equals() compares contents)
+     */
+    @GuardedBy("this")
+    private final Map<ByteBuffer, Region> inUse = new IdentityHashMap<>();
+
+    @GuardedBy("this")
+    private boolean closed = false;
+
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong mappings = new AtomicLong();
+    private final AtomicLong unmappings = new AtomicLong();
+    private final AtomicLong liveBytes = new AtomicLong();
+
+    /**
+     * Constructor using the default region size and number of regions
+     *
+     * @param channel the channel
+     */
+    public MappedRegionByteSource(final FileChannel channel)
+    {
+        this(channel, DEFAULT_REGION_SIZE, DEFAULT_MAX_REGIONS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param channel the channel
+     * @param regionSize the region size, in bytes
+     * @param maxRegions the maximum number of mapped regions
+     * @throws IllegalArgumentException region size is less than 4 bytes or
+     * greater than 1 GiB, or number of regions is not strictly positive
+     */
+    public MappedRegionByteSource(final FileChannel channel,
+        final long regionSize, final int maxRegions)
+    {
+        this.channel = Preconditions.checkNotNull(channel,
+            "channel cannot be null");
+        Preconditions.checkArgument(regionSize >= 4L
+            && regionSize <= 1L << 30,
+            "region size must be between 4 bytes and 1 GiB");
+        Preconditions.checkArgument(maxRegions > 0,
+            "maximum number of regions must be strictly positive");
+        this.regionSize = regionSize;
+        overlap = regionSize / 4L;
+        this.maxRegions = maxRegions;
+    }
+
+    @Override
+    public long size()
+        throws IOException
+    {
+        return channel.size();
+    }
+
+    @Override
+    public ByteBuffer read(final long offset, final int length)
+        throws IOException
+    {
+        Preconditions.checkArgument(offset >= 0L,
+            "offset must not be negative");
+        Preconditions.checkArgument(length >= 0,
+            "length must not be negative");
+        final long start = System.nanoTime();
+        reads.incrementAndGet();
+        final long fileSize = channel.size();
+        final long size = Math.min((long) length, fileSize - offset);
+        if (size <= 0L)
+            return EMPTY.duplicate();
+
+        final long index = offset / regionSize;
+        final long regionStart = index * regionSize;
+        final ByteBuffer ret;
+
+        synchronized (this) {
+            Preconditions.checkState(!closed, "source is closed");
+            if (offset + size > regionStart + regionSize + overlap) {
+                // Too large: a mapping of its own
+                final Region region = new Region(map(offset, size), offset);
+                region.retired = true;
+                ret = region.view(offset, (int) size);
+            } else {
+                Region region = regions.get(index);
+                if (region == null || region.end() < offset + size) {
+                    if (region != null)
+                        retire(regions.remove(index));
+                    region = new Region(map(regionStart, Math.min(fileSize,
+                        regionStart + regionSize + overlap) - regionStart),
+                        regionStart);
+                    regions.put(index, region);
+                    evict();
+                }
+                ret = region.view(offset, (int) size);
+            }
+        }
+
+        bytesRead.addAndGet(size);
+        readNanos.addAndGet(System.nanoTime() - start);
+        return ret;
+    }
+
+    @Override
+    public synchronized void release(final ByteBuffer buffer)
+    {
+        final Region region = inUse.remove(buffer);
+        if (region == null)
+            return;
+        region.refs--;
+        if (region.retired && region.refs == 0)
+            unmap(region);
+    }
+
+    @Override
+    public IoStatistics getStatistics()
+    {
+        final long outstanding;
+        synchronized (this) {
+            outstanding = inUse.size();
+        }
+        return new IoStatistics(IoStrategy.MAPPED_REGIONS, reads.get(),
+            bytesRead.get(), readNanos.get(), mappings.get(),
+            unmappings.get(), liveBytes.get(), outstanding);
+    }
+
+    /**
+     * Close this source
+     *
+     * <p>Regions which are not in use are unmapped immediately; others are
+     * unmapped when their last view is given back. Regions with views which
+     * are never given back are not unmapped at all until the source is
+     * garbage collected, and their size remains accounted for in {@link
+     * IoStatistics#getLiveBytes()}; a warning is logged if views are still
+     * outstanding when this method is called.</p>
+     *
+     * @throws IOException failed to close the channel
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        final int outstanding;
+        synchronized (this) {
+            closed = true;
+            for (final Region region: regions.values())
+                retire(region);
+            regions.clear();
+            outstanding = inUse.size();
+        }
+        if (outstanding > 0)
+            LOGGER.log(Level.WARNING, "{0} view(s) not given back at close;"
+                + " their regions remain mapped", outstanding);
+        channel.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getStatistics().toString();
+    }
+
+    private MappedByteBuffer map(final long offset, final long size)
+        throws IOException
+    {
+        final MappedByteBuffer ret
+            = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        mappings.incrementAndGet();
+        liveBytes.addAndGet(size);
+        return ret;
+    }
+
+    @GuardedBy("this")
+    private void evict()
+    {
+        final Iterator<Region> iterator = regions.values().iterator();
+        while (regions.size() > maxRegions) {
+            retire(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    @GuardedBy("this")
+    private void retire(final Region region)
+    {
+        region.retired = true;
+        if (region.refs == 0)
+            unmap(region);
+    }
+
+    @GuardedBy("this")
+    private void unmap(final Region region)
+    {
+        // If it cannot be unmapped, it is left to the garbage collector
+        liveBytes.addAndGet(-region.buffer.capacity());
+        if (Unmapper.unmap(region.buffer))
+            unmappings.incrementAndGet();
+    }
+
+    @NotThreadSafe
+    private final class Region
+    {
+        private final MappedByteBuffer buffer;
+        private final long start;
+        private int refs = 0;
+        private boolean retired = false;
+
+        private Region(final MappedByteBuffer buffer, final long start)
+        {
+            this.buffer = buffer;
+            this.start = start;
+        }
+
+        private long end()
+        {
+            return start + buffer.capacity();
+        }
+
+        @GuardedBy("MappedRegionByteSource.this")
+        private ByteBuffer view(final long offset, final int size)
+        {
+            final ByteBuffer view = buffer.duplicate();
+            final int position = (int) (offset - start);
+            view.limit(position + size).position(position);
+            final ByteBuffer ret = view.slice().asReadOnlyBuffer();
+            refs++;
+            inUse.put(ret, this);
+            return ret;
+        }
+    }
+}
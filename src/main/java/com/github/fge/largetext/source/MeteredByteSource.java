@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link ByteSource} which keeps I/O statistics
+ *
+ * <p>The {@link #toString()} method of implementations should include the
+ * statistics; it is logged when a text is closed.</p>
+ *
+ * @see IoStrategy
+ */
+@ThreadSafe
+public interface MeteredByteSource
+    extends ByteSource
+{
+    /**
+     * Get the statistics of this source
+     *
+     * @return a snapshot of the statistics at the time of the call
+     */
+    IoStatistics getStatistics();
+}
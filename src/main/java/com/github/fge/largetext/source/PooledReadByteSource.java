@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ByteSource} over a {@link FileChannel}, using positional reads into
+ * pooled direct buffers
+ *
+ * <p>Buffers given back using {@link #release(ByteBuffer)} are kept for reuse,
+ * up to a fixed number of them; a read reuses the first pooled buffer large
+ * enough for it, if any. Buffers which are not given back are left to the
+ * garbage collector. Only buffers obtained from this source, and not given
+ * back yet, are pooled; others (including duplicates or slices of the
+ * returned buffers) are ignored.</p>
+ *
+ * <p>Closing the source closes the channel.</p>
+ *
+ * @see IoStrategy#POOLED_READ
+ */
+@ThreadSafe
+public final class PooledReadByteSource
+    implements MeteredByteSource
+{
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final int MAX_POOLED = 16;
+    private static final int MIN_CAPACITY = 65536;
+
+    private final FileChannel channel;
+
+    @GuardedBy("pool")
+    private final Deque<ByteBuffer> pool = new ArrayDeque<>();
+    @GuardedBy("pool")
+    private long pooledBytes = 0L;
+
+    /*
+     * Buffers handed out by read() and not given back yet. Keys are weak (and
+     * compared by identity), so that buffers never given back can still be
+     * garbage collected.
+     */
+    private final Set<ByteBuffer> outstanding = Collections.newSetFromMap(
+        new MapMaker().weakKeys().<ByteBuffer, Boolean>makeMap());
+
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong allocations = new AtomicLong();
+
+    public PooledReadByteSource(final FileChannel channel)
+    {
+        this.channel = Preconditions.checkNotNull(channel,
+            "channel cannot be null");
+    }
+
+    @Override
+    public long size()
+        throws IOException
+    {
+        return channel.size();
+    }
+
+    @Override
+    public ByteBuffer read(final long offset, final int length)
+        throws IOException
+    {
+        Preconditions.checkArgument(offset >= 0L,
+            "offset must not be negative");
+        Preconditions.checkArgument(length >= 0,
+            "length must not be negative");
+        final long start = System.nanoTime();
+        reads.incrementAndGet();
+        final long size = Math.min((long) length, channel.size() - offset);
+        if (size <= 0L)
+            return EMPTY.duplicate();
+
+        final ByteBuffer buffer = take((int) size);
+        buffer.limit((int) size);
+        int n;
+        while (buffer.hasRemaining()) {
+            n = channel.read(buffer, offset + buffer.position());
+            if (n == -1)
+                break;
+        }
+        buffer.flip();
+        bytesRead.addAndGet(buffer.limit());
+        readNanos.addAndGet(System.nanoTime() - start);
+        return buffer;
+    }
+
+    @Override
+    public void release(final ByteBuffer buffer)
+    {
+        /*
+         * Buffers of other sources, or empty buffers, are not ours; and a
+         * buffer given back twice must not be pooled twice.
+         */
+        if (!outstanding.remove(buffer))
+            return;
+        synchronized (pool) {
+            if (pool.size() >= MAX_POOLED)
+                return;
+            pool.addFirst(buffer);
+            pooledBytes += buffer.capacity();
+        }
+    }
+
+    @Override
+    public IoStatistics getStatistics()
+    {
+        final long live;
+        synchronized (pool) {
+            live = pooledBytes;
+        }
+        return new IoStatistics(IoStrategy.POOLED_READ, reads.get(),
+            bytesRead.get(), readNanos.get(), allocations.get(), 0L, live);
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        synchronized (pool) {
+            pool.clear();
+            pooledBytes = 0L;
+        }
+        channel.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getStatistics().toString();
+    }
+
+    private ByteBuffer take(final int size)
+    {
+        ByteBuffer buffer = null;
+        synchronized (pool) {
+            final Iterator<ByteBuffer> iterator = pool.iterator();
+            ByteBuffer candidate;
+            while (iterator.hasNext()) {
+                candidate = iterator.next();
+                if (candidate.capacity() >= size) {
+                    iterator.remove();
+                    pooledBytes -= candidate.capacity();
+                    buffer = candidate;
+                    break;
+                }
+            }
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(Math.max(size, MIN_CAPACITY));
+            allocations.incrementAndGet();
+        }
+        buffer.clear();
+        outstanding.add(buffer);
+        return buffer;
+    }
+}
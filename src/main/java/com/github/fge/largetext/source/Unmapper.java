@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Explicit release of memory mappings
+ *
+ * <p>There is no public API to unmap a {@link MappedByteBuffer}: mappings are
+ * only released when buffers are garbage collected. This class uses the
+ * buffer's cleaner directly: via {@code sun.misc.Unsafe.invokeCleaner()} on
+ * Java 9 and later, or via the (non public) {@code cleaner()} method of the
+ * buffer before that. If neither is available, unmapping is left to the
+ * garbage collector.</p>
+ *
+ * <p><strong>Accessing a buffer, or any view of it, after it has been
+ * unmapped crashes the JVM.</strong> Callers must make sure that no such
+ * access can happen.</p>
+ */
+@ThreadSafe
+final class Unmapper
+{
+    private static final Logger LOGGER
+        = Logger.getLogger(Unmapper.class.getCanonicalName());
+
+    @Nullable
+    private static final Object UNSAFE;
+    @Nullable
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            final Class<?> c = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = c.getMethod("invokeCleaner", ByteBuffer.class);
+            final Field field = c.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (Exception ignored) {
+            // Java 8 or earlier; see unmap()
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private Unmapper()
+    {
+    }
+
+    /**
+     * Unmap a buffer
+     *
+     * @param buffer the buffer (not a view of it)
+     * @return true if the buffer has been unmapped
+     */
+    static boolean unmap(final MappedByteBuffer buffer)
+    {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return true;
+            }
+            final Method cleanerMethod
+                = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner == null)
+                return false;
+            final Method clean = cleaner.getClass().getMethod("clean");
+            clean.setAccessible(true);
+            clean.invoke(cleaner);
+            return true;
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "unable to unmap buffer", e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+/**
+ * Sources of bytes for a {@link com.github.fge.largetext.LargeText}
+ *
+ * <p>The decoding process ({@link com.github.fge.largetext.load.TextDecoder})
+ * and the window cache ({@link com.github.fge.largetext.load.TextCache}) do not
+ * read files directly; they read from a {@link
+ * com.github.fge.largetext.source.ByteSource}, which provides positional
+ * reads. Offsets are those of the bytes of the text, which are not
+ * necessarily those of a file: for instance, {@link
+ * com.github.fge.largetext.source.GzipByteSource} provides the bytes of the
+ * decompressed contents of a gzip file, and {@link
+ * com.github.fge.largetext.source.BlockTextSource} those of a block text file
+ * written by {@link com.github.fge.largetext.source.BlockTextWriter}.</p>
+ */
+package com.github.fge.largetext.source;
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.trace;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.Immutable;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * An access trace, as recorded by an {@link AccessTraceRecorder}
+ *
+ * <p>A trace is a sequence of accesses (char ranges: one char for a {@code
+ * charAt()}, the subsequence range otherwise), along with the windows decoded
+ * by the decoding process. The latter are used to map char offsets to byte
+ * offsets: within a window, bytes are assumed to be evenly distributed over
+ * characters.</p>
+ *
+ * <p>A trace which was not properly closed (if the application crashed, for
+ * instance) can still be read, up to its last complete record; its recorded
+ * window size is then that of the largest decoded window.</p>
+ *
+ * @see TraceReplay
+ */
+@Immutable
+public final class AccessTrace
+{
+    private final long[] byteStarts;
+    private final long[] byteEnds;
+    private final int[] charStarts;
+    private final int[] charEnds;
+    private final int nrWindows;
+    private final long recordedWindowSize;
+
+    private final int[] starts;
+    private final int[] ends;
+    private final int nrAccesses;
+    private final int nrCharAts;
+
+    /**
+     * Read a trace from a file
+     *
+     * @param path the path to the trace file
+     * @return the trace
+     * @throws IOException failed to read the file, or it is not a trace
+     */
+    public static AccessTrace read(final Path path)
+        throws IOException
+    {
+        Preconditions.checkNotNull(path, "path cannot be null");
+        try (
+            final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path)));
+        ) {
+            if (in.readInt() != TraceFormat.MAGIC)
+                throw new IOException(path + " is not an access trace");
+            final int version = in.readUnsignedByte();
+            if (version != TraceFormat.VERSION)
+                throw new IOException("unsupported trace version " + version);
+            return new Reader(in.readLong()).read(in);
+        }
+    }
+
+    private AccessTrace(final Reader reader)
+    {
+        byteStarts = Arrays.copyOf(reader.byteStarts, reader.nrWindows);
+        byteEnds = Arrays.copyOf(reader.byteEnds, reader.nrWindows);
+        charStarts = Arrays.copyOf(reader.charStarts, reader.nrWindows);
+        charEnds = Arrays.copyOf(reader.charEnds, reader.nrWindows);
+        nrWindows = reader.nrWindows;
+        long windowSize = reader.recordedWindowSize;
+        if (windowSize == 0L)
+            for (int i = 0; i < nrWindows; i++)
+                windowSize = Math.max(windowSize, byteEnds[i] - byteStarts[i]);
+        recordedWindowSize = windowSize;
+        starts = Arrays.copyOf(reader.starts, reader.nrAccesses);
+        ends = Arrays.copyOf(reader.ends, reader.nrAccesses);
+        nrAccesses = reader.nrAccesses;
+        nrCharAts = reader.nrCharAts;
+    }
+
+    /**
+     * Get the number of recorded accesses
+     *
+     * @return the number of accesses
+     */
+    public int getNrAccesses()
+    {
+        return nrAccesses;
+    }
+
+    /**
+     * Get the number of recorded slow path {@code charAt()} calls
+     *
+     * @return the number of calls; other accesses are subsequences
+     */
+    public int getNrCharAts()
+    {
+        return nrCharAts;
+    }
+
+    /**
+     * Get the number of windows decoded when the trace was recorded
+     *
+     * @return the number of windows
+     */
+    public int getNrWindows()
+    {
+        return nrWindows;
+    }
+
+    /**
+     * Get the number of bytes decoded when the trace was recorded
+     *
+     * @return the number of bytes
+     */
+    public long getTotalBytes()
+    {
+        return nrWindows == 0 ? 0L : byteEnds[nrWindows - 1];
+    }
+
+    /**
+     * Get the number of chars decoded when the trace was recorded
+     *
+     * @return the number of chars
+     */
+    public int getTotalChars()
+    {
+        return nrWindows == 0 ? 0 : charEnds[nrWindows - 1];
+    }
+
+    /**
+     * Get the recorded window size
+     *
+     * <p>This is the size of the largest window which was current for {@code
+     * charAt()} at some point while the trace was recorded. Calls which hit the
+     * current window are not recorded; replaying this trace with a smaller
+     * window size will therefore undercount lookups and misses.</p>
+     *
+     * @return the window size, in bytes
+     */
+    public long getRecordedWindowSize()
+    {
+        return recordedWindowSize;
+    }
+
+    int getStart(final int index)
+    {
+        return starts[index];
+    }
+
+    int getEnd(final int index)
+    {
+        return ends[index];
+    }
+
+    /*
+     * Map a char offset to a byte offset; beyond the last window, the ratio
+     * of bytes to chars of the last window is used.
+     */
+    long byteOffset(final int charOffset)
+    {
+        if (nrWindows == 0)
+            return charOffset;
+        int index = Arrays.binarySearch(charStarts, charOffset);
+        if (index < 0)
+            index = Math.max(0, -index - 2);
+        return byteStarts[index] + (long) ((double) (charOffset
+            - charStarts[index]) * (byteEnds[index] - byteStarts[index])
+            / Math.max(1, charEnds[index] - charStarts[index]));
+    }
+
+    private static final class Reader
+    {
+        private final long recordedWindowSize;
+
+        private long[] byteStarts = new long[16];
+        private long[] byteEnds = new long[16];
+        private int[] charStarts = new int[16];
+        private int[] charEnds = new int[16];
+        private int nrWindows = 0;
+
+        private int[] starts = new int[1024];
+        private int[] ends = new int[1024];
+        private int nrAccesses = 0;
+        private int nrCharAts = 0;
+
+        private long lastByteEnd = 0L;
+        private int lastCharEnd = 0;
+        private int lastStart = 0;
+
+        private Reader(final long recordedWindowSize)
+        {
+            this.recordedWindowSize = recordedWindowSize;
+        }
+
+        private AccessTrace read(final DataInputStream in)
+            throws IOException
+        {
+            int tag;
+            while ((tag = in.read()) != -1) {
+                try {
+                    readRecord(tag, in);
+                } catch (EOFException ignored) {
+                    // Truncated trace
+                    break;
+                }
+            }
+            return new AccessTrace(this);
+        }
+
+        private void readRecord(final int tag, final DataInputStream in)
+            throws IOException
+        {
+            switch (tag) {
+                case TraceFormat.WINDOW:
+                    final long byteStart = lastByteEnd
+                        + TraceFormat.readSigned(in);
+                    final long byteEnd = byteStart
+                        + TraceFormat.readVarLong(in);
+                    final int charStart = (int) (lastCharEnd
+                        + TraceFormat.readSigned(in));
+                    final int charEnd = (int) (charStart
+                        + TraceFormat.readVarLong(in));
+                    addWindow(byteStart, byteEnd, charStart, charEnd);
+                    break;
+                case TraceFormat.CHAR_AT:
+                    lastStart = (int) (lastStart + TraceFormat.readSigned(in));
+                    addAccess(lastStart, lastStart + 1);
+                    nrCharAts++;
+                    break;
+                case TraceFormat.SUB_SEQUENCE:
+                    lastStart = (int) (lastStart + TraceFormat.readSigned(in));
+                    addAccess(lastStart,
+                        (int) (lastStart + TraceFormat.readVarLong(in)));
+                    break;
+                default:
+                    throw new IOException("unknown record type " + tag);
+            }
+        }
+
+        private void addWindow(final long byteStart, final long byteEnd,
+            final int charStart, final int charEnd)
+        {
+            // When following a file, the last window may be decoded again
+            while (nrWindows > 0 && charStarts[nrWindows - 1] >= charStart)
+                nrWindows--;
+            if (nrWindows == charStarts.length) {
+                final int size = 2 * nrWindows;
+                byteStarts = Arrays.copyOf(byteStarts, size);
+                byteEnds = Arrays.copyOf(byteEnds, size);
+                charStarts = Arrays.copyOf(charStarts, size);
+                charEnds = Arrays.copyOf(charEnds, size);
+            }
+            byteStarts[nrWindows] = byteStart;
+            byteEnds[nrWindows] = byteEnd;
+            charStarts[nrWindows] = charStart;
+            charEnds[nrWindows] = charEnd;
+            nrWindows++;
+            lastByteEnd = byteEnd;
+            lastCharEnd = charEnd;
+        }
+
+        private void addAccess(final int start, final int end)
+        {
+            if (nrAccesses == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * nrAccesses);
+                ends = Arrays.copyOf(ends, 2 * nrAccesses);
+            }
+            starts[nrAccesses] = start;
+            ends[nrAccesses] = end;
+            nrAccesses++;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.trace;
+
+import com.github.fge.largetext.LargeTextException;
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.metrics.MetricsListener;
+import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.range.LongRange;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link MetricsListener} recording the accesses to texts into trace files
+ *
+ * <p>Set an instance of this class on a {@link LargeTextFactory} (see {@link
+ * LargeTextFactory.Builder#setMetricsListener(MetricsListener)}); each text
+ * it creates then records, into a file of its own in the trace directory:</p>
+ *
+ * <ul>
+ *     <li>the windows decoded by the decoding process (so that char offsets
+ *     can be mapped to byte offsets when replaying the trace);</li>
+ *     <li>the indices of {@code charAt()} calls which miss the current
+ *     window (calls which hit it cost nothing and are not recorded);</li>
+ *     <li>the ranges of subsequences.</li>
+ * </ul>
+ *
+ * <p>Since {@code charAt()} calls hitting the current window are not
+ * recorded, the size in bytes of the largest window which was current at some
+ * point is recorded as well, as the recorded window size of the trace (see
+ * {@link AccessTrace#getRecordedWindowSize()}).</p>
+ *
+ * <p>Files are named after the source of the text, followed by a sequence
+ * number and {@code .trace}; see {@link AccessTrace} to read them, and {@link
+ * TraceReplay} to simulate other window and cache sizes against them.</p>
+ *
+ * <p>Traces are buffered; this recorder must be closed after the texts, so
+ * that all traces are written out. If writing a trace fails, recording stops
+ * for this trace, and the error is thrown when the recorder is closed.</p>
+ */
+@ThreadSafe
+public final class AccessTraceRecorder
+    implements MetricsListener, Closeable
+{
+    private static final int MAX_NAME_LENGTH = 64;
+
+    private final Path directory;
+
+    @GuardedBy("traces")
+    private final List<SourceTrace> traces = new ArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param directory the directory to write traces into; it must exist
+     * @throws NullPointerException directory is null
+     */
+    public AccessTraceRecorder(final Path directory)
+    {
+        this.directory = Preconditions.checkNotNull(directory,
+            "directory cannot be null");
+    }
+
+    /**
+     * Obtain a listener recording the accesses to one source into a new file
+     *
+     * @param name the name of the source
+     * @return a listener
+     * @throws LargeTextException failed to create the trace file
+     */
+    @Override
+    public MetricsListener forSource(final String name)
+    {
+        synchronized (traces) {
+            final Path path = directory.resolve(fileName(name, traces.size()));
+            final SourceTrace trace;
+            try {
+                trace = new SourceTrace(path);
+            } catch (IOException e) {
+                throw new LargeTextException("cannot create trace file "
+                    + path, e);
+            }
+            traces.add(trace);
+            return trace;
+        }
+    }
+
+    /*
+     * The factory only uses listeners obtained from forSource(); events
+     * reported to this instance itself have no source, and are ignored.
+     */
+
+    @Override
+    public void starting(final Operation operation)
+    {
+    }
+
+    @Override
+    public void windowDecoded(final TextRange textRange, final long nanos)
+    {
+    }
+
+    @Override
+    public void windowLoaded(final TextRange textRange, final long nanos)
+    {
+    }
+
+    @Override
+    public void windowEvicted(final TextRange textRange)
+    {
+    }
+
+    @Override
+    public void charAtSlowPath(final int index, final TextRange window,
+        final long fastPathHits, final long nanos)
+    {
+    }
+
+    @Override
+    public void waited(final int required, final long nanos)
+    {
+    }
+
+    @Override
+    public void subSequence(final IntRange range, final int nrWindows,
+        final long nanos)
+    {
+    }
+
+    /**
+     * Write out and close all traces
+     *
+     * @throws IOException failed to write a trace
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        final List<SourceTrace> list;
+        synchronized (traces) {
+            list = new ArrayList<>(traces);
+            traces.clear();
+        }
+        IOException exception = null;
+        for (final SourceTrace trace: list) {
+            try {
+                trace.close();
+            } catch (IOException e) {
+                if (exception == null)
+                    exception = e;
+                else
+                    exception.addSuppressed(e);
+            }
+        }
+        if (exception != null)
+            throw exception;
+    }
+
+    private static String fileName(final String name, final int index)
+    {
+        String ret = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        if (ret.length() > MAX_NAME_LENGTH)
+            ret = ret.substring(ret.length() - MAX_NAME_LENGTH);
+        return ret + '.' + index + ".trace";
+    }
+
+    @ThreadSafe
+    private static final class SourceTrace
+        implements MetricsListener, Closeable
+    {
+        @GuardedBy("this")
+        private final FileChannel channel;
+        @GuardedBy("this")
+        private final DataOutputStream out;
+        @GuardedBy("this")
+        private IOException failure = null;
+        @GuardedBy("this")
+        private boolean closed = false;
+        @GuardedBy("this")
+        private long lastByteEnd = 0L;
+        @GuardedBy("this")
+        private int lastCharEnd = 0;
+        @GuardedBy("this")
+        private int lastStart = 0;
+        @GuardedBy("this")
+        private long windowSize = 0L;
+
+        private SourceTrace(final Path path)
+            throws IOException
+        {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            out = new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(channel)));
+            out.writeInt(TraceFormat.MAGIC);
+            out.writeByte(TraceFormat.VERSION);
+            // Written again on close()
+            out.writeLong(0L);
+        }
+
+        @Override
+        public MetricsListener forSource(final String name)
+        {
+            return this;
+        }
+
+        @Override
+        public void starting(final Operation operation)
+        {
+        }
+
+        @Override
+        public synchronized void windowDecoded(final TextRange textRange,
+            final long nanos)
+        {
+            if (closed || failure != null)
+                return;
+            final long byteStart = textRange.getByteRange().getLowerBound();
+            final long byteEnd = textRange.getByteRange().getUpperBound();
+            final int charStart = textRange.getCharRange().getLowerBound();
+            final int charEnd = textRange.getCharRange().getUpperBound();
+            try {
+                out.writeByte(TraceFormat.WINDOW);
+                TraceFormat.writeSigned(out, byteStart - lastByteEnd);
+                TraceFormat.writeVarLong(out, byteEnd - byteStart);
+                TraceFormat.writeSigned(out, charStart - lastCharEnd);
+                TraceFormat.writeVarLong(out, charEnd - charStart);
+            } catch (IOException e) {
+                failure = e;
+            }
+            lastByteEnd = byteEnd;
+            lastCharEnd = charEnd;
+        }
+
+        @Override
+        public void windowLoaded(final TextRange textRange, final long nanos)
+        {
+        }
+
+        @Override
+        public void windowEvicted(final TextRange textRange)
+        {
+        }
+
+        @Override
+        public synchronized void charAtSlowPath(final int index,
+            final TextRange window, final long fastPathHits, final long nanos)
+        {
+            if (closed || failure != null)
+                return;
+            final LongRange byteRange = window.getByteRange();
+            windowSize = Math.max(windowSize, byteRange.getUpperBound()
+                - byteRange.getLowerBound());
+            try {
+                out.writeByte(TraceFormat.CHAR_AT);
+                TraceFormat.writeSigned(out, (long) index - lastStart);
+            } catch (IOException e) {
+                failure = e;
+            }
+            lastStart = index;
+        }
+
+        @Override
+        public void waited(final int required, final long nanos)
+        {
+        }
+
+        @Override
+        public synchronized void subSequence(final IntRange range,
+            final int nrWindows, final long nanos)
+        {
+            if (closed || failure != null)
+                return;
+            final int start = range.getLowerBound();
+            try {
+                out.writeByte(TraceFormat.SUB_SEQUENCE);
+                TraceFormat.writeSigned(out, (long) start - lastStart);
+                TraceFormat.writeVarLong(out, range.getUpperBound() - start);
+            } catch (IOException e) {
+                failure = e;
+            }
+            lastStart = start;
+        }
+
+        @Override
+        public synchronized void close()
+            throws IOException
+        {
+            if (closed)
+                return;
+            closed = true;
+            try {
+                try {
+                    out.flush();
+                    writeWindowSize();
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                if (failure == null)
+                    failure = e;
+            }
+            if (failure != null)
+                throw failure;
+        }
+
+        @GuardedBy("this")
+        private void writeWindowSize()
+            throws IOException
+        {
+            final ByteBuffer buffer = ByteBuffer.allocate(8);
+            buffer.putLong(windowSize).flip();
+            long position = TraceFormat.WINDOW_SIZE_OFFSET;
+            while (buffer.hasRemaining())
+                position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.trace;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The result of the replay of an access trace with one configuration
+ *
+ * @see TraceReplay#replay(AccessTrace, long, int, int)
+ */
+@Immutable
+public final class ReplayResult
+{
+    /**
+     * Header of the CSV output, matching {@link #toCsv()}
+     */
+    public static final String CSV_HEADER = "windowSize,cacheWindows,prefetch,"
+        + "lookups,hits,misses,hitRate,bytesDecoded,peakMemory,undercounted";
+
+    private final long windowSize;
+    private final int cacheWindows;
+    private final int prefetch;
+    private final long lookups;
+    private final long hits;
+    private final long bytesDecoded;
+    private final long peakMemory;
+    private final boolean undercounted;
+
+    ReplayResult(final long windowSize, final int cacheWindows,
+        final int prefetch, final long lookups, final long hits,
+        final long bytesDecoded, final long peakMemory,
+        final boolean undercounted)
+    {
+        this.windowSize = windowSize;
+        this.cacheWindows = cacheWindows;
+        this.prefetch = prefetch;
+        this.lookups = lookups;
+        this.hits = hits;
+        this.bytesDecoded = bytesDecoded;
+        this.peakMemory = peakMemory;
+        this.undercounted = undercounted;
+    }
+
+    /**
+     * Get the simulated window size
+     *
+     * @return the window size, in bytes
+     */
+    public long getWindowSize()
+    {
+        return windowSize;
+    }
+
+    /**
+     * Get the simulated number of cached windows
+     *
+     * @return the number of windows
+     */
+    public int getCacheWindows()
+    {
+        return cacheWindows;
+    }
+
+    /**
+     * Get the simulated prefetch depth
+     *
+     * @return the number of windows loaded after a missed window
+     */
+    public int getPrefetch()
+    {
+        return prefetch;
+    }
+
+    /**
+     * Get the number of window lookups
+     *
+     * <p>A {@code charAt()} looks up one window; a subsequence looks up all the
+     * windows it spans.</p>
+     *
+     * @return the number of lookups
+     */
+    public long getLookups()
+    {
+        return lookups;
+    }
+
+    /**
+     * Get the number of lookups which found their window in the cache
+     *
+     * @return the number of hits
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups which had to load their window
+     *
+     * @return the number of misses
+     */
+    public long getMisses()
+    {
+        return lookups - hits;
+    }
+
+    /**
+     * Get the hit rate
+     *
+     * @return the ratio of hits to lookups (1.0 if there were no lookups)
+     */
+    public double getHitRate()
+    {
+        return lookups == 0L ? 1.0 : (double) hits / lookups;
+    }
+
+    /**
+     * Get the number of bytes decoded to load windows (prefetched or not)
+     *
+     * @return the number of bytes
+     */
+    public long getBytesDecoded()
+    {
+        return bytesDecoded;
+    }
+
+    /**
+     * Get the peak heap used by cached windows
+     *
+     * @return the number of bytes
+     */
+    public long getPeakMemory()
+    {
+        return peakMemory;
+    }
+
+    /**
+     * Tell whether lookups and misses are undercounted
+     *
+     * <p>This is the case when the simulated window size is smaller than the
+     * recorded window size of the trace: accesses which hit the current
+     * window when the trace was recorded are not part of the trace, even
+     * though they may have missed with smaller windows.</p>
+     *
+     * @return true if the simulated window size is smaller than the recorded
+     * one
+     *
+     * @see AccessTrace#getRecordedWindowSize()
+     */
+    public boolean isUndercounted()
+    {
+        return undercounted;
+    }
+
+    /**
+     * Get this result as a line of CSV
+     *
+     * @return the line, without a line terminator
+     *
+     * @see #CSV_HEADER
+     */
+    public String toCsv()
+    {
+        return windowSize + "," + cacheWindows + "," + prefetch + ","
+            + lookups + "," + hits + "," + getMisses() + ","
+            + String.format("%.4f", getHitRate()) + "," + bytesDecoded + ","
+            + peakMemory + "," + undercounted;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "window size " + windowSize + ", " + cacheWindows
+            + " cached window(s), prefetch " + prefetch + ": hit rate "
+            + String.format("%.2f%%", 100.0 * getHitRate()) + ", "
+            + bytesDecoded + " byte(s) decoded, peak memory " + peakMemory
+            + (undercounted ? " (undercounted)" : "");
+    }
+}
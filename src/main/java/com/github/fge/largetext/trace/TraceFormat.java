@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.trace;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The binary format of access traces
+ *
+ * <p>A trace starts with a magic number, a version number and the recorded
+ * window size (as a fixed size long, in bytes, written when the trace is
+ * closed; 0 if it was not), followed by records. Each record is a tag byte
+ * followed by variable length integers (seven bits per byte, least
+ * significant group first); offsets are written as zigzag encoded deltas, so
+ * that the accesses of a scan cost one or two bytes each:</p>
+ *
+ * <ul>
+ *     <li>{@link #WINDOW}: a window decoded by the decoding process; the
+ *     delta of its byte start to the previous window's byte end, its number
+ *     of bytes, the delta of its char start to the previous window's char
+ *     end, its number of chars;</li>
+ *     <li>{@link #CHAR_AT}: a slow path {@code charAt()}; the delta of the
+ *     index to the start of the previous access;</li>
+ *     <li>{@link #SUB_SEQUENCE}: a subsequence; the delta of its start to the
+ *     start of the previous access, its length.</li>
+ * </ul>
+ */
+final class TraceFormat
+{
+    static final int MAGIC = 0x4c545452; // "LTTR"
+    static final int VERSION = 2;
+
+    /*
+     * Offset of the recorded window size in the header
+     */
+    static final long WINDOW_SIZE_OFFSET = 5L;
+
+    static final int WINDOW = 1;
+    static final int CHAR_AT = 2;
+    static final int SUB_SEQUENCE = 3;
+
+    private TraceFormat()
+    {
+    }
+
+    static void writeVarLong(final DataOutput out, final long value)
+        throws IOException
+    {
+        long v = value;
+        while ((v & ~0x7fL) != 0L) {
+            out.writeByte((int) (v & 0x7fL) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    static long readVarLong(final DataInput in)
+        throws IOException
+    {
+        long ret = 0L;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 63)
+                throw new IOException("malformed variable length integer");
+            b = in.readUnsignedByte();
+            ret |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return ret;
+    }
+
+    static void writeSigned(final DataOutput out, final long value)
+        throws IOException
+    {
+        writeVarLong(out, value << 1 ^ value >> 63);
+    }
+
+    static long readSigned(final DataInput in)
+        throws IOException
+    {
+        final long v = readVarLong(in);
+        return v >>> 1 ^ -(v & 1L);
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.trace;
+
+import com.github.fge.largetext.SizeUnit;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Offline replay of access traces against other window and cache sizes
+ *
+ * <p>The replay simulates, for a given window size, a cache holding a given
+ * number of windows, evicting the least recently used one; on a miss, a given
+ * number of following windows can also be loaded (prefetched). Note that the
+ * actual text cache evicts windows after some time without access instead;
+ * the number of cached windows to simulate is therefore that which the
+ * working set is expected to fit in.</p>
+ *
+ * <p>A trace does not contain the {@code charAt()} calls which hit the
+ * current window when it was recorded. Replays with a window size smaller
+ * than the recorded window size of the trace (see {@link
+ * AccessTrace#getRecordedWindowSize()}) therefore undercount lookups and
+ * misses, and are marked as such (see {@link ReplayResult#isUndercounted()});
+ * record the trace with the smallest window size of interest.</p>
+ *
+ * <p>This class can also be run from the command line:</p>
+ *
+ * <pre>
+ *     TraceReplay trace-file [--window-sizes 64KiB,2MiB,...]
+ *         [--cache-sizes 4,16,...] [--prefetch 0,1,...]
+ * </pre>
+ *
+ * <p>All combinations are replayed, and results are written as CSV to the
+ * standard output; the last column tells whether the row is undercounted.
+ * </p>
+ */
+public final class TraceReplay
+{
+    private static final Pattern SIZE = Pattern.compile("(\\d+)(B|KiB|MiB|GiB)?");
+    private static final Splitter COMMA = Splitter.on(',').trimResults()
+        .omitEmptyStrings();
+
+    private static final String DEFAULT_WINDOW_SIZES
+        = "64KiB,256KiB,1MiB,2MiB,8MiB,32MiB";
+    private static final String DEFAULT_CACHE_SIZES = "4,16,64";
+    private static final String DEFAULT_PREFETCH = "0,1,2";
+
+    private TraceReplay()
+    {
+    }
+
+    /**
+     * Replay a trace with one configuration
+     *
+     * @param trace the trace
+     * @param windowSize the window size, in bytes
+     * @param cacheWindows the number of windows the cache can hold
+     * @param prefetch the number of windows to load after a missed window
+     * @return the result
+     * @throws IllegalArgumentException window size or number of cached
+     * windows is not strictly positive, or prefetch is negative
+     */
+    public static ReplayResult replay(final AccessTrace trace,
+        final long windowSize, final int cacheWindows, final int prefetch)
+    {
+        Preconditions.checkNotNull(trace, "trace cannot be null");
+        Preconditions.checkArgument(windowSize > 0L,
+            "window size must be strictly positive");
+        Preconditions.checkArgument(cacheWindows > 0,
+            "number of cached windows must be strictly positive");
+        Preconditions.checkArgument(prefetch >= 0,
+            "prefetch must not be negative");
+        return new Simulation(trace, windowSize, cacheWindows, prefetch)
+            .run();
+    }
+
+    public static void main(final String... args)
+        throws IOException
+    {
+        if (args.length == 0 || args.length % 2 == 0) {
+            System.err.println("Syntax: TraceReplay trace-file"
+                + " [--window-sizes 64KiB,2MiB,...] [--cache-sizes 4,16,...]"
+                + " [--prefetch 0,1,...]");
+            System.exit(2);
+        }
+        String windowSizes = DEFAULT_WINDOW_SIZES;
+        String cacheSizes = DEFAULT_CACHE_SIZES;
+        String prefetch = DEFAULT_PREFETCH;
+        for (int i = 1; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "--window-sizes":
+                    windowSizes = args[i + 1];
+                    break;
+                case "--cache-sizes":
+                    cacheSizes = args[i + 1];
+                    break;
+                case "--prefetch":
+                    prefetch = args[i + 1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option "
+                        + args[i]);
+            }
+        }
+
+        final AccessTrace trace = AccessTrace.read(Paths.get(args[0]));
+        System.err.println(trace.getNrAccesses() + " access(es) ("
+            + trace.getNrCharAts() + " charAt), " + trace.getTotalBytes()
+            + " byte(s), " + trace.getTotalChars() + " char(s), recorded"
+            + " window size " + trace.getRecordedWindowSize() + " byte(s)");
+        System.out.println(ReplayResult.CSV_HEADER);
+        for (final long windowSize: parseSizes(windowSizes))
+            for (final int cacheWindows: parseInts(cacheSizes))
+                for (final int depth: parseInts(prefetch))
+                    System.out.println(replay(trace, windowSize, cacheWindows,
+                        depth).toCsv());
+    }
+
+    private static List<Long> parseSizes(final String list)
+    {
+        final List<Long> ret = new ArrayList<>();
+        Matcher m;
+        for (final String size: COMMA.split(list)) {
+            m = SIZE.matcher(size);
+            if (!m.matches())
+                throw new IllegalArgumentException("invalid size " + size);
+            ret.add(m.group(2) == null ? Long.parseLong(m.group(1))
+                : SizeUnit.valueOf(m.group(2))
+                .sizeInBytes(Integer.parseInt(m.group(1))));
+        }
+        return ret;
+    }
+
+    private static List<Integer> parseInts(final String list)
+    {
+        final List<Integer> ret = new ArrayList<>();
+        for (final String value: COMMA.split(list))
+            ret.add(Integer.parseInt(value));
+        return ret;
+    }
+
+    @NotThreadSafe
+    private static final class Simulation
+    {
+        private final AccessTrace trace;
+        private final long windowSize;
+        private final int cacheWindows;
+        private final int prefetch;
+        private final long nrWindows;
+        private final long windowMemory;
+        private final Map<Long, Boolean> cache;
+
+        private long lookups = 0L;
+        private long hits = 0L;
+        private long bytesDecoded = 0L;
+        private int peakWindows = 0;
+
+        private Simulation(final AccessTrace trace, final long windowSize,
+            final int cacheWindows, final int prefetch)
+        {
+            this.trace = trace;
+            this.windowSize = windowSize;
+            this.cacheWindows = cacheWindows;
+            this.prefetch = prefetch;
+            final long totalBytes = trace.getTotalBytes();
+            nrWindows = totalBytes == 0L ? Long.MAX_VALUE
+                : (totalBytes + windowSize - 1) / windowSize;
+            final double charsPerByte = totalBytes == 0L ? 1.0
+                : (double) trace.getTotalChars() / totalBytes;
+            // A char is two bytes on the heap
+            windowMemory = 2L * (long) Math.ceil(windowSize * charsPerByte);
+            cache = new LinkedHashMap<Long, Boolean>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(
+                    final Map.Entry<Long, Boolean> eldest)
+                {
+                    return size() > Simulation.this.cacheWindows;
+                }
+            };
+        }
+
+        private ReplayResult run()
+        {
+            final int nrAccesses = trace.getNrAccesses();
+            long first, last;
+            for (int i = 0; i < nrAccesses; i++) {
+                first = trace.byteOffset(trace.getStart(i)) / windowSize;
+                last = trace.byteOffset(trace.getEnd(i) - 1) / windowSize;
+                for (long window = first; window <= last; window++)
+                    lookup(window);
+            }
+            return new ReplayResult(windowSize, cacheWindows, prefetch,
+                lookups, hits, bytesDecoded, peakWindows * windowMemory,
+                windowSize < trace.getRecordedWindowSize());
+        }
+
+        private void lookup(final long window)
+        {
+            lookups++;
+            if (cache.get(window) != null) {
+                hits++;
+                return;
+            }
+            load(window);
+            final long end = Math.min(nrWindows, window + prefetch + 1L);
+            for (long next = window + 1L; next < end; next++)
+                if (!cache.containsKey(next))
+                    load(next);
+        }
+
+        private void load(final long window)
+        {
+            cache.put(window, Boolean.TRUE);
+            peakWindows = Math.max(peakWindows, cache.size());
+            final long totalBytes = trace.getTotalBytes();
+            final long start = window * windowSize;
+            bytesDecoded += totalBytes == 0L ? windowSize
+                : Math.max(0L, Math.min(windowSize, totalBytes - start));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext;
+
+import com.google.common.base.Strings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class LargeTextMXBeanTest
+{
+    private static final String CONTENTS = Strings.repeat("abcdefghij", 1000);
+
+    private Path testFile;
+    private MBeanServer server;
+    private LargeTextFactory factory;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        testFile = Files.createTempFile("foo", "bar");
+        Files.write(testFile, CONTENTS.getBytes(StandardCharsets.UTF_8));
+        server = MBeanServerFactory.newMBeanServer();
+        factory = LargeTextFactory.newBuilder()
+            .setWindowSize(1, SizeUnit.KiB).setMBeanServer(server).build();
+    }
+
+    @AfterMethod
+    public void deleteFile()
+        throws IOException
+    {
+        Files.delete(testFile);
+    }
+
+    @Test
+    public void textsAreRegisteredUntilClosed()
+        throws IOException, JMException
+    {
+        final ObjectName query
+            = new ObjectName("com.github.fge.largetext:type=LargeText,*");
+        final Set<ObjectName> names;
+
+        try (
+            final LargeText text = factory.loadThreadSafe(testFile);
+        ) {
+            names = server.queryNames(query, null);
+            assertThat(names).hasSize(1);
+            final ObjectName name = names.iterator().next();
+            assertThat(name.getKeyProperty("name"))
+                .isEqualTo(ObjectName.quote(testFile.toString()));
+
+            text.length();
+            text.charAt(5000);
+
+            assertThat(server.getAttribute(name, "State"))
+                .isEqualTo("FINISHED");
+            assertThat(server.getAttribute(name, "DecodedBytes"))
+                .isEqualTo(10000L);
+            assertThat(server.getAttribute(name, "DecodedChars"))
+                .isEqualTo(10000);
+            assertThat(server.getAttribute(name, "WindowCount"))
+                .isEqualTo(10);
+            assertThat(server.getAttribute(name, "CachedWindowCount"))
+                .isEqualTo(1);
+            assertThat((Long) server.getAttribute(name, "CachedBytes"))
+                .isGreaterThanOrEqualTo(2048L);
+            assertThat(server.getAttribute(name, "CacheMissCount"))
+                .isEqualTo(1L);
+            assertThat(server.getAttribute(name, "LiveMappedBytes"))
+                .isEqualTo(-1L);
+        }
+
+        assertThat(server.queryNames(query, null)).isEmpty();
+    }
+
+    @Test
+    public void multiFileTextsRegisterOneBeanPerFile()
+        throws IOException, JMException
+    {
+        final ObjectName query
+            = new ObjectName("com.github.fge.largetext:type=LargeText,*");
+        final Path other = Files.createTempFile("foo", "bar");
+        Files.write(other, "hello".getBytes(StandardCharsets.UTF_8));
+
+        try (
+            final MultiFileLargeText text
+                = factory.loadAll(Arrays.asList(testFile, other));
+        ) {
+            assertThat(text.length()).isEqualTo(10005);
+            final Map<String, ObjectName> names = new HashMap<>();
+            for (final ObjectName name: server.queryNames(query, null))
+                names.put(name.getKeyProperty("name"), name);
+            assertThat(names).hasSize(2);
+
+            final ObjectName name
+                = names.get(ObjectName.quote(other.toString()));
+            assertThat(name).isNotNull();
+            assertThat(server.getAttribute(name, "State"))
+                .isEqualTo("FINISHED");
+            assertThat(server.getAttribute(name, "DecodedChars"))
+                .isEqualTo(5);
+        } finally {
+            Files.delete(other);
+        }
+
+        assertThat(server.queryNames(query, null)).isEmpty();
+    }
+}
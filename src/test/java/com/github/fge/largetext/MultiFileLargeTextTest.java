@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class MultiFileLargeTextTest
+{
+    private static final String ALPHABET = "abcdefghij\u00e9\u4e2d\n";
+    private static final int[] SIZES = { 3000, 0, 20000, 1, 7000 };
+
+    private final Random random = new Random(0L);
+    private final List<Path> paths = new ArrayList<>();
+
+    private String testString;
+    private int len;
+    private MultiFileLargeText text;
+
+    @BeforeClass
+    public void createFiles()
+        throws IOException
+    {
+        final StringBuilder all = new StringBuilder();
+        StringBuilder sb;
+        Path path;
+
+        for (final int size: SIZES) {
+            sb = new StringBuilder(size);
+            for (int i = 0; i < size; i++)
+                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            path = Files.createTempFile("foo", "bar");
+            try (
+                final BufferedWriter writer = Files.newBufferedWriter(path,
+                    StandardCharsets.UTF_8);
+            ) {
+                writer.write(sb.toString());
+                writer.flush();
+            }
+            paths.add(path);
+            all.append(sb);
+        }
+
+        testString = all.toString();
+        len = testString.length();
+
+        final LargeTextFactory factory = LargeTextFactory.newBuilder()
+            .setWindowSize(4, SizeUnit.KiB)
+            .build();
+        text = factory.loadAll(paths);
+    }
+
+    @Test
+    public void lengthIsTheSumOfAllLengths()
+    {
+        assertThat(text.length()).isEqualTo(len);
+    }
+
+    @Test
+    public void filesAreLocatedInTheCompositeIndex()
+    {
+        int start = 0;
+        for (int i = 0; i < SIZES.length; i++) {
+            assertThat(text.startOf(i)).isEqualTo(start);
+            if (SIZES[i] > 0)
+                assertThat(text.fileIndexOf(start)).isEqualTo(i);
+            start += SIZES[i];
+        }
+        assertThat(text.fileIndexOf(len - 1)).isEqualTo(SIZES.length - 1);
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getIndices()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        int start, end;
+        for (int i = 0; i < 200; i++) {
+            start = random.nextInt(len);
+            end = start + random.nextInt(Math.min(len - start, 25000) + 1);
+            list.add(new Object[] { start, end });
+        }
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getIndices")
+    public void charactersAndSubsequencesSpanAllFiles(final int start,
+        final int end)
+    {
+        assertThat(text.charAt(start)).isEqualTo(testString.charAt(start));
+
+        final CharSequence actual = text.subSequence(start, end);
+        final String expected = testString.substring(start, end);
+        assertThat(actual.length()).isEqualTo(expected.length());
+        assertThat(actual.toString()).isEqualTo(expected);
+        if (end - start > 2)
+            assertThat(actual.subSequence(1, end - start - 1).toString())
+                .isEqualTo(expected.substring(1, end - start - 1));
+    }
+
+    @Test
+    public void regexesMatchAcrossFileBoundaries()
+    {
+        final Pattern pattern = Pattern.compile("\u00e9\n[a-j]+");
+        final Matcher expected = pattern.matcher(testString);
+        final Matcher actual = pattern.matcher(text);
+
+        while (expected.find()) {
+            assertThat(actual.find()).isTrue();
+            assertThat(actual.start()).isEqualTo(expected.start());
+            assertThat(actual.end()).isEqualTo(expected.end());
+        }
+        assertThat(actual.find()).isFalse();
+    }
+
+    @AfterClass
+    public void closeEverything()
+        throws IOException
+    {
+        text.close();
+        for (final Path path: paths)
+            Files.delete(path);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import com.github.fge.largetext.search.ByteSearcher;
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ByteSources;
+import com.google.common.base.Strings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class DecodingLimitTest
+{
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final String ASCII = Strings.repeat("abcdefghij", 10000);
+    private static final String ACCENTED = Strings.repeat("\u00e9", 10000);
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private ByteSource source;
+    private TextDecoder decoder;
+
+    @AfterMethod
+    public void close()
+        throws IOException
+    {
+        decoder.close();
+    }
+
+    @Test
+    public void byteLimitBoundsDecodingAndReads()
+        throws IOException
+    {
+        startDecoder(ASCII, DecoderOptions.newBuilder().setWindowSize(1000L)
+            .setByteLimit(2500L).build());
+
+        assertThat(decoder.getTotalChars()).isEqualTo(2500);
+        assertThat(decoder.isLimitReached()).isTrue();
+        assertThat(decoder.getRangeOrNull(2500)).isNull();
+        assertThat(bytesRead.get()).isEqualTo(2500L);
+    }
+
+    @Test
+    public void byteLimitStopsBeforeAnIncompleteCharacter()
+        throws IOException
+    {
+        startDecoder(ACCENTED, DecoderOptions.newBuilder()
+            .setWindowSize(1000L).setByteLimit(1001L).build());
+
+        assertThat(decoder.getTotalChars()).isEqualTo(500);
+        assertThat(decoder.isLimitReached()).isTrue();
+    }
+
+    @Test
+    public void charLimitBoundsDecodingAndReads()
+        throws IOException
+    {
+        startDecoder(ACCENTED, DecoderOptions.newBuilder()
+            .setWindowSize(1000L).setCharLimit(1234).build());
+
+        assertThat(decoder.getTotalChars()).isEqualTo(1234);
+        assertThat(decoder.isLimitReached()).isTrue();
+        assertThat(bytesRead.get()).isLessThanOrEqualTo(3L * 1234L);
+    }
+
+    @Test
+    public void limitBeyondTheEndOfTextIsNotReached()
+        throws IOException
+    {
+        startDecoder(ASCII, DecoderOptions.newBuilder().setWindowSize(1000L)
+            .setByteLimit(1000000L).setCharLimit(1000000).build());
+
+        assertThat(decoder.getTotalChars()).isEqualTo(ASCII.length());
+        assertThat(decoder.isLimitReached()).isFalse();
+    }
+
+    @Test
+    public void byteSearchesDoNotMatchAcrossTheLimit()
+        throws IOException
+    {
+        final String contents = Strings.repeat("a", 1023) + "XY"
+            + Strings.repeat("b", 2000);
+
+        startDecoder(contents, DecoderOptions.newBuilder()
+            .setWindowSize(1000L).setByteLimit(1024L).build());
+        assertNoByteMatch("XY");
+        decoder.close();
+
+        startDecoder(contents, DecoderOptions.newBuilder()
+            .setWindowSize(1000L).setCharLimit(1024).build());
+        assertNoByteMatch("XY");
+        decoder.close();
+
+        // A match ending right at the limit is still found
+        startDecoder(contents, DecoderOptions.newBuilder()
+            .setWindowSize(1000L).setCharLimit(1025).build());
+        final ByteSearcher searcher
+            = new ByteSearcher(source, CHARSET, decoder);
+        final byte[] needle = searcher.encode("XY");
+        assertThat(searcher.indexOf(needle, 0)).isEqualTo(1023);
+        assertThat(searcher.countOccurrences(needle)).isEqualTo(1L);
+    }
+
+    private void assertNoByteMatch(final String needle)
+    {
+        final ByteSearcher searcher
+            = new ByteSearcher(source, CHARSET, decoder);
+        final byte[] bytes = searcher.encode(needle);
+
+        assertThat(decoder.isLimitReached()).isTrue();
+        assertThat(searcher.indexOf(bytes, 0, false)).isEqualTo(-1);
+        assertThat(searcher.indexOf(bytes, 0, true)).isEqualTo(-1);
+        assertThat(searcher.countOccurrences(bytes, false)).isEqualTo(0L);
+        assertThat(searcher.countOccurrences(bytes, true)).isEqualTo(0L);
+    }
+
+    private void startDecoder(final String contents,
+        final DecoderOptions options)
+        throws IOException
+    {
+        bytesRead.set(0L);
+        final ByteSource delegate
+            = ByteSources.ofBytes(contents.getBytes(CHARSET));
+        source = new ByteSource()
+        {
+            @Override
+            public long size()
+                throws IOException
+            {
+                return delegate.size();
+            }
+
+            @Override
+            public ByteBuffer read(final long offset, final int length)
+                throws IOException
+            {
+                final ByteBuffer ret = delegate.read(offset, length);
+                bytesRead.addAndGet(ret.remaining());
+                return ret;
+            }
+
+            @Override
+            public void release(final ByteBuffer buffer)
+            {
+                delegate.release(buffer);
+            }
+
+            @Override
+            public void close()
+                throws IOException
+            {
+                delegate.close();
+            }
+        };
+        decoder = new TextDecoder(source, CHARSET, options);
+    }
+}
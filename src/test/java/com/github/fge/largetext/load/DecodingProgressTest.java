@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ByteSources;
+import com.google.common.base.Strings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class DecodingProgressTest
+{
+    private static final byte[] CONTENTS = Strings.repeat("abcdefghij", 1000)
+        .getBytes(StandardCharsets.UTF_8);
+
+    private TextDecoder decoder;
+
+    @AfterMethod
+    public void close()
+        throws IOException
+    {
+        decoder.close();
+    }
+
+    @Test
+    public void progressIsReportedUntilDecodingFinishes()
+        throws IOException, InterruptedException
+    {
+        // Reads wait for the listener to be added
+        final CountDownLatch added = new CountDownLatch(1);
+        decoder = new TextDecoder(source(added, Long.MAX_VALUE),
+            StandardCharsets.UTF_8, DecoderOptions.newBuilder()
+            .setWindowSize(1000L).build());
+        final RecordingListener listener = new RecordingListener();
+        decoder.addProgressListener(listener, 0L, TimeUnit.SECONDS);
+        added.countDown();
+
+        assertThat(decoder.getTotalChars()).isEqualTo(10000);
+        assertThat(listener.end.await(5L, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(listener.reports).hasSize(10);
+        DecodingProgress progress;
+        for (int i = 0; i < 10; i++) {
+            progress = listener.reports.get(i);
+            assertThat(progress.getDecodedBytes()).isEqualTo(1000L * (i + 1));
+            assertThat(progress.getDecodedChars()).isEqualTo(1000 * (i + 1));
+            assertThat(progress.getTotalBytes()).isEqualTo(10000L);
+        }
+        assertThat(listener.finished).hasSize(1);
+        progress = listener.finished.get(0);
+        assertThat(progress.getDecodedBytes()).isEqualTo(10000L);
+        assertThat(progress.getFractionDone()).isEqualTo(1.0);
+        assertThat(progress.getRemaining(TimeUnit.NANOSECONDS))
+            .isEqualTo(0L);
+        assertThat(listener.failures).isEmpty();
+        assertThat(decoder.getProgress().getDecodedBytes())
+            .isEqualTo(10000L);
+    }
+
+    @Test
+    public void listenersAddedAfterTheEndAreToldImmediately()
+        throws IOException
+    {
+        decoder = new TextDecoder(ByteSources.ofBytes(CONTENTS),
+            StandardCharsets.UTF_8, DecoderOptions.newBuilder()
+            .setWindowSize(1000L).build());
+        decoder.getTotalChars();
+
+        final RecordingListener listener = new RecordingListener();
+        decoder.addProgressListener(listener, 1L, TimeUnit.SECONDS);
+
+        assertThat(listener.end.getCount()).isEqualTo(0L);
+        assertThat(listener.finished).hasSize(1);
+        assertThat(listener.reports).isEmpty();
+    }
+
+    @Test
+    public void failuresAreReported()
+        throws IOException, InterruptedException
+    {
+        final CountDownLatch added = new CountDownLatch(1);
+        decoder = new TextDecoder(source(added, 5000L),
+            StandardCharsets.UTF_8, DecoderOptions.newBuilder()
+            .setWindowSize(1000L).build());
+        final RecordingListener listener = new RecordingListener();
+        decoder.addProgressListener(listener, 0L, TimeUnit.SECONDS);
+        added.countDown();
+
+        assertThat(listener.end.await(5L, TimeUnit.SECONDS)).isTrue();
+        assertThat(listener.finished).isEmpty();
+        assertThat(listener.failures).hasSize(1);
+        assertThat(listener.failures.get(0).getDecodedBytes())
+            .isEqualTo(5000L);
+    }
+
+    @Test
+    public void remainingTimeIsEstimatedFromThroughput()
+    {
+        final long second = TimeUnit.SECONDS.toNanos(1L);
+
+        DecodingProgress progress
+            = new DecodingProgress(250L, 250, 1000L, second);
+        assertThat(progress.getBytesPerSecond()).isEqualTo(250.0);
+        assertThat(progress.getFractionDone()).isEqualTo(0.25);
+        assertThat(progress.getRemaining(TimeUnit.SECONDS)).isEqualTo(3L);
+
+        progress = new DecodingProgress(0L, 0, 1000L, second);
+        assertThat(progress.getRemaining(TimeUnit.SECONDS)).isEqualTo(-1L);
+
+        progress = new DecodingProgress(250L, 250, -1L, second);
+        assertThat(progress.getFractionDone()).isEqualTo(-1.0);
+        assertThat(progress.getRemaining(TimeUnit.SECONDS)).isEqualTo(-1L);
+    }
+
+    /*
+     * A source whose reads wait for a latch, and fail from a given offset
+     */
+    private static ByteSource source(final CountDownLatch latch,
+        final long failAt)
+    {
+        final ByteSource delegate = ByteSources.ofBytes(CONTENTS);
+        return new ByteSource()
+        {
+            @Override
+            public long size()
+                throws IOException
+            {
+                return delegate.size();
+            }
+
+            @Override
+            public ByteBuffer read(final long offset, final int length)
+                throws IOException
+            {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted", e);
+                }
+                if (offset >= failAt)
+                    throw new IOException("boom");
+                return delegate.read(offset, length);
+            }
+
+            @Override
+            public void release(final ByteBuffer buffer)
+            {
+                delegate.release(buffer);
+            }
+
+            @Override
+            public void close()
+                throws IOException
+            {
+                delegate.close();
+            }
+        };
+    }
+
+    private static final class RecordingListener
+        implements ProgressListener
+    {
+        private final List<DecodingProgress> reports
+            = new CopyOnWriteArrayList<>();
+        private final List<DecodingProgress> finished
+            = new CopyOnWriteArrayList<>();
+        private final List<DecodingProgress> failures
+            = new CopyOnWriteArrayList<>();
+        private final CountDownLatch end = new CountDownLatch(1);
+
+        @Override
+        public void onProgress(final DecodingProgress progress)
+        {
+            reports.add(progress);
+        }
+
+        @Override
+        public void onFinished(final DecodingProgress progress)
+        {
+            finished.add(progress);
+            end.countDown();
+        }
+
+        @Override
+        public void onFailed(final DecodingProgress progress,
+            final IOException exception)
+        {
+            failures.add(progress);
+            end.countDown();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ByteSources;
+import com.google.common.base.Strings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class DemandDrivenDecodingTest
+{
+    private static final Charset CHARSET = StandardCharsets.US_ASCII;
+    private static final String CONTENTS
+        = Strings.repeat("abcdefghij", 10000);
+    private static final long TIMEOUT = 5000L;
+    private static final long SETTLE = 200L;
+
+    private final AtomicLong highestByte = new AtomicLong();
+    private TextDecoder decoder;
+
+    @BeforeMethod
+    public void startDecoder()
+        throws IOException
+    {
+        highestByte.set(0L);
+        final ByteSource delegate
+            = ByteSources.ofBytes(CONTENTS.getBytes(CHARSET));
+        final ByteSource source = new ByteSource()
+        {
+            @Override
+            public long size()
+                throws IOException
+            {
+                return delegate.size();
+            }
+
+            @Override
+            public ByteBuffer read(final long offset, final int length)
+                throws IOException
+            {
+                final ByteBuffer ret = delegate.read(offset, length);
+                final long end = offset + ret.remaining();
+                long current;
+                do {
+                    current = highestByte.get();
+                } while (end > current
+                    && !highestByte.compareAndSet(current, end));
+                return ret;
+            }
+
+            @Override
+            public void release(final ByteBuffer buffer)
+            {
+                delegate.release(buffer);
+            }
+
+            @Override
+            public void close()
+                throws IOException
+            {
+                delegate.close();
+            }
+        };
+        decoder = new TextDecoder(source, CHARSET, DecoderOptions.newBuilder()
+            .setWindowSize(1000L).setLookahead(2000).build());
+    }
+
+    @AfterMethod
+    public void close()
+        throws IOException
+    {
+        decoder.close();
+    }
+
+    @Test
+    public void decodingOnlyGoesAsFarAsTheLookahead()
+        throws InterruptedException
+    {
+        awaitDecoded(1999L);
+        Thread.sleep(SETTLE);
+        assertThat(highestByte.get()).isEqualTo(2000L);
+
+        assertThat(decoder.getRange(50000).getCharRange().contains(50000))
+            .isTrue();
+        awaitDecoded(51999L);
+        Thread.sleep(SETTLE);
+        assertThat(highestByte.get()).isEqualTo(53000L);
+    }
+
+    @Test
+    public void lengthDecodesTheWholeText()
+    {
+        assertThat(decoder.getTotalChars()).isEqualTo(CONTENTS.length());
+    }
+
+    @Test
+    public void pausedDecoderOnlyDecodesWhatIsRequested()
+        throws InterruptedException
+    {
+        awaitDecoded(1999L);
+        decoder.pause();
+        assertThat(decoder.isPaused()).isTrue();
+
+        decoder.getRange(10000);
+        Thread.sleep(SETTLE);
+        assertThat(highestByte.get()).isEqualTo(11000L);
+
+        decoder.resume();
+        awaitDecoded(12000L);
+        assertThat(decoder.isPaused()).isFalse();
+    }
+
+    private void awaitDecoded(final long byteOffset)
+        throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!decoder.isByteDecoded(byteOffset)) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10L);
+        }
+    }
+}
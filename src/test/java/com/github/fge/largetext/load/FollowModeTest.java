@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import com.github.fge.largetext.LargeTextException;
+import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ChannelByteSource;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.testng.Assert.fail;
+
+public final class FollowModeTest
+{
+    private static final long TIMEOUT = 5000L;
+    private static final DecoderOptions OPTIONS = DecoderOptions.newBuilder()
+        .setWindowSize(1024L).setFollowInterval(5L, TimeUnit.MILLISECONDS)
+        .build();
+
+    private final ExecutorService executor
+        = Executors.newSingleThreadExecutor();
+
+    private Path testFile;
+    private FileChannel channel;
+    private TextDecoder decoder;
+    private TextCache cache;
+
+    @BeforeMethod
+    public void createFile()
+        throws IOException
+    {
+        testFile = Files.createTempFile("foo", "bar");
+        channel = FileChannel.open(testFile, StandardOpenOption.READ);
+        cache = new TextCache(channel, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void appendedTextIsDecoded()
+        throws Exception
+    {
+        append("hello".getBytes(StandardCharsets.UTF_8));
+        startDecoder();
+        assertThat(decoder.getTotalChars()).isEqualTo(5);
+        assertThat(decoder.getRangeOrNull(5)).isNull();
+
+        final Future<TextRange> future = executor.submit(
+            new Callable<TextRange>()
+            {
+                @Override
+                public TextRange call()
+                {
+                    return decoder.getRange(10);
+                }
+            });
+
+        append(", world!".getBytes(StandardCharsets.UTF_8));
+        final TextRange textRange = future.get(TIMEOUT,
+            TimeUnit.MILLISECONDS);
+
+        assertThat(textRange.getCharRange()).isEqualTo(new IntRange(0, 13));
+        assertThat(cache.load(textRange).toString())
+            .isEqualTo("hello, world!");
+        assertThat(decoder.getTotalChars()).isEqualTo(13);
+        assertThat(decoder.getRanges(new IntRange(0, 13))).hasSize(1);
+    }
+
+    @Test
+    public void textAppendedRightAfterTheLastReadIsDecoded()
+        throws Exception
+    {
+        append("hello".getBytes(StandardCharsets.UTF_8));
+        final ByteSource delegate = new ChannelByteSource(channel);
+        final AtomicBoolean appended = new AtomicBoolean();
+        /*
+         * Append as soon as a read finds nothing more to decode, before the
+         * decoding task gets to poll the size of the file
+         */
+        final ByteSource source = new ByteSource()
+        {
+            @Override
+            public long size()
+                throws IOException
+            {
+                return delegate.size();
+            }
+
+            @Override
+            public ByteBuffer read(final long offset, final int length)
+                throws IOException
+            {
+                final ByteBuffer ret = delegate.read(offset, length);
+                if (!ret.hasRemaining() && appended.compareAndSet(false, true))
+                    append(", world!".getBytes(StandardCharsets.UTF_8));
+                return ret;
+            }
+
+            @Override
+            public void release(final ByteBuffer buffer)
+            {
+                delegate.release(buffer);
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+        decoder = new TextDecoder(source, StandardCharsets.UTF_8, OPTIONS);
+
+        final Future<TextRange> future = executor.submit(
+            new Callable<TextRange>()
+            {
+                @Override
+                public TextRange call()
+                {
+                    return decoder.getRange(10);
+                }
+            });
+
+        final TextRange textRange = future.get(TIMEOUT,
+            TimeUnit.MILLISECONDS);
+        assertThat(cache.load(textRange).toString())
+            .isEqualTo("hello, world!");
+    }
+
+    @Test
+    public void partiallyWrittenCharactersAreWaitedFor()
+        throws Exception
+    {
+        append(new byte[] { 'a', (byte) 0xc3 });
+        startDecoder();
+        assertThat(decoder.getTotalChars()).isEqualTo(1);
+
+        append(new byte[] { (byte) 0xa9 });
+        final TextRange textRange = decoder.getRange(1);
+        assertThat(cache.load(textRange).toString()).isEqualTo("a\u00e9");
+    }
+
+    @Test
+    public void truncatedFilesAreDetected()
+        throws Exception
+    {
+        append(new byte[100]);
+        startDecoder();
+        assertThat(decoder.getTotalChars()).isEqualTo(100);
+
+        try (
+            final FileChannel writer = FileChannel.open(testFile,
+                StandardOpenOption.WRITE);
+        ) {
+            writer.truncate(10L);
+        }
+
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                decoder.getTotalChars();
+            } catch (LargeTextException e) {
+                assertThat(e.getCause()).hasMessage("file has been truncated");
+                return;
+            }
+            Thread.sleep(10L);
+        }
+        fail("truncation not detected");
+    }
+
+    private void startDecoder()
+        throws IOException
+    {
+        decoder = new TextDecoder(channel, StandardCharsets.UTF_8, OPTIONS);
+    }
+
+    private void append(final byte[] bytes)
+        throws IOException
+    {
+        Files.write(testFile, bytes, StandardOpenOption.APPEND);
+    }
+
+    @AfterMethod
+    public void deleteFile()
+        throws IOException
+    {
+        if (decoder != null)
+            decoder.close();
+        decoder = null;
+        channel.close();
+        Files.delete(testFile);
+    }
+
+    @AfterClass
+    public void shutdownExecutor()
+    {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.SizeUnit;
+import com.github.fge.largetext.sequence.ByteAddressedCharSequence;
+import com.github.fge.largetext.source.ChannelByteSource;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.testng.Assert.fail;
+
+public final class LocalDecoderTest
+{
+    private static final String ALPHABET = "ab\u00e9\u4e2d\ud83d\ude00";
+
+    private final Random random = new Random(0L);
+
+    private Path testFile;
+    private FileChannel channel;
+    private TextDecoder decoder;
+
+    @DataProvider
+    public Iterator<Object[]> getData()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { StandardCharsets.UTF_8,
+            StandardCharsets.UTF_8, ALPHABET, 0 });
+        list.add(new Object[] { StandardCharsets.ISO_8859_1,
+            StandardCharsets.ISO_8859_1, "ab\u00e9\u00ff", 0 });
+        list.add(new Object[] { StandardCharsets.UTF_16LE,
+            StandardCharsets.UTF_16LE, ALPHABET, 0 });
+        list.add(new Object[] { StandardCharsets.UTF_16,
+            StandardCharsets.UTF_16BE, ALPHABET, 2 });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getData")
+    public void charactersAreDecodedFromArbitraryByteOffsets(
+        final Charset charset, final Charset unitCharset,
+        final String alphabet, final int bomSize)
+        throws IOException
+    {
+        final String testString = createFile(charset, alphabet);
+        final LocalDecoder localDecoder = new LocalDecoder(channel, charset);
+        final OffsetTranslator translator
+            = new OffsetTranslator(channel, charset);
+
+        /*
+         * Byte offsets of the start of all characters, except for low
+         * surrogates
+         */
+        final int length = testString.length();
+        final long[] starts = new long[length + 1];
+        long byteOffset = bomSize;
+        int codePoint;
+        for (int i = 0; i < length; i += Character.charCount(codePoint)) {
+            codePoint = testString.codePointAt(i);
+            starts[i] = byteOffset;
+            if (Character.charCount(codePoint) == 2)
+                starts[i + 1] = -1L;
+            byteOffset += new String(Character.toChars(codePoint))
+                .getBytes(unitCharset).length;
+        }
+        starts[length] = byteOffset;
+        assertThat(byteOffset).isEqualTo(channel.size());
+
+        long requested, start;
+        int charOffset;
+        CharBuffer buffer;
+        String expected;
+
+        for (int i = 0; i < 200; i++) {
+            requested = (long) random.nextInt((int) byteOffset) + 1L;
+            charOffset = 0;
+            while (starts[charOffset] < requested)
+                charOffset++;
+            start = localDecoder.resync(requested);
+            assertThat(start).overridingErrorMessage(
+                "wrong boundary for byte %s", requested
+            ).isEqualTo(starts[charOffset]);
+
+            buffer = localDecoder.decode(start, 20);
+            expected = testString.substring(charOffset,
+                Math.min(length, charOffset + 20));
+            assertThat(expected).startsWith(buffer.toString());
+            assertThat(buffer.length())
+                .isGreaterThanOrEqualTo(expected.length() - 1);
+
+            if (start < byteOffset)
+                assertThat(translator.charOffsetOf(
+                    decoder.getRangeForByte(start), start))
+                    .isEqualTo(charOffset);
+        }
+    }
+
+    @Test
+    public void decodingFromTheStartHonorsByteOrderMarks()
+        throws IOException
+    {
+        final String testString = createFile(StandardCharsets.UTF_16,
+            ALPHABET);
+        final LocalDecoder localDecoder
+            = new LocalDecoder(channel, StandardCharsets.UTF_16);
+
+        assertThat(localDecoder.resync(0L)).isEqualTo(0L);
+        assertThat(localDecoder.decode(0L, 10).toString())
+            .isEqualTo(testString.substring(0, 10));
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void byteOffsetsOutOfRangeAreDetected()
+        throws IOException
+    {
+        createFile(StandardCharsets.UTF_8, "ab");
+        new LocalDecoder(channel, StandardCharsets.UTF_8)
+            .resync(channel.size() + 1L);
+    }
+
+    @Test
+    public void onlyWhatTheBytesReadCanProduceIsAllocated()
+        throws IOException
+    {
+        final String testString = createFile(StandardCharsets.UTF_8,
+            ALPHABET);
+        final LocalDecoder localDecoder
+            = new LocalDecoder(channel, StandardCharsets.UTF_8);
+
+        final CharBuffer buffer = localDecoder.decode(0L, Integer.MAX_VALUE);
+        assertThat(buffer.toString()).isEqualTo(testString);
+        assertThat(buffer.capacity()).isEqualTo((int) channel.size());
+    }
+
+    @Test
+    public void decodingStopsAtTheByteLimit()
+        throws IOException
+    {
+        final String testString = createFile(StandardCharsets.UTF_8, "\u00e9");
+        final LocalDecoder localDecoder = new LocalDecoder(
+            new ChannelByteSource(channel), StandardCharsets.UTF_8, 1001L);
+
+        // The limit splits the encoding of the 501st character
+        assertThat(localDecoder.decode(0L, 1000).toString())
+            .isEqualTo(testString.substring(0, 500));
+        assertThat(localDecoder.resync(999L)).isEqualTo(1000L);
+        assertThat(localDecoder.decode(1000L, 10).length()).isEqualTo(0);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void byteOffsetsBeyondTheByteLimitAreDetected()
+        throws IOException
+    {
+        createFile(StandardCharsets.UTF_8, "ab");
+        new LocalDecoder(new ChannelByteSource(channel),
+            StandardCharsets.UTF_8, 100L).decode(101L, 1);
+    }
+
+    @Test
+    public void viewsAtByteOffsetsHonorTheByteLimit()
+        throws IOException
+    {
+        final String testString = createFile(StandardCharsets.UTF_8, "ab");
+        final LargeTextFactory factory = LargeTextFactory.newBuilder()
+            .setByteLimit(100, SizeUnit.B).build();
+
+        try (
+            final LargeText text = factory.load(testFile);
+        ) {
+            assertThat(text.viewAtByte(90L, 20).toString())
+                .isEqualTo(testString.substring(90, 100));
+            final ByteAddressedCharSequence view = text.viewAtByte(100L, 20);
+            assertThat(view.length()).isEqualTo(0);
+            assertThat(view.getCharOffset()).isEqualTo(100);
+            try {
+                text.viewAtByte(101L, 20);
+                fail("No exception thrown!!");
+            } catch (IndexOutOfBoundsException ignored) {
+            }
+        }
+    }
+
+    private String createFile(final Charset charset, final String alphabet)
+        throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        final int nrCodePoints = alphabet.codePointCount(0, alphabet.length());
+        int index;
+        for (int i = 0; i < 5000; i++) {
+            index = alphabet.offsetByCodePoints(0,
+                random.nextInt(nrCodePoints));
+            sb.appendCodePoint(alphabet.codePointAt(index));
+        }
+        final String testString = sb.toString();
+
+        testFile = Files.createTempFile("foo", "bar");
+        try (
+            final BufferedWriter writer = Files.newBufferedWriter(testFile,
+                charset);
+        ) {
+            writer.write(testString);
+            writer.flush();
+        }
+        channel = FileChannel.open(testFile, StandardOpenOption.READ);
+        decoder = new TextDecoder(channel, charset, 1024L);
+        return testString;
+    }
+
+    @AfterMethod
+    public void deleteFile()
+        throws IOException
+    {
+        if (testFile == null)
+            return;
+        decoder.close();
+        channel.close();
+        Files.delete(testFile);
+        testFile = null;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class OffsetTranslatorTest
+{
+    private final Random random = new Random(0L);
+
+    private Path testFile;
+    private FileChannel channel;
+    private TextDecoder decoder;
+
+    @DataProvider
+    public Iterator<Object[]> getData()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { StandardCharsets.UTF_8, "ab\u00e9\u4e2d\ud83d\ude00" });
+        list.add(new Object[] { StandardCharsets.ISO_8859_1, "ab\u00e9\u00ff" });
+        list.add(new Object[] { StandardCharsets.UTF_16LE, "ab\u00e9\u4e2d\ud83d\ude00" });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getData")
+    public void offsetsAreTranslatedBothWays(final Charset charset,
+        final String alphabet)
+        throws IOException
+    {
+        final String testString = createFile(charset, alphabet);
+        final OffsetTranslator translator
+            = new OffsetTranslator(channel, charset);
+
+        int charOffset;
+        long byteOffset;
+        long nextByteOffset;
+        TextRange textRange;
+
+        for (int i = 0; i < 200; i++) {
+            charOffset = random.nextInt(testString.length());
+            if (Character.isLowSurrogate(testString.charAt(charOffset)))
+                charOffset--;
+            byteOffset = testString.substring(0, charOffset)
+                .getBytes(charset).length;
+            nextByteOffset = testString.substring(0, charOffset + 1)
+                .getBytes(charset).length;
+
+            textRange = decoder.getRange(charOffset);
+            assertThat(translator.byteOffsetOf(textRange, charOffset))
+                .overridingErrorMessage("wrong byte offset for char %s",
+                    charOffset
+                ).isEqualTo(byteOffset);
+
+            // All bytes of the character must translate to its char offset
+            for (long l = byteOffset; l < nextByteOffset; l++) {
+                textRange = decoder.getRangeForByte(l);
+                assertThat(translator.charOffsetOf(textRange, l))
+                    .overridingErrorMessage("wrong char offset for byte %s",
+                        l
+                    ).isEqualTo(charOffset);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void byteOffsetsOutOfRangeAreDetected()
+        throws IOException
+    {
+        createFile(StandardCharsets.UTF_8, "ab");
+        decoder.getRangeForByte(channel.size());
+    }
+
+    private String createFile(final Charset charset, final String alphabet)
+        throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        final int nrCodePoints = alphabet.codePointCount(0, alphabet.length());
+        int index;
+        for (int i = 0; i < 5000; i++) {
+            index = alphabet.offsetByCodePoints(0,
+                random.nextInt(nrCodePoints));
+            sb.appendCodePoint(alphabet.codePointAt(index));
+        }
+        final String testString = sb.toString();
+
+        testFile = Files.createTempFile("foo", "bar");
+        try (
+            final BufferedWriter writer = Files.newBufferedWriter(testFile,
+                charset);
+        ) {
+            writer.write(testString);
+            writer.flush();
+        }
+        channel = FileChannel.open(testFile, StandardOpenOption.READ);
+        decoder = new TextDecoder(channel, charset, 1024L);
+        return testString;
+    }
+
+    @AfterMethod
+    public void deleteFile()
+        throws IOException
+    {
+        if (testFile == null)
+            return;
+        decoder.close();
+        channel.close();
+        Files.delete(testFile);
+        testFile = null;
+    }
+}
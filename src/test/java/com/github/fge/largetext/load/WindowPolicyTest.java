@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ByteSources;
+import com.google.common.base.Strings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class WindowPolicyTest
+{
+    private static final long KIB = 1024L;
+    private static final long MIB = 1024L * KIB;
+    private static final long GIB = 1024L * MIB;
+
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final String ASCII = Strings.repeat("abcdefghij", 10000);
+    private static final String ACCENTED
+        = Strings.repeat("abcd\u00e9fghij", 10000);
+
+    private TextDecoder decoder;
+    private ByteSource source;
+
+    @AfterMethod
+    public void close()
+        throws IOException
+    {
+        if (decoder != null)
+            decoder.close();
+        decoder = null;
+    }
+
+    @Test
+    public void fixedPolicyUsesTheConfiguredWindowSize()
+    {
+        final WindowPolicy policy = WindowPolicy.FIXED;
+
+        assertThat(policy.windowSize(2L * MIB, 100L * GIB, GIB))
+            .isEqualTo(2L * MIB);
+        assertThat(policy.maxLoadSpan(2L * MIB, GIB)).isEqualTo(1);
+    }
+
+    @Test
+    public void autoWindowSizeFollowsTheSizeOfTheSource()
+    {
+        final WindowPolicy policy = WindowPolicy.AUTO;
+
+        assertThat(policy.windowSize(2L * MIB, 10L * MIB, 4L * GIB))
+            .isEqualTo(64L * KIB);
+        assertThat(policy.windowSize(2L * MIB, 4L * GIB, 4L * GIB))
+            .isEqualTo(64L * KIB);
+        assertThat(policy.windowSize(2L * MIB, 16L * GIB, 4L * GIB))
+            .isEqualTo(256L * KIB);
+        assertThat(policy.windowSize(2L * MIB, 100L * GIB, 4L * GIB))
+            .isEqualTo(MIB);
+        assertThat(policy.windowSize(2L * MIB, -1L, 4L * GIB))
+            .isEqualTo(2L * MIB);
+    }
+
+    @Test
+    public void autoWindowSizeIsBoundedByTheHeap()
+    {
+        final WindowPolicy policy = WindowPolicy.AUTO;
+
+        assertThat(policy.windowSize(2L * MIB, 16L * GIB, 64L * MIB))
+            .isEqualTo(256L * KIB);
+        assertThat(policy.windowSize(2L * MIB, 16L * GIB, 4L * MIB))
+            .isEqualTo(64L * KIB);
+        assertThat(policy.maxLoadSpan(64L * KIB, 4L * GIB)).isEqualTo(256);
+        assertThat(policy.maxLoadSpan(256L * KIB, 64L * MIB)).isEqualTo(1);
+    }
+
+    @Test
+    public void sequentialLoadsGrowAndRandomLoadsShrink()
+        throws IOException
+    {
+        startDecoder(ASCII);
+        decoder.getTotalChars();
+        final AccessPattern pattern = decoder.newAccessPattern();
+
+        assertLoadRanges(pattern, 0, 1);
+        assertLoadRanges(pattern, 1000, 2);
+        assertLoadRanges(pattern, 2500, 4);
+        assertThat(decoder.getLoadSpan()).isEqualTo(4);
+        assertLoadRanges(pattern, 50000, 2);
+        assertThat(decoder.getLoadSpan()).isEqualTo(2);
+    }
+
+    @Test
+    public void readersHaveTheirOwnAccessPattern()
+        throws IOException
+    {
+        startDecoder(ASCII);
+        decoder.getTotalChars();
+        final AccessPattern first = decoder.newAccessPattern();
+        final AccessPattern second = decoder.newAccessPattern();
+
+        for (int i = 0; i < 3; i++) {
+            decoder.getLoadRanges(i * 1000, first);
+            decoder.getLoadRanges(50000 + i * 1000, second);
+        }
+        assertLoadRanges(first, 3000, 8);
+        assertLoadRanges(second, 53000, 8);
+    }
+
+    @Test
+    public void prefetchedWindowsAreCachedIndividually()
+        throws IOException, InterruptedException
+    {
+        startDecoder(ACCENTED);
+        final int length = decoder.getTotalChars();
+        final TextCache cache = new TextCache(source, CHARSET);
+        final AccessPattern pattern = decoder.newAccessPattern();
+
+        List<TextRange> textRanges;
+        IntRange charRange;
+        int offset = 0;
+        while (offset < length) {
+            textRanges = decoder.getLoadRanges(offset, pattern);
+            cache.prefetch(textRanges.subList(1, textRanges.size()));
+            charRange = textRanges.get(0).getCharRange();
+            assertThat(charRange.getLowerBound()).isEqualTo(offset);
+            offset = charRange.getUpperBound();
+            assertThat(cache.load(textRanges.get(0)).toString()).isEqualTo(
+                ACCENTED.substring(charRange.getLowerBound(), offset));
+        }
+        assertThat(decoder.getLoadSpan()).isGreaterThan(1);
+
+        final List<TextRange> windows
+            = decoder.getRanges(new IntRange(0, length));
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (cache.getCachedWindows() < windows.size()
+            && System.currentTimeMillis() < deadline)
+            Thread.sleep(10L);
+        assertThat(cache.getCachedWindows()).isEqualTo(windows.size());
+        final long misses = cache.getStats().missCount();
+        for (final TextRange window: windows)
+            cache.load(window);
+        assertThat(cache.getStats().missCount()).isEqualTo(misses);
+    }
+
+    private void assertLoadRanges(final AccessPattern pattern,
+        final int charOffset, final int nrRanges)
+    {
+        final List<TextRange> textRanges
+            = decoder.getLoadRanges(charOffset, pattern);
+
+        assertThat(textRanges).hasSize(nrRanges);
+        assertThat(textRanges.get(0).getCharRange().contains(charOffset))
+            .isTrue();
+        for (int i = 1; i < nrRanges; i++)
+            assertThat(textRanges.get(i).getCharRange().getLowerBound())
+                .isEqualTo(textRanges.get(i - 1).getCharRange()
+                .getUpperBound());
+    }
+
+    /*
+     * A source of unknown size: the automatic policy then uses the configured
+     * window size
+     */
+    private void startDecoder(final String contents)
+        throws IOException
+    {
+        final ByteSource delegate
+            = ByteSources.ofBytes(contents.getBytes(CHARSET));
+        source = new ByteSource()
+        {
+            @Override
+            public long size()
+            {
+                return -1L;
+            }
+
+            @Override
+            public ByteBuffer read(final long offset, final int length)
+                throws IOException
+            {
+                return delegate.read(offset, length);
+            }
+
+            @Override
+            public void release(final ByteBuffer buffer)
+            {
+                delegate.release(buffer);
+            }
+
+            @Override
+            public void close()
+                throws IOException
+            {
+                delegate.close();
+            }
+        };
+        decoder = new TextDecoder(source, CHARSET, DecoderOptions.newBuilder()
+            .setWindowSize(1000L).setWindowPolicy(WindowPolicy.AUTO).build());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.load;
+
+import com.github.fge.largetext.source.ByteSources;
+import com.google.common.base.Strings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class WindowRampUpTest
+{
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final String ASCII = Strings.repeat("abcdefghij", 10000);
+
+    private TextDecoder decoder;
+
+    @AfterMethod
+    public void close()
+        throws IOException
+    {
+        decoder.close();
+    }
+
+    @Test
+    public void windowsDoubleUpToTheTargetSize()
+        throws IOException
+    {
+        startDecoder(DecoderOptions.newBuilder().setWindowSize(16000L)
+            .setInitialWindowSize(1000L).build());
+
+        assertRange(0, 0, 1000);
+        assertRange(1000, 1000, 3000);
+        assertRange(3000, 3000, 7000);
+        assertRange(7000, 7000, 15000);
+        assertRange(15000, 15000, 31000);
+        assertRange(31000, 31000, 47000);
+        assertThat(decoder.getTotalChars()).isEqualTo(ASCII.length());
+        assertThat(decoder.getNrWindows()).isEqualTo(10);
+    }
+
+    @Test
+    public void initialSizeLargerThanTheTargetSizeIsCapped()
+        throws IOException
+    {
+        startDecoder(DecoderOptions.newBuilder().setWindowSize(16000L)
+            .setInitialWindowSize(64000L).build());
+
+        assertRange(0, 0, 16000);
+        assertRange(16000, 16000, 32000);
+    }
+
+    @Test
+    public void windowsHaveTheTargetSizeByDefault()
+        throws IOException
+    {
+        startDecoder(DecoderOptions.newBuilder().setWindowSize(16000L)
+            .build());
+
+        assertRange(0, 0, 16000);
+        assertThat(decoder.getTotalChars()).isEqualTo(ASCII.length());
+        assertThat(decoder.getNrWindows()).isEqualTo(7);
+    }
+
+    private void assertRange(final int charOffset, final int lowerBound,
+        final int upperBound)
+    {
+        final TextRange textRange = decoder.getRange(charOffset);
+
+        assertThat(textRange.getCharRange().getLowerBound())
+            .isEqualTo(lowerBound);
+        assertThat(textRange.getCharRange().getUpperBound())
+            .isEqualTo(upperBound);
+    }
+
+    private void startDecoder(final DecoderOptions options)
+        throws IOException
+    {
+        decoder = new TextDecoder(ByteSources.ofBytes(ASCII.getBytes(CHARSET)),
+            CHARSET, options);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.metrics;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.SizeUnit;
+import com.google.common.base.Strings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class HistogramMetricsListenerTest
+{
+    private static final String CONTENTS = Strings.repeat("abcdefghij", 1000);
+
+    private Path testFile;
+    private HistogramMetricsListener metrics;
+    private LargeTextFactory factory;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        testFile = Files.createTempFile("foo", "bar");
+        Files.write(testFile, CONTENTS.getBytes(StandardCharsets.UTF_8));
+        metrics = new HistogramMetricsListener();
+        factory = LargeTextFactory.newBuilder()
+            .setWindowSize(1, SizeUnit.KiB).setMetricsListener(metrics)
+            .build();
+    }
+
+    @AfterMethod
+    public void deleteFile()
+        throws IOException
+    {
+        Files.delete(testFile);
+    }
+
+    @Test
+    public void decodedAndLoadedWindowsAreRecorded()
+        throws IOException
+    {
+        try (
+            final LargeText text = factory.load(testFile);
+        ) {
+            final int length = text.length();
+            for (int i = 0; i < length; i++)
+                text.charAt(i);
+        }
+
+        // 10000 bytes in windows of 1024 bytes
+        assertThat(metrics.getWindowDecodes().getCount()).isEqualTo(10L);
+        assertThat(metrics.getDecodedBytes()).isEqualTo(10000L);
+        assertThat(metrics.getWindowLoads().getCount()).isEqualTo(10L);
+        assertThat(metrics.getLoadedBytes()).isEqualTo(10000L);
+        assertThat(metrics.getCharAtSlowPaths().getCount()).isEqualTo(10L);
+        // Fast path hits of the last window are only reported with a slow
+        // path, which never comes
+        assertThat(metrics.getCharAtFastPaths()).isEqualTo(9L * 1023L);
+    }
+
+    @Test
+    public void multiWindowSubsequencesAreRecorded()
+        throws IOException
+    {
+        try (
+            final LargeText text = factory.loadThreadSafe(testFile);
+        ) {
+            text.subSequence(10, 20);
+            text.subSequence(1000, 3000);
+        }
+
+        assertThat(metrics.getMultiWindowSequences().getCount())
+            .isEqualTo(1L);
+    }
+}
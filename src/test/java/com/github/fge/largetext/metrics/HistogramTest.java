@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.metrics;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class HistogramTest
+{
+    @DataProvider
+    public Iterator<Object[]> getValues()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { 0L });
+        list.add(new Object[] { 127L });
+        list.add(new Object[] { 128L });
+        list.add(new Object[] { 1000L });
+        list.add(new Object[] { 123456789L });
+        list.add(new Object[] { Long.MAX_VALUE });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getValues")
+    public void bucketsContainTheirValuesWithBoundedError(final long value)
+    {
+        final int index = Histogram.index(value);
+        final long highest = Histogram.highestValue(index);
+        assertThat(highest).isGreaterThanOrEqualTo(value);
+        assertThat((double) (highest - value))
+            .isLessThanOrEqualTo(value / 64.0);
+        if (index > 0)
+            assertThat(Histogram.highestValue(index - 1)).isLessThan(value);
+    }
+
+    @Test
+    public void percentilesAreWithinRelativeError()
+    {
+        final Histogram histogram = new Histogram();
+        final Random random = new Random(0L);
+        final List<Long> values = new ArrayList<>();
+        long value;
+        for (int i = 0; i < 10000; i++) {
+            value = (long) (Math.exp(random.nextDouble() * 20.0));
+            values.add(value);
+            histogram.record(value);
+        }
+        Collections.sort(values);
+
+        assertThat(histogram.getCount()).isEqualTo(10000L);
+        assertThat(histogram.getMax()).isEqualTo(values.get(9999));
+        long expected, actual;
+        for (final double percentile: new double[] { 50.0, 90.0, 99.0 }) {
+            expected = values.get((int) Math.ceil(percentile * 100.0) - 1);
+            actual = histogram.getValueAtPercentile(percentile);
+            assertThat((double) actual).isGreaterThanOrEqualTo(expected)
+                .isLessThanOrEqualTo(expected * (1.0 + 1.0 / 64.0));
+        }
+    }
+
+    @Test
+    public void resetHistogramIsEmpty()
+    {
+        final Histogram histogram = new Histogram();
+        histogram.record(42L);
+        histogram.reset();
+        assertThat(histogram.getCount()).isEqualTo(0L);
+        assertThat(histogram.getValueAtPercentile(99.0)).isEqualTo(0L);
+    }
+}
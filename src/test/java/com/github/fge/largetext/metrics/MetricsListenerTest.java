@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+package com.github.fge.largetext.metrics;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.SizeUnit;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.range.IntRange;
+import com.google.common.base.Strings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class MetricsListenerTest
+{
+    private static final String CONTENTS = Strings.repeat("abcdefghij", 1000);
+
+    private Path testFile;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        testFile = Files.createTempFile("foo", "bar");
+        Files.write(testFile, CONTENTS.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterMethod
+    public void deleteFile()
+        throws IOException
+    {
+        Files.delete(testFile);
+    }
+
+    @Test
+    public void operationsAreAnnouncedInTheThreadPerformingThem()
+        throws IOException
+    {
+        final StartTracker tracker = new StartTracker();
+        final LargeTextFactory factory = LargeTextFactory.newBuilder()
+            .setWindowSize(1, SizeUnit.KiB).setMetricsListener(tracker)
+            .build();
+        try (
+            final LargeText text = factory.loadThreadSafe(testFile);
+        ) {
+            final int length = text.length();
+            for (int i = 0; i < length; i += 100)
+                text.charAt(i);
+            text.subSequence(1000, 3000);
+        }
+
+        assertThat(tracker.unannounced.get()).isEqualTo(0);
+        assertThat(tracker.ended.keySet()).contains(
+            MetricsListener.Operation.WINDOW_DECODE,
+            MetricsListener.Operation.WINDOW_LOAD,
+            MetricsListener.Operation.CHAR_AT_SLOW_PATH,
+            MetricsListener.Operation.SUB_SEQUENCE);
+    }
+
+    private static final class StartTracker
+        implements MetricsListener
+    {
+        private final ThreadLocal<Set<Operation>> started
+            = new ThreadLocal<Set<Operation>>()
+        {
+            @Override
+            protected Set<Operation> initialValue()
+            {
+                return EnumSet.noneOf(Operation.class);
+            }
+        };
+        private final Map<Operation, Boolean> ended
+            = new EnumMap<>(Operation.class);
+        private final AtomicInteger unannounced = new AtomicInteger();
+
+        @Override
+        public MetricsListener forSource(final String name)
+        {
+            return this;
+        }
+
+        @Override
+        public void starting(final Operation operation)
+        {
+            started.get().add(operation);
+        }
+
+        @Override
+        public void windowDecoded(final TextRange textRange, final long nanos)
+        {
+            end(Operation.WINDOW_DECODE);
+        }
+
+        @Override
+        public void windowLoaded(final TextRange textRange, final long nanos)
+        {
+            end(Operation.WINDOW_LOAD);
+        }
+
+        @Override
+        public void windowEvicted(final TextRange textRange)
+        {
+        }
+
+        @Override
+        public void charAtSlowPath(final int index, final TextRange window,
+            final long fastPathHits, final long nanos)
+        {
+            end(Operation.CHAR_AT_SLOW_PATH);
+        }
+
+        @Override
+        public void waited(final int required, final long nanos)
+        {
+            end(Operation.WAIT);
+        }
+
+        @Override
+        public void subSequence(final IntRange range, final int nrWindows,
+            final long nanos)
+        {
+            end(Operation.SUB_SEQUENCE);
+        }
+
+        private void end(final Operation operation)
+        {
+            if (!started.get().remove(operation))
+                unannounced.incrementAndGet();
+            synchronized (ended) {
+                ended.put(operation, true);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.search;
+
+import com.github.fge.largetext.load.TextDecoder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ByteSearcherTest
+{
+    private final Random random = new Random(0L);
+
+    private Path testFile;
+    private FileChannel channel;
+    private TextDecoder decoder;
+
+    @DataProvider
+    public Iterator<Object[]> getData()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        final String utf8Alphabet = "ab\u00e9\u4e2d\ud83d\ude00";
+        final String latin1Alphabet = "ab\u00e9\u00ff";
+
+        list.add(new Object[] { StandardCharsets.UTF_8, utf8Alphabet, "a" });
+        list.add(new Object[] { StandardCharsets.UTF_8, utf8Alphabet,
+            "b\u00e9" });
+        list.add(new Object[] { StandardCharsets.UTF_8, utf8Alphabet,
+            "\ud83d\ude00\u4e2d" });
+        list.add(new Object[] { StandardCharsets.UTF_8, utf8Alphabet,
+            "\u4e2d\u4e2d\u4e2d" });
+        list.add(new Object[] { StandardCharsets.ISO_8859_1, latin1Alphabet,
+            "\u00ff\u00e9" });
+        list.add(new Object[] { StandardCharsets.ISO_8859_1, latin1Alphabet,
+            "abab" });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getData")
+    public void byteSearchWorksLikeString(final Charset charset,
+        final String alphabet, final String needle)
+        throws IOException
+    {
+        final String testString = createFile(charset, alphabet);
+        final ByteSearcher searcher
+            = new ByteSearcher(channel, charset, decoder);
+        final byte[] bytes = searcher.encode(needle);
+
+        int from;
+        for (int i = 0; i < 50; i++) {
+            from = random.nextInt(testString.length() + 10) - 5;
+            assertThat(searcher.indexOf(bytes, from)).overridingErrorMessage(
+                "indexOf(%s, %s) is wrong", needle, from
+            ).isEqualTo(testString.indexOf(needle, from));
+            assertThat(searcher.indexOf(bytes, from, true))
+                .overridingErrorMessage("parallel indexOf(%s, %s) is wrong",
+                    needle, from
+                ).isEqualTo(testString.indexOf(needle, from));
+        }
+
+        long expected = 0L;
+        int index = 0;
+        while ((index = testString.indexOf(needle, index)) != -1) {
+            expected++;
+            index += needle.length();
+        }
+        assertThat(searcher.countOccurrences(bytes)).overridingErrorMessage(
+            "wrong number of occurrences for %s", needle
+        ).isEqualTo(expected);
+        assertThat(searcher.countOccurrences(bytes, false))
+            .overridingErrorMessage("wrong sequential count for %s", needle)
+            .isEqualTo(expected);
+    }
+
+    @Test
+    public void unencodableNeedlesAreDetected()
+        throws IOException
+    {
+        createFile(StandardCharsets.ISO_8859_1, "ab");
+        final ByteSearcher searcher = new ByteSearcher(channel,
+            StandardCharsets.ISO_8859_1, decoder);
+        assertThat(searcher.encode("\u4e2d")).isNull();
+    }
+
+    @Test
+    public void multiByteCharsetsOtherThanUtf8AreNotSupported()
+    {
+        assertThat(ByteSearcher.supports(StandardCharsets.UTF_8)).isTrue();
+        assertThat(ByteSearcher.supports(StandardCharsets.US_ASCII)).isTrue();
+        assertThat(ByteSearcher.supports(StandardCharsets.UTF_16LE))
+            .isFalse();
+        assertThat(ByteSearcher.supports(Charset.forName("Shift_JIS")))
+            .isFalse();
+    }
+
+    private String createFile(final Charset charset, final String alphabet)
+        throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        final int nrCodePoints = alphabet.codePointCount(0, alphabet.length());
+        int index;
+        for (int i = 0; i < 20000; i++) {
+            index = alphabet.offsetByCodePoints(0,
+                random.nextInt(nrCodePoints));
+            sb.appendCodePoint(alphabet.codePointAt(index));
+        }
+        final String testString = sb.toString();
+
+        testFile = Files.createTempFile("foo", "bar");
+        try (
+            final BufferedWriter writer = Files.newBufferedWriter(testFile,
+                charset);
+        ) {
+            writer.write(testString);
+            writer.flush();
+        }
+        channel = FileChannel.open(testFile, StandardOpenOption.READ);
+        decoder = new TextDecoder(channel, charset, 1024L);
+        return testString;
+    }
+
+    @AfterMethod
+    public void deleteFile()
+        throws IOException
+    {
+        if (testFile == null)
+            return;
+        decoder.close();
+        channel.close();
+        Files.delete(testFile);
+        testFile = null;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.search;
+
+import com.github.fge.largetext.load.TextCache;
+import com.github.fge.largetext.load.TextDecoder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class LiteralSearcherTest
+{
+    private static final String ALPHABET = "ab\u00e9\u4e2d";
+
+    private final Random random = new Random(0L);
+
+    private Path testFile;
+    private FileChannel channel;
+    private TextDecoder decoder;
+    private LiteralSearcher searcher;
+    private String testString;
+
+    @BeforeClass
+    public void createFile()
+        throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        testString = sb.toString();
+
+        final Charset charset = StandardCharsets.UTF_8;
+        testFile = Files.createTempFile("foo", "bar");
+        try (
+            final BufferedWriter writer = Files.newBufferedWriter(testFile,
+                charset);
+        ) {
+            writer.write(testString);
+            writer.flush();
+        }
+        channel = FileChannel.open(testFile, StandardOpenOption.READ);
+        decoder = new TextDecoder(channel, charset, 1024L);
+        final TextCache cache = new TextCache(channel, charset);
+        searcher = new LiteralSearcher(decoder, cache);
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getNeedles()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { "a" });
+        list.add(new Object[] { "aa" });
+        list.add(new Object[] { "ab\u00e9" });
+        list.add(new Object[] { "\u4e2d\u4e2d\u4e2d\u4e2d" });
+        list.add(new Object[] { "abababab" });
+        list.add(new Object[] { "xyz" });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getNeedles")
+    public void indexOfWorksLikeString(final String needle)
+    {
+        int from;
+        for (int i = 0; i < 50; i++) {
+            from = random.nextInt(testString.length() + 10) - 5;
+            assertThat(searcher.indexOf(needle, from)).overridingErrorMessage(
+                "indexOf(%s, %s) is wrong", needle, from
+            ).isEqualTo(testString.indexOf(needle, from));
+            assertThat(searcher.indexOf(needle, from, true))
+                .overridingErrorMessage("parallel indexOf(%s, %s) is wrong",
+                    needle, from
+                ).isEqualTo(testString.indexOf(needle, from));
+        }
+    }
+
+    @Test(dataProvider = "getNeedles")
+    public void lastIndexOfWorksLikeString(final String needle)
+    {
+        int from;
+        for (int i = 0; i < 50; i++) {
+            from = random.nextInt(testString.length() + 10) - 5;
+            assertThat(searcher.lastIndexOf(needle, from))
+                .overridingErrorMessage("lastIndexOf(%s, %s) is wrong",
+                    needle, from
+                ).isEqualTo(testString.lastIndexOf(needle, from));
+            assertThat(searcher.lastIndexOf(needle, from, true))
+                .overridingErrorMessage("parallel lastIndexOf(%s, %s) is wrong",
+                    needle, from
+                ).isEqualTo(testString.lastIndexOf(needle, from));
+        }
+    }
+
+    @Test(dataProvider = "getNeedles")
+    public void occurrencesAreCountedCorrectly(final String needle)
+    {
+        long expected = 0L;
+        int index = 0;
+        while ((index = testString.indexOf(needle, index)) != -1) {
+            expected++;
+            index += needle.length();
+        }
+        assertThat(searcher.countOccurrences(needle)).overridingErrorMessage(
+            "wrong number of occurrences for %s", needle
+        ).isEqualTo(expected);
+        assertThat(searcher.countOccurrences(needle, false))
+            .overridingErrorMessage("wrong sequential count for %s", needle)
+            .isEqualTo(expected);
+    }
+
+    @Test
+    public void emptyNeedleWorksLikeString()
+    {
+        final int len = testString.length();
+        assertThat(searcher.indexOf("", 30)).isEqualTo(30);
+        assertThat(searcher.indexOf("", len + 30)).isEqualTo(len);
+        assertThat(searcher.lastIndexOf("", len + 30)).isEqualTo(len);
+    }
+
+    @AfterClass
+    public void deleteFile()
+        throws IOException
+    {
+        decoder.close();
+        channel.close();
+        Files.delete(testFile);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.search;
+
+import com.github.fge.largetext.load.TextCache;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.range.IntRange;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class RegexSearcherTest
+{
+    private Path testFile;
+    private FileChannel channel;
+    private TextDecoder decoder;
+    private RegexSearcher searcher;
+    private RegexSearcher scanSearcher;
+    private String testString;
+
+    @BeforeClass
+    public void createFile()
+        throws IOException
+    {
+        final Random random = new Random(0L);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+            sb.append(random.nextInt(100000))
+                .append(i % 7 == 0 ? "\u00e9\n" : " ");
+        testString = sb.toString();
+
+        final Charset charset = StandardCharsets.UTF_8;
+        testFile = Files.createTempFile("foo", "bar");
+        try (
+            final BufferedWriter writer = Files.newBufferedWriter(testFile,
+                charset);
+        ) {
+            writer.write(testString);
+            writer.flush();
+        }
+        channel = FileChannel.open(testFile, StandardOpenOption.READ);
+        decoder = new TextDecoder(channel, charset, 1000L);
+        final TextCache cache = new TextCache(channel, charset);
+        searcher = new RegexSearcher(decoder, cache);
+        scanSearcher = new RegexSearcher(decoder, cache.withoutAdmission());
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getPatterns()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { "\\d+", 10 });
+        list.add(new Object[] { "^\\d+", 10 });
+        list.add(new Object[] { "\\d+\u00e9$", 10 });
+        list.add(new Object[] { "(?<=\u00e9\n)\\d+", 10 });
+        list.add(new Object[] { "\\b\\d{3}\\b", 10 });
+        list.add(new Object[] { "[^\n]+", 100 });
+        list.add(new Object[] { "\\d* ", 10 });
+        list.add(new Object[] { "x*", 1 });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getPatterns")
+    public void parallelSearchFindsSameMatchesAsMatcher(final String regex,
+        final int maxMatchLength)
+    {
+        final Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
+        final List<IntRange> expected = new ArrayList<>();
+        final Matcher matcher = pattern.matcher(testString);
+        while (matcher.find())
+            expected.add(new IntRange(matcher.start(), matcher.end()));
+
+        final List<IntRange> actual = searcher.findAll(pattern,
+            maxMatchLength);
+        assertThat(actual).overridingErrorMessage(
+            "Parallel search did not yield the expected matches for %s",
+            regex
+        ).isEqualTo(expected);
+    }
+
+    @Test(dataProvider = "getPatterns")
+    public void searchWithoutCacheAdmissionFindsSameMatches(final String regex,
+        final int maxMatchLength)
+    {
+        final Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
+        assertThat(scanSearcher.findAll(pattern, maxMatchLength))
+            .isEqualTo(searcher.findAll(pattern, maxMatchLength));
+    }
+
+    @Test
+    public void matchesSpanningSeveralWindowsAreFound()
+    {
+        final Pattern pattern = Pattern.compile("\\A.{2500}", Pattern.DOTALL);
+        final List<IntRange> actual = searcher.findAll(pattern, 2500);
+        assertThat(actual).containsExactly(new IntRange(0, 2500));
+    }
+
+    @AfterClass
+    public void deleteFile()
+        throws IOException
+    {
+        decoder.close();
+        channel.close();
+        Files.delete(testFile);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.search;
+
+import com.github.fge.largetext.LargeTextException;
+import com.github.fge.largetext.load.DecoderOptions;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.source.ByteSources;
+import com.google.common.base.Strings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public final class WindowPipelineTest
+{
+    private final AtomicInteger live = new AtomicInteger();
+
+    private ForkJoinPool pool;
+    private TextDecoder decoder;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        live.set(0);
+        pool = new ForkJoinPool(4);
+        final byte[] bytes = Strings.repeat("abcdefghij", 10000)
+            .getBytes(StandardCharsets.UTF_8);
+        decoder = new TextDecoder(ByteSources.ofBytes(bytes),
+            StandardCharsets.UTF_8, DecoderOptions.newBuilder()
+            .setWindowSize(1000L).build());
+    }
+
+    @AfterMethod
+    public void close()
+        throws IOException
+    {
+        decoder.close();
+        pool.shutdown();
+    }
+
+    @Test
+    public void resultsNotMergedAreDiscardedWhenStoppingEarly()
+        throws InterruptedException
+    {
+        new CountingPipeline(-1, 3).run(0);
+
+        awaitTasks();
+        assertThat(live.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void resultsNotMergedAreDiscardedOnFailure()
+        throws InterruptedException
+    {
+        try {
+            new CountingPipeline(5, Integer.MAX_VALUE).run(0);
+            fail("No exception thrown!");
+        } catch (LargeTextException ignored) {
+        }
+
+        awaitTasks();
+        assertThat(live.get()).isEqualTo(0);
+    }
+
+    private void awaitTasks()
+        throws InterruptedException
+    {
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10L, TimeUnit.SECONDS)).isTrue();
+    }
+
+    /*
+     * Each result counts as a live resource until merged or discarded
+     */
+    private final class CountingPipeline
+        extends WindowPipeline<TextRange>
+    {
+        private final int failAt;
+        private final int maxMerges;
+
+        private int merges = 0;
+
+        private CountingPipeline(final int failAt, final int maxMerges)
+        {
+            super(decoder, pool);
+            this.failAt = failAt;
+            this.maxMerges = maxMerges;
+        }
+
+        @Override
+        protected TextRange process(final TextRange textRange)
+        {
+            if (textRange.getCharRange().getLowerBound() == failAt * 1000)
+                throw new IllegalStateException("failed");
+            live.incrementAndGet();
+            return textRange;
+        }
+
+        @Override
+        protected boolean merge(final TextRange result)
+        {
+            live.decrementAndGet();
+            return ++merges < maxMerges;
+        }
+
+        @Override
+        protected void discard(final TextRange result)
+        {
+            live.decrementAndGet();
+        }
+    }
+}
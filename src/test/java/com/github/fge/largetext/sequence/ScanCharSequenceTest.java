@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.sequence;
+
+import com.github.fge.largetext.load.DecoderOptions;
+import com.github.fge.largetext.load.TextCache;
+import com.github.fge.largetext.load.TextDecoder;
+import com.github.fge.largetext.range.IntRange;
+import com.github.fge.largetext.source.ByteSource;
+import com.github.fge.largetext.source.ByteSources;
+import com.google.common.base.Strings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ScanCharSequenceTest
+{
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final String CONTENTS
+        = Strings.repeat("abcd\u00e9fghij\n", 3000);
+
+    private final AtomicInteger reads = new AtomicInteger();
+    private TextDecoder decoder;
+    private TextCache cache;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        reads.set(0);
+        final ByteSource delegate
+            = ByteSources.ofBytes(CONTENTS.getBytes(CHARSET));
+        final ByteSource source = new ByteSource()
+        {
+            @Override
+            public long size()
+                throws IOException
+            {
+                return delegate.size();
+            }
+
+            @Override
+            public ByteBuffer read(final long offset, final int length)
+                throws IOException
+            {
+                reads.incrementAndGet();
+                return delegate.read(offset, length);
+            }
+
+            @Override
+            public void release(final ByteBuffer buffer)
+            {
+                delegate.release(buffer);
+            }
+
+            @Override
+            public void close()
+                throws IOException
+            {
+                delegate.close();
+            }
+        };
+        decoder = new TextDecoder(source, CHARSET,
+            DecoderOptions.newBuilder().setWindowSize(1000L).build());
+        cache = new TextCache(source, CHARSET);
+        // Wait for the decoding process, so that it does not count as reads
+        decoder.getTotalChars();
+        reads.set(0);
+    }
+
+    @AfterMethod
+    public void close()
+        throws IOException
+    {
+        decoder.close();
+    }
+
+    @Test
+    public void sequenceHasTheSameContentsAsTheText()
+    {
+        final ScanCharSequence sequence = new ScanCharSequence(decoder, cache);
+        final int length = CONTENTS.length();
+
+        assertThat(sequence.length()).isEqualTo(length);
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            sb.append(sequence.charAt(i));
+        assertThat(sb.toString()).isEqualTo(CONTENTS);
+        assertThat(sequence.subSequence(995, 2010).toString())
+            .isEqualTo(CONTENTS.substring(995, 2010));
+    }
+
+    @Test
+    public void regexMatchesAreTheSameAsWithAString()
+    {
+        final Pattern pattern = Pattern.compile("\u00e9f.*$",
+            Pattern.MULTILINE);
+        final Matcher expected = pattern.matcher(CONTENTS);
+        final Matcher actual
+            = pattern.matcher(new ScanCharSequence(decoder, cache));
+
+        while (expected.find()) {
+            assertThat(actual.find()).isTrue();
+            assertThat(actual.start()).isEqualTo(expected.start());
+            assertThat(actual.end()).isEqualTo(expected.end());
+        }
+        assertThat(actual.find()).isFalse();
+    }
+
+    @Test
+    public void scannedWindowsAreNotAdmittedIntoTheCache()
+    {
+        final ScanCharSequence sequence = new ScanCharSequence(decoder, cache);
+        final int length = sequence.length();
+        for (int i = 0; i < length; i++)
+            sequence.charAt(i);
+        final int scanReads = reads.get();
+        assertThat(scanReads).isEqualTo(decoder.getRanges(
+            new IntRange(0, length)).size());
+
+        cache.load(decoder.getRange(0));
+        assertThat(reads.get()).isEqualTo(scanReads + 1);
+    }
+
+    @Test
+    public void cachedWindowsAreUsedByScans()
+    {
+        cache.load(decoder.getRange(0));
+        reads.set(0);
+
+        final ScanCharSequence sequence = new ScanCharSequence(decoder, cache);
+        sequence.charAt(0);
+        sequence.charAt(1);
+        assertThat(reads.get()).isEqualTo(0);
+    }
+}
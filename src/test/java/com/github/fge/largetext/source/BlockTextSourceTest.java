@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.SizeUnit;
+import com.github.fge.largetext.load.TextRange;
+import com.github.fge.largetext.range.IntRange;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.testng.Assert.fail;
+
+public final class BlockTextSourceTest
+{
+    private static final String ALPHABET = "abcdefghij \u00e9\u4e2d\n";
+    private static final int SIZE = 200000;
+
+    private final Random random = new Random(0L);
+
+    private Path textFile;
+    private Path blockFile;
+
+    @BeforeMethod
+    public void createFiles()
+        throws IOException
+    {
+        textFile = Files.createTempFile("largetext", ".txt");
+        blockFile = Files.createTempFile("largetext", ".ltb");
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getCharsets()
+    {
+        return Arrays.asList(
+            new Object[] { StandardCharsets.UTF_8 },
+            new Object[] { StandardCharsets.UTF_16LE }
+        ).iterator();
+    }
+
+    @Test(dataProvider = "getCharsets")
+    public void blockTextFilesHaveTheContentsOfTheOriginalText(
+        final Charset charset)
+        throws IOException
+    {
+        final String testString = createText(charset, SIZE);
+        final byte[] bytes = testString.getBytes(charset);
+        final LargeTextFactory factory = LargeTextFactory.newBuilder()
+            .setCharset(charset).setWindowSize(16, SizeUnit.KiB).build();
+        factory.writeBlockText(textFile, blockFile);
+
+        assertThat(Files.size(blockFile)).isLessThan(bytes.length);
+
+        try (
+            final BlockTextSource source = new BlockTextSource(
+                FileChannel.open(blockFile, StandardOpenOption.READ));
+        ) {
+            assertThat(source.getCharset()).isEqualTo(charset);
+            assertThat(source.size()).isEqualTo((long) bytes.length);
+
+            final List<TextRange> textRanges = source.getTextRanges();
+            assertThat(textRanges.size()).isGreaterThan(1);
+            final TextRange last = textRanges.get(textRanges.size() - 1);
+            assertThat(last.getCharRange().getUpperBound())
+                .isEqualTo(testString.length());
+
+            int offset, length;
+            ByteBuffer buffer;
+            byte[] actual;
+            for (int i = 0; i < 100; i++) {
+                offset = random.nextInt(bytes.length + 1);
+                length = random.nextInt(40000);
+                buffer = source.read(offset, length);
+                actual = new byte[buffer.remaining()];
+                buffer.get(actual);
+                assertThat(actual).isEqualTo(Arrays.copyOfRange(bytes,
+                    offset, Math.min(bytes.length, offset + length)));
+            }
+        }
+
+        // The charset of the factory is not used
+        try (
+            final LargeText text = LargeTextFactory.defaultFactory()
+                .loadBlockTextThreadSafe(blockFile);
+        ) {
+            final int len = testString.length();
+            assertThat(text.length()).isEqualTo(len);
+            int start, end;
+            for (int i = 0; i < 100; i++) {
+                start = random.nextInt(len);
+                end = start + random.nextInt(Math.min(50000, len - start + 1));
+                assertThat(text.subSequence(start, end).toString())
+                    .isEqualTo(testString.substring(start, end));
+            }
+            assertThat(text.indexOf("\u4e2d\n\u4e2d"))
+                .isEqualTo(testString.indexOf("\u4e2d\n\u4e2d"));
+        }
+    }
+
+    @Test
+    public void emptyTextsCanBeWritten()
+        throws IOException
+    {
+        LargeTextFactory.defaultFactory().writeBlockText(textFile, blockFile);
+        try (
+            final LargeText text = LargeTextFactory.defaultFactory()
+                .loadBlockText(blockFile);
+        ) {
+            assertThat(text.length()).isEqualTo(0);
+            assertThat(text.toString()).isEmpty();
+        }
+    }
+
+    @Test
+    public void corruptedBlocksAreDetected()
+        throws IOException
+    {
+        createText(StandardCharsets.UTF_8, SIZE);
+        final LargeTextFactory factory = LargeTextFactory.newBuilder()
+            .setWindowSize(16, SizeUnit.KiB).build();
+        factory.writeBlockText(textFile, blockFile);
+
+        final IntRange range;
+        try (
+            final BlockTextSource source = new BlockTextSource(
+                FileChannel.open(blockFile, StandardOpenOption.READ));
+        ) {
+            range = source.getTextRanges().get(1).getCharRange();
+        }
+
+        // The first block starts right after the header
+        final byte[] bytes = Files.readAllBytes(blockFile);
+        bytes[BlockTextSource.HEADER_SIZE + 100] ^= 0x55;
+        Files.write(blockFile, bytes);
+
+        try (
+            final LargeText text = factory.loadBlockText(blockFile);
+        ) {
+            // Other blocks are fine
+            text.charAt(range.getLowerBound());
+            try {
+                text.charAt(0);
+                fail("No exception thrown!");
+            } catch (UncheckedExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(ZipException.class);
+            }
+        }
+    }
+
+    @Test
+    public void filesWhichAreNotBlockTextFilesAreRejected()
+        throws IOException
+    {
+        createText(StandardCharsets.UTF_8, 1000);
+        try {
+            LargeTextFactory.defaultFactory().loadBlockText(textFile);
+            fail("No exception thrown!");
+        } catch (ZipException e) {
+            assertThat(e.getMessage()).isEqualTo("not a block text file");
+        }
+    }
+
+    @AfterMethod
+    public void deleteFiles()
+        throws IOException
+    {
+        Files.delete(textFile);
+        Files.delete(blockFile);
+    }
+
+    private String createText(final Charset charset, final int size)
+        throws IOException
+    {
+        final StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < size; i++)
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        final String ret = sb.toString();
+        try (
+            final BufferedWriter writer = Files.newBufferedWriter(textFile,
+                charset);
+        ) {
+            writer.write(ret);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.SizeUnit;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ByteSourcesTest
+{
+    private static final String ALPHABET = "abcdefghij \u00e9\u4e2d\n";
+    private static final int SIZE = 100000;
+
+    private final Random random = new Random(0L);
+    private final String testString;
+    private final byte[] bytes;
+
+    public ByteSourcesTest()
+    {
+        final StringBuilder sb = new StringBuilder(SIZE);
+        for (int i = 0; i < SIZE; i++)
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        testString = sb.toString();
+        bytes = testString.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getSources()
+    {
+        final List<Object[]> list = new ArrayList<>();
+
+        list.add(new Object[] { ByteSources.ofBytes(bytes) });
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 20);
+        direct.position(10);
+        direct.put(bytes);
+        direct.position(10).limit(10 + bytes.length);
+        list.add(new Object[] { ByteSources.ofBuffer(direct) });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getSources")
+    public void inMemorySourcesReadTheRightBytes(final ByteSource source)
+        throws IOException
+    {
+        assertThat(source.size()).isEqualTo((long) bytes.length);
+
+        int offset, length;
+        ByteBuffer buffer;
+        byte[] actual;
+        for (int i = 0; i < 100; i++) {
+            offset = random.nextInt(bytes.length + 1);
+            length = random.nextInt(20000);
+            buffer = source.read(offset, length);
+            assertThat(buffer.position()).isEqualTo(0);
+            actual = new byte[buffer.remaining()];
+            buffer.get(actual);
+            assertThat(actual).isEqualTo(Arrays.copyOfRange(bytes, offset,
+                Math.min(bytes.length, offset + length)));
+        }
+
+        assertThat(source.read(bytes.length + 10L, 10).remaining())
+            .isEqualTo(0);
+        assertThat(source.read(0L, 10).isReadOnly()).isTrue();
+    }
+
+    @Test(dataProvider = "getSources")
+    public void largeTextInstancesCanUseAnySource(final ByteSource source)
+        throws IOException
+    {
+        final LargeTextFactory factory = LargeTextFactory.newBuilder()
+            .setWindowSize(4, SizeUnit.KiB).build();
+        try (
+            final LargeText text = factory.loadThreadSafe(source);
+        ) {
+            assertThat(text.length()).isEqualTo(testString.length());
+            assertThat(text.toString()).isEqualTo(testString);
+            assertThat(text.indexOf("\u4e2d\n")).isEqualTo(
+                testString.indexOf("\u4e2d\n"));
+        }
+    }
+
+    @Test
+    public void changingTheBufferBoundsDoesNotAffectTheSource()
+        throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        final ByteSource source = ByteSources.ofBuffer(buffer);
+        buffer.position(100).limit(200);
+        assertThat(source.size()).isEqualTo((long) bytes.length);
+        assertThat(source.read(0L, 1).get(0)).isEqualTo(bytes[0]);
+    }
+}
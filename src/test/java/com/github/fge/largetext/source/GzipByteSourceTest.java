@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.SizeUnit;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.testng.Assert.fail;
+
+public final class GzipByteSourceTest
+{
+    private static final String ALPHABET = "abcdefghij \u00e9\u4e2d\n";
+    private static final int[] MEMBER_SIZES = { 300000, 1, 0, 200000 };
+    private static final long CHECKPOINT_INTERVAL = 16384L;
+
+    private final Random random = new Random(0L);
+
+    private Path testFile;
+    private String testString;
+    private byte[] contents;
+
+    @BeforeClass
+    public void createFile()
+        throws IOException
+    {
+        final StringBuilder all = new StringBuilder();
+        testFile = Files.createTempFile("largetext", ".gz");
+
+        StringBuilder sb;
+        try (
+            final OutputStream out = Files.newOutputStream(testFile);
+        ) {
+            for (final int size: MEMBER_SIZES) {
+                sb = new StringBuilder(size);
+                for (int i = 0; i < size; i++)
+                    sb.append(ALPHABET.charAt(random.nextInt(
+                        ALPHABET.length())));
+                all.append(sb);
+                // One gzip member per stream
+                final GZIPOutputStream member = new GZIPOutputStream(out)
+                {
+                    @Override
+                    public void close()
+                        throws IOException
+                    {
+                        finish();
+                    }
+                };
+                member.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                member.close();
+            }
+        }
+
+        testString = all.toString();
+        contents = testString.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void sequentialReadsReturnTheDecompressedContents()
+        throws IOException
+    {
+        try (
+            final GzipByteSource source = open();
+        ) {
+            assertThat(source.size()).isEqualTo(-1L);
+            final byte[] read = readAll(source, 10000);
+            assertThat(read).isEqualTo(contents);
+            assertThat(source.size()).isEqualTo((long) contents.length);
+            assertThat(source.read(contents.length, 10).remaining())
+                .isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void checkpointsAreRecordedForEachInterval()
+        throws IOException
+    {
+        try (
+            final GzipByteSource source = open();
+        ) {
+            readAll(source, 65536);
+            /*
+             * At least one checkpoint per member, and one every (at least)
+             * 16 KiB after a block boundary; blocks produced by the JDK's
+             * deflater are much smaller than the whole file
+             */
+            assertThat(source.getNrCheckpoints())
+                .isGreaterThan(MEMBER_SIZES.length);
+        }
+    }
+
+    @Test
+    public void randomReadsAfterTheSequentialPassAreCorrect()
+        throws IOException
+    {
+        try (
+            final GzipByteSource source = open();
+        ) {
+            readAll(source, 10000);
+            final int size = contents.length;
+            int offset, length;
+            ByteBuffer buffer;
+            byte[] actual;
+            for (int i = 0; i < 200; i++) {
+                offset = random.nextInt(size + 1);
+                length = random.nextInt(70000);
+                buffer = source.read(offset, length);
+                actual = new byte[buffer.remaining()];
+                buffer.get(actual);
+                assertThat(actual).isEqualTo(Arrays.copyOfRange(contents,
+                    offset, Math.min(size, offset + length)));
+            }
+        }
+    }
+
+    @Test
+    public void readsAheadOfTheSequentialPassAreCorrect()
+        throws IOException
+    {
+        try (
+            final GzipByteSource source = open();
+        ) {
+            final int offset = contents.length - 1000;
+            final ByteBuffer buffer = source.read(offset, 2000);
+            final byte[] actual = new byte[buffer.remaining()];
+            buffer.get(actual);
+            assertThat(actual).isEqualTo(Arrays.copyOfRange(contents,
+                offset, contents.length));
+            assertThat(source.read(0L, 100).remaining()).isEqualTo(100);
+        }
+    }
+
+    @Test
+    public void corruptedFilesAreDetected()
+        throws IOException
+    {
+        final byte[] bytes = Files.readAllBytes(testFile);
+        final Path corrupted = Files.createTempFile("largetext", ".gz");
+        try {
+            /*
+             * Flip a byte of the CRC of the first member; its trailer ends
+             * right before the header of the second member, which we can find
+             * since it is the only place where the magic number is followed by
+             * the compression method and flags of the JDK
+             */
+            final int second = indexOf(bytes, new byte[] {
+                (byte) 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0 }, 1);
+            bytes[second - 8] ^= 1;
+            Files.write(corrupted, bytes);
+            try (
+                final GzipByteSource source = new GzipByteSource(
+                    FileChannel.open(corrupted, StandardOpenOption.READ),
+                    CHECKPOINT_INTERVAL);
+            ) {
+                source.read(0L, contents.length);
+                fail("No exception thrown!");
+            } catch (ZipException e) {
+                assertThat(e.getMessage()).isEqualTo(
+                    "gzip member CRC mismatch");
+            }
+        } finally {
+            Files.delete(corrupted);
+        }
+    }
+
+    @Test
+    public void largeTextInstancesCanBeObtainedFromGzipFiles()
+        throws IOException
+    {
+        final LargeTextFactory factory = LargeTextFactory.newBuilder()
+            .setWindowSize(16, SizeUnit.KiB)
+            .setGzipCheckpointInterval(16, SizeUnit.KiB).build();
+        try (
+            final LargeText text = factory.loadGzipThreadSafe(testFile);
+        ) {
+            final int length = testString.length();
+            assertThat(text.length()).isEqualTo(length);
+            int start, end;
+            for (int i = 0; i < 100; i++) {
+                start = random.nextInt(length);
+                end = start + random.nextInt(length - start + 1);
+                assertThat(text.subSequence(start, end).toString())
+                    .isEqualTo(testString.substring(start, end));
+            }
+            assertThat(text.indexOf("\u4e2d\u4e2d\u4e2d"))
+                .isEqualTo(testString.indexOf("\u4e2d\u4e2d\u4e2d"));
+            assertThat(text.viewAtByte(contents.length / 2, 10).toString())
+                .isNotEmpty();
+        }
+    }
+
+    @AfterClass
+    public void deleteFile()
+        throws IOException
+    {
+        Files.delete(testFile);
+    }
+
+    private GzipByteSource open()
+        throws IOException
+    {
+        return new GzipByteSource(FileChannel.open(testFile,
+            StandardOpenOption.READ), CHECKPOINT_INTERVAL);
+    }
+
+    private static byte[] readAll(final ByteSource source, final int chunkSize)
+        throws IOException
+    {
+        final ByteBuffer all = ByteBuffer.allocate(1 << 21);
+        ByteBuffer buffer;
+        long offset = 0L;
+        while ((buffer = source.read(offset, chunkSize)).hasRemaining()) {
+            offset += buffer.remaining();
+            all.put(buffer);
+        }
+        all.flip();
+        final byte[] ret = new byte[all.remaining()];
+        all.get(ret);
+        return ret;
+    }
+
+    private static int indexOf(final byte[] bytes, final byte[] needle,
+        final int from)
+    {
+        int j;
+        for (int i = from; i <= bytes.length - needle.length; i++) {
+            for (j = 0; j < needle.length; j++)
+                if (bytes[i + j] != needle[j])
+                    break;
+            if (j == needle.length)
+                return i;
+        }
+        return -1;
+    }
+}
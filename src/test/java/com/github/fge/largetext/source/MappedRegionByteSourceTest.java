@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.SizeUnit;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class MappedRegionByteSourceTest
+{
+    private static final String ALPHABET = "abcdefghij \u00e9\u4e2d\n";
+    private static final int SIZE = 300000;
+    private static final long REGION_SIZE = 16384L;
+    private static final int MAX_REGIONS = 3;
+
+    private final Random random = new Random(0L);
+
+    private Path testFile;
+    private String testString;
+    private byte[] bytes;
+
+    @BeforeClass
+    public void createFile()
+        throws IOException
+    {
+        final StringBuilder sb = new StringBuilder(SIZE);
+        for (int i = 0; i < SIZE; i++)
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        testString = sb.toString();
+        bytes = testString.getBytes(StandardCharsets.UTF_8);
+        testFile = Files.createTempFile("largetext", ".txt");
+        Files.write(testFile, bytes);
+    }
+
+    @Test
+    public void readsReturnTheRightBytesAndMappingsStayBounded()
+        throws IOException
+    {
+        final MappedRegionByteSource source = open();
+        int offset, length;
+        ByteBuffer buffer;
+        IoStatistics statistics;
+        for (int i = 0; i < 500; i++) {
+            offset = random.nextInt(bytes.length + 1);
+            length = random.nextInt(i % 10 == 0 ? 50000 : 4096);
+            buffer = source.read(offset, length);
+            assertThat(toArray(buffer)).isEqualTo(Arrays.copyOfRange(bytes,
+                offset, Math.min(bytes.length, offset + length)));
+            source.release(buffer);
+            statistics = source.getStatistics();
+            assertThat(statistics.getAllocations()
+                - statistics.getUnmappings()).isLessThanOrEqualTo(
+                (long) MAX_REGIONS);
+        }
+        source.close();
+        statistics = source.getStatistics();
+        assertThat(statistics.getStrategy())
+            .isEqualTo(IoStrategy.MAPPED_REGIONS);
+        assertThat(statistics.getUnmappings())
+            .isEqualTo(statistics.getAllocations());
+    }
+
+    @Test
+    public void regionsAreReused()
+        throws IOException
+    {
+        try (
+            final MappedRegionByteSource source = open();
+        ) {
+            for (int i = 0; i < 10; i++)
+                source.release(source.read(i * 100L, 1000));
+            assertThat(source.getStatistics().getAllocations())
+                .isEqualTo(1L);
+        }
+    }
+
+    @Test
+    public void regionsInUseAreNotUnmapped()
+        throws IOException
+    {
+        final MappedRegionByteSource source = open();
+        final ByteBuffer held = source.read(0L, 1000);
+        for (int i = 1; i <= MAX_REGIONS + 2; i++)
+            source.release(source.read(i * REGION_SIZE, 1000));
+
+        // Evicted, but still mapped
+        IoStatistics statistics = source.getStatistics();
+        assertThat(statistics.getUnmappings())
+            .isEqualTo(statistics.getAllocations() - MAX_REGIONS - 1);
+        assertThat(toArray(held))
+            .isEqualTo(Arrays.copyOfRange(bytes, 0, 1000));
+
+        source.release(held);
+        statistics = source.getStatistics();
+        assertThat(statistics.getUnmappings())
+            .isEqualTo(statistics.getAllocations() - MAX_REGIONS);
+
+        final ByteBuffer other = source.read(0L, 1000);
+        source.close();
+        statistics = source.getStatistics();
+        assertThat(statistics.getUnmappings())
+            .isEqualTo(statistics.getAllocations() - 1);
+        assertThat(toArray(other))
+            .isEqualTo(Arrays.copyOfRange(bytes, 0, 1000));
+        assertThat(statistics.getLiveBytes()).isGreaterThan(0L);
+        assertThat(statistics.getOutstandingViews()).isEqualTo(1L);
+        source.release(other);
+        statistics = source.getStatistics();
+        assertThat(statistics.getUnmappings())
+            .isEqualTo(statistics.getAllocations());
+        assertThat(statistics.getLiveBytes()).isEqualTo(0L);
+        assertThat(statistics.getOutstandingViews()).isEqualTo(0L);
+    }
+
+    @Test
+    public void textsCanBeReadUsingMappedRegions()
+        throws IOException
+    {
+        final LargeTextFactory factory = LargeTextFactory.newBuilder()
+            .setWindowSize(4, SizeUnit.KiB).build();
+        final Pattern pattern = Pattern.compile("\u4e2d[a-j]+\n");
+        final MappedRegionByteSource source = open();
+        try (
+            final LargeText text = factory.loadThreadSafe(source);
+        ) {
+            assertThat(text.length()).isEqualTo(testString.length());
+            final Matcher expected = pattern.matcher(testString);
+            final Matcher actual = pattern.matcher(text);
+            while (expected.find()) {
+                assertThat(actual.find()).isTrue();
+                assertThat(actual.start()).isEqualTo(expected.start());
+            }
+            assertThat(actual.find()).isFalse();
+            assertThat(text.countOccurrences("\u4e2d\n")).isEqualTo(
+                (long) testString.split("\u4e2d\n", -1).length - 1);
+        }
+        final IoStatistics statistics = source.getStatistics();
+        assertThat(statistics.getUnmappings())
+            .isEqualTo(statistics.getAllocations());
+    }
+
+    @AfterClass
+    public void deleteFile()
+        throws IOException
+    {
+        Files.delete(testFile);
+    }
+
+    private MappedRegionByteSource open()
+        throws IOException
+    {
+        return new MappedRegionByteSource(FileChannel.open(testFile,
+            StandardOpenOption.READ), REGION_SIZE, MAX_REGIONS);
+    }
+
+    private static byte[] toArray(final ByteBuffer buffer)
+    {
+        final ByteBuffer copy = buffer.duplicate();
+        final byte[] ret = new byte[copy.remaining()];
+        copy.get(ret);
+        return ret;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.source;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.SizeUnit;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class PooledReadByteSourceTest
+{
+    private static final String ALPHABET = "abcdefghij \u00e9\u4e2d\n";
+    private static final int SIZE = 300000;
+
+    private final Random random = new Random(0L);
+
+    private Path testFile;
+    private String testString;
+    private byte[] bytes;
+
+    @BeforeClass
+    public void createFile()
+        throws IOException
+    {
+        final StringBuilder sb = new StringBuilder(SIZE);
+        for (int i = 0; i < SIZE; i++)
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        testString = sb.toString();
+        bytes = testString.getBytes(StandardCharsets.UTF_8);
+        testFile = Files.createTempFile("largetext", ".txt");
+        Files.write(testFile, bytes);
+    }
+
+    @Test
+    public void readsReturnTheRightBytes()
+        throws IOException
+    {
+        try (
+            final PooledReadByteSource source = open();
+        ) {
+            int offset, length;
+            ByteBuffer buffer;
+            byte[] actual;
+            for (int i = 0; i < 100; i++) {
+                offset = random.nextInt(bytes.length + 1);
+                length = random.nextInt(100000);
+                buffer = source.read(offset, length);
+                actual = new byte[buffer.remaining()];
+                buffer.get(actual);
+                assertThat(actual).isEqualTo(Arrays.copyOfRange(bytes,
+                    offset, Math.min(bytes.length, offset + length)));
+                source.release(buffer);
+            }
+            assertThat(source.read(bytes.length, 10).remaining())
+                .isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void releasedBuffersAreReused()
+        throws IOException
+    {
+        try (
+            final PooledReadByteSource source = open();
+        ) {
+            final ByteBuffer first = source.read(0L, 1000);
+            final ByteBuffer second = source.read(0L, 1000);
+            assertThat(second).isNotSameAs(first);
+            source.release(first);
+            // Twice: must not be pooled twice
+            source.release(first);
+            assertThat(source.read(100L, 2000)).isSameAs(first);
+            assertThat(source.read(100L, 2000)).isNotSameAs(first);
+
+            final IoStatistics statistics = source.getStatistics();
+            assertThat(statistics.getStrategy())
+                .isEqualTo(IoStrategy.POOLED_READ);
+            assertThat(statistics.getReads()).isEqualTo(4L);
+            assertThat(statistics.getBytesRead()).isEqualTo(6000L);
+            assertThat(statistics.getAllocations()).isEqualTo(3L);
+            // The only pooled buffer has been taken again
+            assertThat(statistics.getLiveBytes()).isEqualTo(0L);
+        }
+    }
+
+    @Test
+    public void buffersNotObtainedFromTheSourceAreNotPooled()
+        throws IOException
+    {
+        try (
+            final PooledReadByteSource source = open();
+            final PooledReadByteSource other = open();
+        ) {
+            final ByteBuffer foreign = other.read(0L, 1000);
+            source.release(foreign);
+            source.release(ByteBuffer.allocateDirect(65536)
+                .asReadOnlyBuffer());
+            source.release(source.read(0L, 1000).duplicate());
+
+            assertThat(source.getStatistics().getLiveBytes()).isEqualTo(0L);
+            assertThat(source.read(0L, 1000)).isNotSameAs(foreign);
+            assertThat(source.getStatistics().getAllocations()).isEqualTo(2L);
+        }
+    }
+
+    @Test
+    public void textsCanBeReadUsingPooledReads()
+        throws IOException
+    {
+        final LargeTextFactory factory = LargeTextFactory.newBuilder()
+            .setWindowSize(16, SizeUnit.KiB)
+            .setIoStrategy(IoStrategy.POOLED_READ).build();
+        final Pattern pattern = Pattern.compile("\u4e2d[a-j]+\n");
+        try (
+            final LargeText text = factory.loadThreadSafe(testFile);
+        ) {
+            assertThat(text.length()).isEqualTo(testString.length());
+            final Matcher expected = pattern.matcher(testString);
+            final Matcher actual = pattern.matcher(text);
+            while (expected.find()) {
+                assertThat(actual.find()).isTrue();
+                assertThat(actual.start()).isEqualTo(expected.start());
+            }
+            assertThat(actual.find()).isFalse();
+            assertThat(text.indexOf("\u4e2d\n\u4e2d"))
+                .isEqualTo(testString.indexOf("\u4e2d\n\u4e2d"));
+        }
+    }
+
+    @AfterClass
+    public void deleteFile()
+        throws IOException
+    {
+        Files.delete(testFile);
+    }
+
+    private PooledReadByteSource open()
+        throws IOException
+    {
+        return new PooledReadByteSource(FileChannel.open(testFile,
+            StandardOpenOption.READ));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of both licenses is available under the src/resources/ directory of
+ * this project (under the names LGPL-3.0.txt and ASL-2.0.txt respectively).
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.largetext.trace;
+
+import com.github.fge.largetext.LargeText;
+import com.github.fge.largetext.LargeTextFactory;
+import com.github.fge.largetext.SizeUnit;
+import com.google.common.base.Strings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class TraceReplayTest
+{
+    private static final String CONTENTS = Strings.repeat("abcdefghij", 1000);
+
+    private Path testFile;
+    private Path traceDir;
+    private AccessTrace trace;
+
+    @BeforeMethod
+    public void init()
+        throws IOException
+    {
+        testFile = Files.createTempFile("foo", "bar");
+        Files.write(testFile, CONTENTS.getBytes(StandardCharsets.UTF_8));
+        traceDir = Files.createTempDirectory("traces");
+
+        final AccessTraceRecorder recorder = new AccessTraceRecorder(traceDir);
+        final LargeTextFactory factory = LargeTextFactory.newBuilder()
+            .setWindowSize(1, SizeUnit.KiB).setMetricsListener(recorder)
+            .build();
+
+        // The recorder must be closed last, once the text has been closed
+        try {
+            try (
+                final LargeText text = factory.load(testFile);
+            ) {
+                final int length = text.length();
+                for (int i = 0; i < length; i++)
+                    text.charAt(i);
+                text.subSequence(0, 3000).length();
+            }
+        } finally {
+            recorder.close();
+        }
+
+        final List<Path> files = listTraces();
+        assertThat(files).hasSize(1);
+        trace = AccessTrace.read(files.get(0));
+    }
+
+    @AfterMethod
+    public void cleanup()
+        throws IOException
+    {
+        for (final Path path: listTraces())
+            Files.delete(path);
+        Files.delete(traceDir);
+        Files.delete(testFile);
+    }
+
+    @Test
+    public void accessesAndWindowsAreRecorded()
+    {
+        // One charAt() miss per window, plus the subsequence
+        assertThat(trace.getNrAccesses()).isEqualTo(11);
+        assertThat(trace.getNrCharAts()).isEqualTo(10);
+        assertThat(trace.getNrWindows()).isEqualTo(10);
+        assertThat(trace.getTotalBytes()).isEqualTo(10000L);
+        assertThat(trace.getTotalChars()).isEqualTo(10000);
+        assertThat(trace.byteOffset(5000)).isEqualTo(5000L);
+    }
+
+    @Test
+    public void smallerWindowsThanRecordedAreMarkedAsUndercounted()
+    {
+        assertThat(trace.getRecordedWindowSize()).isEqualTo(1024L);
+        assertThat(TraceReplay.replay(trace, 512L, 4, 0).isUndercounted())
+            .isTrue();
+        assertThat(TraceReplay.replay(trace, 1024L, 4, 0).isUndercounted())
+            .isFalse();
+        assertThat(TraceReplay.replay(trace, 4096L, 4, 0).toCsv())
+            .endsWith(",false");
+    }
+
+    @Test
+    public void largerWindowsHitMoreOnSequentialScans()
+    {
+        final ReplayResult small = TraceReplay.replay(trace, 1024L, 4, 0);
+        final ReplayResult large = TraceReplay.replay(trace, 4096L, 4, 0);
+
+        assertThat(small.getLookups()).isEqualTo(13L);
+        assertThat(small.getHits()).isEqualTo(0L);
+        assertThat(large.getHits()).isEqualTo(8L);
+        assertThat(large.getHitRate()).isGreaterThan(small.getHitRate());
+        assertThat(large.getPeakMemory()).isEqualTo(3L * 4096L * 2L);
+    }
+
+    @Test
+    public void largerCachesNeverDoWorse()
+    {
+        ReplayResult previous = TraceReplay.replay(trace, 1024L, 1, 0);
+        ReplayResult result;
+        for (int cacheWindows = 2; cacheWindows <= 16; cacheWindows++) {
+            result = TraceReplay.replay(trace, 1024L, cacheWindows, 0);
+            assertThat(result.getHits()).isGreaterThanOrEqualTo(
+                previous.getHits());
+            previous = result;
+        }
+        assertThat(previous.getHits()).isEqualTo(3L);
+        assertThat(previous.getBytesDecoded()).isEqualTo(10000L);
+    }
+
+    @Test
+    public void prefetchingTurnsMissesIntoHits()
+    {
+        final ReplayResult result = TraceReplay.replay(trace, 1024L, 4, 1);
+
+        assertThat(result.getHits()).isEqualTo(6L);
+        assertThat(result.getMisses()).isEqualTo(7L);
+    }
+
+    private List<Path> listTraces()
+        throws IOException
+    {
+        final List<Path> ret = new ArrayList<>();
+        try (
+            final DirectoryStream<Path> stream
+                = Files.newDirectoryStream(traceDir);
+        ) {
+            for (final Path path: stream)
+                ret.add(path);
+        }
+        return ret;
+    }
+}